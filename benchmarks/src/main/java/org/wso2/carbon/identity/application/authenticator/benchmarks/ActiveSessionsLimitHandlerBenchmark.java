@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.identity.application.authentication.framework.UserSessionManagementService;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.exception.LogoutFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.authentication.framework.model.UserSession;
+import org.wso2.carbon.identity.application.authentication.handler.session.ActiveSessionsLimitHandler;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserIdCache;
+import org.wso2.carbon.identity.application.authentication.handler.session.internal.ActiveSessionsLimitHandlerServiceHolder;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Benchmark of the {@link ActiveSessionsLimitHandler} for a user who has reached the limit of active sessions, so
+ * that the properties of each session are prepared for the prompt to terminate sessions. The number of sessions of
+ * the user is a parameter, and the sessions are served by a session management service stand-in.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ActiveSessionsLimitHandlerBenchmark {
+
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.75 "
+                    + "Safari/537.36",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) "
+                    + "Version/14.0 Safari/605.1.15",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:82.0) Gecko/20100101 Firefox/82.0",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 14_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) "
+                    + "Version/14.0 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Linux; Android 10; SM-G975F) AppleWebKit/537.36 (KHTML, like Gecko) "
+                    + "Chrome/86.0.4240.99 Mobile Safari/537.36"
+    };
+
+    @Param({"1", "10", "100", "1000"})
+    public int sessionCount;
+
+    private ActiveSessionsLimitHandler handler;
+    private AuthenticatedUser user;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        BenchmarkEnvironment.setUp();
+        List<UserSession> userSessions = new ArrayList<>();
+        long currentTime = System.currentTimeMillis();
+        for (int i = 0; i < sessionCount; i++) {
+            UserSession userSession = new UserSession();
+            userSession.setSessionId(UUID.randomUUID().toString());
+            userSession.setUserAgent(USER_AGENTS[i % USER_AGENTS.length]);
+            userSession.setIp("10.0.0." + (i % 256));
+            userSession.setLoginTime(String.valueOf(currentTime - TimeUnit.HOURS.toMillis(1)));
+            userSession.setLastAccessTime(String.valueOf(currentTime - TimeUnit.SECONDS.toMillis(i)));
+            userSessions.add(userSession);
+        }
+        List<UserSession> sessions = Collections.unmodifiableList(userSessions);
+        ActiveSessionsLimitHandlerServiceHolder.getInstance().setUserSessionManagementService(
+                Stub.of(UserSessionManagementService.class).returning("getSessionsByUserId", sessions).build());
+
+        handler = new ActiveSessionsLimitHandler();
+        user = AuthenticatedUser.createLocalAuthenticatedUserFromSubjectIdentifier("admin");
+        // The userId is looked up in the session store on the first login of the user on a node, and then cached.
+        UserIdCache userIdCache = UserIdCache.getInstance();
+        long invalidationStamp = userIdCache.getInvalidationStamp(user.getTenantDomain(), user.getUserStoreDomain(),
+                user.getUserName());
+        userIdCache.putUserId(user.getTenantDomain(), user.getUserStoreDomain(), user.getUserName(),
+                UUID.randomUUID().toString(), invalidationStamp);
+        request = BenchmarkEnvironment.createRequest(Collections.emptyMap());
+        response = BenchmarkEnvironment.createResponse(location -> {
+        });
+    }
+
+    @Benchmark
+    public Map<String, Serializable> prepareSessionsPrompt() throws AuthenticationFailedException,
+            LogoutFailedException {
+
+        AuthenticationContext context = BenchmarkEnvironment.createContext();
+        context.setSubject(user);
+        handler.process(request, response, context);
+        return context.getEndpointParams();
+    }
+}
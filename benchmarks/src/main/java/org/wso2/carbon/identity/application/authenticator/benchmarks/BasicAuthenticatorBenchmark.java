@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.exception.InvalidCredentialsException;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.core.model.IdentityErrorMsgContext;
+import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.user.core.UserCoreConstants;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Benchmarks of the login page redirect and the credential check of the {@link BasicAuthenticator}.
+ * <p>
+ * The redirect is measured for each branch of the identity error codes, which build different redirect URLs. The
+ * credential check runs against a user store stand-in which answers without I/O, so it measures the cost of the
+ * authenticator itself.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BasicAuthenticatorBenchmark {
+
+    private static final String USERNAME = "admin";
+    private static final String PASSWORD = "admin";
+    // Name of the context property the authenticator keeps the submitted password in, for the OTP reset redirect.
+    private static final String PASSWORD_PROPERTY = "PASSWORD_PROPERTY";
+
+    /**
+     * Identity error of the failed login the redirect is built for.
+     */
+    public enum ErrorBranch {
+
+        NONE(null),
+        INVALID_CREDENTIAL(UserCoreConstants.ErrorCode.INVALID_CREDENTIAL),
+        USER_IS_LOCKED(UserCoreConstants.ErrorCode.USER_IS_LOCKED + ":AdminInitiated"),
+        USER_DOES_NOT_EXIST(UserCoreConstants.ErrorCode.USER_DOES_NOT_EXIST),
+        ACCOUNT_NOT_CONFIRMED(IdentityCoreConstants.USER_ACCOUNT_NOT_CONFIRMED_ERROR_CODE),
+        PASSWORD_RESET_EMAIL_LINK(IdentityCoreConstants.ADMIN_FORCED_USER_PASSWORD_RESET_VIA_EMAIL_LINK_ERROR_CODE),
+        PASSWORD_RESET_OTP(IdentityCoreConstants.ADMIN_FORCED_USER_PASSWORD_RESET_VIA_OTP_ERROR_CODE),
+        PASSWORD_RESET_OTP_MISMATCH(
+                IdentityCoreConstants.ADMIN_FORCED_USER_PASSWORD_RESET_VIA_OTP_MISMATCHED_ERROR_CODE);
+
+        private final String errorCode;
+
+        ErrorBranch(String errorCode) {
+
+            this.errorCode = errorCode;
+        }
+
+        void apply() {
+
+            if (errorCode != null) {
+                IdentityUtil.setIdentityErrorMsg(new IdentityErrorMsgContext(errorCode, 2, 5));
+            }
+        }
+    }
+
+    /**
+     * The authenticator, bound to a user store which accepts only the benchmark password.
+     */
+    @State(Scope.Benchmark)
+    public static class AuthenticatorState {
+
+        ExposedBasicAuthenticator authenticator;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+
+            BenchmarkEnvironment.setUp();
+            UserStoreManager userStoreManager = Stub.of(UserStoreManager.class)
+                    .on("authenticate", args -> PASSWORD.equals(args[1]))
+                    .returning("isExistingUser", true)
+                    .build();
+            BenchmarkEnvironment.bindRealmService(BenchmarkEnvironment.createRealmService(userStoreManager));
+            BenchmarkEnvironment.bindIdentityGovernanceService();
+            authenticator = new ExposedBasicAuthenticator();
+        }
+    }
+
+    /**
+     * Request and response of a thread, with the last redirect sent.
+     */
+    @State(Scope.Thread)
+    public static class RedirectState {
+
+        @Param
+        public ErrorBranch errorBranch;
+
+        HttpServletRequest request;
+        HttpServletResponse response;
+        String redirectUrl;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put(BasicAuthenticatorConstants.USER_NAME, USERNAME);
+            request = BenchmarkEnvironment.createRequest(parameters);
+            response = BenchmarkEnvironment.createResponse(location -> redirectUrl = location);
+        }
+    }
+
+    /**
+     * Login form submission of a thread.
+     */
+    @State(Scope.Thread)
+    public static class LoginState {
+
+        @Param({"true", "false"})
+        public boolean validCredentials;
+
+        HttpServletRequest request;
+        HttpServletResponse response;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+
+            Map<String, String> parameters = new HashMap<>();
+            parameters.put(BasicAuthenticatorConstants.USER_NAME, USERNAME);
+            parameters.put(BasicAuthenticatorConstants.PASSWORD, validCredentials ? PASSWORD : "invalid");
+            parameters.put("sessionDataKey", Thread.currentThread().getName());
+            request = BenchmarkEnvironment.createRequest(parameters);
+            response = BenchmarkEnvironment.createResponse(location -> {
+            });
+        }
+    }
+
+    @Benchmark
+    public String initiateAuthenticationRequest(AuthenticatorState authenticatorState, RedirectState state)
+            throws AuthenticationFailedException {
+
+        AuthenticationContext context = BenchmarkEnvironment.createContext();
+        context.setProperty(PASSWORD_PROPERTY, PASSWORD);
+        state.errorBranch.apply();
+        authenticatorState.authenticator.initiateAuthenticationRequest(state.request, state.response, context);
+        return state.redirectUrl;
+    }
+
+    @Benchmark
+    public Object processAuthenticationResponse(AuthenticatorState authenticatorState, LoginState state)
+            throws AuthenticationFailedException {
+
+        AuthenticationContext context = BenchmarkEnvironment.createContext();
+        try {
+            authenticatorState.authenticator.processAuthenticationResponse(state.request, state.response, context);
+        } catch (InvalidCredentialsException e) {
+            return e;
+        }
+        return context.getSubject();
+    }
+
+    /**
+     * Basic authenticator with its protected login steps exposed to the benchmarks.
+     */
+    static class ExposedBasicAuthenticator extends BasicAuthenticator {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void initiateAuthenticationRequest(HttpServletRequest request, HttpServletResponse response,
+                                                     AuthenticationContext context)
+                throws AuthenticationFailedException {
+
+            super.initiateAuthenticationRequest(request, response, context);
+        }
+
+        @Override
+        protected void processAuthenticationResponse(HttpServletRequest request, HttpServletResponse response,
+                                                     AuthenticationContext context)
+                throws AuthenticationFailedException {
+
+            super.processAuthenticationResponse(request, response, context);
+        }
+    }
+}
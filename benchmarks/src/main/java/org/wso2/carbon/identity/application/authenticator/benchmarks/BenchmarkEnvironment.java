@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks;
+
+import org.wso2.carbon.identity.application.authentication.framework.config.model.ApplicationConfig;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.SequenceConfig;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.internal.IdentifierAuthenticatorServiceComponent;
+import org.wso2.carbon.identity.application.authentication.handler.session.internal.ActiveSessionsLimitHandlerServiceHolder;
+import org.wso2.carbon.identity.application.authenticator.basicauth.internal.BasicAuthenticatorDataHolder;
+import org.wso2.carbon.identity.application.authenticator.basicauth.internal.BasicAuthenticatorServiceComponent;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.internal.JWTBasicAuthenticatorServiceComponentDataHolder;
+import org.wso2.carbon.identity.application.common.model.Property;
+import org.wso2.carbon.identity.application.common.model.ServiceProvider;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.carbon.user.api.UserRealm;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Environment the benchmarks run in. It stands up a carbon home with the configuration files read by the framework,
+ * and binds stand-ins of the OSGi services to the authenticators, the way their service components do in a server.
+ */
+public class BenchmarkEnvironment {
+
+    public static final String SUPER_TENANT_DOMAIN = "carbon.super";
+    public static final int SUPER_TENANT_ID = -1234;
+
+    private static final String CARBON_HOME_RESOURCE = "/carbon-home/repository/conf/";
+    private static final String[] CONFIG_FILES = {"carbon.xml", "identity/identity.xml",
+            "identity/application-authentication.xml"};
+
+    private static Path carbonHome;
+
+    private BenchmarkEnvironment() {
+
+    }
+
+    /**
+     * Create the carbon home of the benchmarks in a temporary directory, once per JVM.
+     *
+     * @throws IOException if the configuration files cannot be written.
+     */
+    public static synchronized void setUp() throws IOException {
+
+        if (carbonHome != null) {
+            return;
+        }
+        Path home = Files.createTempDirectory("benchmarks-carbon-home");
+        Path configDir = home.resolve("repository").resolve("conf");
+        for (String configFile : CONFIG_FILES) {
+            Path target = configDir.resolve(configFile);
+            Files.createDirectories(target.getParent());
+            try (InputStream in = BenchmarkEnvironment.class.getResourceAsStream(CARBON_HOME_RESOURCE + configFile)) {
+                if (in == null) {
+                    throw new IOException("Configuration file: " + configFile + " is not found in the classpath.");
+                }
+                Files.copy(in, target);
+            }
+        }
+        System.setProperty("carbon.home", home.toString());
+        System.setProperty("carbon.config.dir.path", configDir.toString());
+        carbonHome = home;
+    }
+
+    /**
+     * Create a realm service which serves the given user store manager for every tenant.
+     *
+     * @param userStoreManager user store manager of the tenants.
+     * @return the realm service.
+     */
+    public static RealmService createRealmService(UserStoreManager userStoreManager) {
+
+        UserRealm userRealm = Stub.of(org.wso2.carbon.user.core.UserRealm.class)
+                .returning("getUserStoreManager", userStoreManager)
+                .build();
+        TenantManager tenantManager = Stub.of(TenantManager.class)
+                .on("getTenantId", args -> SUPER_TENANT_DOMAIN.equals(args[0]) ? SUPER_TENANT_ID
+                        : Math.abs(args[0].hashCode() % 100000) + 1)
+                .build();
+        return Stub.of(RealmService.class)
+                .returning("getTenantUserRealm", userRealm)
+                .returning("getTenantManager", tenantManager)
+                .build();
+    }
+
+    /**
+     * Bind the realm service to the authenticators and handlers.
+     *
+     * @param realmService realm service.
+     */
+    public static void bindRealmService(RealmService realmService) {
+
+        // The realm service of the service components is only set by their protected bind methods.
+        new BasicAuthenticatorServiceComponent() {
+            {
+                setRealmService(realmService);
+            }
+        };
+        new IdentifierAuthenticatorServiceComponent() {
+            {
+                setRealmService(realmService);
+            }
+        };
+        IdentityTenantUtil.setRealmService(realmService);
+        ActiveSessionsLimitHandlerServiceHolder.getInstance().setRealmService(realmService);
+        JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setRealmService(realmService);
+    }
+
+    /**
+     * Bind an identity governance service which has no connector configured, so that captcha is not enforced.
+     */
+    public static void bindIdentityGovernanceService() {
+
+        BasicAuthenticatorDataHolder.getInstance().setIdentityGovernanceService(
+                Stub.of(IdentityGovernanceService.class).returning("getConfiguration", new Property[0]).build());
+    }
+
+    /**
+     * Create an authentication context of the super tenant, as created by the framework for a new login.
+     *
+     * @return the authentication context.
+     */
+    public static AuthenticationContext createContext() {
+
+        return createContext(SUPER_TENANT_DOMAIN);
+    }
+
+    /**
+     * Create an authentication context of a login to an application of the given tenant, as created by the framework
+     * for a new login. The application is not a SaaS application, so only the users of the tenant can log in to it.
+     *
+     * @param tenantDomain tenant domain of the application.
+     * @return the authentication context.
+     */
+    public static AuthenticationContext createContext(String tenantDomain) {
+
+        AuthenticationContext context = new AuthenticationContext();
+        String contextIdentifier = UUID.randomUUID().toString();
+        context.setContextIdentifier(contextIdentifier);
+        context.setContextIdIncludedQueryParams("sessionDataKey=" + contextIdentifier);
+        context.setTenantDomain(tenantDomain);
+        ServiceProvider serviceProvider = new ServiceProvider();
+        serviceProvider.setApplicationName("benchmark-application");
+        serviceProvider.setSaasApp(false);
+        SequenceConfig sequenceConfig = new SequenceConfig();
+        sequenceConfig.setApplicationConfig(new ApplicationConfig(serviceProvider));
+        context.setSequenceConfig(sequenceConfig);
+        return context;
+    }
+
+    /**
+     * Create a request with the given parameters.
+     *
+     * @param parameters request parameters.
+     * @return the request.
+     */
+    public static HttpServletRequest createRequest(Map<String, String> parameters) {
+
+        return Stub.of(HttpServletRequest.class)
+                .on("getParameter", args -> parameters.get(args[0]))
+                .build();
+    }
+
+    /**
+     * Create a response which hands the redirects sent to it to the given consumer.
+     *
+     * @param redirects consumer of the redirect locations.
+     * @return the response.
+     */
+    public static HttpServletResponse createResponse(Consumer<String> redirects) {
+
+        return Stub.of(HttpServletResponse.class)
+                .on("encodeRedirectURL", args -> args[0])
+                .on("sendRedirect", args -> {
+                    redirects.accept((String) args[0]);
+                    return null;
+                })
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.exception.LogoutFailedException;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.IdentifierHandler;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.IdentifierHandlerConstants;
+import org.wso2.carbon.user.core.UserStoreManager;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Benchmarks of the identifier first flows of the {@link IdentifierHandler}, from the redirect to the identifier page
+ * to the validation of the submitted username against a user store stand-in.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentifierHandlerBenchmark {
+
+    private static final String EXISTING_USERNAME = "admin";
+
+    /**
+     * Request of the identifier first flow which is handled.
+     */
+    public enum Flow {
+
+        // First request of the flow, redirected to the identifier page.
+        IDENTIFIER_PAGE(null),
+        // Username of an existing user submitted, which completes the step.
+        EXISTING_USER(EXISTING_USERNAME),
+        // Username of an unknown user submitted, which redirects to the identifier page to retry.
+        UNKNOWN_USER("unknown");
+
+        private final String username;
+
+        Flow(String username) {
+
+            this.username = username;
+        }
+    }
+
+    @Param
+    public Flow flow;
+
+    private IdentifierHandler identifierHandler;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private String redirectUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        BenchmarkEnvironment.setUp();
+        UserStoreManager userStoreManager = Stub.of(UserStoreManager.class)
+                .on("isExistingUser", args -> EXISTING_USERNAME.equals(args[0]))
+                .build();
+        BenchmarkEnvironment.bindRealmService(BenchmarkEnvironment.createRealmService(userStoreManager));
+        identifierHandler = new IdentifierHandler();
+
+        Map<String, String> parameters = new HashMap<>();
+        if (flow.username != null) {
+            parameters.put(IdentifierHandlerConstants.USER_NAME, flow.username);
+        }
+        request = BenchmarkEnvironment.createRequest(parameters);
+        response = BenchmarkEnvironment.createResponse(location -> redirectUrl = location);
+    }
+
+    @Benchmark
+    public Object process() throws AuthenticationFailedException, LogoutFailedException {
+
+        AuthenticatorFlowStatus status = identifierHandler.process(request, response,
+                BenchmarkEnvironment.createContext());
+        return status == AuthenticatorFlowStatus.INCOMPLETE ? redirectUrl : status;
+    }
+}
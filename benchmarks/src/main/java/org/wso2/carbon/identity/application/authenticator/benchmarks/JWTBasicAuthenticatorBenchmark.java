@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.CompactJwsPreParser;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.PreParsedJws;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.internal.JWTBasicAuthenticatorServiceComponentDataHolder;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks.JwksKeyIndex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the parsing and the signature verification of the JWT assertions of the JWT basic authenticator,
+ * with the RS256 signature key published in a JWKS file of the super tenant.
+ * <p>
+ * The full login is not benchmarked, because the replay check rejects a token after its first use and is backed by
+ * the carbon cache, which needs a running server. The steps measured here are the ones the login runs per token:
+ * the pre-parse which rejects malformed and replayed tokens early, the full parse of the claims and the signature
+ * verification with the indexed key.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JWTBasicAuthenticatorBenchmark {
+
+    private static final String KEY_ID = "benchmark-key";
+    private static final int MAX_TOKEN_LENGTH = 8192;
+
+    private JwksKeyIndex jwksKeyIndex;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, NoSuchAlgorithmException, JOSEException {
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        RSAKey publicKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .keyID(KEY_ID)
+                .keyUse(KeyUse.SIGNATURE)
+                .build();
+
+        Path jwksDirectory = Files.createTempDirectory("benchmarks-jwks");
+        Files.write(jwksDirectory.resolve(BenchmarkEnvironment.SUPER_TENANT_DOMAIN + ".jwks"),
+                new JWKSet(publicKey).toString().getBytes(StandardCharsets.UTF_8));
+        jwksKeyIndex = new JwksKeyIndex(jwksDirectory);
+        jwksKeyIndex.refresh();
+        JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setJwksKeyIndex(jwksKeyIndex);
+
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .subject("admin")
+                .issuer("benchmark")
+                .jwtID(UUID.randomUUID().toString())
+                .expirationTime(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .build();
+        SignedJWT signedJWT = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(KEY_ID).build(),
+                claimsSet);
+        signedJWT.sign(new RSASSASigner((RSAPrivateKey) keyPair.getPrivate()));
+        token = signedJWT.serialize();
+    }
+
+    @Benchmark
+    public PreParsedJws preParse() throws ParseException {
+
+        return CompactJwsPreParser.parse(token, MAX_TOKEN_LENGTH);
+    }
+
+    @Benchmark
+    public JWTClaimsSet parse() throws ParseException {
+
+        return SignedJWT.parse(token).getJWTClaimsSet();
+    }
+
+    @Benchmark
+    public boolean parseAndVerify() throws ParseException, JOSEException {
+
+        // The login parses each assertion it verifies, so the parse is measured together with the verification.
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        JWSVerifier verifier = jwksKeyIndex.getVerifier(BenchmarkEnvironment.SUPER_TENANT_DOMAIN,
+                signedJWT.getHeader().getKeyID());
+        return signedJWT.verify(verifier);
+    }
+}
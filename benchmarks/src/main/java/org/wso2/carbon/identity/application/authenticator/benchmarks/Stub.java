@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stand-in of a service or a servlet object, built as a dynamic proxy of its interface, so that the authenticators
+ * can be benchmarked without an OSGi runtime or a mocking library. The methods are answered by name, and the methods
+ * without an answer return the default value of their return type.
+ *
+ * @param <T> interface of the stand-in.
+ */
+public class Stub<T> {
+
+    private final Class<T> type;
+    private final Map<String, Answer> answers = new HashMap<>();
+
+    private Stub(Class<T> type) {
+
+        this.type = type;
+    }
+
+    public static <T> Stub<T> of(Class<T> type) {
+
+        return new Stub<>(type);
+    }
+
+    /**
+     * Answer the calls of the methods with the given name.
+     *
+     * @param methodName name of the methods, regardless of their parameters.
+     * @param answer     answer of the calls.
+     * @return this stub.
+     */
+    public Stub<T> on(String methodName, Answer answer) {
+
+        answers.put(methodName, answer);
+        return this;
+    }
+
+    /**
+     * Answer the calls of the methods with the given name with a fixed value.
+     *
+     * @param methodName name of the methods, regardless of their parameters.
+     * @param value      value returned by the calls.
+     * @return this stub.
+     */
+    public Stub<T> returning(String methodName, Object value) {
+
+        return on(methodName, args -> value);
+    }
+
+    public T build() {
+
+        Map<String, Answer> methodAnswers = new HashMap<>(answers);
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (instance, method, args) -> invoke(instance, method, args, methodAnswers));
+        return type.cast(proxy);
+    }
+
+    private Object invoke(Object instance, Method method, Object[] args, Map<String, Answer> methodAnswers)
+            throws Throwable {
+
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return instance == args[0];
+                case "hashCode":
+                    return System.identityHashCode(instance);
+                default:
+                    return type.getSimpleName() + " stub";
+            }
+        }
+        Answer answer = methodAnswers.get(method.getName());
+        if (answer == null) {
+            return defaultValue(method.getReturnType());
+        }
+        return answer.answer(args != null ? args : new Object[0]);
+    }
+
+    private static Object defaultValue(Class<?> returnType) {
+
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        }
+        return Array.get(Array.newInstance(returnType, 1), 0);
+    }
+
+    /**
+     * Answer of the calls of a stubbed method.
+     */
+    @FunctionalInterface
+    public interface Answer {
+
+        Object answer(Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks.load;
+
+import org.wso2.carbon.identity.application.authentication.framework.UserSessionManagementService;
+import org.wso2.carbon.identity.application.authentication.framework.exception.session.mgt.SessionManagementException;
+import org.wso2.carbon.identity.application.authentication.framework.model.UserSession;
+import org.wso2.carbon.identity.application.authenticator.benchmarks.Stub;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory session store served through a user session management service stand-in. Each lookup returns a random
+ * number of active sessions of the user, up to the configured maximum, and the session store calls are made through a
+ * {@link SimulatedBackend}, which adds their latency and fails a share of them.
+ */
+public class InMemoryUserSessions {
+
+    private static final String ERROR_CODE = "SIM-60001";
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/86.0.4240.75 "
+                    + "Safari/537.36",
+            "Mozilla/5.0 (X11; Linux x86_64; rv:82.0) Gecko/20100101 Firefox/82.0",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 14_1 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) "
+                    + "Version/14.0 Mobile/15E148 Safari/604.1"
+    };
+
+    private final int maxSessionsPerUser;
+    private final SimulatedBackend backend;
+    private final UserSessionManagementService userSessionManagementService;
+
+    /**
+     * @param maxSessionsPerUser maximum number of active sessions returned for a user.
+     * @param backend            backend of the session store calls.
+     */
+    public InMemoryUserSessions(int maxSessionsPerUser, SimulatedBackend backend) {
+
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.backend = backend;
+        this.userSessionManagementService = Stub.of(UserSessionManagementService.class)
+                .on("getSessionsByUserId", args -> {
+                    callBackend();
+                    return createSessions();
+                })
+                .on("terminateSessionBySessionId", args -> {
+                    callBackend();
+                    return true;
+                })
+                .build();
+    }
+
+    public UserSessionManagementService getUserSessionManagementService() {
+
+        return userSessionManagementService;
+    }
+
+    private void callBackend() throws SessionManagementException {
+
+        if (backend.call()) {
+            String message = "Simulated failure of session store: " + backend.getName();
+            throw new SessionManagementException(ERROR_CODE, message, message);
+        }
+    }
+
+    private List<UserSession> createSessions() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sessionCount = random.nextInt(maxSessionsPerUser + 1);
+        long currentTime = System.currentTimeMillis();
+        List<UserSession> userSessions = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            UserSession userSession = new UserSession();
+            userSession.setSessionId(UUID.randomUUID().toString());
+            userSession.setUserAgent(USER_AGENTS[random.nextInt(USER_AGENTS.length)]);
+            userSession.setIp("10.0." + random.nextInt(256) + "." + random.nextInt(256));
+            userSession.setLoginTime(String.valueOf(currentTime - TimeUnit.HOURS.toMillis(1)));
+            userSession.setLastAccessTime(String.valueOf(currentTime - TimeUnit.SECONDS.toMillis(i)));
+            userSessions.add(userSession);
+        }
+        return userSessions;
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks.load;
+
+import org.wso2.carbon.identity.application.authenticator.benchmarks.BenchmarkEnvironment;
+import org.wso2.carbon.identity.application.authenticator.benchmarks.Stub;
+import org.wso2.carbon.user.api.UserRealm;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.user.core.tenant.TenantManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * In-memory user stores of a number of tenants, each with the same user store domains and users, served through a
+ * realm service stand-in. The user store calls are made through a {@link SimulatedBackend}, which adds their latency
+ * and fails a share of them.
+ * <p>
+ * The first tenant is the super tenant and the others are named {@code tenant<n>.com}. The first domain is the
+ * primary domain and the others are named {@code SECONDARY<n>}. The users are named {@code user<n>}, and all of them
+ * have the password {@link #PASSWORD}.
+ */
+public class InMemoryUserStores {
+
+    public static final String PASSWORD = "password";
+
+    private static final String PRIMARY_DOMAIN = "PRIMARY";
+    private static final String SECONDARY_DOMAIN_PREFIX = "SECONDARY";
+    private static final String USER_PREFIX = "user";
+    private static final int INVALID_TENANT_ID = -1;
+
+    private final List<String> tenantDomains = new ArrayList<>();
+    private final Map<String, Integer> tenantIds = new HashMap<>();
+    private final List<String> userStoreDomains = new ArrayList<>();
+    private final int usersPerDomain;
+    private final SimulatedBackend backend;
+    private final RealmService realmService;
+
+    /**
+     * @param tenantCount    number of tenants, including the super tenant.
+     * @param domainCount    number of user store domains of each tenant, including the primary domain.
+     * @param usersPerDomain number of users of each user store domain.
+     * @param backend        backend of the user store calls.
+     */
+    public InMemoryUserStores(int tenantCount, int domainCount, int usersPerDomain, SimulatedBackend backend) {
+
+        if (tenantCount < 1 || domainCount < 1 || usersPerDomain < 1) {
+            throw new IllegalArgumentException("There must be at least one tenant, user store domain and user.");
+        }
+        tenantDomains.add(BenchmarkEnvironment.SUPER_TENANT_DOMAIN);
+        tenantIds.put(BenchmarkEnvironment.SUPER_TENANT_DOMAIN, BenchmarkEnvironment.SUPER_TENANT_ID);
+        for (int i = 1; i < tenantCount; i++) {
+            String tenantDomain = "tenant" + i + ".com";
+            tenantDomains.add(tenantDomain);
+            tenantIds.put(tenantDomain, i);
+        }
+        userStoreDomains.add(PRIMARY_DOMAIN);
+        for (int i = 1; i < domainCount; i++) {
+            userStoreDomains.add(SECONDARY_DOMAIN_PREFIX + i);
+        }
+        this.usersPerDomain = usersPerDomain;
+        this.backend = backend;
+        this.realmService = createRealmService();
+    }
+
+    public RealmService getRealmService() {
+
+        return realmService;
+    }
+
+    public List<String> getTenantDomains() {
+
+        return Collections.unmodifiableList(tenantDomains);
+    }
+
+    /**
+     * Pick a random user of a random user store domain of a random tenant.
+     *
+     * @param random source of randomness of the calling thread.
+     * @return tenant qualified username, prefixed with the user store domain if it is a secondary domain.
+     */
+    public String getRandomUsername(Random random) {
+
+        String tenantDomain = tenantDomains.get(random.nextInt(tenantDomains.size()));
+        String userStoreDomain = userStoreDomains.get(random.nextInt(userStoreDomains.size()));
+        String username = USER_PREFIX + random.nextInt(usersPerDomain);
+        if (!PRIMARY_DOMAIN.equals(userStoreDomain)) {
+            username = userStoreDomain + "/" + username;
+        }
+        return username + "@" + tenantDomain;
+    }
+
+    /**
+     * Get the tenant domain of a tenant qualified username.
+     *
+     * @param username tenant qualified username.
+     * @return tenant domain of the user.
+     */
+    public static String getTenantDomain(String username) {
+
+        return username.substring(username.lastIndexOf('@') + 1);
+    }
+
+    private RealmService createRealmService() {
+
+        UserStoreManager userStoreManager = Stub.of(UserStoreManager.class)
+                .on("authenticate", args -> {
+                    callBackend();
+                    return isUser((String) args[0]) && PASSWORD.equals(args[1]);
+                })
+                .on("isExistingUser", args -> {
+                    callBackend();
+                    return isUser((String) args[0]);
+                })
+                .build();
+        UserRealm userRealm = Stub.of(org.wso2.carbon.user.core.UserRealm.class)
+                .returning("getUserStoreManager", userStoreManager)
+                .build();
+        TenantManager tenantManager = Stub.of(TenantManager.class)
+                .on("getTenantId", args -> tenantIds.getOrDefault(args[0], INVALID_TENANT_ID))
+                .on("getDomain", args -> {
+                    int tenantId = (Integer) args[0];
+                    return tenantId == BenchmarkEnvironment.SUPER_TENANT_ID ? BenchmarkEnvironment.SUPER_TENANT_DOMAIN
+                            : tenantDomains.get(tenantId);
+                })
+                .build();
+        return Stub.of(RealmService.class)
+                .on("getTenantUserRealm", args -> tenantIds.containsValue((Integer) args[0]) ? userRealm : null)
+                .returning("getTenantManager", tenantManager)
+                .build();
+    }
+
+    private void callBackend() throws UserStoreException {
+
+        if (backend.call()) {
+            throw new UserStoreException("Simulated failure of user store: " + backend.getName());
+        }
+    }
+
+    /**
+     * Check whether a tenant aware username, with or without the user store domain, is a user of the user stores.
+     */
+    private boolean isUser(String tenantAwareUsername) {
+
+        String userStoreDomain = PRIMARY_DOMAIN;
+        String username = tenantAwareUsername;
+        int separatorIndex = tenantAwareUsername.indexOf('/');
+        if (separatorIndex > 0) {
+            userStoreDomain = tenantAwareUsername.substring(0, separatorIndex).toUpperCase();
+            username = tenantAwareUsername.substring(separatorIndex + 1);
+        }
+        if (!userStoreDomains.contains(userStoreDomain) || !username.startsWith(USER_PREFIX)) {
+            return false;
+        }
+        try {
+            int userIndex = Integer.parseInt(username.substring(USER_PREFIX.length()));
+            return userIndex >= 0 && userIndex < usersPerDomain;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks.load;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the latencies injected into the calls of a simulated backend. A distribution is configured with one
+ * of the following specs, in milliseconds:
+ * <ul>
+ * <li>{@code none}: no latency.</li>
+ * <li>{@code fixed:<latency>}: the same latency for each call.</li>
+ * <li>{@code uniform:<min>,<max>}: a latency uniformly distributed between min and max.</li>
+ * <li>{@code lognormal:<median>,<sigma>}: a log-normally distributed latency with the given median and the standard
+ * deviation of its logarithm, which has the long tail of the latencies of a real directory or database.</li>
+ * </ul>
+ */
+public abstract class LatencyDistribution {
+
+    private static final LatencyDistribution NONE = new LatencyDistribution() {
+
+        @Override
+        long sampleNanos(Random random) {
+
+            return 0;
+        }
+    };
+
+    /**
+     * Sample the latency of a call.
+     *
+     * @param random source of randomness of the calling thread.
+     * @return latency in nanoseconds.
+     */
+    abstract long sampleNanos(Random random);
+
+    /**
+     * Parse a latency distribution spec.
+     *
+     * @param spec latency distribution spec.
+     * @return the latency distribution.
+     * @throws IllegalArgumentException if the spec is invalid.
+     */
+    public static LatencyDistribution parse(String spec) {
+
+        String[] typeAndValues = spec.trim().split(":", 2);
+        String type = typeAndValues[0];
+        double[] values = typeAndValues.length > 1 ? parseValues(typeAndValues[1]) : new double[0];
+        switch (type) {
+            case "none":
+                return NONE;
+            case "fixed":
+                checkValueCount(spec, values, 1);
+                long latencyNanos = toNanos(values[0]);
+                return new LatencyDistribution() {
+
+                    @Override
+                    long sampleNanos(Random random) {
+
+                        return latencyNanos;
+                    }
+                };
+            case "uniform":
+                checkValueCount(spec, values, 2);
+                long minNanos = toNanos(values[0]);
+                long rangeNanos = toNanos(values[1]) - minNanos;
+                if (rangeNanos < 0) {
+                    throw new IllegalArgumentException("Minimum latency is larger than the maximum in: " + spec);
+                }
+                return new LatencyDistribution() {
+
+                    @Override
+                    long sampleNanos(Random random) {
+
+                        return minNanos + (long) (random.nextDouble() * rangeNanos);
+                    }
+                };
+            case "lognormal":
+                checkValueCount(spec, values, 2);
+                double mu = Math.log(toNanos(values[0]));
+                double sigma = values[1];
+                return new LatencyDistribution() {
+
+                    @Override
+                    long sampleNanos(Random random) {
+
+                        return (long) Math.exp(mu + sigma * random.nextGaussian());
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported latency distribution: " + spec);
+        }
+    }
+
+    private static double[] parseValues(String values) {
+
+        String[] valueStrings = values.split(",");
+        double[] parsedValues = new double[valueStrings.length];
+        for (int i = 0; i < valueStrings.length; i++) {
+            parsedValues[i] = Double.parseDouble(valueStrings[i].trim());
+            if (parsedValues[i] < 0) {
+                throw new IllegalArgumentException("Negative value in latency distribution: " + values);
+            }
+        }
+        return parsedValues;
+    }
+
+    private static void checkValueCount(String spec, double[] values, int expectedCount) {
+
+        if (values.length != expectedCount) {
+            throw new IllegalArgumentException("Latency distribution: " + spec + " must have " + expectedCount
+                    + " value(s).");
+        }
+    }
+
+    private static long toNanos(double millis) {
+
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
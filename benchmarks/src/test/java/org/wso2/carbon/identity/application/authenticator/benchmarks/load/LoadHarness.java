@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks.load;
+
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.exception.LogoutFailedException;
+import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.IdentifierHandler;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.IdentifierHandlerConstants;
+import org.wso2.carbon.identity.application.authentication.handler.session.ActiveSessionsLimitHandler;
+import org.wso2.carbon.identity.application.authentication.handler.session.ActiveSessionsLimitHandlerConstants;
+import org.wso2.carbon.identity.application.authentication.handler.session.admission.SessionAdmissionListener;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserIdCache;
+import org.wso2.carbon.identity.application.authentication.handler.session.internal.ActiveSessionsLimitHandlerServiceHolder;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LatencyHistogram;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LatencySnapshot;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginMetrics;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginMetricsMXBean;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.JWTBasicAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.JWTBasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.benchmarks.BenchmarkEnvironment;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * In-process load harness, which drives concurrent logins through the basic authenticator, the identifier handler,
+ * the JWT basic authenticator and the active sessions limit handler, against in-memory user stores and session store
+ * with injected latencies and failures. It reports the throughput and the latency percentiles of the logins of each
+ * scenario, the outcomes of the logins and the login metrics of each authenticator.
+ * <p>
+ * Unlike the JMH benchmarks, which measure a single login step without contention, the harness keeps thousands of
+ * logins in flight, so that the contention on the shared caches, registries and instrumentation of the authenticators
+ * shows in the tail latencies. The harness is configured with the following system properties:
+ * <ul>
+ * <li>{@code load.flows}: number of measured logins.</li>
+ * <li>{@code load.warmupFlows}: number of logins run before the measurement.</li>
+ * <li>{@code load.concurrency}: number of logins in flight.</li>
+ * <li>{@code load.tenants}, {@code load.domains}, {@code load.users}: number of tenants, user store domains of each
+ * tenant and users of each user store domain.</li>
+ * <li>{@code load.invalidCredentialRate}: share of the logins with an invalid password or token.</li>
+ * <li>{@code load.userStoreLatency}, {@code load.sessionStoreLatency}: latency distribution of the user store and
+ * the session store calls, as specified by {@link LatencyDistribution}.</li>
+ * <li>{@code load.userStoreErrorRate}, {@code load.sessionStoreErrorRate}: share of the failed user store and
+ * session store calls.</li>
+ * <li>{@code load.maxSessionsPerUser}: maximum number of active sessions of a user in the session store.</li>
+ * <li>{@code load.maxSessionCount}: active sessions limit of the active sessions limit handler.</li>
+ * <li>{@code load.jwtTokens}: number of signed JWT assertions used by the JWT logins.</li>
+ * <li>{@code load.mix}: weights of the scenarios, such as {@code basic:60,identifier:25,jwt:15}.</li>
+ * </ul>
+ */
+public class LoadHarness {
+
+    private static final String PROPERTY_PREFIX = "load.";
+    private static final String INVALID_TOKEN = "invalid";
+    private static final String[] AUTHENTICATOR_NAMES = {
+            BasicAuthenticatorConstants.AUTHENTICATOR_NAME,
+            IdentifierHandlerConstants.HANDLER_NAME,
+            JWTBasicAuthenticatorConstants.AUTHENTICATOR_NAME,
+            ActiveSessionsLimitHandlerConstants.HANDLER_NAME
+    };
+
+    /**
+     * Login flow driven by the harness. Each flow ends with the active sessions limit handler.
+     */
+    enum Scenario {
+
+        // Username and password submitted to the basic authenticator.
+        BASIC("basic"),
+        // Username submitted to the identifier handler, and then the password to the basic authenticator.
+        IDENTIFIER_FIRST("identifier"),
+        // Signed JWT assertion submitted to the JWT basic authenticator.
+        JWT("jwt");
+
+        private final String key;
+
+        Scenario(String key) {
+
+            this.key = key;
+        }
+
+        static Scenario fromKey(String key) {
+
+            for (Scenario scenario : values()) {
+                if (scenario.key.equals(key)) {
+                    return scenario;
+                }
+            }
+            throw new IllegalArgumentException("Unknown scenario: " + key);
+        }
+    }
+
+    /**
+     * Outcome of a login flow.
+     */
+    enum Outcome {
+
+        // The user is authenticated and the session is admitted.
+        COMPLETED,
+        // The user is authenticated, but prompted to terminate sessions as the active sessions limit is reached.
+        SESSION_LIMIT_PROMPTED,
+        // The credentials are rejected, or could not be verified, and the user is prompted to retry.
+        RETRY_PROMPTED,
+        // The login failed.
+        FAILED
+    }
+
+    /**
+     * Latencies and outcomes of the logins of a scenario.
+     */
+    private static class ScenarioResults {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final Map<Outcome, LongAdder> outcomeCounts = new EnumMap<>(Outcome.class);
+
+        ScenarioResults() {
+
+            for (Outcome outcome : Outcome.values()) {
+                outcomeCounts.put(outcome, new LongAdder());
+            }
+        }
+
+        void record(long latencyNanos, Outcome outcome) {
+
+            latencies.record(latencyNanos);
+            outcomeCounts.get(outcome).increment();
+        }
+
+        void reset() {
+
+            latencies.reset();
+            outcomeCounts.values().forEach(LongAdder::reset);
+        }
+    }
+
+    private final int maxSessionCount;
+    private final double invalidCredentialRate;
+    private final Scenario[] scenarios;
+    private final int[] cumulativeWeights;
+    private final InMemoryUserStores userStores;
+    private final SimulatedBackend userStoreBackend;
+    private final SimulatedBackend sessionStoreBackend;
+    private final SignedJwtPool jwtPool;
+    private final BasicAuthenticator basicAuthenticator = new BasicAuthenticator();
+    private final IdentifierHandler identifierHandler = new IdentifierHandler();
+    private final JWTBasicAuthenticator jwtAuthenticator = new JWTBasicAuthenticator();
+    private final ActiveSessionsLimitHandler sessionsLimitHandler = new ActiveSessionsLimitHandler();
+    private final SessionAdmissionListener sessionAdmissionListener = new SessionAdmissionListener();
+    private final HttpServletResponse response = BenchmarkEnvironment.createResponse(location -> {
+    });
+    private final Map<Scenario, ScenarioResults> results = new EnumMap<>(Scenario.class);
+    private final ScenarioResults totalResults = new ScenarioResults();
+
+    private LoadHarness() throws Exception {
+
+        maxSessionCount = getIntProperty("maxSessionCount", 3);
+        invalidCredentialRate = getDoubleProperty("invalidCredentialRate", 0.05);
+
+        Map<Scenario, Integer> weights = parseMix(getProperty("mix", "basic:60,identifier:25,jwt:15"));
+        scenarios = weights.keySet().toArray(new Scenario[0]);
+        cumulativeWeights = new int[scenarios.length];
+        int totalWeight = 0;
+        for (int i = 0; i < scenarios.length; i++) {
+            totalWeight += weights.get(scenarios[i]);
+            cumulativeWeights[i] = totalWeight;
+        }
+        for (Scenario scenario : Scenario.values()) {
+            results.put(scenario, new ScenarioResults());
+        }
+
+        BenchmarkEnvironment.setUp();
+        userStoreBackend = new SimulatedBackend("user-store",
+                LatencyDistribution.parse(getProperty("userStoreLatency", "lognormal:5,0.5")),
+                getDoubleProperty("userStoreErrorRate", 0.001));
+        sessionStoreBackend = new SimulatedBackend("session-store",
+                LatencyDistribution.parse(getProperty("sessionStoreLatency", "lognormal:2,0.5")),
+                getDoubleProperty("sessionStoreErrorRate", 0.001));
+        userStores = new InMemoryUserStores(getIntProperty("tenants", 10), getIntProperty("domains", 2),
+                getIntProperty("users", 1000), userStoreBackend);
+        InMemoryUserSessions userSessions = new InMemoryUserSessions(getIntProperty("maxSessionsPerUser", 3),
+                sessionStoreBackend);
+        BenchmarkEnvironment.bindRealmService(userStores.getRealmService());
+        BenchmarkEnvironment.bindIdentityGovernanceService();
+        ActiveSessionsLimitHandlerServiceHolder.getInstance().setUserSessionManagementService(
+                userSessions.getUserSessionManagementService());
+        LoginInstrumentation.getInstance().addListener(LoginMetrics.getInstance());
+        jwtPool = new SignedJwtPool(userStores, getIntProperty("jwtTokens", 1000), new Random());
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        LoadHarness harness = new LoadHarness();
+        int concurrency = getIntProperty("concurrency", 1000);
+        int warmupFlows = getIntProperty("warmupFlows", 2000);
+        int flows = getIntProperty("flows", 20000);
+
+        if (warmupFlows > 0) {
+            System.out.println("Warming up with " + warmupFlows + " logins.");
+            harness.run(warmupFlows, concurrency);
+            harness.reset();
+        }
+        System.out.println("Running " + flows + " logins with " + concurrency + " in flight.");
+        long elapsedNanos = harness.run(flows, concurrency);
+        harness.report(flows, elapsedNanos);
+    }
+
+    /**
+     * Run logins of random scenarios, keeping the given number of logins in flight.
+     *
+     * @return elapsed time of the run, in nanoseconds.
+     */
+    private long run(int flows, int concurrency) throws InterruptedException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < flows; i++) {
+            executor.execute(this::runFlow);
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return System.nanoTime() - startTime;
+    }
+
+    private void runFlow() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Scenario scenario = pickScenario(random);
+        long startTime = System.nanoTime();
+        Outcome outcome;
+        try {
+            outcome = login(scenario, random);
+        } catch (AuthenticationFailedException | LogoutFailedException | RuntimeException e) {
+            outcome = Outcome.FAILED;
+        } finally {
+            // The framework clears the identity error of a request once it is served.
+            IdentityUtil.clearIdentityErrorMsg();
+        }
+        long latencyNanos = System.nanoTime() - startTime;
+        results.get(scenario).record(latencyNanos, outcome);
+        totalResults.record(latencyNanos, outcome);
+    }
+
+    private Outcome login(Scenario scenario, Random random) throws AuthenticationFailedException,
+            LogoutFailedException {
+
+        boolean validCredentials = random.nextDouble() >= invalidCredentialRate;
+        String username;
+        String token = null;
+        if (scenario == Scenario.JWT) {
+            SignedJwtPool.Assertion assertion = jwtPool.getRandomAssertion(random);
+            token = assertion.getToken();
+            username = assertion.getUsername();
+        } else {
+            username = userStores.getRandomUsername(random);
+        }
+        AuthenticationContext context = BenchmarkEnvironment.createContext(InMemoryUserStores.getTenantDomain(
+                username));
+
+        AuthenticatorFlowStatus status;
+        switch (scenario) {
+            case IDENTIFIER_FIRST:
+                status = identifierHandler.process(createRequest(context, IdentifierHandlerConstants.USER_NAME,
+                        username), response, context);
+                if (status != AuthenticatorFlowStatus.SUCCESS_COMPLETED) {
+                    return getOutcome(status, context);
+                }
+                status = basicAuthenticator.process(createBasicRequest(context, username, validCredentials),
+                        response, context);
+                break;
+            case JWT:
+                status = jwtAuthenticator.process(createRequest(context, JWTBasicAuthenticatorConstants.PARAM_TOKEN,
+                        validCredentials ? token : INVALID_TOKEN), response, context);
+                break;
+            default:
+                status = basicAuthenticator.process(createBasicRequest(context, username, validCredentials),
+                        response, context);
+                break;
+        }
+        if (status != AuthenticatorFlowStatus.SUCCESS_COMPLETED) {
+            return getOutcome(status, context);
+        }
+        return limitSessions(context);
+    }
+
+    /**
+     * Run the active sessions limit step of an authenticated user.
+     */
+    private Outcome limitSessions(AuthenticationContext context) throws AuthenticationFailedException,
+            LogoutFailedException {
+
+        // The session store database the userIds are looked up in is not part of the harness, so the userId is cached
+        // as on a node the user has logged in on before.
+        AuthenticatedUser user = context.getSubject();
+        String userId = UUID.nameUUIDFromBytes(user.toFullQualifiedUsername().getBytes(StandardCharsets.UTF_8))
+                .toString();
+        UserIdCache userIdCache = UserIdCache.getInstance();
+        long invalidationStamp = userIdCache.getInvalidationStamp(user.getTenantDomain(), user.getUserStoreDomain(),
+                user.getUserName());
+        userIdCache.putUserId(user.getTenantDomain(), user.getUserStoreDomain(), user.getUserName(), userId,
+                invalidationStamp);
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(ActiveSessionsLimitHandlerConstants.MAX_SESSION_COUNT, String.valueOf(maxSessionCount));
+        context.addAuthenticatorParams(Collections.singletonMap(ActiveSessionsLimitHandlerConstants.HANDLER_NAME,
+                parameters));
+
+        HttpServletRequest request = createRequest(context, null, null);
+        AuthenticatorFlowStatus status = sessionsLimitHandler.process(request, response, context);
+        // The framework publishes the end of the flow, which releases the session admitted by the step.
+        if (status == AuthenticatorFlowStatus.SUCCESS_COMPLETED) {
+            sessionAdmissionListener.publishSessionCreation(request, context, null, Collections.emptyMap());
+        } else if (status == AuthenticatorFlowStatus.FAIL_COMPLETED) {
+            sessionAdmissionListener.publishAuthenticationFailure(request, context, Collections.emptyMap());
+        }
+        if (status == AuthenticatorFlowStatus.INCOMPLETE) {
+            return Outcome.SESSION_LIMIT_PROMPTED;
+        }
+        return getOutcome(status, context);
+    }
+
+    private Outcome getOutcome(AuthenticatorFlowStatus status, AuthenticationContext context) {
+
+        if (status == AuthenticatorFlowStatus.SUCCESS_COMPLETED) {
+            return Outcome.COMPLETED;
+        } else if (status == AuthenticatorFlowStatus.INCOMPLETE && context.isRetrying()) {
+            return Outcome.RETRY_PROMPTED;
+        }
+        return Outcome.FAILED;
+    }
+
+    private HttpServletRequest createBasicRequest(AuthenticationContext context, String username,
+                                                  boolean validCredentials) {
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("sessionDataKey", context.getContextIdentifier());
+        parameters.put(BasicAuthenticatorConstants.USER_NAME, username);
+        parameters.put(BasicAuthenticatorConstants.PASSWORD, validCredentials ? InMemoryUserStores.PASSWORD
+                : "invalid-" + InMemoryUserStores.PASSWORD);
+        return BenchmarkEnvironment.createRequest(parameters);
+    }
+
+    private HttpServletRequest createRequest(AuthenticationContext context, String name, String value) {
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("sessionDataKey", context.getContextIdentifier());
+        if (name != null) {
+            parameters.put(name, value);
+        }
+        return BenchmarkEnvironment.createRequest(parameters);
+    }
+
+    private Scenario pickScenario(Random random) {
+
+        int weight = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < scenarios.length; i++) {
+            if (weight < cumulativeWeights[i]) {
+                return scenarios[i];
+            }
+        }
+        return scenarios[scenarios.length - 1];
+    }
+
+    private void reset() {
+
+        results.values().forEach(ScenarioResults::reset);
+        totalResults.reset();
+        userStoreBackend.reset();
+        sessionStoreBackend.reset();
+        for (String authenticatorName : AUTHENTICATOR_NAMES) {
+            LoginMetrics.getInstance().getMetrics(authenticatorName).reset();
+        }
+    }
+
+    private void report(int flows, long elapsedNanos) {
+
+        double elapsedSeconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        System.out.println();
+        System.out.println(String.format("Logins: %d in %.2f s, throughput: %.1f logins/s", flows, elapsedSeconds,
+                flows / elapsedSeconds));
+
+        System.out.println();
+        System.out.println(String.format("%-12s %8s %9s %9s %9s %9s %9s  %s", "Scenario", "Logins", "Mean ms",
+                "p50 ms", "p99 ms", "p99.9 ms", "Max ms", "Outcomes"));
+        for (Map.Entry<Scenario, ScenarioResults> entry : results.entrySet()) {
+            printResults(entry.getKey().key, entry.getValue());
+        }
+        printResults("total", totalResults);
+
+        System.out.println();
+        for (SimulatedBackend backend : new SimulatedBackend[]{userStoreBackend, sessionStoreBackend}) {
+            System.out.println(String.format("Backend %s: %d calls, %d failures", backend.getName(),
+                    backend.getCallCount(), backend.getFailureCount()));
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-22s %8s %9s %9s %9s  %s", "Authenticator", "Logins", "p50 ms", "p99 ms",
+                "p99.9 ms", "Outcomes"));
+        for (String authenticatorName : AUTHENTICATOR_NAMES) {
+            LoginMetricsMXBean metrics = LoginMetrics.getInstance().getMetrics(authenticatorName);
+            LatencySnapshot latency = metrics.getInvocationLatency();
+            System.out.println(String.format("%-22s %8d %9.2f %9.2f %9.2f  %s", authenticatorName,
+                    latency.getCount(), latency.getP50Millis(), latency.getP99Millis(), latency.getP999Millis(),
+                    metrics.getOutcomeCounts()));
+            for (Map.Entry<String, LatencySnapshot> phase : metrics.getPhaseLatencies().entrySet()) {
+                System.out.println(String.format("  phase %-14s %8d %9.2f %9.2f %9.2f", phase.getKey(),
+                        phase.getValue().getCount(), phase.getValue().getP50Millis(),
+                        phase.getValue().getP99Millis(), phase.getValue().getP999Millis()));
+            }
+        }
+    }
+
+    private void printResults(String name, ScenarioResults scenarioResults) {
+
+        LatencySnapshot latency = scenarioResults.latencies.snapshot();
+        if (latency.getCount() == 0) {
+            return;
+        }
+        Map<Outcome, Long> outcomeCounts = new EnumMap<>(Outcome.class);
+        scenarioResults.outcomeCounts.forEach((outcome, count) -> outcomeCounts.put(outcome, count.sum()));
+        System.out.println(String.format("%-12s %8d %9.2f %9.2f %9.2f %9.2f %9.2f  %s", name, latency.getCount(),
+                latency.getMeanMillis(), latency.getP50Millis(), latency.getP99Millis(), latency.getP999Millis(),
+                latency.getMaxMillis(), outcomeCounts));
+    }
+
+    private static Map<Scenario, Integer> parseMix(String mix) {
+
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid scenario mix: " + mix);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Invalid weight of scenario: " + parts[0]);
+            }
+            if (weight > 0) {
+                weights.put(Scenario.fromKey(parts[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("No scenario in the scenario mix: " + mix);
+        }
+        return weights;
+    }
+
+    private static String getProperty(String name, String defaultValue) {
+
+        return System.getProperty(PROPERTY_PREFIX + name, defaultValue);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+
+        return Integer.parseInt(getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    private static double getDoubleProperty(String name, double defaultValue) {
+
+        return Double.parseDouble(getProperty(name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks.load;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.internal.JWTBasicAuthenticatorServiceComponentDataHolder;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks.JwksKeyIndex;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of RS256 signed JWT assertions of random users of the in-memory user stores, for the JWT logins of the load
+ * harness. Each tenant signs with its own key, which is published in a JWKS file of the tenant and indexed for the
+ * JWT basic authenticator.
+ * <p>
+ * The assertions are signed up front, so that the signing does not load the logins under test. They are reused
+ * across logins, which relies on the replay cache of the authenticator being disabled.
+ */
+public class SignedJwtPool {
+
+    private static final String ISSUER = "load-harness";
+    private static final String KEY_ID_PREFIX = "load-harness-";
+
+    private final Assertion[] assertions;
+
+    /**
+     * Signed assertion of the pool, with the user it is issued to.
+     */
+    public static class Assertion {
+
+        private final String token;
+        private final String username;
+
+        Assertion(String token, String username) {
+
+            this.token = token;
+            this.username = username;
+        }
+
+        public String getToken() {
+
+            return token;
+        }
+
+        public String getUsername() {
+
+            return username;
+        }
+    }
+
+    /**
+     * @param userStores user stores of the users the assertions are issued to.
+     * @param size       number of assertions in the pool.
+     * @param random     source of randomness of the users.
+     */
+    public SignedJwtPool(InMemoryUserStores userStores, int size, Random random) throws IOException,
+            NoSuchAlgorithmException, JOSEException {
+
+        if (size < 1) {
+            throw new IllegalArgumentException("The pool must have at least one assertion.");
+        }
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        Path jwksDirectory = Files.createTempDirectory("load-harness-jwks");
+        Map<String, RSASSASigner> signers = new HashMap<>();
+        for (String tenantDomain : userStores.getTenantDomains()) {
+            KeyPair keyPair = keyPairGenerator.generateKeyPair();
+            RSAKey publicKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                    .keyID(KEY_ID_PREFIX + tenantDomain)
+                    .keyUse(KeyUse.SIGNATURE)
+                    .build();
+            Files.write(jwksDirectory.resolve(tenantDomain + ".jwks"),
+                    new JWKSet(publicKey).toString().getBytes(StandardCharsets.UTF_8));
+            signers.put(tenantDomain, new RSASSASigner((RSAPrivateKey) keyPair.getPrivate()));
+        }
+        JwksKeyIndex jwksKeyIndex = new JwksKeyIndex(jwksDirectory);
+        jwksKeyIndex.refresh();
+        JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setJwksKeyIndex(jwksKeyIndex);
+
+        Date expirationTime = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+        assertions = new Assertion[size];
+        for (int i = 0; i < size; i++) {
+            String username = userStores.getRandomUsername(random);
+            String tenantDomain = InMemoryUserStores.getTenantDomain(username);
+            JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                    .subject(username)
+                    .issuer(ISSUER)
+                    .jwtID(UUID.randomUUID().toString())
+                    .expirationTime(expirationTime)
+                    .build();
+            SignedJWT signedJWT = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256)
+                    .keyID(KEY_ID_PREFIX + tenantDomain).build(), claimsSet);
+            signedJWT.sign(signers.get(tenantDomain));
+            assertions[i] = new Assertion(signedJWT.serialize(), username);
+        }
+    }
+
+    /**
+     * Pick a random assertion of the pool.
+     *
+     * @param random source of randomness of the calling thread.
+     * @return the assertion.
+     */
+    public Assertion getRandomAssertion(Random random) {
+
+        return assertions[random.nextInt(assertions.length)];
+    }
+}
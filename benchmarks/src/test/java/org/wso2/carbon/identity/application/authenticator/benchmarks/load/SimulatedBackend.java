@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.benchmarks.load;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Backend of a simulated service, such as a user store or a session store, which delays each call by a latency of
+ * its distribution and fails a share of the calls.
+ */
+public class SimulatedBackend {
+
+    private final String name;
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final LongAdder callCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    /**
+     * @param name      name of the backend, used in the report.
+     * @param latency   distribution of the latencies of the calls.
+     * @param errorRate share of the calls which fail, between 0 and 1.
+     */
+    public SimulatedBackend(String name, LatencyDistribution latency, double errorRate) {
+
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate of backend: " + name + " must be between 0 and 1.");
+        }
+        this.name = name;
+        this.latency = latency;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Make a call to the backend, which blocks the calling thread for the latency of the call.
+     *
+     * @return true if the call failed, in which case the caller throws the error of its service.
+     */
+    public boolean call() {
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long deadline = System.nanoTime() + latency.sampleNanos(random);
+        long remainingNanos;
+        while ((remainingNanos = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remainingNanos);
+        }
+        callCount.increment();
+        if (errorRate > 0 && random.nextDouble() < errorRate) {
+            failureCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public long getCallCount() {
+
+        return callCount.sum();
+    }
+
+    public long getFailureCount() {
+
+        return failureCount.sum();
+    }
+
+    public void reset() {
+
+        callCount.reset();
+        failureCount.reset();
+    }
+}
@@ -34,9 +34,16 @@ import org.wso2.carbon.identity.application.authentication.framework.model.Authe
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
 import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkUtils;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.cache.UsernameExistenceCache;
 import org.wso2.carbon.identity.application.authentication.handler.identifier.internal.IdentifierAuthenticatorServiceComponent;
 import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticator;
 import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.config.AuthenticatorParameterRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInvocation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.ServerTiming;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing.LoginTracing;
 import org.wso2.carbon.identity.application.common.model.User;
 import org.wso2.carbon.identity.base.IdentityRuntimeException;
 import org.wso2.carbon.identity.core.model.IdentityErrorMsgContext;
@@ -52,6 +59,7 @@ import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -68,6 +76,9 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
     private static final String PROMPT_CONFIRMATION_WINDOW = "promptConfirmationWindow";
     private static final String CONTINUE = "continue";
     private static final String RESET = "reset";
+    private static final LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+    private static final ServerTiming serverTiming = ServerTiming.getInstance();
+    private static final LoginTracing tracing = LoginTracing.getInstance();
     private static String RE_CAPTCHA_USER_DOMAIN = "user-domain-recaptcha";
 
     @Override
@@ -85,52 +96,69 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
 
         if (context.isLogoutRequest()) {
             return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
-        } else {
-            if (context.getPreviousAuthenticatedIdPs().get(BasicAuthenticatorConstants.LOCAL) != null) {
-                AuthenticatedIdPData local = context.getPreviousAuthenticatedIdPs().get(BasicAuthenticatorConstants.LOCAL);
-                if (local.getAuthenticators().size() > 0) {
-                    for (AuthenticatorConfig authenticatorConfig : local.getAuthenticators()) {
-                        if (authenticatorConfig.getApplicationAuthenticator() instanceof BasicAuthenticator) {
-                            boolean isPrompt = Boolean.parseBoolean(context.getAuthenticatorParams(this
-                                    .getName()).get(PROMPT_CONFIRMATION_WINDOW));
-
-                            if (isPrompt) {
-                                String identifierConsent = request.getParameter(IDENTIFIER_CONSENT);
-                                if (identifierConsent != null && CONTINUE.equals(identifierConsent)) {
-                                    context.setSubject(local.getUser());
-                                    return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
-                                } else if (identifierConsent != null && RESET.equals(identifierConsent)) {
-                                    initiateAuthenticationRequest(request, response, context);
-                                    return AuthenticatorFlowStatus.INCOMPLETE;
-                                } else if (request.getParameter(IdentifierHandlerConstants.USER_NAME) != null) {
-                                    processAuthenticationResponse(request, response, context);
-                                    return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
-                                } else {
-                                    String identifierFirstConfirmationURL = ConfigurationFacade.getInstance().getIdentifierFirstConfirmationURL();
-                                    String queryParams = context.getContextIdIncludedQueryParams();
-                                    try {
-                                        queryParams = queryParams + "&username=" + local.getUser()
-                                                .toFullQualifiedUsername();
-                                        response.sendRedirect(identifierFirstConfirmationURL + ("?" + queryParams));
-                                        return AuthenticatorFlowStatus.INCOMPLETE;
-                                    } catch (IOException e) {
-                                        throw new AuthenticationFailedException(e.getMessage(), e);
-                                    }
-                                }
-                            } else {
+        }
+        LoginInvocation invocation = instrumentation.startInvocation(getName(), context.getTenantDomain());
+        tracing.startTrace(invocation, request);
+        AuthenticatorFlowStatus status = null;
+        HttpServletResponse timedResponse = serverTiming.start(invocation, request, response,
+                getAuthenticatorConfig().getParameterMap());
+        try {
+            status = processRequest(request, timedResponse, context);
+            return status;
+        } finally {
+            serverTiming.end(invocation, response);
+            instrumentation.endInvocation(invocation, status);
+        }
+    }
+
+    private AuthenticatorFlowStatus processRequest(HttpServletRequest request, HttpServletResponse response,
+                                                   AuthenticationContext context)
+            throws AuthenticationFailedException, LogoutFailedException {
+
+        if (context.getPreviousAuthenticatedIdPs().get(BasicAuthenticatorConstants.LOCAL) != null) {
+            AuthenticatedIdPData local = context.getPreviousAuthenticatedIdPs().get(BasicAuthenticatorConstants.LOCAL);
+            if (local.getAuthenticators().size() > 0) {
+                for (AuthenticatorConfig authenticatorConfig : local.getAuthenticators()) {
+                    if (authenticatorConfig.getApplicationAuthenticator() instanceof BasicAuthenticator) {
+                        boolean isPrompt = Boolean.parseBoolean(context.getAuthenticatorParams(this
+                                .getName()).get(PROMPT_CONFIRMATION_WINDOW));
+
+                        if (isPrompt) {
+                            String identifierConsent = request.getParameter(IDENTIFIER_CONSENT);
+                            if (identifierConsent != null && CONTINUE.equals(identifierConsent)) {
                                 context.setSubject(local.getUser());
                                 return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
+                            } else if (identifierConsent != null && RESET.equals(identifierConsent)) {
+                                initiateAuthenticationRequest(request, response, context);
+                                return AuthenticatorFlowStatus.INCOMPLETE;
+                            } else if (request.getParameter(IdentifierHandlerConstants.USER_NAME) != null) {
+                                processAuthenticationResponse(request, response, context);
+                                return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
+                            } else {
+                                String identifierFirstConfirmationURL = ConfigurationFacade.getInstance().getIdentifierFirstConfirmationURL();
+                                String queryParams = context.getContextIdIncludedQueryParams();
+                                try {
+                                    queryParams = queryParams + "&username=" + local.getUser()
+                                            .toFullQualifiedUsername();
+                                    response.sendRedirect(identifierFirstConfirmationURL + ("?" + queryParams));
+                                    return AuthenticatorFlowStatus.INCOMPLETE;
+                                } catch (IOException e) {
+                                    throw new AuthenticationFailedException(e.getMessage(), e);
+                                }
                             }
+                        } else {
+                            context.setSubject(local.getUser());
+                            return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
                         }
                     }
                 }
-            } else if (request.getParameter(IDENTIFIER_CONSENT) != null) {
-                //submit from the confirmation page.
-                initiateAuthenticationRequest(request, response, context);
-                return AuthenticatorFlowStatus.INCOMPLETE;
             }
-            return super.process(request, response, context);
+        } else if (request.getParameter(IDENTIFIER_CONSENT) != null) {
+            //submit from the confirmation page.
+            initiateAuthenticationRequest(request, response, context);
+            return AuthenticatorFlowStatus.INCOMPLETE;
         }
+        return super.process(request, response, context);
     }
 
     @Override
@@ -138,6 +166,17 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
                                                  HttpServletResponse response, AuthenticationContext context)
             throws AuthenticationFailedException {
 
+        long phaseStart = instrumentation.startPhase(LoginPhase.REDIRECT_BUILD);
+        try {
+            redirectToLoginPage(request, response, context);
+        } finally {
+            instrumentation.endPhase(LoginPhase.REDIRECT_BUILD, phaseStart);
+        }
+    }
+
+    private void redirectToLoginPage(HttpServletRequest request, HttpServletResponse response,
+                                     AuthenticationContext context) throws AuthenticationFailedException {
+
         Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
         String showAuthFailureReason = null;
         if (parameterMap != null) {
@@ -178,6 +217,7 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
                     log.debug("Identity error message context is not null");
                 }
                 String errorCode = errorContext.getErrorCode();
+                instrumentation.recordErrorCode(errorCode);
 
                 if (errorCode.equals(IdentityCoreConstants.USER_ACCOUNT_NOT_CONFIRMED_ERROR_CODE)) {
                     retryParam = "&authFailure=true&authFailureMsg=account.confirmation.pending";
@@ -321,14 +361,30 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
                 UserStoreManager userStoreManager;
                 // Check for the username exists.
                 try {
-                    int tenantId = IdentityTenantUtil.getTenantIdOfUser(username);
-                    UserRealm userRealm = IdentifierAuthenticatorServiceComponent.getRealmService()
-                            .getTenantUserRealm(tenantId);
+                    int tenantId;
+                    long phaseStart = instrumentation.startPhase(LoginPhase.TENANT_RESOLUTION);
+                    try {
+                        tenantId = IdentityTenantUtil.getTenantIdOfUser(username);
+                    } finally {
+                        instrumentation.endPhase(LoginPhase.TENANT_RESOLUTION, phaseStart);
+                    }
+                    UserRealm userRealm;
+                    phaseStart = instrumentation.startPhase(LoginPhase.REALM_LOOKUP);
+                    try {
+                        userRealm = IdentifierAuthenticatorServiceComponent.getRealmService()
+                                .getTenantUserRealm(tenantId);
+                    } finally {
+                        instrumentation.endPhase(LoginPhase.REALM_LOOKUP, phaseStart);
+                    }
 
                     if (userRealm != null) {
                         userStoreManager = (UserStoreManager) userRealm.getUserStoreManager();
-                        isUserExists = userStoreManager.isExistingUser(MultitenantUtils.getTenantAwareUsername
-                                (username));
+                        phaseStart = instrumentation.startPhase(LoginPhase.USER_EXISTENCE);
+                        try {
+                            isUserExists = isExistingUser(userStoreManager, username);
+                        } finally {
+                            instrumentation.endPhase(LoginPhase.USER_EXISTENCE, phaseStart);
+                        }
                     } else {
                         throw new AuthenticationFailedException("Cannot find the user realm for the given tenant: " +
                                 tenantId, User.getUserFromUserName(username));
@@ -350,6 +406,7 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
                     if (log.isDebugEnabled()) {
                         log.debug("User does not exists");
                     }
+                    instrumentation.recordErrorCode(UserCoreConstants.ErrorCode.USER_DOES_NOT_EXIST);
                     if (IdentityUtil.threadLocalProperties.get().get(RE_CAPTCHA_USER_DOMAIN) != null) {
                         username = IdentityUtil.addDomainToName(
                                 username, IdentityUtil.threadLocalProperties.get().get(RE_CAPTCHA_USER_DOMAIN)
@@ -397,4 +454,63 @@ public class IdentifierHandler extends AbstractApplicationAuthenticator
     public String getName() {
         return IdentifierHandlerConstants.HANDLER_NAME;
     }
+
+    /**
+     * Check whether the user exists in the user store, through the username existence cache if it is enabled with the
+     * UsernameExistenceCacheTimeout parameter.
+     *
+     * @param userStoreManager user store manager of the tenant of the user
+     * @param username         tenant qualified username
+     * @return true if the user exists
+     * @throws org.wso2.carbon.user.api.UserStoreException if the user store cannot be read
+     */
+    private boolean isExistingUser(UserStoreManager userStoreManager, String username)
+            throws org.wso2.carbon.user.api.UserStoreException {
+
+        String tenantAwareUsername = MultitenantUtils.getTenantAwareUsername(username);
+        long cacheTimeoutMillis = getUsernameExistenceCacheTimeoutMillis();
+        if (cacheTimeoutMillis <= 0) {
+            return userStoreManager.isExistingUser(tenantAwareUsername);
+        }
+        String tenantDomain = MultitenantUtils.getTenantDomain(username);
+        Boolean cachedExistence = UsernameExistenceCache.getInstance().getExistence(tenantDomain, tenantAwareUsername);
+        if (cachedExistence != null) {
+            return cachedExistence;
+        }
+        long invalidationStamp = UsernameExistenceCache.getInstance().getInvalidationStamp(tenantDomain,
+                tenantAwareUsername);
+        boolean isUserExists = userStoreManager.isExistingUser(tenantAwareUsername);
+        UsernameExistenceCache.getInstance().putExistence(tenantDomain, tenantAwareUsername, isUserExists,
+                cacheTimeoutMillis, invalidationStamp);
+        return isUserExists;
+    }
+
+    private long getUsernameExistenceCacheTimeoutMillis() {
+
+        Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
+        String cacheTimeout = parameterMap != null ?
+                parameterMap.get(IdentifierHandlerConstants.USERNAME_EXISTENCE_CACHE_TIMEOUT) : null;
+        if (StringUtils.isBlank(cacheTimeout)) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(cacheTimeout.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value: " + cacheTimeout + " for the parameter: "
+                    + IdentifierHandlerConstants.USERNAME_EXISTENCE_CACHE_TIMEOUT + ". The cache is disabled.");
+            return 0;
+        }
+    }
+
+    /**
+     * Get the configuration of the handler, as reloaded from application-authentication.xml if the file has changed
+     * since the server started.
+     */
+    @Override
+    public AuthenticatorConfig getAuthenticatorConfig() {
+
+        AuthenticatorConfig reloadedConfig = AuthenticatorParameterRegistry.getInstance()
+                .getAuthenticatorConfig(getName());
+        return reloadedConfig != null ? reloadedConfig : super.getAuthenticatorConfig();
+    }
 }
@@ -31,6 +31,7 @@ public abstract class IdentifierHandlerConstants {
     public static final String AUTHENTICATORS = "&authenticators=";
     public static final String LOCAL = "LOCAL";
     public static final String UTF_8 = "UTF-8";
+    public static final String USERNAME_EXISTENCE_CACHE_TIMEOUT = "UsernameExistenceCacheTimeout";
 
     private IdentifierHandlerConstants() {
     }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.identifier.cache;
+
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationListener;
+import org.wso2.carbon.identity.application.authenticator.localcache.LocalCache;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Caches whether usernames exist in the user stores of their tenants, for the username validation of the identifier
+ * first flow. Entries expire after the configured timeout, and are evicted as soon as the user is added, deleted or
+ * changed on any node of the cluster.
+ * <p>
+ * A user event evicts every cached spelling of the username in the tenant, regardless of case or user store domain,
+ * since user stores may treat usernames case insensitively.
+ */
+public class UsernameExistenceCache implements InvalidationListener {
+
+    private static final String CACHE_NAME = "IdentifierHandler.UsernameExistence";
+    private static final int MAX_ENTRIES = 100000;
+
+    private static final UsernameExistenceCache instance = new UsernameExistenceCache();
+
+    private final LocalCache<UserKey, CachedExistence> entries =
+            LocalCache.<UserKey, CachedExistence>builder(CACHE_NAME)
+                    .maximumSize(MAX_ENTRIES)
+                    .build();
+
+    private UsernameExistenceCache() {
+
+    }
+
+    public static UsernameExistenceCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get whether the user exists, if it is cached and not expired.
+     *
+     * @param tenantDomain tenant domain of the user
+     * @param username     tenant aware username, with the user store domain if it is not the primary user store
+     * @return whether the user exists, or null if it is not cached
+     */
+    public Boolean getExistence(String tenantDomain, String username) {
+
+        UserKey key = new UserKey(tenantDomain, username);
+        CachedExistence cachedExistence = entries.getIfPresent(key);
+        if (cachedExistence == null) {
+            return null;
+        }
+        if (cachedExistence.expiryTime < System.currentTimeMillis()) {
+            entries.invalidate(key);
+            return null;
+        }
+        return cachedExistence.exists;
+    }
+
+    /**
+     * Get the invalidation stamp of the user, to be taken before the existence of the user is read from the user store.
+     *
+     * @param tenantDomain tenant domain of the user
+     * @param username     tenant aware username, with the user store domain if it is not the primary user store
+     * @return invalidation stamp
+     */
+    public long getInvalidationStamp(String tenantDomain, String username) {
+
+        return entries.getInvalidationStamp(new UserKey(tenantDomain, username));
+    }
+
+    /**
+     * Cache whether the user exists, unless the user was invalidated since the existence was read from the user store.
+     *
+     * @param tenantDomain      tenant domain of the user
+     * @param username          tenant aware username, with the user store domain if it is not the primary user store
+     * @param exists            whether the user exists
+     * @param timeoutMillis     time to keep the entry for
+     * @param invalidationStamp stamp taken with {@link #getInvalidationStamp(String, String)} before the existence
+     *                          was read
+     */
+    public void putExistence(String tenantDomain, String username, boolean exists, long timeoutMillis,
+                             long invalidationStamp) {
+
+        entries.putIfNotInvalidated(new UserKey(tenantDomain, username),
+                new CachedExistence(exists, System.currentTimeMillis() + timeoutMillis), invalidationStamp);
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     */
+    public void clear() {
+
+        entries.invalidateAll();
+    }
+
+    @Override
+    public void onInvalidation(Collection<InvalidationEvent> events) {
+
+        Set<String> invalidatedTenants = new HashSet<>();
+        Map<String, Set<String>> invalidatedUsers = new HashMap<>();
+        for (InvalidationEvent event : events) {
+            if (event.getType() == InvalidationEvent.Type.TENANT) {
+                invalidatedTenants.add(event.getTenantDomain());
+            } else if (event.isUserEvent() && event.getKey() != null) {
+                invalidatedUsers.computeIfAbsent(event.getTenantDomain(), domain -> new HashSet<>())
+                        .add(getBareUsername(event.getKey()));
+            }
+        }
+        if (invalidatedTenants.isEmpty() && invalidatedUsers.isEmpty()) {
+            return;
+        }
+        // Scan the cache once per batch, however many users have changed.
+        entries.invalidateIf(key -> invalidatedTenants.contains(key.tenantDomain)
+                || invalidatedUsers.getOrDefault(key.tenantDomain, Collections.emptySet()).contains(key.bareUsername));
+    }
+
+    private static String getBareUsername(String username) {
+
+        return UserCoreUtil.removeDomainFromName(username).toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class UserKey {
+
+        private final String tenantDomain;
+        private final String username;
+        private final String bareUsername;
+
+        UserKey(String tenantDomain, String username) {
+
+            this.tenantDomain = tenantDomain;
+            this.username = username;
+            this.bareUsername = getBareUsername(username);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            UserKey that = (UserKey) o;
+            return Objects.equals(tenantDomain, that.tenantDomain) && username.equals(that.username);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(tenantDomain, username);
+        }
+    }
+
+    private static class CachedExistence {
+
+        private final boolean exists;
+        private final long expiryTime;
+
+        CachedExistence(boolean exists, long expiryTime) {
+
+            this.exists = exists;
+            this.expiryTime = expiryTime;
+        }
+    }
+}
@@ -29,6 +29,10 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authentication.handler.identifier.IdentifierHandler;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.IdentifierHandlerConstants;
+import org.wso2.carbon.identity.application.authentication.handler.identifier.cache.UsernameExistenceCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginMetrics;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationBus;
 import org.wso2.carbon.user.core.service.RealmService;
 
 @Component(
@@ -62,6 +66,8 @@ public class IdentifierAuthenticatorServiceComponent {
     @Activate
     protected void activate(ComponentContext ctxt) {
 
+        InvalidationBus.getInstance().addListener(UsernameExistenceCache.getInstance());
+        LoginMetrics.getInstance().registerMBean(IdentifierHandlerConstants.HANDLER_NAME);
         try {
             IdentifierHandler identifierHandler = new IdentifierHandler();
             ctxt.getBundleContext().registerService(ApplicationAuthenticator.class.getName(), identifierHandler, null);
@@ -76,6 +82,9 @@ public class IdentifierAuthenticatorServiceComponent {
     @Deactivate
     protected void deactivate(ComponentContext ctxt) {
 
+        InvalidationBus.getInstance().removeListener(UsernameExistenceCache.getInstance());
+        UsernameExistenceCache.getInstance().clear();
+        LoginMetrics.getInstance().unregisterMBean(IdentifierHandlerConstants.HANDLER_NAME);
         if (log.isDebugEnabled()) {
             log.info("IdentifierHandler bundle is deactivated");
         }
@@ -34,18 +34,33 @@ import org.wso2.carbon.identity.application.authentication.framework.exception.s
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.authentication.framework.model.UserSession;
 import org.wso2.carbon.identity.application.authentication.framework.store.UserSessionStore;
+import org.wso2.carbon.identity.application.authentication.handler.session.admission.SessionAdmissionRegistry;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserAgentCache;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserAgentCache.ParsedUserAgent;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserIdCache;
 import org.wso2.carbon.identity.application.authentication.handler.session.exception.UserIdRetrievalException;
 import org.wso2.carbon.identity.application.authentication.handler.session.exception.UserSessionRetrievalException;
 import org.wso2.carbon.identity.application.authentication.handler.session.exception.UserSessionTerminationException;
 import org.wso2.carbon.identity.application.authentication.handler.session.internal.ActiveSessionsLimitHandlerServiceHolder;
-import org.wso2.carbon.identity.core.model.UserAgent;
+import org.wso2.carbon.identity.application.authentication.handler.session.termination.SessionTerminationQueue;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.config.AuthenticatorParameterRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInvocation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.ServerTiming;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing.LoginTracing;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlight;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlightException;
 import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -60,7 +75,15 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
 
     private static final long serialVersionUID = -1304814600410853867L;
     private static final String REDIRECT_URL = "/authenticationendpoint/handle-multiple-sessions.do";
+    private static final SingleFlight<String, List<UserSession>> userSessionLoads = new SingleFlight<>(
+            "ActiveSessionsLimitHandler.UserSessions", BasicAuthenticatorConstants.COALESCED_LOAD_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS);
+    private static final LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+    private static final ServerTiming serverTiming = ServerTiming.getInstance();
+    private static final LoginTracing tracing = LoginTracing.getInstance();
     public static final String DEFAULT_MAX_SESSION_COUNT = "1";
+    public static final String DEFAULT_SESSION_ADMISSION_TIMEOUT = "30";
+    public static final String DEFAULT_DEFERRED_SESSION_TERMINATION = "false";
 
     @Override
     public boolean canHandle(HttpServletRequest request) {
@@ -75,63 +98,96 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
                                            HttpServletResponse response, AuthenticationContext context)
             throws AuthenticationFailedException, LogoutFailedException {
 
-        if (!context.isLogoutRequest()) {
-            String maxSessionCountParamValue =
-                    getAuthenticatorParams
-                            (ActiveSessionsLimitHandlerConstants.MAX_SESSION_COUNT, DEFAULT_MAX_SESSION_COUNT, context);
-            Integer maxSessionCount;
-            try {
-                maxSessionCount = Integer.parseInt(maxSessionCountParamValue);
-            } catch (NumberFormatException e) {
-                log.error("'MaxSessionCount' must be an integer value.");
-                this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
-                context.setRetrying(false);
-                return AuthenticatorFlowStatus.FAIL_COMPLETED;
-            }
+        if (context.isLogoutRequest()) {
+            return super.process(request, response, context);
+        }
+        LoginInvocation invocation = instrumentation.startInvocation(getName(), context.getTenantDomain());
+        tracing.startTrace(invocation, request);
+        AuthenticatorFlowStatus status = null;
+        HttpServletResponse timedResponse = serverTiming.start(invocation, request, response,
+                getAuthenticatorParameterMap());
+        try {
+            status = processRequest(request, timedResponse, context);
+            return status;
+        } finally {
+            serverTiming.end(invocation, response);
+            instrumentation.endInvocation(invocation, status);
+        }
+    }
 
-            if (maxSessionCount <= 0) {
-                log.error("'MaxSessionCount' must be greater than zero. Current value is " + maxSessionCount);
-                this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
-                context.setRetrying(false);
-                return AuthenticatorFlowStatus.FAIL_COMPLETED;
-            }
+    private AuthenticatorFlowStatus processRequest(HttpServletRequest request, HttpServletResponse response,
+                                                   AuthenticationContext context)
+            throws AuthenticationFailedException, LogoutFailedException {
 
-            if (request.getParameter(ActiveSessionsLimitHandlerConstants.ACTIVE_SESSIONS_LIMIT_ACTION) != null &&
-                    StringUtils.equals(
-                            request.getParameter(ActiveSessionsLimitHandlerConstants.ACTIVE_SESSIONS_LIMIT_ACTION),
-                            ActiveSessionsLimitHandlerConstants.DENY_LOGIN_ACTION)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("User: " + context.getSubject() + " denied the login.");
-                }
-                this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
-                context.setRetrying(false);
-                return AuthenticatorFlowStatus.FAIL_COMPLETED;
+        String maxSessionCountParamValue =
+                getAuthenticatorParams
+                        (ActiveSessionsLimitHandlerConstants.MAX_SESSION_COUNT, DEFAULT_MAX_SESSION_COUNT, context);
+        Integer maxSessionCount;
+        try {
+            maxSessionCount = Integer.parseInt(maxSessionCountParamValue);
+        } catch (NumberFormatException e) {
+            log.error("'MaxSessionCount' must be an integer value.");
+            this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+            context.setRetrying(false);
+            return AuthenticatorFlowStatus.FAIL_COMPLETED;
+        }
+
+        if (maxSessionCount <= 0) {
+            log.error("'MaxSessionCount' must be greater than zero. Current value is " + maxSessionCount);
+            this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+            context.setRetrying(false);
+            return AuthenticatorFlowStatus.FAIL_COMPLETED;
+        }
+
+        if (request.getParameter(ActiveSessionsLimitHandlerConstants.ACTIVE_SESSIONS_LIMIT_ACTION) != null &&
+                StringUtils.equals(
+                        request.getParameter(ActiveSessionsLimitHandlerConstants.ACTIVE_SESSIONS_LIMIT_ACTION),
+                        ActiveSessionsLimitHandlerConstants.DENY_LOGIN_ACTION)) {
+            if (log.isDebugEnabled()) {
+                log.debug("User: " + context.getSubject() + " denied the login.");
             }
+            this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+            context.setRetrying(false);
+            return AuthenticatorFlowStatus.FAIL_COMPLETED;
+        }
 
-            try {
+        try {
 
-                String userId = getUserId(context.getSubject());
-                
-                List<UserSession> userSessions = null;
-                if (userId != null) {
-                    userSessions = getUserSessions(userId);
-                }
+            String userId = getUserId(context);
 
-                if (userSessions != null && userSessions.size() >= maxSessionCount) {
-                    prepareEndpointParams(context, maxSessionCountParamValue, userSessions);
-                    return super.process(request, response, context);
-                } else {
-                    this.publishAuthenticationStepAttempt(request, context, context.getSubject(), true);
-                    return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
+            List<UserSession> userSessions = null;
+            if (userId != null) {
+                userSessions = getUserSessions(userId, false);
+            }
+
+            if (userSessions != null && !admitSession(userId, userSessions.size(), maxSessionCount, context)) {
+                ActiveSessionsLimitPolicy policy = getSessionLimitPolicy(context);
+                if (policy == ActiveSessionsLimitPolicy.DENY) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Login of user: " + context.getSubject() + " denied by the active sessions "
+                                + "limit policy.");
+                    }
+                    this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+                    context.setRetrying(false);
+                    return AuthenticatorFlowStatus.FAIL_COMPLETED;
+                } else if (policy.isTerminating()) {
+                    return terminateSessionsByPolicy(request, context, policy, userId, userSessions,
+                            maxSessionCount);
                 }
-            } catch (UserIdRetrievalException e) {
-                throw new AuthenticationFailedException("Error occurred while retrieving the userId.", e);
-            } catch (UserSessionRetrievalException e) {
-                this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
-                throw new AuthenticationFailedException("Error occurred while retrieving user sessions.", e);
+                prepareEndpointParams(context, maxSessionCountParamValue, userSessions);
+                return super.process(request, response, context);
+            } else {
+                this.publishAuthenticationStepAttempt(request, context, context.getSubject(), true);
+                return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
             }
-        } else {
-            return super.process(request, response, context);
+        } catch (UserIdRetrievalException e) {
+            throw new AuthenticationFailedException("Error occurred while retrieving the userId.", e);
+        } catch (UserSessionRetrievalException e) {
+            this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+            throw new AuthenticationFailedException("Error occurred while retrieving user sessions.", e);
+        } catch (UserSessionTerminationException e) {
+            this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+            throw new AuthenticationFailedException("Error occurred while terminating user sessions.", e);
         }
     }
 
@@ -163,16 +219,18 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
             Integer maxSessionCount;
             List<UserSession> userSessions;
             try {
-                String userId = getUserId(context.getSubject());
+                String userId = getUserId(context);
                 String[] sessionIds = request.getParameterValues(ActiveSessionsLimitHandlerConstants.SESSIONS_TO_TERMINATE);
-                terminateSessions(userId, sessionIds);
+                terminateSessions(userId, sessionIds, context);
                 maxSessionCount = Integer.parseInt(maxSessionCountParamValue);
-                userSessions = getUserSessions(userId);
-                if (userSessions != null && userSessions.size() >= maxSessionCount) {
+                // A coalesced lookup in flight may have started before the termination, so read the sessions anew.
+                userSessions = getUserSessions(userId, true);
+                if (userSessions != null && !admitSession(userId, userSessions.size(), maxSessionCount, context)) {
                     prepareEndpointParams(context, maxSessionCountParamValue, userSessions);
                     throw new AuthenticationFailedException("Active session count: " + userSessions.size()
                             + " exceeds the specified limit: " + maxSessionCountParamValue);
                 }
+                clearEndpointParams(context);
             } catch (UserIdRetrievalException e) {
                 throw new AuthenticationFailedException("Error occurred while retrieving the userId.", e);
             } catch (UserSessionTerminationException e) {
@@ -196,22 +254,122 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
                                           AuthenticationContext authenticationContext) {
 
         Map<String, String> contextParams = authenticationContext.getAuthenticatorParams(this.getName());
-        AuthenticatorConfig authenticatorConfig = FileBasedConfigurationBuilder.getInstance()
-                .getAuthenticatorBean(this.getName());
+        Map<String, String> parameterMap = getAuthenticatorParameterMap();
         if (contextParams != null && contextParams.get(parameterName) != null) {
             return contextParams.get(parameterName);
-        } else if (authenticatorConfig != null && authenticatorConfig.getParameterMap() != null
-                && authenticatorConfig.getParameterMap().get(parameterName) != null) {
-            return authenticatorConfig.getParameterMap().get(parameterName);
+        } else if (parameterMap != null && parameterMap.get(parameterName) != null) {
+            return parameterMap.get(parameterName);
         }
         return defaultValue;
     }
 
+    private Map<String, String> getAuthenticatorParameterMap() {
+
+        AuthenticatorConfig authenticatorConfig = AuthenticatorParameterRegistry.getInstance()
+                .getAuthenticatorConfig(this.getName());
+        if (authenticatorConfig == null) {
+            authenticatorConfig = FileBasedConfigurationBuilder.getInstance().getAuthenticatorBean(this.getName());
+        }
+        return authenticatorConfig != null ? authenticatorConfig.getParameterMap() : null;
+    }
+
+    /**
+     * Terminate the sessions selected by the policy and admit the new session within the same request, without
+     * prompting the user.
+     */
+    private AuthenticatorFlowStatus terminateSessionsByPolicy(HttpServletRequest request,
+                                                              AuthenticationContext context,
+                                                              ActiveSessionsLimitPolicy policy, String userId,
+                                                              List<UserSession> userSessions, int maxSessionCount)
+            throws UserSessionTerminationException {
+
+        int sessionsToTerminateCount = userSessions.size() - maxSessionCount + 1;
+        List<UserSession> sessionsToTerminate = policy.selectSessionsToTerminate(userSessions,
+                sessionsToTerminateCount);
+
+        // Reserve the admission before terminating, so sessions are not terminated for a login which would be denied
+        // due to concurrent logins of the same user.
+        if (!admitSession(userId, userSessions.size() - sessionsToTerminate.size(), maxSessionCount, context)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Concurrent logins of user: " + context.getSubject() + " exceed the active sessions "
+                        + "limit. Login denied without terminating sessions.");
+            }
+            this.publishAuthenticationStepAttempt(request, context, context.getSubject(), false);
+            context.setRetrying(false);
+            return AuthenticatorFlowStatus.FAIL_COMPLETED;
+        }
+
+        String[] sessionIds = sessionsToTerminate.stream().map(UserSession::getSessionId).toArray(String[]::new);
+        try {
+            terminateSessions(userId, sessionIds, context);
+        } catch (UserSessionTerminationException e) {
+            SessionAdmissionRegistry.getInstance().release(userId, context.getContextIdentifier());
+            throw e;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Terminated " + sessionIds.length + " session(s) of user: " + context.getSubject()
+                    + " by the active sessions limit policy: " + policy.getValue());
+        }
+        this.publishAuthenticationStepAttempt(request, context, context.getSubject(), true);
+        return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
+    }
+
+    /**
+     * Admit the new session of the user if the active sessions, together with the sessions admitted by other
+     * concurrent flows of the same user which are not yet in the session store, are below the limit.
+     *
+     * @param userId             userId of the authenticated user.
+     * @param activeSessionCount number of active sessions of the user.
+     * @param maxSessionCount    maximum number of sessions allowed for the user.
+     * @param context            authentication context of the flow.
+     * @return true if the session is admitted.
+     */
+    private boolean admitSession(String userId, int activeSessionCount, int maxSessionCount,
+                                 AuthenticationContext context) {
+
+        boolean admitted = SessionAdmissionRegistry.getInstance().tryReserve(userId,
+                context.getContextIdentifier(), activeSessionCount, maxSessionCount,
+                getSessionAdmissionTimeout(context));
+        if (!admitted && log.isDebugEnabled()) {
+            log.debug("Session admission denied for userId: " + userId + ". Active session count: "
+                    + activeSessionCount + ", limit: " + maxSessionCount);
+        }
+        return admitted;
+    }
+
+    private ActiveSessionsLimitPolicy getSessionLimitPolicy(AuthenticationContext context) {
+
+        String policyParamValue = getAuthenticatorParams(ActiveSessionsLimitHandlerConstants.SESSION_LIMIT_POLICY,
+                ActiveSessionsLimitPolicy.PROMPT.getValue(), context);
+        ActiveSessionsLimitPolicy policy = ActiveSessionsLimitPolicy.fromValue(policyParamValue);
+        if (policy == null) {
+            log.warn("Unsupported '" + ActiveSessionsLimitHandlerConstants.SESSION_LIMIT_POLICY + "' value: "
+                    + policyParamValue + ". Prompting the user to terminate sessions.");
+            return ActiveSessionsLimitPolicy.PROMPT;
+        }
+        return policy;
+    }
+
+    private long getSessionAdmissionTimeout(AuthenticationContext context) {
+
+        String timeoutParamValue = getAuthenticatorParams(ActiveSessionsLimitHandlerConstants
+                .SESSION_ADMISSION_TIMEOUT, DEFAULT_SESSION_ADMISSION_TIMEOUT, context);
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(timeoutParamValue));
+        } catch (NumberFormatException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("'" + ActiveSessionsLimitHandlerConstants.SESSION_ADMISSION_TIMEOUT + "' must be an "
+                        + "integer value. Picking the default value: " + DEFAULT_SESSION_ADMISSION_TIMEOUT);
+            }
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(DEFAULT_SESSION_ADMISSION_TIMEOUT));
+        }
+    }
+
     private List<String[]> getSessionProperties(List<UserSession> userSessions) {
 
         return userSessions.stream()
                 .map(userSession -> {
-                    UserAgent userAgent = new UserAgent(userSession.getUserAgent());
+                    ParsedUserAgent userAgent = UserAgentCache.getInstance().getUserAgent(userSession.getUserAgent());
                     return new String[]{
                             userSession.getSessionId(),
                             userSession.getLastAccessTime(),
@@ -223,41 +381,90 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
                 .collect(Collectors.toList());
     }
 
-    private List<UserSession> getUserSessions(String userId)
+    private List<UserSession> getUserSessions(String userId, boolean fresh)
             throws UserSessionRetrievalException {
 
         List<UserSession> userSessions;
 
+        long phaseStart = instrumentation.startPhase(LoginPhase.SESSION_QUERY);
         try {
-            userSessions = ActiveSessionsLimitHandlerServiceHolder.getInstance()
-                    .getUserSessionManagementService().getSessionsByUserId(userId);
+            // Concurrent logins of the same user share one session store lookup. Each caller gets its own copy of
+            // the shared result. A fresh lookup does not join the one in flight, but later lookups join it.
+            SingleFlight.Loader<List<UserSession>, SessionManagementException> loader =
+                    () -> ActiveSessionsLimitHandlerServiceHolder.getInstance().getUserSessionManagementService()
+                            .getSessionsByUserId(userId);
+            userSessions = new ArrayList<>(fresh ? userSessionLoads.executeFresh(userId, loader)
+                    : userSessionLoads.execute(userId, loader));
+            SessionTerminationQueue sessionTerminationQueue = SessionTerminationQueue.getInstance();
+            if (sessionTerminationQueue.isRunning()) {
+                // Sessions which are being terminated in the background are no longer counted as active.
+                userSessions = userSessions.stream()
+                        .filter(userSession -> !sessionTerminationQueue.isRevoked(userSession.getSessionId()))
+                        .collect(Collectors.toList());
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Retrieved " + userSessions.size() + " for userId: " + userId);
             }
-        } catch (SessionManagementException e) {
+        } catch (SessionManagementException | SingleFlightException e) {
             throw new UserSessionRetrievalException("Error occurred while retrieving sessions for userId: " + userId, e);
+        } finally {
+            instrumentation.endPhase(LoginPhase.SESSION_QUERY, phaseStart);
         }
         return userSessions;
     }
 
-    private String getUserId(AuthenticatedUser authenticatedUser) throws UserIdRetrievalException {
+    /**
+     * Get the userId of the authenticated user. The userId is looked up in the session store only if it is not cached
+     * on this node.
+     *
+     * @param context authentication context of the flow.
+     * @return userId of the authenticated user, or null if there is no authenticated user.
+     * @throws UserIdRetrievalException if the userId cannot be retrieved from the session store.
+     */
+    private String getUserId(AuthenticationContext context) throws UserIdRetrievalException {
+
+        AuthenticatedUser authenticatedUser = context.getSubject();
+        if (authenticatedUser == null) {
+            return null;
+        }
+        UserIdCache userIdCache = UserIdCache.getInstance();
+        String userId = userIdCache.getUserId(authenticatedUser.getTenantDomain(),
+                authenticatedUser.getUserStoreDomain(), authenticatedUser.getUserName());
+        if (userId != null) {
+            return userId;
+        }
 
-        String userId = null;
+        long invalidationStamp = userIdCache.getInvalidationStamp(authenticatedUser.getTenantDomain(),
+                authenticatedUser.getUserStoreDomain(), authenticatedUser.getUserName());
         try {
-            if (authenticatedUser != null) {
-                userId = UserSessionStore.getInstance()
-                        .getUserId(authenticatedUser.getUserName(),
-                                IdentityTenantUtil.getTenantIdOfUser(authenticatedUser.getUserName()),
-                                authenticatedUser.getUserStoreDomain());
-            }
+            userId = UserSessionStore.getInstance().getUserId(authenticatedUser.getUserName(),
+                    getTenantId(context, authenticatedUser), authenticatedUser.getUserStoreDomain());
         } catch (UserSessionException e) {
             throw new UserIdRetrievalException("Error occurred while retrieving the userId for user: "
                     + authenticatedUser.getUserName(), e);
         }
-
+        if (userId != null) {
+            userIdCache.putUserId(authenticatedUser.getTenantDomain(),
+                    authenticatedUser.getUserStoreDomain(), authenticatedUser.getUserName(), userId,
+                    invalidationStamp);
+        }
         return userId;
     }
 
+    /**
+     * Get the tenant id of the authenticated user, reusing the tenant id resolved by the basic authenticator when the
+     * subject belongs to the tenant it authenticated.
+     */
+    private int getTenantId(AuthenticationContext context, AuthenticatedUser authenticatedUser) {
+
+        Object tenantId = context.getProperty(BasicAuthenticatorConstants.USER_TENANT_ID);
+        if (tenantId instanceof Integer && StringUtils.equals(authenticatedUser.getTenantDomain(),
+                (String) context.getProperty(BasicAuthenticatorConstants.USER_TENANT_DOMAIN))) {
+            return (Integer) tenantId;
+        }
+        return IdentityTenantUtil.getTenantIdOfUser(authenticatedUser.getUserName());
+    }
+
     private void prepareEndpointParams(AuthenticationContext context,
                                        String maxSessionCountParamValue, List<UserSession> userSessions) {
 
@@ -267,9 +474,32 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
         context.addEndpointParams(data);
     }
 
-    private void terminateSessions(String userId, String[] sessionIds) throws UserSessionTerminationException {
+    /**
+     * Remove the data prepared for the prompt from the context, so it is not carried for the rest of the flow.
+     */
+    private void clearEndpointParams(AuthenticationContext context) {
+
+        Map<String, Serializable> endpointParams = context.getEndpointParams();
+        if (endpointParams != null) {
+            endpointParams.remove(ActiveSessionsLimitHandlerConstants.MAX_SESSION_COUNT);
+            endpointParams.remove(ActiveSessionsLimitHandlerConstants.SESSIONS);
+        }
+    }
+
+    private void terminateSessions(String userId, String[] sessionIds, AuthenticationContext context)
+            throws UserSessionTerminationException {
 
+        boolean deferred = Boolean.parseBoolean(getAuthenticatorParams(ActiveSessionsLimitHandlerConstants
+                .DEFERRED_SESSION_TERMINATION, DEFAULT_DEFERRED_SESSION_TERMINATION, context));
         for (String sessionId : sessionIds) {
+            if (deferred && SessionTerminationQueue.getInstance().enqueue(userId, sessionId)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Deferred the termination of user session with sessionId: " + sessionId
+                            + " of userId: " + userId);
+                }
+                continue;
+            }
+            long phaseStart = instrumentation.startPhase(LoginPhase.SESSION_TERMINATION);
             try {
                 ActiveSessionsLimitHandlerServiceHolder.getInstance()
                         .getUserSessionManagementService().terminateSessionBySessionId(userId, sessionId);
@@ -279,6 +509,8 @@ public class ActiveSessionsLimitHandler extends AbstractApplicationAuthenticator
             } catch (SessionManagementException e) {
                 throw new UserSessionTerminationException("Error occurred terminating user session with sessionId:" + sessionId
                         + " of userId: " + userId, e);
+            } finally {
+                instrumentation.endPhase(LoginPhase.SESSION_TERMINATION, phaseStart);
             }
         }
     }
@@ -30,6 +30,11 @@ public abstract class ActiveSessionsLimitHandlerConstants {
     public static final String DENY_LOGIN_ACTION = "denyLimitActiveSessionsAction";
     public static final String REFRESH_ACTION = "refreshActiveSessionsAction";
     public static final String MAX_SESSION_COUNT = "MaxSessionCount";
+    public static final String SESSION_ADMISSION_TIMEOUT = "SessionAdmissionTimeout";
+    public static final String SESSION_LIMIT_POLICY = "SessionLimitPolicy";
+    public static final String DEFERRED_SESSION_TERMINATION = "DeferredSessionTermination";
+    public static final String SESSION_TERMINATION_JOURNAL = "active-sessions-limit-handler-terminations.journal";
+    public static final String CACHE_SNAPSHOT_FILE = "active-sessions-limit-handler-caches.snapshot";
     public static final String SESSIONS_TO_TERMINATE = "sessionsToTerminate";
     public static final String SESSIONS = "sessions";
     public static final String SESSION_DATA_KEY = "sessionDataKey";
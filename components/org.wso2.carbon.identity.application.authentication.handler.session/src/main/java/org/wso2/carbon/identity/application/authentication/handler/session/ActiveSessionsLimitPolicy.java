@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.authentication.framework.model.UserSession;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Policies applied by the {@link ActiveSessionsLimitHandler} when a user exceeds the 'MaxSessionCount'.
+ */
+public enum ActiveSessionsLimitPolicy {
+
+    /**
+     * Prompt the user to select the sessions to be terminated.
+     */
+    PROMPT("prompt", null),
+
+    /**
+     * Terminate the sessions with the earliest login time without prompting.
+     */
+    TERMINATE_OLDEST("terminate-oldest", UserSession::getLoginTime),
+
+    /**
+     * Terminate the sessions with the earliest last access time without prompting.
+     */
+    TERMINATE_LEAST_RECENTLY_USED("terminate-least-recently-used", UserSession::getLastAccessTime),
+
+    /**
+     * Fail the login without prompting.
+     */
+    DENY("deny", null);
+
+    private final String value;
+    private final Function<UserSession, String> timestampResolver;
+
+    ActiveSessionsLimitPolicy(String value, Function<UserSession, String> timestampResolver) {
+
+        this.value = value;
+        this.timestampResolver = timestampResolver;
+    }
+
+    public String getValue() {
+
+        return value;
+    }
+
+    /**
+     * Whether the policy terminates sessions without a prompt.
+     *
+     * @return true if the policy terminates sessions inline.
+     */
+    public boolean isTerminating() {
+
+        return timestampResolver != null;
+    }
+
+    /**
+     * Select the sessions to be terminated. A max-heap bounded to the requested count is used, so only the sessions
+     * with the smallest timestamps are retained without sorting the whole list. A policy which does not terminate
+     * sessions selects none.
+     *
+     * @param userSessions active sessions of the user.
+     * @param count        number of sessions to be terminated.
+     * @return sessions to be terminated.
+     */
+    public List<UserSession> selectSessionsToTerminate(List<UserSession> userSessions, int count) {
+
+        if (!isTerminating() || count <= 0) {
+            return new ArrayList<>();
+        }
+
+        Comparator<UserSession> latestFirst = Comparator.comparingLong(this::getTimestamp).reversed();
+        PriorityQueue<UserSession> candidates = new PriorityQueue<>(count + 1, latestFirst);
+        for (UserSession userSession : userSessions) {
+            candidates.offer(userSession);
+            if (candidates.size() > count) {
+                candidates.poll();
+            }
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    /**
+     * Resolve the policy for the configured value.
+     *
+     * @param value configured policy value.
+     * @return matching policy or null if the value does not match any policy.
+     */
+    public static ActiveSessionsLimitPolicy fromValue(String value) {
+
+        for (ActiveSessionsLimitPolicy policy : values()) {
+            if (policy.value.equalsIgnoreCase(StringUtils.trim(value))) {
+                return policy;
+            }
+        }
+        return null;
+    }
+
+    private long getTimestamp(UserSession userSession) {
+
+        String timestamp = timestampResolver.apply(userSession);
+        try {
+            return Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            // Sessions without a usable timestamp are treated as the most recent ones, so they are terminated last.
+            return Long.MAX_VALUE;
+        }
+    }
+}
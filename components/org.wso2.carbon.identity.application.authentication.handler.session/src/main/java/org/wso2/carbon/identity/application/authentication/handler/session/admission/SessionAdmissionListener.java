@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.admission;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticationDataPublisher;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+import org.wso2.carbon.identity.application.authentication.framework.context.SessionContext;
+import org.wso2.carbon.identity.core.handler.AbstractIdentityMessageHandler;
+
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Releases the session admission of a flow once the flow ends. The admission is released when the session of the
+ * flow is created or updated, as the session is then in the session store, and when the flow fails, as it will not
+ * create a session.
+ */
+public class SessionAdmissionListener extends AbstractIdentityMessageHandler implements AuthenticationDataPublisher {
+
+    private static final Log log = LogFactory.getLog(SessionAdmissionListener.class);
+
+    @Override
+    public String getName() {
+
+        return "SessionAdmissionListener";
+    }
+
+    @Override
+    public void publishAuthenticationStepSuccess(HttpServletRequest request, AuthenticationContext context,
+                                                 Map<String, Object> params) {
+
+    }
+
+    @Override
+    public void publishAuthenticationStepFailure(HttpServletRequest request, AuthenticationContext context,
+                                                 Map<String, Object> params) {
+
+    }
+
+    @Override
+    public void publishAuthenticationSuccess(HttpServletRequest request, AuthenticationContext context,
+                                             Map<String, Object> params) {
+
+    }
+
+    @Override
+    public void publishAuthenticationFailure(HttpServletRequest request, AuthenticationContext context,
+                                             Map<String, Object> params) {
+
+        release(context);
+    }
+
+    @Override
+    public void publishSessionCreation(HttpServletRequest request, AuthenticationContext context,
+                                       SessionContext sessionContext, Map<String, Object> params) {
+
+        release(context);
+    }
+
+    @Override
+    public void publishSessionUpdate(HttpServletRequest request, AuthenticationContext context,
+                                     SessionContext sessionContext, Map<String, Object> params) {
+
+        release(context);
+    }
+
+    @Override
+    public void publishSessionTermination(HttpServletRequest request, AuthenticationContext context,
+                                          SessionContext sessionContext, Map<String, Object> params) {
+
+    }
+
+    private void release(AuthenticationContext context) {
+
+        if (context == null || context.getContextIdentifier() == null) {
+            return;
+        }
+        SessionAdmissionRegistry.getInstance().release(context.getContextIdentifier());
+        if (log.isDebugEnabled()) {
+            log.debug("Released the session admission of the flow: " + context.getContextIdentifier());
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node local registry of session admissions which are granted but not yet reflected in the session store.
+ * <p>
+ * The count-and-reserve step of an admission is performed atomically per userId, so two logins of the same user
+ * arriving at the same time cannot both pass the 'MaxSessionCount' check. Admissions of different users are
+ * handled under different keys and never wait on each other.
+ * <p>
+ * A reservation is released once the session of the flow holding it is created, or the flow fails, so that it is not
+ * counted both as an active session and as a reservation. See {@link SessionAdmissionListener}. The timeout of a
+ * reservation only drops the reservations of abandoned flows, so that they do not hold a slot.
+ */
+public class SessionAdmissionRegistry {
+
+    private static final SessionAdmissionRegistry instance = new SessionAdmissionRegistry();
+
+    private final ConcurrentMap<String, Map<String, Long>> reservations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> flowUserIds = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurgeTime = new AtomicLong();
+
+    private SessionAdmissionRegistry() {
+
+    }
+
+    public static SessionAdmissionRegistry getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Reserve an admission for the given flow if the active sessions of the user, together with the admissions
+     * reserved by other flows of the same user, are below the limit.
+     *
+     * @param userId             userId of the user being admitted.
+     * @param flowId             identifier of the authentication flow requesting the admission.
+     * @param activeSessionCount number of active sessions of the user in the session store.
+     * @param maxSessionCount    maximum number of sessions allowed for the user.
+     * @param timeoutMillis      time after which an unreleased reservation is discarded.
+     * @return true if the admission was reserved for the flow.
+     */
+    public boolean tryReserve(String userId, String flowId, int activeSessionCount, int maxSessionCount,
+                              long timeoutMillis) {
+
+        long currentTime = System.currentTimeMillis();
+        purgeExpiredReservations(currentTime, timeoutMillis);
+
+        boolean[] reserved = new boolean[1];
+        reservations.compute(userId, (key, userReservations) -> {
+            if (userReservations == null) {
+                userReservations = new HashMap<>();
+            }
+            removeExpiredReservations(userId, userReservations, currentTime);
+            // A flow re-entering the handler should not be counted against its own admission.
+            if (userReservations.remove(flowId) != null) {
+                flowUserIds.remove(flowId, userId);
+            }
+            if (activeSessionCount + userReservations.size() < maxSessionCount) {
+                userReservations.put(flowId, currentTime + timeoutMillis);
+                flowUserIds.put(flowId, userId);
+                reserved[0] = true;
+            }
+            return userReservations.isEmpty() ? null : userReservations;
+        });
+        return reserved[0];
+    }
+
+    /**
+     * Release the admission reserved for the given flow, if any.
+     *
+     * @param userId userId of the admitted user.
+     * @param flowId identifier of the authentication flow which holds the admission.
+     */
+    public void release(String userId, String flowId) {
+
+        reservations.computeIfPresent(userId, (key, userReservations) -> {
+            if (userReservations.remove(flowId) != null) {
+                flowUserIds.remove(flowId, userId);
+            }
+            return userReservations.isEmpty() ? null : userReservations;
+        });
+    }
+
+    /**
+     * Release the admission reserved for the given flow, if any, without knowing the user it was reserved for.
+     *
+     * @param flowId identifier of the authentication flow which holds the admission.
+     */
+    public void release(String flowId) {
+
+        String userId = flowUserIds.get(flowId);
+        if (userId != null) {
+            release(userId, flowId);
+        }
+    }
+
+    /**
+     * Get the number of admissions reserved for the user which are not yet reflected in the session store.
+     *
+     * @param userId userId of the user.
+     * @return number of reservations of the user.
+     */
+    public int getReservationCount(String userId) {
+
+        int[] reservationCount = new int[1];
+        reservations.computeIfPresent(userId, (key, userReservations) -> {
+            reservationCount[0] = userReservations.size();
+            return userReservations;
+        });
+        return reservationCount[0];
+    }
+
+    private void removeExpiredReservations(String userId, Map<String, Long> userReservations, long currentTime) {
+
+        userReservations.entrySet().removeIf(reservation -> {
+            if (reservation.getValue() > currentTime) {
+                return false;
+            }
+            flowUserIds.remove(reservation.getKey(), userId);
+            return true;
+        });
+    }
+
+    /**
+     * Remove the reservations of users who have not attempted a login since their reservations expired. This runs
+     * at most once per timeout period and only on the thread which wins the schedule update.
+     */
+    private void purgeExpiredReservations(long currentTime, long timeoutMillis) {
+
+        long purgeTime = nextPurgeTime.get();
+        if (currentTime < purgeTime || !nextPurgeTime.compareAndSet(purgeTime, currentTime + timeoutMillis)) {
+            return;
+        }
+        for (String userId : reservations.keySet()) {
+            reservations.computeIfPresent(userId, (key, userReservations) -> {
+                removeExpiredReservations(userId, userReservations, currentTime);
+                return userReservations.isEmpty() ? null : userReservations;
+            });
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.cache;
+
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.SnapshotableCache;
+import org.wso2.carbon.identity.application.authenticator.localcache.LocalCache;
+import org.wso2.carbon.identity.core.model.UserAgent;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the browser, platform and device parsed from the user agents of the sessions shown in the active sessions
+ * limit page. The same few user agents are shared by most sessions, and parsing them is comparatively expensive.
+ */
+public class UserAgentCache implements SnapshotableCache {
+
+    private static final String SNAPSHOT_NAME = "user-agents";
+    private static final String CACHE_NAME = "ActiveSessionsLimitHandler.UserAgents";
+    private static final String SEPARATOR = "\n";
+    private static final int MAX_ENTRIES = 10000;
+
+    private static final UserAgentCache instance = new UserAgentCache();
+
+    private final LocalCache<String, ParsedUserAgent> userAgents =
+            LocalCache.<String, ParsedUserAgent>builder(CACHE_NAME)
+                    .maximumSize(MAX_ENTRIES)
+                    .build();
+
+    private UserAgentCache() {
+
+    }
+
+    public static UserAgentCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the browser, platform and device of the user agent, parsing it if it is not cached.
+     *
+     * @param userAgentString user agent header value
+     * @return parsed user agent
+     */
+    public ParsedUserAgent getUserAgent(String userAgentString) {
+
+        if (userAgentString == null) {
+            return parse(null);
+        }
+        return userAgents.get(userAgentString, this::parse);
+    }
+
+    @Override
+    public String getSnapshotName() {
+
+        return SNAPSHOT_NAME;
+    }
+
+    @Override
+    public Map<String, String> snapshot() {
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, ParsedUserAgent> entry : userAgents.toMap().entrySet()) {
+            ParsedUserAgent userAgent = entry.getValue();
+            if (userAgent.getBrowser() != null && userAgent.getPlatform() != null && userAgent.getDevice() != null) {
+                entries.put(entry.getKey(), userAgent.getBrowser() + SEPARATOR + userAgent.getPlatform() + SEPARATOR
+                        + userAgent.getDevice());
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void restore(Map<String, String> entries) {
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String[] values = entry.getValue().split(SEPARATOR, -1);
+            if (values.length == 3) {
+                userAgents.putIfAbsent(entry.getKey(), new ParsedUserAgent(values[0], values[1], values[2]));
+            }
+        }
+    }
+
+    private ParsedUserAgent parse(String userAgentString) {
+
+        UserAgent userAgent = new UserAgent(userAgentString);
+        return new ParsedUserAgent(userAgent.getBrowser(), userAgent.getPlatform(), userAgent.getDevice());
+    }
+
+    /**
+     * Browser, platform and device of a user agent.
+     */
+    public static class ParsedUserAgent {
+
+        private final String browser;
+        private final String platform;
+        private final String device;
+
+        private ParsedUserAgent(String browser, String platform, String device) {
+
+            this.browser = browser;
+            this.platform = platform;
+            this.device = device;
+        }
+
+        public String getBrowser() {
+
+            return browser;
+        }
+
+        public String getPlatform() {
+
+            return platform;
+        }
+
+        public String getDevice() {
+
+            return device;
+        }
+    }
+}
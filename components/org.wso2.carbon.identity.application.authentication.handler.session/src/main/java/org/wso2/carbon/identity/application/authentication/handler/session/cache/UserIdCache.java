@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.cache;
+
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationListener;
+import org.wso2.carbon.identity.application.authenticator.localcache.LocalCache;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Caches the userIds of the session store, so that the active sessions limit check of a user who has logged in on
+ * this node before does not look the userId up in the session store database. The userId of a user does not change
+ * while the user exists, so entries are only evicted when the user is added or deleted, or the tenant is changed, on
+ * any node of the cluster.
+ * <p>
+ * The cache is kept on the node instead of in the authentication context, so that it does not add to the context
+ * replicated across the cluster.
+ */
+public class UserIdCache implements InvalidationListener {
+
+    private static final String CACHE_NAME = "ActiveSessionsLimitHandler.UserIds";
+    private static final int MAX_ENTRIES = 100000;
+
+    private static final UserIdCache instance = new UserIdCache();
+
+    private final LocalCache<UserKey, String> userIds = LocalCache.<UserKey, String>builder(CACHE_NAME)
+            .maximumSize(MAX_ENTRIES)
+            .build();
+
+    private UserIdCache() {
+
+    }
+
+    public static UserIdCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the userId of the user, if it is cached.
+     *
+     * @param tenantDomain    tenant domain of the user
+     * @param userStoreDomain user store domain of the user
+     * @param username        username of the user, without the user store domain
+     * @return userId, or null if it is not cached
+     */
+    public String getUserId(String tenantDomain, String userStoreDomain, String username) {
+
+        return userIds.getIfPresent(new UserKey(tenantDomain, userStoreDomain, username));
+    }
+
+    /**
+     * Get the invalidation stamp of the user, to be taken before the userId is loaded from the session store.
+     *
+     * @param tenantDomain    tenant domain of the user
+     * @param userStoreDomain user store domain of the user
+     * @param username        username of the user, without the user store domain
+     * @return invalidation stamp
+     */
+    public long getInvalidationStamp(String tenantDomain, String userStoreDomain, String username) {
+
+        return userIds.getInvalidationStamp(new UserKey(tenantDomain, userStoreDomain, username));
+    }
+
+    /**
+     * Cache the userId of the user, unless the user was invalidated since the userId was loaded.
+     *
+     * @param tenantDomain      tenant domain of the user
+     * @param userStoreDomain   user store domain of the user
+     * @param username          username of the user, without the user store domain
+     * @param userId            userId of the user
+     * @param invalidationStamp stamp taken with {@link #getInvalidationStamp(String, String, String)} before the
+     *                          userId was loaded
+     */
+    public void putUserId(String tenantDomain, String userStoreDomain, String username, String userId,
+                          long invalidationStamp) {
+
+        userIds.putIfNotInvalidated(new UserKey(tenantDomain, userStoreDomain, username), userId, invalidationStamp);
+    }
+
+    /**
+     * Remove all the entries from the cache.
+     */
+    public void clear() {
+
+        userIds.invalidateAll();
+    }
+
+    @Override
+    public void onInvalidation(Collection<InvalidationEvent> events) {
+
+        Set<String> invalidatedTenants = new HashSet<>();
+        Map<String, Set<String>> invalidatedUsers = new HashMap<>();
+        for (InvalidationEvent event : events) {
+            if (event.getType() == InvalidationEvent.Type.TENANT) {
+                invalidatedTenants.add(event.getTenantDomain());
+            } else if ((event.getType() == InvalidationEvent.Type.USER_ADDED
+                    || event.getType() == InvalidationEvent.Type.USER_DELETED) && event.getKey() != null) {
+                invalidatedUsers.computeIfAbsent(event.getTenantDomain(), domain -> new HashSet<>())
+                        .add(getBareUsername(event.getKey()));
+            }
+        }
+        if (invalidatedTenants.isEmpty() && invalidatedUsers.isEmpty()) {
+            return;
+        }
+        userIds.invalidateIf(key -> invalidatedTenants.contains(key.tenantDomain)
+                || invalidatedUsers.getOrDefault(key.tenantDomain, Collections.emptySet()).contains(key.bareUsername));
+    }
+
+    private static String getBareUsername(String username) {
+
+        return UserCoreUtil.removeDomainFromName(username).toLowerCase(Locale.ENGLISH);
+    }
+
+    private static final class UserKey {
+
+        private final String tenantDomain;
+        private final String userStoreDomain;
+        private final String username;
+        private final String bareUsername;
+
+        UserKey(String tenantDomain, String userStoreDomain, String username) {
+
+            this.tenantDomain = tenantDomain;
+            this.userStoreDomain = userStoreDomain;
+            this.username = username;
+            this.bareUsername = getBareUsername(username);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            UserKey that = (UserKey) o;
+            return Objects.equals(tenantDomain, that.tenantDomain) && Objects.equals(userStoreDomain,
+                    that.userStoreDomain) && username.equals(that.username);
+        }
+
+        @Override
+        public int hashCode() {
+
+            return Objects.hash(tenantDomain, userStoreDomain, username);
+        }
+    }
+}
@@ -28,9 +28,24 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticationDataPublisher;
 import org.wso2.carbon.identity.application.authentication.framework.UserSessionManagementService;
 import org.wso2.carbon.identity.application.authentication.handler.session.ActiveSessionsLimitHandler;
+import org.wso2.carbon.identity.application.authentication.handler.session.ActiveSessionsLimitHandlerConstants;
+import org.wso2.carbon.identity.application.authentication.handler.session.admission.SessionAdmissionListener;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserAgentCache;
+import org.wso2.carbon.identity.application.authentication.handler.session.cache.UserIdCache;
+import org.wso2.carbon.identity.application.authentication.handler.session.termination.SessionTerminationQueue;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginMetrics;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationBus;
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.CacheSnapshots;
 import org.wso2.carbon.user.core.service.RealmService;
+import org.wso2.carbon.utils.CarbonUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 
 /**
  * OSGi declarative services component which handles registration and de-registration of Session Handler.
@@ -46,10 +61,18 @@ public class ActiveSessionsLimitHandlerServiceComponent {
     @Activate
     protected void activate(ComponentContext ctxt) {
 
+        CacheSnapshots.restore(CacheSnapshots.getSnapshotPath(ActiveSessionsLimitHandlerConstants.CACHE_SNAPSHOT_FILE),
+                Collections.singletonList(UserAgentCache.getInstance()));
+        LoginMetrics.getInstance().registerMBean(ActiveSessionsLimitHandlerConstants.HANDLER_NAME);
+        InvalidationBus.getInstance().addListener(UserIdCache.getInstance());
         try {
             ActiveSessionsLimitHandler activeSessionsLimitHandler = new ActiveSessionsLimitHandler();
             ctxt.getBundleContext().registerService(ApplicationAuthenticator.class.getName(), activeSessionsLimitHandler
                     , null);
+            // Releases the session admissions of the flows once their sessions are created.
+            ctxt.getBundleContext().registerService(AuthenticationDataPublisher.class.getName(),
+                    new SessionAdmissionListener(), null);
+            startSessionTerminationQueue();
             if (log.isDebugEnabled()) {
                 log.debug("ActiveSessionsLimitHandler bundle is activated");
             }
@@ -61,11 +84,42 @@ public class ActiveSessionsLimitHandlerServiceComponent {
     @Deactivate
     protected void deactivate(ComponentContext ctxt) {
 
+        SessionTerminationQueue.getInstance().stop();
+        InvalidationBus.getInstance().removeListener(UserIdCache.getInstance());
+        UserIdCache.getInstance().clear();
+        writeCacheSnapshot();
+        LoginMetrics.getInstance().unregisterMBean(ActiveSessionsLimitHandlerConstants.HANDLER_NAME);
         if (log.isDebugEnabled()) {
             log.debug("ActiveSessionsLimitHandler bundle is deactivated");
         }
     }
 
+    /**
+     * Write the parsed user agents to a snapshot, to be restored on activation.
+     */
+    private void writeCacheSnapshot() {
+
+        Path path = CacheSnapshots.getSnapshotPath(ActiveSessionsLimitHandlerConstants.CACHE_SNAPSHOT_FILE);
+        try {
+            CacheSnapshots.write(path, Collections.singletonList(UserAgentCache.getInstance()));
+        } catch (IOException e) {
+            log.error("Error while writing the cache snapshot: " + path, e);
+        }
+    }
+
+    private void startSessionTerminationQueue() {
+
+        Path journalPath = Paths.get(CarbonUtils.getCarbonHome(), "repository", "data",
+                ActiveSessionsLimitHandlerConstants.SESSION_TERMINATION_JOURNAL);
+        try {
+            SessionTerminationQueue.getInstance().init(journalPath);
+        } catch (IOException e) {
+            // Sessions are terminated within the login request when the queue is not running.
+            log.error("Error while opening the session termination journal: " + journalPath
+                    + ". Deferred session termination is disabled.", e);
+        }
+    }
+
     @Reference(
             name = "realm.service",
             service = RealmService.class,
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.termination;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local append-only journal of deferred session terminations.
+ * <p>
+ * Each line records either a pending termination ({@code P<TAB>userId<TAB>sessionId}) or the completion of one
+ * ({@code C<TAB>sessionId}). Replaying the journal in order gives the terminations which were still pending when the
+ * node stopped. The journal is rewritten with only the pending entries on startup and truncated whenever no
+ * termination is pending, so it does not grow without bound.
+ * <p>
+ * Each entry is forced to the storage device before the append returns, so the pending terminations survive a crash
+ * of the host as well as a restart of the node.
+ */
+public class SessionTerminationJournal {
+
+    private static final Log log = LogFactory.getLog(SessionTerminationJournal.class);
+
+    private static final String PENDING = "P";
+    private static final String COMPLETED = "C";
+    private static final String SEPARATOR = "\t";
+
+    private final Path path;
+    private FileChannel channel;
+
+    public SessionTerminationJournal(Path path) {
+
+        this.path = path;
+    }
+
+    /**
+     * Replay the journal and reopen it for appending, keeping only the terminations which are still pending.
+     *
+     * @return pending terminations, in the order they were recorded.
+     * @throws IOException if the journal cannot be read or rewritten.
+     */
+    public synchronized Collection<PendingSessionTermination> open() throws IOException {
+
+        Map<String, PendingSessionTermination> pendingTerminations = new LinkedHashMap<>();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(SEPARATOR);
+                    if (fields.length == 3 && PENDING.equals(fields[0])) {
+                        pendingTerminations.put(fields[2], new PendingSessionTermination(fields[1], fields[2]));
+                    } else if (fields.length == 2 && COMPLETED.equals(fields[0])) {
+                        pendingTerminations.remove(fields[1]);
+                    } else if (log.isDebugEnabled()) {
+                        // A partially written last line is expected if the node stopped while appending.
+                        log.debug("Ignoring malformed entry in the session termination journal: " + path);
+                    }
+                }
+            }
+        } else if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        Path compactedPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel compactedChannel = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (PendingSessionTermination termination : pendingTerminations.values()) {
+                write(compactedChannel, toPendingEntry(termination));
+            }
+            compactedChannel.force(false);
+        }
+        Files.move(compactedPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return pendingTerminations.values();
+    }
+
+    public synchronized void appendPending(PendingSessionTermination termination) throws IOException {
+
+        append(toPendingEntry(termination));
+    }
+
+    public synchronized void appendCompleted(String sessionId) throws IOException {
+
+        append(COMPLETED + SEPARATOR + sessionId + "\n");
+    }
+
+    /**
+     * Discard all the entries of the journal. Must only be called when no termination is pending.
+     *
+     * @throws IOException if the journal cannot be truncated.
+     */
+    public synchronized void truncate() throws IOException {
+
+        if (channel != null) {
+            channel.truncate(0);
+            channel.force(false);
+        }
+    }
+
+    public synchronized void close() {
+
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("Error while closing the session termination journal: " + path, e);
+            }
+            channel = null;
+        }
+    }
+
+    private void append(String entry) throws IOException {
+
+        if (channel == null) {
+            throw new IOException("Session termination journal: " + path + " is not open.");
+        }
+        write(channel, entry);
+        channel.force(false);
+    }
+
+    private static void write(FileChannel fileChannel, String entry) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.wrap(entry.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            fileChannel.write(buffer);
+        }
+    }
+
+    private String toPendingEntry(PendingSessionTermination termination) {
+
+        return PENDING + SEPARATOR + termination.getUserId() + SEPARATOR + termination.getSessionId() + "\n";
+    }
+}
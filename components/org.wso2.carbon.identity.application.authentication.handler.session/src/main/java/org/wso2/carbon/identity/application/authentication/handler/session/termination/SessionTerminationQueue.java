@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.termination;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.UserSessionManagementService;
+import org.wso2.carbon.identity.application.authentication.framework.exception.session.mgt.SessionManagementException;
+import org.wso2.carbon.identity.application.authentication.handler.session.internal.ActiveSessionsLimitHandlerServiceHolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Terminates user sessions in the background, off the login request.
+ * <p>
+ * Enqueued sessions are recorded in a local {@link SessionTerminationJournal} and marked as revoked, so they are no
+ * longer counted against the active sessions limit of the user while the termination is in progress. Failed
+ * terminations are retried with an exponential backoff, and pending terminations are replayed from the journal when
+ * the node restarts.
+ * <p>
+ * The queue is only needed when 'DeferredSessionTermination' is enabled, so it is started on the first enqueued
+ * termination, or on {@link #init(Path)} if the journal holds terminations which were pending when the node stopped.
+ */
+public class SessionTerminationQueue {
+
+    private static final Log log = LogFactory.getLog(SessionTerminationQueue.class);
+
+    private static final SessionTerminationQueue instance = new SessionTerminationQueue();
+
+    private static final long INITIAL_RETRY_DELAY_MILLIS = 500;
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final ConcurrentMap<String, PendingSessionTermination> pendingTerminations = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService executor;
+    private SessionTerminationJournal journal;
+    private Path journalPath;
+
+    private SessionTerminationQueue() {
+
+    }
+
+    public static SessionTerminationQueue getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Set the path of the journal the queue is started with. The queue is started right away only if the journal
+     * holds terminations to resume, and otherwise on the first enqueued termination.
+     *
+     * @param journalPath path of the session termination journal.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public synchronized void init(Path journalPath) throws IOException {
+
+        this.journalPath = journalPath;
+        if (Files.exists(journalPath) && Files.size(journalPath) > 0) {
+            start(journalPath);
+        }
+    }
+
+    /**
+     * Open the journal at the given path and resume the terminations which were pending when the node stopped.
+     *
+     * @param journalPath path of the session termination journal.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public synchronized void start(Path journalPath) throws IOException {
+
+        if (executor != null) {
+            return;
+        }
+        SessionTerminationJournal sessionTerminationJournal = new SessionTerminationJournal(journalPath);
+        Collection<PendingSessionTermination> replayedTerminations = sessionTerminationJournal.open();
+        journal = sessionTerminationJournal;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ActiveSessionsLimitHandler-SessionTermination");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (PendingSessionTermination termination : replayedTerminations) {
+            pendingTerminations.put(termination.getSessionId(), termination);
+            schedule(termination, INITIAL_RETRY_DELAY_MILLIS);
+        }
+        if (!replayedTerminations.isEmpty()) {
+            log.info("Resuming " + replayedTerminations.size() + " pending session termination(s) from the journal: "
+                    + journalPath);
+        }
+    }
+
+    /**
+     * Stop terminating sessions. Terminations which are still pending remain in the journal and are resumed on the
+     * next start.
+     */
+    public synchronized void stop() {
+
+        journalPath = null;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        journal.close();
+        journal = null;
+        pendingTerminations.clear();
+    }
+
+    public boolean isRunning() {
+
+        return executor != null;
+    }
+
+    /**
+     * Hand over the termination of a session to the queue.
+     *
+     * @param userId    userId of the owner of the session.
+     * @param sessionId id of the session to terminate.
+     * @return false if the termination could not be recorded, in which case the caller must terminate the session.
+     */
+    public synchronized boolean enqueue(String userId, String sessionId) {
+
+        if (executor == null && !startOnDemand()) {
+            return false;
+        }
+        if (pendingTerminations.containsKey(sessionId)) {
+            return true;
+        }
+        PendingSessionTermination termination = new PendingSessionTermination(userId, sessionId);
+        try {
+            journal.appendPending(termination);
+        } catch (IOException e) {
+            log.error("Error while recording the termination of session: " + sessionId + " in the journal.", e);
+            return false;
+        }
+        pendingTerminations.put(sessionId, termination);
+        schedule(termination, 0);
+        return true;
+    }
+
+    /**
+     * Check whether the session is enqueued for termination, but not yet terminated.
+     *
+     * @param sessionId id of the session.
+     * @return true if the session is revoked.
+     */
+    public boolean isRevoked(String sessionId) {
+
+        return pendingTerminations.containsKey(sessionId);
+    }
+
+    private boolean startOnDemand() {
+
+        if (journalPath == null) {
+            return false;
+        }
+        try {
+            start(journalPath);
+            return true;
+        } catch (IOException e) {
+            // Sessions are terminated within the login request when the queue is not running.
+            log.error("Error while opening the session termination journal: " + journalPath
+                    + ". Deferred session termination is disabled.", e);
+            journalPath = null;
+            return false;
+        }
+    }
+
+    private void schedule(PendingSessionTermination termination, long delayMillis) {
+
+        ScheduledExecutorService scheduledExecutor = executor;
+        if (scheduledExecutor == null) {
+            return;
+        }
+        try {
+            scheduledExecutor.schedule(() -> terminate(termination), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The queue is stopping. The termination is resumed from the journal on the next start.
+            if (log.isDebugEnabled()) {
+                log.debug("Termination of session: " + termination.getSessionId() + " deferred to the next start.");
+            }
+        }
+    }
+
+    private void terminate(PendingSessionTermination termination) {
+
+        UserSessionManagementService userSessionManagementService = ActiveSessionsLimitHandlerServiceHolder
+                .getInstance().getUserSessionManagementService();
+        if (userSessionManagementService == null) {
+            retry(termination, null);
+            return;
+        }
+        try {
+            userSessionManagementService.terminateSessionBySessionId(termination.getUserId(),
+                    termination.getSessionId());
+            if (log.isDebugEnabled()) {
+                log.debug("Terminated user session with sessionId: " + termination.getSessionId() + " of userId: "
+                        + termination.getUserId());
+            }
+            complete(termination);
+        } catch (SessionManagementException | RuntimeException e) {
+            retry(termination, e);
+        }
+    }
+
+    private void retry(PendingSessionTermination termination, Throwable cause) {
+
+        int attempts = termination.incrementAttempts();
+        if (attempts >= MAX_ATTEMPTS) {
+            // The login which revoked the session is already admitted, so the user is over the limit.
+            log.error("Active sessions limit breached for userId: " + termination.getUserId() + ". Giving up "
+                    + "terminating user session with sessionId: " + termination.getSessionId() + " after " + attempts
+                    + " attempts. The session remains active.", cause);
+            complete(termination);
+            return;
+        }
+        long delayMillis = Math.min(INITIAL_RETRY_DELAY_MILLIS << Math.min(attempts, 30), MAX_RETRY_DELAY_MILLIS);
+        if (log.isDebugEnabled()) {
+            log.debug("Could not terminate user session with sessionId: " + termination.getSessionId()
+                    + ". Retrying in " + delayMillis + "ms.", cause);
+        }
+        schedule(termination, delayMillis);
+    }
+
+    private synchronized void complete(PendingSessionTermination termination) {
+
+        if (journal == null || !pendingTerminations.remove(termination.getSessionId(), termination)) {
+            return;
+        }
+        try {
+            if (pendingTerminations.isEmpty()) {
+                journal.truncate();
+            } else {
+                journal.appendCompleted(termination.getSessionId());
+            }
+        } catch (IOException e) {
+            // The termination is replayed on the next start, which is harmless for an already terminated session.
+            log.error("Error while recording the termination of session: " + termination.getSessionId()
+                    + " in the journal.", e);
+        }
+    }
+}
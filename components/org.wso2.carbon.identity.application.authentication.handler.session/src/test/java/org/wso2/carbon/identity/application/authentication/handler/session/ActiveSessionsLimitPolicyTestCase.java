@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authentication.handler.session;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.model.UserSession;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class ActiveSessionsLimitPolicyTestCase {
+
+    @DataProvider
+    public Object[][] policyValues() {
+
+        return new Object[][]{
+                {"prompt", ActiveSessionsLimitPolicy.PROMPT},
+                {"terminate-oldest", ActiveSessionsLimitPolicy.TERMINATE_OLDEST},
+                {" Terminate-Least-Recently-Used ", ActiveSessionsLimitPolicy.TERMINATE_LEAST_RECENTLY_USED},
+                {"DENY", ActiveSessionsLimitPolicy.DENY},
+                {"terminate-all", null},
+                {null, null}
+        };
+    }
+
+    @Test(dataProvider = "policyValues")
+    public void testFromValue(String value, ActiveSessionsLimitPolicy expectedPolicy) {
+
+        assertEquals(ActiveSessionsLimitPolicy.fromValue(value), expectedPolicy);
+    }
+
+    @Test
+    public void testTerminateOldestSelectsEarliestLogins() {
+
+        List<UserSession> userSessions = Arrays.asList(
+                createSession("s1", "3000", "9000"),
+                createSession("s2", "1000", "9500"),
+                createSession("s3", "4000", "1000"),
+                createSession("s4", "2000", "8000"));
+
+        assertEquals(getSessionIds(ActiveSessionsLimitPolicy.TERMINATE_OLDEST.selectSessionsToTerminate(
+                userSessions, 2)), asSet("s2", "s4"));
+    }
+
+    @Test
+    public void testTerminateLeastRecentlyUsedSelectsEarliestAccesses() {
+
+        List<UserSession> userSessions = Arrays.asList(
+                createSession("s1", "3000", "9000"),
+                createSession("s2", "1000", "9500"),
+                createSession("s3", "4000", "1000"),
+                createSession("s4", "2000", "8000"));
+
+        assertEquals(getSessionIds(ActiveSessionsLimitPolicy.TERMINATE_LEAST_RECENTLY_USED
+                .selectSessionsToTerminate(userSessions, 2)), asSet("s3", "s4"));
+    }
+
+    @Test
+    public void testSessionsWithoutTimestampAreTerminatedLast() {
+
+        List<UserSession> userSessions = Arrays.asList(
+                createSession("s1", null, null),
+                createSession("s2", "2000", "2000"),
+                createSession("s3", "invalid", "invalid"));
+
+        assertEquals(getSessionIds(ActiveSessionsLimitPolicy.TERMINATE_OLDEST.selectSessionsToTerminate(
+                userSessions, 1)), asSet("s2"));
+    }
+
+    @Test
+    public void testTerminatingPolicySelectsNoneForNonPositiveCount() {
+
+        List<UserSession> userSessions = Arrays.asList(createSession("s1", "1000", "1000"));
+
+        assertTrue(ActiveSessionsLimitPolicy.TERMINATE_OLDEST.selectSessionsToTerminate(userSessions, 0).isEmpty());
+        assertTrue(ActiveSessionsLimitPolicy.TERMINATE_LEAST_RECENTLY_USED.selectSessionsToTerminate(userSessions, -1)
+                .isEmpty());
+    }
+
+    @Test
+    public void testTerminatingPolicySelectsAllWhenCountExceedsSessions() {
+
+        List<UserSession> userSessions = Arrays.asList(
+                createSession("s1", "1000", "1000"),
+                createSession("s2", "2000", "2000"));
+
+        assertEquals(getSessionIds(ActiveSessionsLimitPolicy.TERMINATE_OLDEST.selectSessionsToTerminate(
+                userSessions, 5)), asSet("s1", "s2"));
+    }
+
+    @Test
+    public void testNonTerminatingPoliciesSelectNoSessions() {
+
+        List<UserSession> userSessions = Arrays.asList(
+                createSession("s1", "1000", "1000"),
+                createSession("s2", "2000", "2000"));
+
+        assertFalse(ActiveSessionsLimitPolicy.DENY.isTerminating());
+        assertFalse(ActiveSessionsLimitPolicy.PROMPT.isTerminating());
+        assertTrue(ActiveSessionsLimitPolicy.DENY.selectSessionsToTerminate(userSessions, 1).isEmpty());
+        assertTrue(ActiveSessionsLimitPolicy.PROMPT.selectSessionsToTerminate(userSessions, 1).isEmpty());
+    }
+
+    @Test
+    public void testTerminatingPolicies() {
+
+        assertTrue(ActiveSessionsLimitPolicy.TERMINATE_OLDEST.isTerminating());
+        assertTrue(ActiveSessionsLimitPolicy.TERMINATE_LEAST_RECENTLY_USED.isTerminating());
+        assertNull(ActiveSessionsLimitPolicy.fromValue(""));
+    }
+
+    private static UserSession createSession(String sessionId, String loginTime, String lastAccessTime) {
+
+        UserSession userSession = new UserSession();
+        userSession.setSessionId(sessionId);
+        userSession.setLoginTime(loginTime);
+        userSession.setLastAccessTime(lastAccessTime);
+        return userSession;
+    }
+
+    private static Set<String> getSessionIds(List<UserSession> userSessions) {
+
+        return userSessions.stream().map(UserSession::getSessionId).collect(Collectors.toSet());
+    }
+
+    private static Set<String> asSet(String... values) {
+
+        return Arrays.stream(values).collect(Collectors.toSet());
+    }
+}
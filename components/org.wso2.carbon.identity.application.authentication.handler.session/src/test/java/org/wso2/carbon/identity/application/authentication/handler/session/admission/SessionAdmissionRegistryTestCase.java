@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authentication.handler.session.admission;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SessionAdmissionRegistryTestCase {
+
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    private final SessionAdmissionRegistry registry = SessionAdmissionRegistry.getInstance();
+    private final SessionAdmissionListener listener = new SessionAdmissionListener();
+
+    @Test
+    public void testConcurrentAdmissionsAreLimited() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "flow-1", 0, 2, TIMEOUT));
+        assertTrue(registry.tryReserve(userId, "flow-2", 0, 2, TIMEOUT));
+        // Both admissions are pending, so a third login at the same time is over the limit.
+        assertFalse(registry.tryReserve(userId, "flow-3", 0, 2, TIMEOUT));
+        assertEquals(registry.getReservationCount(userId), 2);
+    }
+
+    @Test
+    public void testFlowIsNotCountedAgainstItsOwnAdmission() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "flow-1", 0, 1, TIMEOUT));
+        assertTrue(registry.tryReserve(userId, "flow-1", 0, 1, TIMEOUT));
+        assertEquals(registry.getReservationCount(userId), 1);
+    }
+
+    @Test
+    public void testLoginAfterLogoutIsAdmitted() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "first-login", 0, 1, TIMEOUT));
+        listener.publishSessionCreation(null, mockContext("first-login"), null, null);
+        assertEquals(registry.getReservationCount(userId), 0);
+
+        // The session of the first login is terminated by a logout, within the timeout.
+        assertTrue(registry.tryReserve(userId, "second-login", 0, 1, TIMEOUT));
+        assertEquals(registry.getReservationCount(userId), 1);
+    }
+
+    @Test
+    public void testStoredSessionIsNotCountedTwice() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "first-device", 0, 2, TIMEOUT));
+        listener.publishSessionCreation(null, mockContext("first-device"), null, null);
+
+        // The session of the first device is in the store when the second device logs in, within the timeout.
+        assertTrue(registry.tryReserve(userId, "second-device", 1, 2, TIMEOUT));
+        assertEquals(registry.getReservationCount(userId), 1);
+
+        // The session of the second device is not created yet, so a third device is over the limit.
+        assertFalse(registry.tryReserve(userId, "third-device", 1, 2, TIMEOUT));
+        assertEquals(registry.getReservationCount(userId), 1);
+    }
+
+    @Test
+    public void testFailedFlowReleasesAdmission() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "failed-flow", 0, 1, TIMEOUT));
+        listener.publishAuthenticationFailure(null, mockContext("failed-flow"), null);
+        assertEquals(registry.getReservationCount(userId), 0);
+        assertTrue(registry.tryReserve(userId, "flow-2", 0, 1, TIMEOUT));
+    }
+
+    @Test
+    public void testSessionOfAnotherFlowDoesNotReleaseAdmission() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "flow-1", 0, 1, TIMEOUT));
+        listener.publishSessionCreation(null, mockContext("flow-without-admission"), null, null);
+        assertEquals(registry.getReservationCount(userId), 1);
+    }
+
+    @Test
+    public void testReleasedAdmissionIsNotCounted() {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "flow-1", 0, 1, TIMEOUT));
+        assertFalse(registry.tryReserve(userId, "flow-2", 0, 1, TIMEOUT));
+
+        registry.release(userId, "flow-1");
+        assertEquals(registry.getReservationCount(userId), 0);
+        assertTrue(registry.tryReserve(userId, "flow-2", 0, 1, TIMEOUT));
+    }
+
+    @Test
+    public void testExpiredAdmissionIsNotCounted() throws InterruptedException {
+
+        String userId = newUserId();
+        assertTrue(registry.tryReserve(userId, "flow-1", 0, 1, 1));
+        TimeUnit.MILLISECONDS.sleep(5);
+        assertTrue(registry.tryReserve(userId, "flow-2", 0, 1, TIMEOUT));
+        assertEquals(registry.getReservationCount(userId), 1);
+    }
+
+    private static AuthenticationContext mockContext(String flowId) {
+
+        AuthenticationContext context = mock(AuthenticationContext.class);
+        when(context.getContextIdentifier()).thenReturn(flowId);
+        return context;
+    }
+
+    private static String newUserId() {
+
+        return UUID.randomUUID().toString();
+    }
+}
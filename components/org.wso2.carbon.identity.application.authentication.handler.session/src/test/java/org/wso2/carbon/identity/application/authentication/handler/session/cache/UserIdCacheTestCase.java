@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authentication.handler.session.cache;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+
+import java.util.Collections;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class UserIdCacheTestCase {
+
+    private static final String TENANT_DOMAIN = "example.com";
+    private static final String USER_STORE_DOMAIN = "PRIMARY";
+    private static final String USERNAME = "alice";
+    private static final String USER_ID = "f5d2e0a4-2f2b-4a4e-9b63-1f1a7f3b2c11";
+
+    private final UserIdCache cache = UserIdCache.getInstance();
+
+    @BeforeMethod
+    public void setUp() {
+
+        cache.clear();
+    }
+
+    @Test
+    public void testCachedUserId() {
+
+        cache.putUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME, USER_ID,
+                cache.getInvalidationStamp(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME));
+        assertEquals(cache.getUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME), USER_ID);
+        assertNull(cache.getUserId(TENANT_DOMAIN, "SECONDARY", USERNAME));
+        assertNull(cache.getUserId("other.com", USER_STORE_DOMAIN, USERNAME));
+    }
+
+    @Test
+    public void testDeletedUserIsEvicted() {
+
+        cache.putUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME, USER_ID,
+                cache.getInvalidationStamp(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME));
+        cache.putUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, "bob", "bob-id",
+                cache.getInvalidationStamp(TENANT_DOMAIN, USER_STORE_DOMAIN, "bob"));
+
+        cache.onInvalidation(Collections.singletonList(new InvalidationEvent(InvalidationEvent.Type.USER_DELETED,
+                TENANT_DOMAIN, USER_STORE_DOMAIN + "/" + "Alice")));
+        assertNull(cache.getUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME));
+        assertEquals(cache.getUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, "bob"), "bob-id");
+    }
+
+    @Test
+    public void testCredentialUpdateDoesNotEvict() {
+
+        cache.putUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME, USER_ID,
+                cache.getInvalidationStamp(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME));
+        cache.onInvalidation(Collections.singletonList(new InvalidationEvent(
+                InvalidationEvent.Type.USER_CREDENTIAL, TENANT_DOMAIN, USERNAME)));
+        assertEquals(cache.getUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME), USER_ID);
+    }
+
+    @Test
+    public void testUserIdLoadedBeforeInvalidationIsNotCached() {
+
+        long invalidationStamp = cache.getInvalidationStamp(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME);
+        // The user is deleted while the userId is being loaded from the session store.
+        cache.onInvalidation(Collections.singletonList(new InvalidationEvent(InvalidationEvent.Type.USER_DELETED,
+                TENANT_DOMAIN, USERNAME)));
+        cache.putUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME, USER_ID, invalidationStamp);
+        assertNull(cache.getUserId(TENANT_DOMAIN, USER_STORE_DOMAIN, USERNAME));
+    }
+}
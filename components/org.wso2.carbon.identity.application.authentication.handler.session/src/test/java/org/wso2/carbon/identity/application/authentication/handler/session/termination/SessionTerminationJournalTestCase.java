@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.termination;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SessionTerminationJournalTestCase {
+
+    private Path directory;
+    private Path journalPath;
+    private final List<SessionTerminationJournal> openJournals = new ArrayList<>();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("session-termination-journal");
+        journalPath = directory.resolve("terminations.journal");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        openJournals.forEach(SessionTerminationJournal::close);
+        openJournals.clear();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testOpenCreatesMissingJournal() throws IOException {
+
+        Path nestedPath = directory.resolve("repository").resolve("data").resolve("terminations.journal");
+        assertTrue(open(nestedPath).isEmpty());
+        assertTrue(Files.exists(nestedPath));
+        assertEquals(Files.size(nestedPath), 0);
+    }
+
+    @Test
+    public void testOpenReplaysPendingTerminations() throws IOException {
+
+        SessionTerminationJournal journal = new SessionTerminationJournal(journalPath);
+        journal.open();
+        journal.appendPending(new PendingSessionTermination("user-1", "session-1"));
+        journal.appendPending(new PendingSessionTermination("user-2", "session-2"));
+        journal.appendPending(new PendingSessionTermination("user-1", "session-3"));
+        journal.appendCompleted("session-2");
+        journal.close();
+
+        List<PendingSessionTermination> pending = new ArrayList<>(open(journalPath));
+        assertEquals(pending.size(), 2);
+        assertEquals(pending.get(0).getUserId(), "user-1");
+        assertEquals(pending.get(0).getSessionId(), "session-1");
+        assertEquals(pending.get(1).getUserId(), "user-1");
+        assertEquals(pending.get(1).getSessionId(), "session-3");
+    }
+
+    @Test
+    public void testOpenCompactsJournal() throws IOException {
+
+        SessionTerminationJournal journal = new SessionTerminationJournal(journalPath);
+        journal.open();
+        journal.appendPending(new PendingSessionTermination("user-1", "session-1"));
+        journal.appendPending(new PendingSessionTermination("user-1", "session-2"));
+        journal.appendCompleted("session-1");
+        journal.close();
+
+        open(journalPath);
+        // Only the pending entries are kept, and the compacted copy replaces the journal.
+        assertEquals(readLines(), Collections.singletonList("P\tuser-1\tsession-2"));
+        assertFalse(Files.exists(directory.resolve("terminations.journal.tmp")));
+    }
+
+    @Test
+    public void testTruncateDiscardsEntries() throws IOException {
+
+        SessionTerminationJournal journal = new SessionTerminationJournal(journalPath);
+        journal.open();
+        journal.appendPending(new PendingSessionTermination("user-1", "session-1"));
+        journal.truncate();
+        assertEquals(Files.size(journalPath), 0);
+
+        // Entries appended after the truncation start at the beginning of the journal.
+        journal.appendPending(new PendingSessionTermination("user-2", "session-2"));
+        journal.close();
+        assertEquals(readLines(), Collections.singletonList("P\tuser-2\tsession-2"));
+
+        List<PendingSessionTermination> pending = new ArrayList<>(open(journalPath));
+        assertEquals(pending.size(), 1);
+        assertEquals(pending.get(0).getSessionId(), "session-2");
+    }
+
+    @Test
+    public void testMalformedEntriesAreIgnored() throws IOException {
+
+        Files.write(journalPath, Arrays.asList("P\tuser-1\tsession-1", "unknown", "C", "P\tuser-2\tsession-2",
+                "C\tsession-2", "P\tuser-3"), StandardCharsets.UTF_8);
+
+        List<PendingSessionTermination> pending = new ArrayList<>(open(journalPath));
+        assertEquals(pending.size(), 1);
+        assertEquals(pending.get(0).getSessionId(), "session-1");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testAppendToClosedJournalFails() throws IOException {
+
+        SessionTerminationJournal journal = new SessionTerminationJournal(journalPath);
+        journal.open();
+        journal.close();
+        journal.appendPending(new PendingSessionTermination("user-1", "session-1"));
+    }
+
+    private List<PendingSessionTermination> open(Path path) throws IOException {
+
+        SessionTerminationJournal journal = new SessionTerminationJournal(path);
+        openJournals.add(journal);
+        return new ArrayList<>(journal.open());
+    }
+
+    private List<String> readLines() throws IOException {
+
+        return Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+    }
+}
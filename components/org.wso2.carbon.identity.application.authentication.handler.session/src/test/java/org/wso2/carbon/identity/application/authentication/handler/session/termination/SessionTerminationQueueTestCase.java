@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authentication.handler.session.termination;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.UserSessionManagementService;
+import org.wso2.carbon.identity.application.authentication.handler.session.internal.ActiveSessionsLimitHandlerServiceHolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SessionTerminationQueueTestCase {
+
+    private final SessionTerminationQueue queue = SessionTerminationQueue.getInstance();
+    private Path directory;
+    private Path journalPath;
+    private UserSessionManagementService userSessionManagementService;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("session-termination-queue");
+        journalPath = directory.resolve("terminations.journal");
+        userSessionManagementService = mock(UserSessionManagementService.class);
+        ActiveSessionsLimitHandlerServiceHolder.getInstance()
+                .setUserSessionManagementService(userSessionManagementService);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        queue.stop();
+        ActiveSessionsLimitHandlerServiceHolder.getInstance().setUserSessionManagementService(null);
+        Files.deleteIfExists(journalPath);
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testQueueIsStartedOnFirstEnqueue() throws Exception {
+
+        queue.init(journalPath);
+        // Nothing is created on nodes which do not defer session terminations.
+        assertFalse(queue.isRunning());
+        assertFalse(Files.exists(journalPath));
+
+        when(userSessionManagementService.terminateSessionBySessionId("user-1", "session-1")).thenReturn(true);
+        assertTrue(queue.enqueue("user-1", "session-1"));
+        assertTrue(queue.isRunning());
+        waitUntilTerminated("session-1");
+        verify(userSessionManagementService).terminateSessionBySessionId("user-1", "session-1");
+        // Stopping waits for the completion to be recorded. No termination is pending, so the journal is truncated.
+        queue.stop();
+        assertEquals(Files.size(journalPath), 0);
+    }
+
+    @Test
+    public void testEnqueueWithoutJournalFails() {
+
+        assertFalse(queue.enqueue("user-1", "session-1"));
+        assertFalse(queue.isRunning());
+    }
+
+    @Test
+    public void testPendingTerminationsAreResumedOnInit() throws Exception {
+
+        Files.write(journalPath, Collections.singletonList("P\tuser-1\tsession-1"), StandardCharsets.UTF_8);
+        when(userSessionManagementService.terminateSessionBySessionId("user-1", "session-1")).thenReturn(true);
+
+        queue.init(journalPath);
+        assertTrue(queue.isRunning());
+        waitUntilTerminated("session-1");
+        verify(userSessionManagementService).terminateSessionBySessionId("user-1", "session-1");
+    }
+
+    @Test
+    public void testRuntimeFailureIsRetried() throws Exception {
+
+        when(userSessionManagementService.terminateSessionBySessionId("user-1", "session-1"))
+                .thenThrow(new IllegalStateException("data layer failure")).thenReturn(true);
+
+        queue.init(journalPath);
+        assertTrue(queue.enqueue("user-1", "session-1"));
+        assertTrue(queue.isRevoked("session-1"));
+        waitUntilTerminated("session-1");
+        verify(userSessionManagementService, times(2)).terminateSessionBySessionId("user-1", "session-1");
+    }
+
+    private void waitUntilTerminated(String sessionId) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (queue.isRevoked(sessionId) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(queue.isRevoked(sessionId));
+    }
+}
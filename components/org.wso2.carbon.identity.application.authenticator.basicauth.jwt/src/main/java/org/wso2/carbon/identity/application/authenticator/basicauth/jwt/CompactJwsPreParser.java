@@ -0,0 +1,321 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+
+/**
+ * Cheap structural pre-parser for compact JWS tokens.
+ * <p>
+ * Enforces the size limit and the three segment structure, then scans the decoded header and payload bytes for the
+ * few members needed to reject a token early: alg and kid of the header, and sub, iss, jti and exp of the payload.
+ * Other members are skipped without being materialized. The token is fully parsed only if it passes these checks.
+ */
+public class CompactJwsPreParser {
+
+    private static final String ALG = "alg";
+    private static final String KID = "kid";
+    private static final String SUB = "sub";
+    private static final String ISS = "iss";
+    private static final String JTI = "jti";
+    private static final String EXP = "exp";
+
+    private CompactJwsPreParser() {
+
+    }
+
+    /**
+     * Pre-parse the given compact JWS.
+     *
+     * @param token     compact JWS.
+     * @param maxLength maximum accepted length of the token.
+     * @return extracted header and claim values.
+     * @throws ParseException if the token is oversized or malformed.
+     */
+    public static PreParsedJws parse(String token, int maxLength) throws ParseException {
+
+        if (token.length() > maxLength) {
+            throw new ParseException("JWT exceeds the maximum length: " + maxLength, maxLength);
+        }
+        int firstDot = -1;
+        int secondDot = -1;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (firstDot < 0) {
+                    firstDot = i;
+                } else if (secondDot < 0) {
+                    secondDot = i;
+                } else {
+                    throw new ParseException("JWT has more than three segments.", i);
+                }
+            } else if (!isBase64UrlCharacter(c)) {
+                throw new ParseException("Invalid character in JWT.", i);
+            }
+        }
+        if (firstDot <= 0 || secondDot <= firstDot + 1 || secondDot == token.length() - 1) {
+            throw new ParseException("JWT is not a compact JWS with a header, payload and signature.", 0);
+        }
+
+        String[] header = new JsonMemberScanner(decode(token, 0, firstDot), ALG, KID).scan();
+        String[] claims = new JsonMemberScanner(decode(token, firstDot + 1, secondDot), SUB, ISS, JTI, EXP).scan();
+        Long expirationTime = null;
+        if (claims[3] != null) {
+            try {
+                expirationTime = (long) (Double.parseDouble(claims[3]) * 1000);
+            } catch (NumberFormatException e) {
+                throw new ParseException("Invalid exp claim in JWT.", 0);
+            }
+        }
+        return new PreParsedJws(header[0], header[1], claims[0], claims[1], claims[2], expirationTime);
+    }
+
+    private static byte[] decode(String token, int start, int end) throws ParseException {
+
+        byte[] segment = new byte[end - start];
+        for (int i = start; i < end; i++) {
+            segment[i - start] = (byte) token.charAt(i);
+        }
+        try {
+            return Base64.getUrlDecoder().decode(segment);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid base64url encoding in JWT.", start);
+        }
+    }
+
+    private static boolean isBase64UrlCharacter(char c) {
+
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+    }
+
+    /**
+     * Minimal scanner of a JSON object, extracting the string or number values of the requested top level members.
+     */
+    private static class JsonMemberScanner {
+
+        private final byte[] json;
+        private final String[] names;
+        private final String[] values;
+        private int position;
+
+        JsonMemberScanner(byte[] json, String... names) {
+
+            this.json = json;
+            this.names = names;
+            this.values = new String[names.length];
+        }
+
+        String[] scan() throws ParseException {
+
+            skipWhitespace();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+            } else {
+                while (true) {
+                    skipWhitespace();
+                    String name = readString();
+                    skipWhitespace();
+                    expect(':');
+                    skipWhitespace();
+                    int index = indexOf(name);
+                    if (index >= 0) {
+                        if (values[index] != null) {
+                            throw new ParseException("Duplicate member: " + name + " in JWT.", position);
+                        }
+                        values[index] = readScalar();
+                    } else {
+                        skipValue();
+                    }
+                    skipWhitespace();
+                    byte next = read();
+                    if (next == '}') {
+                        break;
+                    } else if (next != ',') {
+                        throw new ParseException("Expected ',' or '}' in JWT.", position);
+                    }
+                }
+            }
+            skipWhitespace();
+            if (position != json.length) {
+                throw new ParseException("Unexpected content after the JSON object in JWT.", position);
+            }
+            return values;
+        }
+
+        private int indexOf(String name) {
+
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String readScalar() throws ParseException {
+
+            if (peek() == '"') {
+                return readString();
+            }
+            int start = position;
+            while (position < json.length && isNumberCharacter(json[position])) {
+                position++;
+            }
+            if (start == position) {
+                throw new ParseException("Expected a string or number value in JWT.", position);
+            }
+            return new String(json, start, position - start, StandardCharsets.US_ASCII);
+        }
+
+        private String readString() throws ParseException {
+
+            expect('"');
+            int start = position;
+            boolean escaped = false;
+            while (true) {
+                byte b = read();
+                if (b == '"') {
+                    break;
+                } else if (b == '\\') {
+                    escaped = true;
+                    read();
+                }
+            }
+            if (!escaped) {
+                return new String(json, start, position - start - 1, StandardCharsets.UTF_8);
+            }
+            return unescape(new String(json, start, position - start - 1, StandardCharsets.UTF_8));
+        }
+
+        private String unescape(String value) throws ParseException {
+
+            StringBuilder builder = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                char escape = value.charAt(++i);
+                switch (escape) {
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'u':
+                        if (i + 4 >= value.length()) {
+                            throw new ParseException("Invalid unicode escape in JWT.", position);
+                        }
+                        try {
+                            builder.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                        } catch (NumberFormatException e) {
+                            throw new ParseException("Invalid unicode escape in JWT.", position);
+                        }
+                        i += 4;
+                        break;
+                    default:
+                        builder.append(escape);
+                }
+            }
+            return builder.toString();
+        }
+
+        private void skipValue() throws ParseException {
+
+            byte next = peek();
+            if (next == '"') {
+                readString();
+            } else if (next == '{' || next == '[') {
+                int depth = 0;
+                do {
+                    byte b = peek();
+                    if (b == '"') {
+                        readString();
+                        continue;
+                    }
+                    position++;
+                    if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            } else {
+                int start = position;
+                while (position < json.length && (isNumberCharacter(json[position])
+                        || (json[position] >= 'a' && json[position] <= 'z'))) {
+                    position++;
+                }
+                if (start == position) {
+                    throw new ParseException("Invalid value in JWT.", position);
+                }
+            }
+        }
+
+        private boolean isNumberCharacter(byte b) {
+
+            return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+        }
+
+        private void skipWhitespace() {
+
+            while (position < json.length && (json[position] == ' ' || json[position] == '\t'
+                    || json[position] == '\n' || json[position] == '\r')) {
+                position++;
+            }
+        }
+
+        private void expect(char expected) throws ParseException {
+
+            if (read() != expected) {
+                throw new ParseException("Expected '" + expected + "' in JWT.", position);
+            }
+        }
+
+        private byte peek() throws ParseException {
+
+            if (position >= json.length) {
+                throw new ParseException("Unexpected end of JSON in JWT.", position);
+            }
+            return json[position];
+        }
+
+        private byte read() throws ParseException {
+
+            byte b = peek();
+            position++;
+            return b;
+        }
+    }
+}
@@ -21,6 +21,7 @@ package org.wso2.carbon.identity.application.authenticator.basicauth.jwt;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
@@ -33,20 +34,41 @@ import org.wso2.carbon.identity.application.authentication.framework.context.Aut
 import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
 import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.cache.AuthJwtCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard.JwtVerificationGuard;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard.VerificationSourceResolver;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard.VerificationUnavailableException;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.hmac.HmacIssuerRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks.JwksKeyIndex;
 import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.internal
         .JWTBasicAuthenticatorServiceComponentDataHolder;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.MappedReplayJournal;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.PartitionedReplayDetector;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.ReplayClaimException;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlight;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlightException;
 import org.wso2.carbon.identity.application.common.model.User;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.utils.CarbonUtils;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -58,6 +80,17 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
     private static final Log log = LogFactory.getLog(JWTBasicAuthenticator.class);
 
     private static long DEFAULT_TIMESTAMP_SKEW = 300;
+    private static final int DEFAULT_REPLAY_JOURNAL_SLOTS = 262144;
+    private static final int DEFAULT_MAX_TOKEN_LENGTH = 8192;
+    private static final double DEFAULT_VERIFICATION_RATE_PER_SOURCE = 10;
+    private static final double DEFAULT_VERIFICATION_RATE_PER_ISSUER = 500;
+    private static final SingleFlight<String, X509Certificate> certificateLoads = new SingleFlight<>(
+            "JWTBasicAuthenticator.Certificates", BasicAuthenticatorConstants.COALESCED_LOAD_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS);
+
+    private volatile JwtVerificationGuard verificationGuard;
+    private volatile VerificationSourceResolver sourceResolver;
+    private volatile boolean verificationGuardInitialized;
 
     @Override
     public boolean canHandle(HttpServletRequest request) {
@@ -81,13 +114,60 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
             context.setProperties(authProperties);
         }
 
+        JwtVerificationGuard verificationGuard = getVerificationGuard();
+        String source = verificationGuard != null ? sourceResolver.resolve(request) : request.getRemoteAddr();
+        if (verificationGuard != null && StringUtils.isNotBlank(authToken)) {
+            verificationGuard.admit(source, authToken);
+        }
+        try {
+            authenticateToken(request, context, authToken, authProperties, verificationGuard, source);
+        } catch (AuthenticationFailedException e) {
+            if (verificationGuard != null && StringUtils.isNotBlank(authToken)) {
+                verificationGuard.recordRejection(authToken, e);
+            }
+            throw e;
+        }
+        if (verificationGuard != null) {
+            verificationGuard.recordSuccess(source);
+        }
+    }
+
+    private void authenticateToken(HttpServletRequest request, AuthenticationContext context, String authToken,
+                                   Map<String, Object> authProperties, JwtVerificationGuard verificationGuard,
+                                   String source) throws AuthenticationFailedException {
+
+        // Reject malformed, expired, replayed and unsupported tokens before parsing them and verifying the signature.
+        PreParsedJws preParsedJws = preParse(authToken);
+        validatePreParsedJws(preParsedJws);
         SignedJWT signedJWT = getSignedJWT(authToken);
         JWTClaimsSet claimsSet = getClaimSet(signedJWT);
 
         if (isValidClaimSet(claimsSet)) {
             String username = claimsSet.getSubject();
             User user = User.getUserFromUserName(username);
-            if (isValidSignature(signedJWT, user.getTenantDomain())) {
+            boolean validSignature;
+            Semaphore verificationPermit = verificationGuard != null
+                    ? verificationGuard.acquireVerification(source) : null;
+            try {
+                validSignature = isValidSignature(signedJWT, claimsSet.getIssuer(), user.getTenantDomain());
+            } finally {
+                if (verificationPermit != null) {
+                    verificationPermit.release();
+                }
+            }
+            if (validSignature) {
+                if (verificationGuard != null) {
+                    verificationGuard.admitVerifiedIssuer(claimsSet.getIssuer());
+                }
+                long replayExpiry = claimsSet.getExpirationTime().getTime()
+                        + TimeUnit.SECONDS.toMillis(getTimeStampSkew());
+                MappedReplayJournal replayJournal = getReplayJournal();
+                if (replayJournal != null && !replayJournal.claim(claimsSet.getJWTID(), replayExpiry)) {
+                    throw new AuthenticationFailedException("Invalid token : Possible replay attack.");
+                }
+                if (!claimAtReplayDetector(claimsSet.getJWTID(), replayExpiry)) {
+                    throw new AuthenticationFailedException("Invalid token : Possible replay attack.");
+                }
                 AuthJwtCache.getInstance().addToCache(claimsSet.getJWTID(), claimsSet.getJWTID());
                 authProperties.put("user-tenant-domain", user.getTenantDomain());
                 context.setSubject(AuthenticatedUser.createLocalAuthenticatedUserFromSubjectIdentifier(username));
@@ -113,6 +193,47 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
         return JWTBasicAuthenticatorConstants.AUTHENTICATOR_NAME;
     }
 
+    private PreParsedJws preParse(String jwtAssertion) throws AuthenticationFailedException {
+
+        if (StringUtils.isBlank(jwtAssertion)) {
+            throw new AuthenticationFailedException("No Valid JWT Assertion was found.");
+        }
+        try {
+            return CompactJwsPreParser.parse(jwtAssertion, getMaxTokenLength());
+        } catch (ParseException e) {
+            if (log.isDebugEnabled()) {
+                log.debug(e.getMessage());
+            }
+            throw new AuthenticationFailedException("Error while parsing the JWT.");
+        }
+    }
+
+    private void validatePreParsedJws(PreParsedJws preParsedJws) throws AuthenticationFailedException {
+
+        boolean supportedAlgorithm = StringUtils.isNotEmpty(preParsedJws.getAlgorithm())
+                && (preParsedJws.getAlgorithm().indexOf("RS") == 0 || (isHmacAlgorithm(preParsedJws.getAlgorithm())
+                && isHmacIssuer(preParsedJws.getIssuer())));
+        if (!supportedAlgorithm) {
+            throw new AuthenticationFailedException("Signature Algorithm not supported : "
+                    + preParsedJws.getAlgorithm());
+        }
+        if (StringUtils.isEmpty(preParsedJws.getSubject()) || StringUtils.isEmpty(preParsedJws.getIssuer())
+                || StringUtils.isEmpty(preParsedJws.getJwtId()) || preParsedJws.getExpirationTime() == null) {
+            throw new AuthenticationFailedException("Invalid token : Required fields are not present in JWT.");
+        }
+        checkExpirationTime(preParsedJws.getExpirationTime(), System.currentTimeMillis(), getTimeStampSkew());
+        if (isReplayed(preParsedJws.getJwtId())) {
+            throw new AuthenticationFailedException("Invalid token : Possible replay attack.");
+        }
+    }
+
+    private boolean isReplayed(String jwtId) {
+
+        MappedReplayJournal replayJournal = getReplayJournal();
+        return (replayJournal != null && replayJournal.contains(jwtId))
+                || AuthJwtCache.getInstance().getValueFromCache(jwtId) != null;
+    }
+
     private SignedJWT getSignedJWT(String jwtAssertion) throws AuthenticationFailedException {
 
         String errorMessage = "No Valid JWT Assertion was found.";
@@ -166,7 +287,7 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
             throw new AuthenticationFailedException("Invalid token : Required fields are not present in JWT.");
         }
 
-        if (AuthJwtCache.getInstance().getValueFromCache(claimsSet.getJWTID()) != null) {
+        if (isReplayed(claimsSet.getJWTID())) {
             throw new AuthenticationFailedException("Invalid token : Possible replay attack.");
         }
 
@@ -174,21 +295,68 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
                 getTimeStampSkew());
     }
 
-    private boolean isValidSignature(SignedJWT signedJWT, String tenantDomain) throws AuthenticationFailedException {
+    private boolean isValidSignature(SignedJWT signedJWT, String issuer, String tenantDomain)
+            throws AuthenticationFailedException {
 
+        if (isHmacAlgorithm(signedJWT.getHeader().getAlgorithm().getName())) {
+            return validateHmacSignature(signedJWT, issuer, tenantDomain);
+        }
+        JWSVerifier jwksVerifier = getJwksVerifier(signedJWT, tenantDomain);
+        if (jwksVerifier != null) {
+            return verifySignature(signedJWT, jwksVerifier);
+        }
         X509Certificate cert = getCertificate(tenantDomain);
         return validateSignature(signedJWT, cert);
     }
 
+    /**
+     * Load the keystore of the tenant, so that the signatures of the tenant can be validated without loading it.
+     *
+     * @param tenantDomain tenant domain
+     * @throws AuthenticationFailedException if the certificate of the tenant could not be loaded
+     */
+    public void preloadCertificate(String tenantDomain) throws AuthenticationFailedException {
+
+        getCertificate(tenantDomain);
+    }
+
+    /**
+     * Get the primary certificate of the tenant. Concurrent calls for a tenant share one keystore load, so that a
+     * cold keystore is loaded once instead of once per request.
+     *
+     * @param tenantDomain tenant domain
+     * @return the primary certificate of the tenant
+     * @throws AuthenticationFailedException if the certificate of the tenant could not be loaded
+     */
     private X509Certificate getCertificate(String tenantDomain) throws AuthenticationFailedException {
 
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        long phaseStart = instrumentation.startPhase(LoginPhase.KEYSTORE_ACCESS);
+        try {
+            return certificateLoads.execute(tenantDomain, () -> loadCertificate(tenantDomain));
+        } catch (SingleFlightException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error while waiting for the certificate of the tenant domain: " + tenantDomain, e);
+            }
+            throw new VerificationUnavailableException(e.getMessage(), e);
+        } finally {
+            instrumentation.endPhase(LoginPhase.KEYSTORE_ACCESS, phaseStart);
+        }
+    }
+
+    private X509Certificate loadCertificate(String tenantDomain) throws AuthenticationFailedException {
+
         int tenantId;
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        long phaseStart = instrumentation.startPhase(LoginPhase.TENANT_RESOLUTION);
         try {
             tenantId = JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getRealmService()
                     .getTenantManager().getTenantId(tenantDomain);
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             String errorMsg = "Error while getting the tenant ID from the tenant domain : " + tenantDomain;
-            throw new AuthenticationFailedException(errorMsg);
+            throw new VerificationUnavailableException(errorMsg);
+        } finally {
+            instrumentation.endPhase(LoginPhase.TENANT_RESOLUTION, phaseStart);
         }
 
         // get an instance of the corresponding Key Store Manager instance
@@ -208,16 +376,99 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
             if (log.isDebugEnabled()) {
                 log.debug(errorMsg, e);
             }
-            throw new AuthenticationFailedException(errorMsg);
+            throw new VerificationUnavailableException(errorMsg);
         } catch (Exception e) {
             String errorMsg = "Unable to load key store manager for the tenant domain: " + tenantDomain;
             if (log.isDebugEnabled()) {
                 log.debug(errorMsg, e);
             }
-            throw new AuthenticationFailedException(errorMsg);
+            throw new VerificationUnavailableException(errorMsg);
+        }
+    }
+
+    /**
+     * Get the verifier of the key identified by the kid of the JWT from the JWKS published for the tenant.
+     *
+     * @return the verifier, or null if the kid is not found, in which case the tenant keystore is used.
+     */
+    private JWSVerifier getJwksVerifier(SignedJWT signedJWT, String tenantDomain) {
+
+        JwksKeyIndex jwksKeyIndex = JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getJwksKeyIndex();
+        String keyId = signedJWT.getHeader().getKeyID();
+        if (jwksKeyIndex == null || keyId == null || signedJWT.getHeader().getAlgorithm().getName()
+                .indexOf("RS") != 0) {
+            return null;
+        }
+        JWSVerifier verifier = jwksKeyIndex.getVerifier(tenantDomain, keyId);
+        if (verifier == null && log.isDebugEnabled()) {
+            log.debug("No JWKS key found for kid: " + keyId + " of tenant: " + tenantDomain
+                    + ". Using the tenant keystore.");
+        }
+        return verifier;
+    }
+
+    private boolean isHmacAlgorithm(String alg) {
+
+        return alg != null && alg.indexOf("HS") == 0;
+    }
+
+    /**
+     * Check whether the issuer is a trusted HMAC issuer. HMAC signed tokens are accepted only if this is enabled for
+     * the authenticator.
+     */
+    /**
+     * Claim the jti at the replay detector of the cluster, if one is bound.
+     *
+     * @return false if the jti was already claimed in the cluster.
+     * @throws VerificationUnavailableException if the member owning the jti cannot be reached, unless the
+     *                                          authenticator is configured to claim it locally instead.
+     */
+    private boolean claimAtReplayDetector(String jwtId, long replayExpiry) throws AuthenticationFailedException {
+
+        PartitionedReplayDetector replayDetector =
+                JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getReplayDetector();
+        if (replayDetector == null) {
+            return true;
+        }
+        Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
+        boolean failOpen = parameterMap != null && Boolean.parseBoolean(parameterMap.get(
+                JWTBasicAuthenticatorConstants.REPLAY_CLAIM_FAIL_OPEN));
+        try {
+            return replayDetector.claim(jwtId, replayExpiry, failOpen);
+        } catch (ReplayClaimException e) {
+            throw new VerificationUnavailableException("Unable to verify that the token is not replayed.", e);
         }
     }
 
+    private boolean isHmacIssuer(String issuer) {
+
+        HmacIssuerRegistry hmacIssuerRegistry = getHmacIssuerRegistry();
+        return hmacIssuerRegistry != null && hmacIssuerRegistry.isHmacIssuer(issuer);
+    }
+
+    private HmacIssuerRegistry getHmacIssuerRegistry() {
+
+        Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
+        if (parameterMap == null || !Boolean.parseBoolean(parameterMap.get(JWTBasicAuthenticatorConstants
+                .ENABLE_HMAC_ISSUERS))) {
+            return null;
+        }
+        return JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getHmacIssuerRegistry();
+    }
+
+    private boolean validateHmacSignature(SignedJWT signedJWT, String issuer, String tenantDomain)
+            throws AuthenticationFailedException {
+
+        HmacIssuerRegistry hmacIssuerRegistry = getHmacIssuerRegistry();
+        MACVerifier verifier = hmacIssuerRegistry != null ? hmacIssuerRegistry.getVerifier(issuer, tenantDomain)
+                : null;
+        if (verifier == null) {
+            throw new AuthenticationFailedException("Signature Algorithm not supported : "
+                    + signedJWT.getHeader().getAlgorithm().getName() + " for the issuer : " + issuer);
+        }
+        return verifySignature(signedJWT, verifier);
+    }
+
     private String generateKSNameFromDomainName(String tenantDomain) {
 
         String ksName = tenantDomain.trim().replace(JWTBasicAuthenticatorConstants.FULLSTOP_DELIMITER,
@@ -256,6 +507,144 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
             }
         }
 
+        return verifySignature(signedJWT, verifier);
+    }
+
+    /**
+     * Get the verification guard, creating it on first use if it is enabled for the authenticator.
+     *
+     * @return the verification guard, or null if it is disabled.
+     */
+    private JwtVerificationGuard getVerificationGuard() {
+
+        if (verificationGuardInitialized) {
+            return verificationGuard;
+        }
+        synchronized (this) {
+            if (!verificationGuardInitialized) {
+                Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
+                if (parameterMap != null && Boolean.parseBoolean(parameterMap.get(JWTBasicAuthenticatorConstants
+                        .ENABLE_VERIFICATION_GUARD))) {
+                    sourceResolver = new VerificationSourceResolver(parameterMap.get(JWTBasicAuthenticatorConstants
+                            .VERIFICATION_SOURCE_HEADER), getListParameter(parameterMap,
+                            JWTBasicAuthenticatorConstants.TRUSTED_PROXIES));
+                    int maxConcurrentVerifications = (int) getNumericParameter(parameterMap,
+                            JWTBasicAuthenticatorConstants.MAX_CONCURRENT_VERIFICATIONS,
+                            Runtime.getRuntime().availableProcessors() * 2);
+                    int reservedVerifications = (int) getNumericParameter(parameterMap,
+                            JWTBasicAuthenticatorConstants.RESERVED_VERIFICATIONS,
+                            Math.max(1, maxConcurrentVerifications / 4));
+                    try {
+                        verificationGuard = new JwtVerificationGuard(
+                                getNumericParameter(parameterMap, JWTBasicAuthenticatorConstants
+                                        .VERIFICATION_RATE_PER_SOURCE, DEFAULT_VERIFICATION_RATE_PER_SOURCE),
+                                getNumericParameter(parameterMap, JWTBasicAuthenticatorConstants
+                                        .VERIFICATION_RATE_PER_ISSUER, DEFAULT_VERIFICATION_RATE_PER_ISSUER),
+                                maxConcurrentVerifications, reservedVerifications);
+                    } catch (IllegalArgumentException e) {
+                        log.error("Invalid JWT verification guard configuration. Token logins are not guarded.", e);
+                    }
+                }
+                verificationGuardInitialized = true;
+            }
+        }
+        return verificationGuard;
+    }
+
+    private List<String> getListParameter(Map<String, String> parameterMap, String parameterName) {
+
+        List<String> values = new ArrayList<>();
+        String value = parameterMap.get(parameterName);
+        if (StringUtils.isNotBlank(value)) {
+            for (String item : value.split(",")) {
+                if (StringUtils.isNotBlank(item)) {
+                    values.add(item.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    private double getNumericParameter(Map<String, String> parameterMap, String parameterName,
+                                       double defaultValue) {
+
+        String value = parameterMap.get(parameterName);
+        if (StringUtils.isNotBlank(value)) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                log.warn("Failed to parse configured '" + parameterName + "' value: " + value
+                        + ". Picking the default value: " + defaultValue);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Get the persistent replay journal, opening it on first use if it is enabled for the authenticator.
+     *
+     * @return the replay journal, or null if it is disabled or could not be opened.
+     */
+    private MappedReplayJournal getReplayJournal() {
+
+        JWTBasicAuthenticatorServiceComponentDataHolder dataHolder =
+                JWTBasicAuthenticatorServiceComponentDataHolder.getInstance();
+        if (dataHolder.isReplayJournalInitialized()) {
+            return dataHolder.getReplayJournal();
+        }
+        synchronized (dataHolder) {
+            if (!dataHolder.isReplayJournalInitialized()) {
+                Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
+                if (parameterMap != null && Boolean.parseBoolean(parameterMap.get(JWTBasicAuthenticatorConstants
+                        .ENABLE_REPLAY_JOURNAL))) {
+                    int slotCount = DEFAULT_REPLAY_JOURNAL_SLOTS;
+                    String slotCountValue = parameterMap.get(JWTBasicAuthenticatorConstants.REPLAY_JOURNAL_SLOTS);
+                    if (StringUtils.isNotBlank(slotCountValue)) {
+                        try {
+                            slotCount = Integer.parseInt(slotCountValue);
+                        } catch (NumberFormatException e) {
+                            log.warn("Failed to parse configured 'ReplayJournalSlots' value: " + slotCountValue
+                                    + ". Picking the default value: " + DEFAULT_REPLAY_JOURNAL_SLOTS);
+                        }
+                    }
+                    Path journalPath = Paths.get(CarbonUtils.getCarbonHome(), "repository", "data",
+                            JWTBasicAuthenticatorConstants.REPLAY_JOURNAL_FILE);
+                    try {
+                        dataHolder.setReplayJournal(MappedReplayJournal.open(journalPath, slotCount));
+                    } catch (IOException | IllegalArgumentException e) {
+                        log.error("Error while opening the JWT replay journal: " + journalPath + ". Replays are "
+                                + "only detected in memory.", e);
+                    }
+                }
+                dataHolder.setReplayJournalInitialized(true);
+            }
+        }
+        return dataHolder.getReplayJournal();
+    }
+
+    private int getMaxTokenLength() {
+
+        if (getAuthenticatorConfig().getParameterMap() != null) {
+            String maxTokenLengthValue = getAuthenticatorConfig().getParameterMap().get(JWTBasicAuthenticatorConstants
+                    .MAX_TOKEN_LENGTH);
+            if (StringUtils.isNotBlank(maxTokenLengthValue)) {
+                try {
+                    return Integer.parseInt(maxTokenLengthValue);
+                } catch (NumberFormatException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Failed to parse configured 'MaxTokenLength' value: " + maxTokenLengthValue
+                                + " to an integer value. Picking the default value: " + DEFAULT_MAX_TOKEN_LENGTH);
+                    }
+                }
+            }
+        }
+        return DEFAULT_MAX_TOKEN_LENGTH;
+    }
+
+    private boolean verifySignature(SignedJWT signedJWT, JWSVerifier verifier) throws AuthenticationFailedException {
+
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        long phaseStart = instrumentation.startPhase(LoginPhase.SIGNATURE_VERIFY);
         try {
             return signedJWT.verify(verifier);
         } catch (JOSEException e) {
@@ -264,6 +653,8 @@ public class JWTBasicAuthenticator extends BasicAuthenticator {
                 log.debug(errorMsg, e);
             }
             throw new AuthenticationFailedException(errorMsg);
+        } finally {
+            instrumentation.endPhase(LoginPhase.SIGNATURE_VERIFY, phaseStart);
         }
     }
 
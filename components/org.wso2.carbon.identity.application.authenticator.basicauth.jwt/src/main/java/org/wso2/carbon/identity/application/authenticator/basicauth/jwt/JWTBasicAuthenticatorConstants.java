@@ -32,6 +32,21 @@ public class JWTBasicAuthenticatorConstants {
     public static final String AUTH_TOKEN = "AuthToken";
 
     public static final String TIMESTAMP_SKEW = "TimestampSkew";
+    public static final String MAX_TOKEN_LENGTH = "MaxTokenLength";
+    public static final String ENABLE_HMAC_ISSUERS = "EnableHmacIssuers";
+    public static final String HMAC_ISSUERS_CONFIG_FILE = "jwt-basic-hmac-issuers.properties";
+    public static final String JWKS_DIRECTORY = "jwks";
+    public static final String ENABLE_VERIFICATION_GUARD = "EnableVerificationGuard";
+    public static final String VERIFICATION_RATE_PER_SOURCE = "VerificationRatePerSource";
+    public static final String VERIFICATION_RATE_PER_ISSUER = "VerificationRatePerIssuer";
+    public static final String MAX_CONCURRENT_VERIFICATIONS = "MaxConcurrentVerifications";
+    public static final String RESERVED_VERIFICATIONS = "ReservedVerifications";
+    public static final String VERIFICATION_SOURCE_HEADER = "VerificationSourceHeader";
+    public static final String TRUSTED_PROXIES = "TrustedProxies";
+    public static final String ENABLE_REPLAY_JOURNAL = "EnableReplayJournal";
+    public static final String REPLAY_JOURNAL_SLOTS = "ReplayJournalSlots";
+    public static final String REPLAY_JOURNAL_FILE = "jwt-basic-replay.journal";
+    public static final String REPLAY_CLAIM_FAIL_OPEN = "ReplayClaimFailOpen";
 
     private JWTBasicAuthenticatorConstants() {
     }
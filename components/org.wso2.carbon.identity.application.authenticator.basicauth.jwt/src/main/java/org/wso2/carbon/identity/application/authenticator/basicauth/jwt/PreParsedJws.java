@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt;
+
+/**
+ * Header and claim values of a compact JWS extracted by the {@link CompactJwsPreParser}, before the token is parsed
+ * and its signature verified.
+ */
+public class PreParsedJws {
+
+    private final String algorithm;
+    private final String keyId;
+    private final String subject;
+    private final String issuer;
+    private final String jwtId;
+    private final Long expirationTime;
+
+    PreParsedJws(String algorithm, String keyId, String subject, String issuer, String jwtId, Long expirationTime) {
+
+        this.algorithm = algorithm;
+        this.keyId = keyId;
+        this.subject = subject;
+        this.issuer = issuer;
+        this.jwtId = jwtId;
+        this.expirationTime = expirationTime;
+    }
+
+    public String getAlgorithm() {
+
+        return algorithm;
+    }
+
+    public String getKeyId() {
+
+        return keyId;
+    }
+
+    public String getSubject() {
+
+        return subject;
+    }
+
+    public String getIssuer() {
+
+        return issuer;
+    }
+
+    public String getJwtId() {
+
+        return jwtId;
+    }
+
+    /**
+     * @return expiration time in milliseconds, or null if the token has no exp claim.
+     */
+    public Long getExpirationTime() {
+
+        return expirationTime;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the CPU spent on validating JWT login tokens.
+ * <p>
+ * Token logins are admitted in layers, from the cheapest check to the most expensive work:
+ * <ul>
+ * <li>tokens rejected recently are rejected again without being parsed,</li>
+ * <li>each source has a rate budget, enforced with a token bucket,</li>
+ * <li>the number of concurrent signature verifications is capped. Part of the capacity is reserved for sources
+ * which recently logged in successfully, so that legitimate logins keep going while the node is under abuse.</li>
+ * </ul>
+ * Each issuer also has a rate budget, which is charged only once the signature of the token is verified, so that
+ * forged tokens naming an issuer cannot exhaust the budget of the issuer.
+ */
+public class JwtVerificationGuard {
+
+    private static final Log log = LogFactory.getLog(JwtVerificationGuard.class);
+
+    private static final long REJECTION_TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long TRUSTED_SOURCE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long PERMIT_TIMEOUT_MILLIS = 50;
+    private static final int MAX_TRACKED_ENTRIES = 100000;
+    // Shared by the sources which are not tracked individually once the limit is reached.
+    private static final String OVERFLOW_SOURCE = "";
+
+    private final double sourceRate;
+    private final double issuerRate;
+    private final ConcurrentMap<String, TokenBucket> sourceBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TokenBucket> issuerBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Long> rejectedTokens = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> trustedSources = new ConcurrentHashMap<>();
+    private final Semaphore sharedVerifications;
+    private final Semaphore reservedVerifications;
+    private final AtomicLong nextPurgeTime = new AtomicLong();
+
+    /**
+     * @param sourceRate                 token logins per second allowed for a source.
+     * @param issuerRate                 token logins per second allowed for an issuer.
+     * @param maxConcurrentVerifications maximum number of concurrent signature verifications.
+     * @param reservedVerifications      number of the concurrent verifications reserved for trusted sources.
+     */
+    public JwtVerificationGuard(double sourceRate, double issuerRate, int maxConcurrentVerifications,
+                                int reservedVerifications) {
+
+        if (sourceRate <= 0 || issuerRate <= 0 || maxConcurrentVerifications <= 0 || reservedVerifications < 0
+                || reservedVerifications >= maxConcurrentVerifications) {
+            throw new IllegalArgumentException("Invalid JWT verification guard configuration.");
+        }
+        this.sourceRate = sourceRate;
+        this.issuerRate = issuerRate;
+        this.sharedVerifications = new Semaphore(maxConcurrentVerifications - reservedVerifications);
+        this.reservedVerifications = new Semaphore(reservedVerifications);
+    }
+
+    /**
+     * Admit a token login from the given source, before the token is parsed.
+     *
+     * @param source source of the request.
+     * @param token  the token.
+     * @throws VerificationThrottledException if the token was rejected recently, or the source exceeded its budget.
+     */
+    public void admit(String source, String token) throws VerificationThrottledException {
+
+        long now = System.currentTimeMillis();
+        purge(now);
+        Long rejectionExpiry = rejectedTokens.get(fingerprint(token));
+        if (rejectionExpiry != null && rejectionExpiry > now) {
+            throw new VerificationThrottledException("Invalid token : Token was rejected recently.");
+        }
+        if (!getBucket(sourceBuckets, source, sourceRate).tryConsume()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token login rate budget exceeded for source: " + source);
+            }
+            throw new VerificationThrottledException("Too many token login attempts.");
+        }
+    }
+
+    /**
+     * Admit a token login of the given issuer, once the signature of the token is verified.
+     *
+     * @param issuer verified iss claim of the token.
+     * @throws VerificationThrottledException if the issuer exceeded its budget.
+     */
+    public void admitVerifiedIssuer(String issuer) throws VerificationThrottledException {
+
+        if (!getBucket(issuerBuckets, issuer, issuerRate).tryConsume()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Token login rate budget exceeded for issuer: " + issuer);
+            }
+            throw new VerificationThrottledException("Too many token login attempts.");
+        }
+    }
+
+    /**
+     * Acquire a permit to verify a signature. The returned permit must be released once the verification completes.
+     *
+     * @param source source of the request.
+     * @return the acquired semaphore, to be released after the verification.
+     * @throws VerificationThrottledException if no permit is available.
+     */
+    public Semaphore acquireVerification(String source) throws VerificationThrottledException {
+
+        try {
+            if (sharedVerifications.tryAcquire(PERMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                return sharedVerifications;
+            }
+            if (isTrusted(source) && reservedVerifications.tryAcquire()) {
+                return reservedVerifications;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new VerificationThrottledException("Too many concurrent token logins.");
+    }
+
+    public void recordSuccess(String source) {
+
+        if (trustedSources.size() < MAX_TRACKED_ENTRIES || trustedSources.containsKey(source)) {
+            trustedSources.put(source, System.currentTimeMillis() + TRUSTED_SOURCE_TTL_MILLIS);
+        }
+    }
+
+    /**
+     * Remember the token as rejected, so that it is rejected again without being validated. Throttled logins and
+     * transient failures are not remembered, since they do not say anything about the token.
+     *
+     * @param token the token.
+     * @param error error the token login failed with.
+     */
+    public void recordRejection(String token, AuthenticationFailedException error) {
+
+        if (error instanceof VerificationThrottledException || error instanceof VerificationUnavailableException) {
+            return;
+        }
+        if (rejectedTokens.size() < MAX_TRACKED_ENTRIES) {
+            rejectedTokens.put(fingerprint(token), System.currentTimeMillis() + REJECTION_TTL_MILLIS);
+        }
+    }
+
+    private boolean isTrusted(String source) {
+
+        Long expiry = trustedSources.get(source);
+        return expiry != null && expiry > System.currentTimeMillis();
+    }
+
+    private TokenBucket getBucket(ConcurrentMap<String, TokenBucket> buckets, String key, double rate) {
+
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= MAX_TRACKED_ENTRIES) {
+            key = OVERFLOW_SOURCE;
+        }
+        return buckets.computeIfAbsent(key, k -> new TokenBucket(rate));
+    }
+
+    private void purge(long now) {
+
+        long purgeTime = nextPurgeTime.get();
+        if (now < purgeTime || !nextPurgeTime.compareAndSet(purgeTime, now + PURGE_INTERVAL_MILLIS)) {
+            return;
+        }
+        rejectedTokens.values().removeIf(expiry -> expiry <= now);
+        trustedSources.values().removeIf(expiry -> expiry <= now);
+        // A full bucket behaves the same as a new one, so it can be dropped.
+        sourceBuckets.values().removeIf(TokenBucket::isFull);
+        issuerBuckets.values().removeIf(TokenBucket::isFull);
+    }
+
+    private static long fingerprint(String token) {
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+        long fingerprint = 0;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = (fingerprint << 8) | (digest[i] & 0xFF);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Token bucket refilled at a fixed rate, allowing bursts of up to twice the rate.
+     */
+    private static class TokenBucket {
+
+        private final double ratePerNano;
+        private final double capacity;
+        private double tokens;
+        private long lastRefillTime;
+
+        TokenBucket(double ratePerSecond) {
+
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, ratePerSecond * 2);
+            this.tokens = capacity;
+            this.lastRefillTime = System.nanoTime();
+        }
+
+        synchronized boolean tryConsume() {
+
+            refill();
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean isFull() {
+
+            refill();
+            return tokens >= capacity;
+        }
+
+        private void refill() {
+
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillTime) * ratePerNano);
+            lastRefillTime = now;
+        }
+    }
+}
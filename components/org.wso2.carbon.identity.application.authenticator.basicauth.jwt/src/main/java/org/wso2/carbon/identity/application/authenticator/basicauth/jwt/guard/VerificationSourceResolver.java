@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Resolves the source of a token login, on which the rate budget of the {@link JwtVerificationGuard} is keyed.
+ * <p>
+ * By default the source is the remote address of the request. Behind a load balancer or a reverse proxy, the remote
+ * address is the proxy, so that all the clients would share one budget. If a forwarding header is configured, and the
+ * request comes from one of the trusted proxies, the header is read from right to left and the first address which
+ * is not a trusted proxy is the source. The header is ignored for requests which do not come from a trusted proxy,
+ * since any client can set it.
+ */
+public class VerificationSourceResolver {
+
+    private final String forwardedForHeader;
+    private final Set<String> trustedProxies;
+
+    /**
+     * @param forwardedForHeader name of the header listing the forwarded addresses, such as X-Forwarded-For, or null
+     *                           to use the remote address.
+     * @param trustedProxies     addresses of the proxies trusted to set the header.
+     */
+    public VerificationSourceResolver(String forwardedForHeader, Collection<String> trustedProxies) {
+
+        this.forwardedForHeader = StringUtils.isNotBlank(forwardedForHeader) && !trustedProxies.isEmpty()
+                ? forwardedForHeader.trim() : null;
+        this.trustedProxies = Collections.unmodifiableSet(new HashSet<>(trustedProxies));
+    }
+
+    /**
+     * Resolve the source of the given request.
+     *
+     * @param request token login request.
+     * @return source of the request.
+     */
+    public String resolve(HttpServletRequest request) {
+
+        if (forwardedForHeader == null || !trustedProxies.contains(request.getRemoteAddr())) {
+            return request.getRemoteAddr();
+        }
+        StringBuilder forwardedFor = new StringBuilder();
+        Enumeration<String> headers = request.getHeaders(forwardedForHeader);
+        while (headers != null && headers.hasMoreElements()) {
+            if (forwardedFor.length() > 0) {
+                forwardedFor.append(',');
+            }
+            forwardedFor.append(headers.nextElement());
+        }
+        return resolve(request.getRemoteAddr(), forwardedFor.toString());
+    }
+
+    /**
+     * Resolve the source of a request, from its remote address and the value of the forwarding header.
+     *
+     * @param remoteAddress remote address of the request.
+     * @param forwardedFor  comma separated forwarded addresses, from the client to the last proxy.
+     * @return source of the request.
+     */
+    public String resolve(String remoteAddress, String forwardedFor) {
+
+        if (forwardedForHeader == null || !trustedProxies.contains(remoteAddress)
+                || StringUtils.isBlank(forwardedFor)) {
+            return remoteAddress;
+        }
+        String source = remoteAddress;
+        String[] addresses = forwardedFor.split(",");
+        for (int i = addresses.length - 1; i >= 0; i--) {
+            String address = addresses[i].trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            source = address;
+            if (!trustedProxies.contains(address)) {
+                break;
+            }
+        }
+        return source;
+    }
+}
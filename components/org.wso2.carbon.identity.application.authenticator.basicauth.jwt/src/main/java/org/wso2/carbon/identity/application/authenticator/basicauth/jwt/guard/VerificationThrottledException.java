@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard;
+
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+
+/**
+ * Thrown when a token login is rejected by the {@link JwtVerificationGuard} without the token being validated.
+ */
+public class VerificationThrottledException extends AuthenticationFailedException {
+
+    private static final long serialVersionUID = -2231436297003964720L;
+
+    public VerificationThrottledException(String message) {
+
+        super(message);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.hmac;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.crypto.MACVerifier;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.securevault.SecretResolver;
+import org.wso2.securevault.SecretResolverFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Trusted internal token issuers which sign their tokens with a shared HMAC secret.
+ * <p>
+ * Issuers are read from a properties file of the following form, where the secrets may be protected with the secure
+ * vault:
+ * <pre>
+ * HmacIssuer.1.Name=https://portal.example.com
+ * HmacIssuer.1.Secret=...
+ * HmacIssuer.1.TenantDomains=carbon.super
+ * </pre>
+ * TenantDomains is mandatory, and lists the tenants of the users the issuer may authenticate. An issuer trusted for
+ * all the tenants must say so explicitly with {@code *}. Issuers without TenantDomains are skipped. A verifier is
+ * created once per issuer when the file is loaded.
+ */
+public class HmacIssuerRegistry {
+
+    private static final Log log = LogFactory.getLog(HmacIssuerRegistry.class);
+
+    private static final String ISSUER_PREFIX = "HmacIssuer.";
+    private static final String NAME = ".Name";
+    private static final String SECRET = ".Secret";
+    private static final String TENANT_DOMAINS = ".TenantDomains";
+    private static final String ALL_TENANT_DOMAINS = "*";
+
+    private final Map<String, HmacIssuer> issuers;
+
+    private HmacIssuerRegistry(Map<String, HmacIssuer> issuers) {
+
+        this.issuers = Collections.unmodifiableMap(issuers);
+    }
+
+    /**
+     * Load the issuers from the given properties file. Invalid issuer entries are logged and skipped.
+     *
+     * @param path path of the properties file.
+     * @return registry of the issuers, which is empty if the file does not exist.
+     * @throws IOException if the file cannot be read.
+     */
+    public static HmacIssuerRegistry load(Path path) throws IOException {
+
+        Map<String, HmacIssuer> issuers = new HashMap<>();
+        if (!Files.exists(path)) {
+            return new HmacIssuerRegistry(issuers);
+        }
+
+        Properties properties = new Properties();
+        try (Reader in = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        SecretResolver secretResolver = SecretResolverFactory.create(properties);
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(ISSUER_PREFIX) || !key.endsWith(NAME)) {
+                continue;
+            }
+            String prefix = key.substring(0, key.length() - NAME.length());
+            String name = properties.getProperty(key).trim();
+            String secret = resolveSecret(properties, secretResolver, prefix + SECRET);
+            if (StringUtils.isBlank(name) || StringUtils.isBlank(secret)) {
+                log.warn("Skipping HMAC issuer: " + prefix + " without a name or a secret in: " + path);
+                continue;
+            }
+            Set<String> tenantDomains = new HashSet<>();
+            String tenantDomainsValue = properties.getProperty(prefix + TENANT_DOMAINS);
+            if (tenantDomainsValue != null) {
+                for (String tenantDomain : tenantDomainsValue.split(",")) {
+                    if (StringUtils.isNotBlank(tenantDomain)) {
+                        tenantDomains.add(tenantDomain.trim());
+                    }
+                }
+            }
+            if (tenantDomains.isEmpty()) {
+                log.warn("Skipping HMAC issuer: " + name + " without TenantDomains in: " + path + ". Use '"
+                        + ALL_TENANT_DOMAINS + "' to trust the issuer for all the tenants.");
+                continue;
+            }
+            try {
+                issuers.put(name, new HmacIssuer(new MACVerifier(secret.getBytes(StandardCharsets.UTF_8)),
+                        tenantDomains));
+            } catch (JOSEException e) {
+                log.warn("Skipping HMAC issuer: " + name + ". The secret must be at least 256 bits long.");
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded " + issuers.size() + " HMAC issuer(s) from: " + path);
+        }
+        return new HmacIssuerRegistry(issuers);
+    }
+
+    /**
+     * Get the verifier of the given issuer, if it may authenticate users of the given tenant.
+     *
+     * @param issuer       iss claim of the token.
+     * @param tenantDomain tenant domain of the subject of the token.
+     * @return the verifier, or null if the issuer is not a trusted HMAC issuer for the tenant.
+     */
+    public MACVerifier getVerifier(String issuer, String tenantDomain) {
+
+        HmacIssuer hmacIssuer = issuers.get(issuer);
+        if (hmacIssuer == null || tenantDomain == null || (!hmacIssuer.tenantDomains.contains(ALL_TENANT_DOMAINS)
+                && !hmacIssuer.tenantDomains.contains(tenantDomain))) {
+            return null;
+        }
+        return hmacIssuer.verifier;
+    }
+
+    public boolean isHmacIssuer(String issuer) {
+
+        return issuers.containsKey(issuer);
+    }
+
+    private static String resolveSecret(Properties properties, SecretResolver secretResolver, String key) {
+
+        if (secretResolver != null && secretResolver.isInitialized() && secretResolver.isTokenProtected(key)) {
+            return secretResolver.resolve(key);
+        }
+        return properties.getProperty(key);
+    }
+
+    private static class HmacIssuer {
+
+        private final MACVerifier verifier;
+        private final Set<String> tenantDomains;
+
+        HmacIssuer(MACVerifier verifier, Set<String> tenantDomains) {
+
+            this.verifier = verifier;
+            this.tenantDomains = tenantDomains;
+        }
+    }
+}
@@ -27,9 +27,34 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.cache.TenantIdCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginMetrics;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationBus;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationListener;
 import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.JWTBasicAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.JWTBasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.hmac.HmacIssuerRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks.JwksKeyIndex;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.PartitionedReplayDetector;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.ReplayClaimTransport;
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.CacheSnapshots;
+import org.wso2.carbon.identity.application.authenticator.basicauth.warmup.TenantWarmUp;
+import org.wso2.carbon.identity.application.authenticator.basicauth.warmup.TenantWarmer;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.user.core.service.RealmService;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 @Component(
         name = "identity.application.authenticator.basicauth.jwt.component",
         immediate = true)
@@ -37,12 +62,19 @@ public class JWTBasicAuthenticatorServiceComponent {
 
     private static final Log log = LogFactory.getLog(JWTBasicAuthenticatorServiceComponent.class);
 
+    private final InvalidationListener signingKeyInvalidationListener = this::refreshSigningKeys;
+
     @Activate
     protected void activate(ComponentContext ctxt) {
 
+        loadHmacIssuers();
+        startJwksKeyIndex();
+        InvalidationBus.getInstance().addListener(signingKeyInvalidationListener);
+        LoginMetrics.getInstance().registerMBean(JWTBasicAuthenticatorConstants.AUTHENTICATOR_NAME);
         try {
             JWTBasicAuthenticator jwtBasicAuth = new JWTBasicAuthenticator();
             ctxt.getBundleContext().registerService(ApplicationAuthenticator.class.getName(), jwtBasicAuth, null);
+            startTenantWarmUp(jwtBasicAuth);
             if (log.isDebugEnabled()) {
                 log.info("JWTBasicAuthenticator bundle is activated");
             }
@@ -54,11 +86,106 @@ public class JWTBasicAuthenticatorServiceComponent {
     @Deactivate
     protected void deactivate(ComponentContext ctxt) {
 
+        JWTBasicAuthenticatorServiceComponentDataHolder dataHolder =
+                JWTBasicAuthenticatorServiceComponentDataHolder.getInstance();
+        InvalidationBus.getInstance().removeListener(signingKeyInvalidationListener);
+        LoginMetrics.getInstance().unregisterMBean(JWTBasicAuthenticatorConstants.AUTHENTICATOR_NAME);
+        if (dataHolder.getTenantWarmUp() != null) {
+            dataHolder.getTenantWarmUp().stop();
+            dataHolder.setTenantWarmUp(null);
+        }
+        if (dataHolder.getJwksKeyIndex() != null) {
+            dataHolder.getJwksKeyIndex().stop();
+            dataHolder.setJwksKeyIndex(null);
+        }
+        synchronized (dataHolder) {
+            if (dataHolder.getReplayJournal() != null) {
+                dataHolder.getReplayJournal().close();
+                dataHolder.setReplayJournal(null);
+            }
+            dataHolder.setReplayJournalInitialized(false);
+        }
         if (log.isDebugEnabled()) {
             log.info("JWTBasicAuthenticator bundle is deactivated");
         }
     }
 
+    private void loadHmacIssuers() {
+
+        Path path = Paths.get(IdentityUtil.getIdentityConfigDirPath(),
+                JWTBasicAuthenticatorConstants.HMAC_ISSUERS_CONFIG_FILE);
+        try {
+            JWTBasicAuthenticatorServiceComponentDataHolder.getInstance()
+                    .setHmacIssuerRegistry(HmacIssuerRegistry.load(path));
+        } catch (IOException e) {
+            log.error("Error while loading '" + JWTBasicAuthenticatorConstants.HMAC_ISSUERS_CONFIG_FILE
+                    + "' configuration file", e);
+        }
+    }
+
+    /**
+     * Start indexing the JWKS files of the tenants, if the JWKS directory exists.
+     */
+    private void startJwksKeyIndex() {
+
+        Path directory = Paths.get(IdentityUtil.getIdentityConfigDirPath(),
+                JWTBasicAuthenticatorConstants.JWKS_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        JwksKeyIndex jwksKeyIndex = new JwksKeyIndex(directory);
+        try {
+            jwksKeyIndex.start();
+            JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setJwksKeyIndex(jwksKeyIndex);
+        } catch (IOException e) {
+            log.error("Error while watching the JWKS directory: " + directory + ". Keys are resolved from the "
+                    + "tenant keystores.", e);
+        }
+    }
+
+    /**
+     * Evict the signing keys removed or replaced on this or another node of the cluster from the JWKS key index.
+     *
+     * @param events invalidation events of a batch
+     */
+    private void refreshSigningKeys(Collection<InvalidationEvent> events) {
+
+        JwksKeyIndex jwksKeyIndex = JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getJwksKeyIndex();
+        if (jwksKeyIndex == null) {
+            return;
+        }
+        for (InvalidationEvent event : events) {
+            if (event.getType() == InvalidationEvent.Type.SIGNING_KEY) {
+                jwksKeyIndex.invalidate(event);
+            }
+        }
+    }
+
+    /**
+     * Start loading the keystores of the tenants configured to be warmed up, in the background.
+     */
+    private void startTenantWarmUp(JWTBasicAuthenticator jwtBasicAuth) {
+
+        TenantWarmer certificateWarmer = (tenantDomain, tenantId) -> jwtBasicAuth.preloadCertificate(tenantDomain);
+        TenantWarmUp tenantWarmUp = TenantWarmUp.fromConfiguration(JWTBasicAuthenticatorConstants.AUTHENTICATOR_NAME,
+                getSnapshotTenants(), Collections.singletonList(certificateWarmer));
+        if (tenantWarmUp != null) {
+            JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setTenantWarmUp(tenantWarmUp);
+            tenantWarmUp.start();
+        }
+    }
+
+    /**
+     * Get the tenants most logged in to before the restart, from the cache snapshot of the basic authenticator.
+     */
+    private List<String> getSnapshotTenants() {
+
+        Map<String, String> tenantIds = CacheSnapshots.read(
+                CacheSnapshots.getSnapshotPath(BasicAuthenticatorConstants.CACHE_SNAPSHOT_FILE))
+                .getOrDefault(TenantIdCache.SNAPSHOT_NAME, Collections.emptyMap());
+        return new ArrayList<>(tenantIds.keySet());
+    }
+
     @Reference(
             name = "realm.service",
             service = org.wso2.carbon.user.core.service.RealmService.class,
@@ -78,4 +205,29 @@ public class JWTBasicAuthenticatorServiceComponent {
         log.debug("UnSetting the Realm Service in JWTBasicAuthenticator");
         JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setRealmService(null);
     }
+
+    @Reference(
+            name = "replay.claim.transport",
+            service = ReplayClaimTransport.class,
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetReplayClaimTransport")
+    protected void setReplayClaimTransport(ReplayClaimTransport replayClaimTransport) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Setting the ReplayClaimTransport in JWTBasicAuthenticator");
+        }
+        PartitionedReplayDetector replayDetector = new PartitionedReplayDetector(replayClaimTransport);
+        replayClaimTransport.setClaimHandler(replayDetector);
+        JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setReplayDetector(replayDetector);
+    }
+
+    protected void unsetReplayClaimTransport(ReplayClaimTransport replayClaimTransport) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("UnSetting the ReplayClaimTransport in JWTBasicAuthenticator");
+        }
+        replayClaimTransport.setClaimHandler(null);
+        JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setReplayDetector(null);
+    }
 }
@@ -18,6 +18,11 @@
 
 package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.internal;
 
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.hmac.HmacIssuerRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks.JwksKeyIndex;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.MappedReplayJournal;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.PartitionedReplayDetector;
+import org.wso2.carbon.identity.application.authenticator.basicauth.warmup.TenantWarmUp;
 import org.wso2.carbon.user.core.service.RealmService;
 
 /**
@@ -28,6 +33,12 @@ public class JWTBasicAuthenticatorServiceComponentDataHolder {
     private static JWTBasicAuthenticatorServiceComponentDataHolder instance = new JWTBasicAuthenticatorServiceComponentDataHolder();
 
     private RealmService realmService;
+    private volatile MappedReplayJournal replayJournal;
+    private volatile boolean replayJournalInitialized;
+    private volatile PartitionedReplayDetector replayDetector;
+    private volatile HmacIssuerRegistry hmacIssuerRegistry;
+    private volatile JwksKeyIndex jwksKeyIndex;
+    private volatile TenantWarmUp tenantWarmUp;
 
     public static JWTBasicAuthenticatorServiceComponentDataHolder getInstance() {
 
@@ -43,4 +54,64 @@ public class JWTBasicAuthenticatorServiceComponentDataHolder {
 
         this.realmService = realmService;
     }
+
+    public MappedReplayJournal getReplayJournal() {
+
+        return replayJournal;
+    }
+
+    public void setReplayJournal(MappedReplayJournal replayJournal) {
+
+        this.replayJournal = replayJournal;
+    }
+
+    public boolean isReplayJournalInitialized() {
+
+        return replayJournalInitialized;
+    }
+
+    public void setReplayJournalInitialized(boolean replayJournalInitialized) {
+
+        this.replayJournalInitialized = replayJournalInitialized;
+    }
+
+    public PartitionedReplayDetector getReplayDetector() {
+
+        return replayDetector;
+    }
+
+    public void setReplayDetector(PartitionedReplayDetector replayDetector) {
+
+        this.replayDetector = replayDetector;
+    }
+
+    public HmacIssuerRegistry getHmacIssuerRegistry() {
+
+        return hmacIssuerRegistry;
+    }
+
+    public void setHmacIssuerRegistry(HmacIssuerRegistry hmacIssuerRegistry) {
+
+        this.hmacIssuerRegistry = hmacIssuerRegistry;
+    }
+
+    public JwksKeyIndex getJwksKeyIndex() {
+
+        return jwksKeyIndex;
+    }
+
+    public void setJwksKeyIndex(JwksKeyIndex jwksKeyIndex) {
+
+        this.jwksKeyIndex = jwksKeyIndex;
+    }
+
+    public TenantWarmUp getTenantWarmUp() {
+
+        return tenantWarmUp;
+    }
+
+    public void setTenantWarmUp(TenantWarmUp tenantWarmUp) {
+
+        this.tenantWarmUp = tenantWarmUp;
+    }
 }
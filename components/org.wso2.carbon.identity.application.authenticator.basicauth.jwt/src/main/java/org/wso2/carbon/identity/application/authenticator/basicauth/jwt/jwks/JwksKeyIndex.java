@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationBus;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Index of the JWT signature keys published in local JWKS files, one file per tenant named
+ * {@code <tenant-domain>.jwks}.
+ * <p>
+ * The keys are indexed by kid in an immutable map, with a verifier created once per key, so the lookup on the login
+ * path needs no I/O. The directory is watched, and the index is rebuilt and swapped atomically when a file changes.
+ * Several keys of a tenant can be active at once, which allows keys to be rolled over without a keystore reload.
+ * A {@link InvalidationEvent.Type#SIGNING_KEY} event is published for each key removed or replaced on reload, keyed on
+ * the kid and the thumbprint of the invalidated key. A node receiving the event evicts the key from its index if it
+ * still has that version of it, and does not index it again while its own file still has it, so that a removed or
+ * replaced key stops being accepted across the cluster without waiting for the files to be synchronized. Events of a
+ * key version the node no longer has, such as its own events, are ignored.
+ */
+public class JwksKeyIndex {
+
+    private static final Log log = LogFactory.getLog(JwksKeyIndex.class);
+
+    private static final String JWKS_FILE_EXTENSION = ".jwks";
+    // Changes are applied after this quiet period, so that a file is not read while it is being written.
+    private static final long RELOAD_DELAY_MILLIS = 500;
+    private static final char THUMBPRINT_SEPARATOR = '#';
+
+    private final Path directory;
+    private final AtomicReference<Map<String, Map<String, IndexedKey>>> index =
+            new AtomicReference<>(Collections.emptyMap());
+    // Thumbprints of the keys evicted on an invalidation, by tenant domain and kid. Guarded by this index.
+    private Map<String, Map<String, String>> evictedKeys = new HashMap<>();
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public JwksKeyIndex(Path directory) {
+
+        this.directory = directory;
+    }
+
+    /**
+     * Load the JWKS files and start watching the directory for changes.
+     *
+     * @throws IOException if the directory cannot be watched.
+     */
+    public synchronized void start() throws IOException {
+
+        if (watchService != null) {
+            return;
+        }
+        reload();
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        WatchService service = watchService;
+        watcherThread = new Thread(() -> watch(service), "JWTBasicAuthenticator-JwksWatcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    public synchronized void stop() {
+
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.error("Error while closing the watch service of the JWKS directory: " + directory, e);
+        }
+        watcherThread.interrupt();
+        watchService = null;
+        watcherThread = null;
+    }
+
+    /**
+     * Get the verifier of the key with the given kid, published for the given tenant.
+     *
+     * @param tenantDomain tenant domain.
+     * @param keyId        kid of the JWS header.
+     * @return the verifier, or null if the tenant has published no key with the kid.
+     */
+    public JWSVerifier getVerifier(String tenantDomain, String keyId) {
+
+        Map<String, IndexedKey> tenantKeys = index.get().get(tenantDomain);
+        IndexedKey indexedKey = tenantKeys != null ? tenantKeys.get(keyId) : null;
+        return indexedKey != null ? indexedKey.verifier : null;
+    }
+
+    /**
+     * Reload the JWKS files now, without waiting for the directory watcher.
+     */
+    public void refresh() {
+
+        reload();
+    }
+
+    /**
+     * Evict the key invalidated by the given {@link InvalidationEvent.Type#SIGNING_KEY} event, if the index still has
+     * the invalidated version of the key. The key is not indexed again until the JWKS file of the tenant replaces or
+     * removes it.
+     *
+     * @param event signing key invalidation event.
+     */
+    public synchronized void invalidate(InvalidationEvent event) {
+
+        if (event.getType() != InvalidationEvent.Type.SIGNING_KEY || event.getKey() == null) {
+            return;
+        }
+        int separatorIndex = event.getKey().lastIndexOf(THUMBPRINT_SEPARATOR);
+        if (separatorIndex < 0) {
+            // The invalidated version of the key is not known. Only the local files can be checked.
+            reload();
+            return;
+        }
+        String tenantDomain = event.getTenantDomain();
+        String keyId = event.getKey().substring(0, separatorIndex);
+        String thumbprint = event.getKey().substring(separatorIndex + 1);
+        Map<String, Map<String, IndexedKey>> currentIndex = index.get();
+        Map<String, IndexedKey> tenantKeys = currentIndex.get(tenantDomain);
+        IndexedKey indexedKey = tenantKeys != null ? tenantKeys.get(keyId) : null;
+        if (indexedKey == null || !indexedKey.thumbprint.equals(thumbprint)) {
+            return;
+        }
+
+        Map<String, IndexedKey> newTenantKeys = new HashMap<>(tenantKeys);
+        newTenantKeys.remove(keyId);
+        Map<String, Map<String, IndexedKey>> newIndex = new HashMap<>(currentIndex);
+        newIndex.put(tenantDomain, Collections.unmodifiableMap(newTenantKeys));
+        index.set(Collections.unmodifiableMap(newIndex));
+        evictedKeys.computeIfAbsent(tenantDomain, k -> new HashMap<>()).put(keyId, thumbprint);
+        if (log.isDebugEnabled()) {
+            log.debug("Evicted the invalidated JWKS key with kid: " + keyId + " of tenant: " + tenantDomain);
+        }
+    }
+
+    private void watch(WatchService service) {
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                // Coalesce the burst of events of a single change into one reload.
+                do {
+                    key.pollEvents();
+                    if (!key.reset()) {
+                        log.warn("JWKS directory: " + directory + " is no longer accessible. Keys are not reloaded.");
+                        return;
+                    }
+                    key = service.poll(RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The index is stopped.
+        }
+    }
+
+    private synchronized void reload() {
+
+        Map<String, Map<String, IndexedKey>> currentIndex = index.get();
+        Map<String, Map<String, IndexedKey>> newIndex = new HashMap<>();
+        Map<String, Map<String, String>> newEvictedKeys = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + JWKS_FILE_EXTENSION)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String tenantDomain = fileName.substring(0, fileName.length() - JWKS_FILE_EXTENSION.length());
+                Map<String, IndexedKey> tenantKeys = loadKeys(file);
+                if (tenantKeys != null) {
+                    Map<String, String> tenantEvictedKeys = removeEvictedKeys(tenantKeys,
+                            evictedKeys.get(tenantDomain));
+                    if (!tenantEvictedKeys.isEmpty()) {
+                        newEvictedKeys.put(tenantDomain, tenantEvictedKeys);
+                    }
+                    newIndex.put(tenantDomain, Collections.unmodifiableMap(tenantKeys));
+                } else if (currentIndex.containsKey(tenantDomain)) {
+                    // Keep serving the last valid key set of the tenant.
+                    newIndex.put(tenantDomain, currentIndex.get(tenantDomain));
+                    if (evictedKeys.containsKey(tenantDomain)) {
+                        newEvictedKeys.put(tenantDomain, evictedKeys.get(tenantDomain));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("Error while reading the JWKS directory: " + directory + ". Keeping the current keys.", e);
+            return;
+        }
+        index.set(Collections.unmodifiableMap(newIndex));
+        evictedKeys = newEvictedKeys;
+        if (log.isDebugEnabled()) {
+            log.debug("Loaded JWKS keys of " + newIndex.size() + " tenant(s) from: " + directory);
+        }
+        publishInvalidatedKeys(currentIndex, newIndex);
+    }
+
+    /**
+     * Remove the evicted keys which the loaded file still has, unchanged.
+     *
+     * @return the evicted keys still in the file, which stay evicted.
+     */
+    private Map<String, String> removeEvictedKeys(Map<String, IndexedKey> tenantKeys,
+                                                  Map<String, String> tenantEvictedKeys) {
+
+        Map<String, String> remainingEvictedKeys = new HashMap<>();
+        if (tenantEvictedKeys == null) {
+            return remainingEvictedKeys;
+        }
+        for (Map.Entry<String, String> evictedKey : tenantEvictedKeys.entrySet()) {
+            IndexedKey indexedKey = tenantKeys.get(evictedKey.getKey());
+            if (indexedKey != null && indexedKey.thumbprint.equals(evictedKey.getValue())) {
+                tenantKeys.remove(evictedKey.getKey());
+                remainingEvictedKeys.put(evictedKey.getKey(), evictedKey.getValue());
+            }
+        }
+        return remainingEvictedKeys;
+    }
+
+    /**
+     * Publish the keys of the current index that are missing from, or have a different thumbprint in, the new index.
+     */
+    private void publishInvalidatedKeys(Map<String, Map<String, IndexedKey>> currentIndex,
+                                        Map<String, Map<String, IndexedKey>> newIndex) {
+
+        for (Map.Entry<String, Map<String, IndexedKey>> tenantEntry : currentIndex.entrySet()) {
+            Map<String, IndexedKey> newTenantKeys = newIndex.getOrDefault(tenantEntry.getKey(),
+                    Collections.emptyMap());
+            for (Map.Entry<String, IndexedKey> keyEntry : tenantEntry.getValue().entrySet()) {
+                IndexedKey newKey = newTenantKeys.get(keyEntry.getKey());
+                if (newKey == null || !newKey.thumbprint.equals(keyEntry.getValue().thumbprint)) {
+                    InvalidationBus.getInstance().publish(new InvalidationEvent(InvalidationEvent.Type.SIGNING_KEY,
+                            tenantEntry.getKey(), keyEntry.getKey() + THUMBPRINT_SEPARATOR
+                            + keyEntry.getValue().thumbprint));
+                }
+            }
+        }
+    }
+
+    private Map<String, IndexedKey> loadKeys(Path file) {
+
+        Map<String, IndexedKey> keys = new HashMap<>();
+        try {
+            JWKSet jwkSet = JWKSet.parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+            for (JWK jwk : jwkSet.getKeys()) {
+                if (jwk.getKeyID() == null || !(jwk instanceof RSAKey) || KeyUse.ENCRYPTION.equals(jwk.getKeyUse())) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Skipping a key without a kid, not an RSA key or not a signature key in: " + file);
+                    }
+                    continue;
+                }
+                keys.put(jwk.getKeyID(), new IndexedKey(new RSASSAVerifier(((RSAKey) jwk).toRSAPublicKey()),
+                        jwk.computeThumbprint().toString()));
+            }
+            return keys;
+        } catch (IOException | ParseException | JOSEException e) {
+            log.error("Error while loading the JWKS file: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * A key of the index, with the thumbprint used to detect a key replaced under the same kid.
+     */
+    private static class IndexedKey {
+
+        private final JWSVerifier verifier;
+        private final String thumbprint;
+
+        IndexedKey(JWSVerifier verifier, String thumbprint) {
+
+            this.verifier = verifier;
+            this.thumbprint = thumbprint;
+        }
+    }
+}
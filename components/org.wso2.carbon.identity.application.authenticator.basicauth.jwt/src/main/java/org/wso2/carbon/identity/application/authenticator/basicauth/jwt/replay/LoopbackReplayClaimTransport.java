@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * In-process {@link ReplayClaimTransport}, where the members of the cluster are claim handlers in the same JVM. Used
+ * to run a stand-in cluster in tests.
+ * <p>
+ * A member joins the cluster once its claim handler is set, and leaves it once the handler is cleared. The handlers of
+ * the remaining members are notified of both.
+ */
+public class LoopbackReplayClaimTransport implements ReplayClaimTransport {
+
+    private final String localMemberId;
+    private final Map<String, ReplayClaimHandler> members;
+
+    /**
+     * @param localMemberId id of the local member.
+     * @param members       claim handlers of the members of the cluster by member id, shared by all the members.
+     */
+    public LoopbackReplayClaimTransport(String localMemberId, Map<String, ReplayClaimHandler> members) {
+
+        this.localMemberId = localMemberId;
+        this.members = members;
+    }
+
+    @Override
+    public String getLocalMemberId() {
+
+        return localMemberId;
+    }
+
+    @Override
+    public Collection<String> getMemberIds() {
+
+        return members.keySet();
+    }
+
+    @Override
+    public boolean claim(String memberId, String jti, long expiryMillis) throws ReplayClaimException {
+
+        ReplayClaimHandler claimHandler = members.get(memberId);
+        if (claimHandler == null) {
+            throw new ReplayClaimException("Member: " + memberId + " is not reachable.");
+        }
+        return claimHandler.handleClaim(jti, expiryMillis);
+    }
+
+    @Override
+    public void setClaimHandler(ReplayClaimHandler claimHandler) {
+
+        if (claimHandler == null) {
+            members.remove(localMemberId);
+        } else {
+            members.put(localMemberId, claimHandler);
+        }
+        for (ReplayClaimHandler member : members.values()) {
+            member.membersChanged();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent store of the JWT ids seen by this node, so that replays are detected across restarts.
+ * <p>
+ * The store is a memory-mapped file holding a fixed number of 16 byte slots, each the 64 bit fingerprint of a jti and
+ * its expiry time, addressed by linear probing. The file is used in place on startup, without any deserialization.
+ * Slots of expired entries are reused by later inserts, and the table is rebuilt in the background once expired
+ * entries make up a large part of it, so the probe sequences stay short.
+ */
+public class MappedReplayJournal {
+
+    private static final Log log = LogFactory.getLog(MappedReplayJournal.class);
+
+    private static final int MAGIC = 0x4A525031;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 16;
+    private static final long EMPTY = 0L;
+    private static final long COMPACTION_INTERVAL_SECONDS = 60;
+    private static final double COMPACTION_THRESHOLD = 0.25;
+
+    private final Path path;
+    private final int slotCount;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ScheduledExecutorService compactionExecutor;
+    private int occupiedSlots;
+
+    private MappedReplayJournal(Path path, int slotCount, FileChannel channel, MappedByteBuffer buffer) {
+
+        this.path = path;
+        this.slotCount = slotCount;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "JWTBasicAuthenticator-ReplayJournalCompaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open the journal at the given path, creating it if it does not exist. An existing journal with a different
+     * number of slots is resized, keeping its live entries.
+     *
+     * @param path      path of the journal file.
+     * @param slotCount number of slots, which bounds the number of live entries.
+     * @return the opened journal.
+     * @throws IOException if the journal cannot be opened.
+     */
+    public static MappedReplayJournal open(Path path, int slotCount) throws IOException {
+
+        if (slotCount <= 0 || slotCount > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+            throw new IllegalArgumentException("Invalid slot count for the JWT replay journal: " + slotCount);
+        }
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        long[][] liveEntries = null;
+        if (Files.exists(path)) {
+            try (FileChannel existingChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (existingChannel.size() >= HEADER_SIZE) {
+                    MappedByteBuffer existing = existingChannel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            existingChannel.size());
+                    int existingSlotCount = existing.getInt(8);
+                    boolean valid = existing.getInt(0) == MAGIC && existing.getInt(4) == VERSION
+                            && existingChannel.size() == HEADER_SIZE + (long) existingSlotCount * SLOT_SIZE;
+                    if (!valid) {
+                        log.warn("Discarding the invalid JWT replay journal: " + path);
+                    } else if (existingSlotCount != slotCount) {
+                        liveEntries = readLiveEntries(existing, existingSlotCount, System.currentTimeMillis());
+                    }
+                    if (!valid || existingSlotCount != slotCount) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE + (long) slotCount * SLOT_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotCount);
+
+        MappedReplayJournal journal = new MappedReplayJournal(path, slotCount, channel, buffer);
+        journal.occupiedSlots = journal.countOccupiedSlots();
+        if (liveEntries != null) {
+            for (long[] entry : liveEntries) {
+                journal.insert(entry[0], entry[1], System.currentTimeMillis());
+            }
+        }
+        journal.compactionExecutor.scheduleWithFixedDelay(journal::compactIfNeeded, COMPACTION_INTERVAL_SECONDS,
+                COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        if (log.isDebugEnabled()) {
+            log.debug("Opened the JWT replay journal: " + path + " with " + journal.occupiedSlots + " of "
+                    + slotCount + " slots in use.");
+        }
+        return journal;
+    }
+
+    /**
+     * Check whether an unexpired entry exists for the given jti.
+     *
+     * @param jti JWT id.
+     * @return true if the jti has been claimed and has not expired.
+     */
+    public synchronized boolean contains(String jti) {
+
+        return find(fingerprint(jti), System.currentTimeMillis()) >= 0;
+    }
+
+    /**
+     * Record the given jti, unless an unexpired entry already exists for it.
+     *
+     * @param jti          JWT id.
+     * @param expiryMillis time after which the entry is no longer needed.
+     * @return false if the jti was already claimed, which indicates a replay.
+     */
+    public synchronized boolean claim(String jti, long expiryMillis) {
+
+        long now = System.currentTimeMillis();
+        long fingerprint = fingerprint(jti);
+        if (find(fingerprint, now) >= 0) {
+            return false;
+        }
+        if (!insert(fingerprint, expiryMillis, now)) {
+            compact(now);
+            if (!insert(fingerprint, expiryMillis, now)) {
+                log.warn("JWT replay journal: " + path + " is full. The jti is only recorded in memory.");
+            }
+        }
+        return true;
+    }
+
+    public void close() {
+
+        compactionExecutor.shutdownNow();
+        synchronized (this) {
+            buffer.force();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.error("Error while closing the JWT replay journal: " + path, e);
+            }
+        }
+    }
+
+    private int find(long fingerprint, long now) {
+
+        int slot = firstSlot(fingerprint);
+        for (int i = 0; i < slotCount; i++) {
+            long slotFingerprint = buffer.getLong(offset(slot));
+            if (slotFingerprint == EMPTY) {
+                return -1;
+            }
+            if (slotFingerprint == fingerprint && buffer.getLong(offset(slot) + 8) > now) {
+                return slot;
+            }
+            slot = nextSlot(slot);
+        }
+        return -1;
+    }
+
+    private boolean insert(long fingerprint, long expiryMillis, long now) {
+
+        int slot = firstSlot(fingerprint);
+        for (int i = 0; i < slotCount; i++) {
+            long slotFingerprint = buffer.getLong(offset(slot));
+            // Slots of expired entries are reused, but are not emptied so that the probe sequences stay intact.
+            if (slotFingerprint == EMPTY || buffer.getLong(offset(slot) + 8) <= now) {
+                if (slotFingerprint == EMPTY) {
+                    occupiedSlots++;
+                }
+                buffer.putLong(offset(slot) + 8, expiryMillis);
+                buffer.putLong(offset(slot), fingerprint);
+                return true;
+            }
+            slot = nextSlot(slot);
+        }
+        return false;
+    }
+
+    /**
+     * Rebuild the table if expired entries make up a large part of it. This runs periodically in the background.
+     */
+    void compactIfNeeded() {
+
+        try {
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+                int expiredSlots = occupiedSlots - readLiveEntries(buffer, slotCount, now).length;
+                if (expiredSlots > slotCount * COMPACTION_THRESHOLD) {
+                    compact(now);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Error while compacting the JWT replay journal: " + path, e);
+        }
+    }
+
+    /**
+     * Rebuild the table with only the unexpired entries.
+     */
+    private void compact(long now) {
+
+        long[][] liveEntries = readLiveEntries(buffer, slotCount, now);
+        for (int slot = 0; slot < slotCount; slot++) {
+            buffer.putLong(offset(slot), EMPTY);
+            buffer.putLong(offset(slot) + 8, 0L);
+        }
+        occupiedSlots = 0;
+        for (long[] entry : liveEntries) {
+            insert(entry[0], entry[1], now);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Compacted the JWT replay journal: " + path + ". Live entries: " + liveEntries.length);
+        }
+    }
+
+    /**
+     * Get the number of slots holding an entry, expired or not.
+     *
+     * @return number of occupied slots.
+     */
+    synchronized int getOccupiedSlotCount() {
+
+        return occupiedSlots;
+    }
+
+    private int countOccupiedSlots() {
+
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (buffer.getLong(offset(slot)) != EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long[][] readLiveEntries(MappedByteBuffer source, int sourceSlotCount, long now) {
+
+        int liveCount = 0;
+        for (int slot = 0; slot < sourceSlotCount; slot++) {
+            if (source.getLong(offset(slot)) != EMPTY && source.getLong(offset(slot) + 8) > now) {
+                liveCount++;
+            }
+        }
+        long[][] liveEntries = new long[liveCount][];
+        int index = 0;
+        for (int slot = 0; slot < sourceSlotCount && index < liveCount; slot++) {
+            long fingerprint = source.getLong(offset(slot));
+            long expiry = source.getLong(offset(slot) + 8);
+            if (fingerprint != EMPTY && expiry > now) {
+                liveEntries[index++] = new long[]{fingerprint, expiry};
+            }
+        }
+        return liveEntries;
+    }
+
+    private int firstSlot(long fingerprint) {
+
+        return (int) ((fingerprint & Long.MAX_VALUE) % slotCount);
+    }
+
+    private int nextSlot(int slot) {
+
+        return slot + 1 == slotCount ? 0 : slot + 1;
+    }
+
+    private static int offset(int slot) {
+
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    static long fingerprint(String jti) {
+
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(jti.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+        long fingerprint = 0;
+        for (int i = 0; i < 8; i++) {
+            fingerprint = (fingerprint << 8) | (digest[i] & 0xFF);
+        }
+        // Zero marks an empty slot.
+        return fingerprint == EMPTY ? 1L : fingerprint;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects JWT replays across a cluster, with each jti owned by a single member selected by consistent hashing.
+ * <p>
+ * A jti seen by the local member is rejected without a network hop. Otherwise the jti is claimed at its owner, which
+ * records it atomically, so a token is accepted by at most one member of the cluster. If the owner cannot be reached,
+ * the claim fails, unless the caller opts to claim the jti locally, in which case a replay of the token at another
+ * member is not detected until the owner is reachable again.
+ * <p>
+ * The ring of members is rebuilt when the transport reports a membership change.
+ */
+public class PartitionedReplayDetector implements ReplayClaimHandler {
+
+    private static final Log log = LogFactory.getLog(PartitionedReplayDetector.class);
+
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long UNREACHABLE_OWNER_WARNING_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ReplayClaimTransport transport;
+    // Claims owned by this member.
+    private final ConcurrentMap<String, Long> ownedClaims = new ConcurrentHashMap<>();
+    // Jtis accepted or rejected by this member, checked before reaching the owner.
+    private final ConcurrentMap<String, Long> seenClaims = new ConcurrentHashMap<>();
+    private final AtomicLong nextPurgeTime = new AtomicLong();
+    // Claims whose owner could not be reached since the last warning.
+    private final AtomicLong unreachableOwnerClaims = new AtomicLong();
+    private final AtomicLong nextUnreachableOwnerWarningTime = new AtomicLong();
+    private volatile ConsistentHashRing ring;
+
+    public PartitionedReplayDetector(ReplayClaimTransport transport) {
+
+        this.transport = transport;
+        this.ring = new ConsistentHashRing(new HashSet<>(transport.getMemberIds()));
+    }
+
+    /**
+     * Claim the given jti for a login, failing if the owner of the jti cannot be reached.
+     *
+     * @param jti          JWT id.
+     * @param expiryMillis time after which the claim is no longer needed.
+     * @return false if the jti was already claimed, which indicates a replay.
+     * @throws ReplayClaimException if the owner of the jti cannot be reached.
+     */
+    public boolean claim(String jti, long expiryMillis) throws ReplayClaimException {
+
+        return claim(jti, expiryMillis, false);
+    }
+
+    /**
+     * Claim the given jti for a login.
+     *
+     * @param jti          JWT id.
+     * @param expiryMillis time after which the claim is no longer needed.
+     * @param failOpen     whether to claim the jti locally if its owner cannot be reached.
+     * @return false if the jti was already claimed, which indicates a replay.
+     * @throws ReplayClaimException if the owner of the jti cannot be reached and failOpen is false.
+     */
+    public boolean claim(String jti, long expiryMillis, boolean failOpen) throws ReplayClaimException {
+
+        long now = System.currentTimeMillis();
+        purgeExpiredClaims(now);
+        if (isClaimed(seenClaims, jti, now)) {
+            return false;
+        }
+
+        String localMemberId = transport.getLocalMemberId();
+        String owner = ring.getOwner(jti);
+        boolean claimed;
+        if (owner == null || owner.equals(localMemberId)) {
+            claimed = handleClaim(jti, expiryMillis);
+        } else {
+            try {
+                claimed = transport.claim(owner, jti, expiryMillis);
+            } catch (ReplayClaimException e) {
+                warnUnreachableOwner(owner, failOpen, now);
+                if (log.isDebugEnabled()) {
+                    log.debug("Error while claiming the jti at the owner member: " + owner, e);
+                }
+                if (!failOpen) {
+                    throw e;
+                }
+                claimed = handleClaim(jti, expiryMillis);
+            }
+        }
+        seenClaims.merge(jti, expiryMillis, Math::max);
+        return claimed;
+    }
+
+    @Override
+    public boolean handleClaim(String jti, long expiryMillis) {
+
+        long now = System.currentTimeMillis();
+        boolean[] claimed = new boolean[1];
+        ownedClaims.compute(jti, (key, existingExpiry) -> {
+            if (existingExpiry != null && existingExpiry > now) {
+                return existingExpiry;
+            }
+            claimed[0] = true;
+            return expiryMillis;
+        });
+        return claimed[0];
+    }
+
+    @Override
+    public void membersChanged() {
+
+        HashSet<String> members = new HashSet<>(transport.getMemberIds());
+        ring = new ConsistentHashRing(members);
+        if (log.isDebugEnabled()) {
+            log.debug("Cluster membership changed. Rebuilt the replay detection ring with members: " + members);
+        }
+    }
+
+    /**
+     * Log a warning for the claims whose owner could not be reached, at most once per interval, so that a member
+     * leaving the cluster without notice does not log a warning per login.
+     */
+    private void warnUnreachableOwner(String owner, boolean failOpen, long now) {
+
+        unreachableOwnerClaims.incrementAndGet();
+        long warningTime = nextUnreachableOwnerWarningTime.get();
+        if (now < warningTime || !nextUnreachableOwnerWarningTime.compareAndSet(warningTime,
+                now + UNREACHABLE_OWNER_WARNING_INTERVAL_MILLIS)) {
+            return;
+        }
+        log.warn("Unable to reach the owner members of " + unreachableOwnerClaims.getAndSet(0)
+                + " jti claim(s) since the last warning, most recently the member: " + owner + ". "
+                + (failOpen ? "The jtis were claimed locally." : "The logins were rejected."));
+    }
+
+    private boolean isClaimed(ConcurrentMap<String, Long> claims, String jti, long now) {
+
+        Long expiry = claims.get(jti);
+        return expiry != null && expiry > now;
+    }
+
+    private void purgeExpiredClaims(long now) {
+
+        long purgeTime = nextPurgeTime.get();
+        if (now < purgeTime || !nextPurgeTime.compareAndSet(purgeTime, now + PURGE_INTERVAL_MILLIS)) {
+            return;
+        }
+        ownedClaims.values().removeIf(expiry -> expiry <= now);
+        seenClaims.values().removeIf(expiry -> expiry <= now);
+    }
+}
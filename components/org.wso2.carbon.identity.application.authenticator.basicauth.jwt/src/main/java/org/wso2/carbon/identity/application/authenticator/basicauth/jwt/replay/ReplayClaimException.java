@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+/**
+ * Thrown when a jti cannot be claimed at its owner member.
+ */
+public class ReplayClaimException extends Exception {
+
+    private static final long serialVersionUID = 2837740125319508671L;
+
+    public ReplayClaimException(String message) {
+
+        super(message);
+    }
+
+    public ReplayClaimException(String message, Throwable cause) {
+
+        super(message, cause);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+/**
+ * Receiver of the claims sent by the other members of the cluster through a {@link ReplayClaimTransport}.
+ */
+public interface ReplayClaimHandler {
+
+    /**
+     * Atomically record a claim owned by the local member.
+     *
+     * @param jti          JWT id.
+     * @param expiryMillis time after which the claim is no longer needed.
+     * @return false if the jti was already claimed.
+     */
+    boolean handleClaim(String jti, long expiryMillis);
+
+    /**
+     * Called by the transport when members join or leave the cluster.
+     */
+    void membersChanged();
+}
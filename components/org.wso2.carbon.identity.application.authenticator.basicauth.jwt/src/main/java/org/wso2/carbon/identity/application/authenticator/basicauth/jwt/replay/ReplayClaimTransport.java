@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+import java.util.Collection;
+
+/**
+ * Transport used by the {@link PartitionedReplayDetector} to reach the other members of the cluster.
+ * <p>
+ * Implementations are registered as OSGi services. When a transport is bound, it is given the
+ * {@link ReplayClaimHandler} of the local member, to which it must hand over the claims received from the other
+ * members. The handler must also be notified through {@link ReplayClaimHandler#membersChanged()} whenever the
+ * members returned by {@link #getMemberIds()} change.
+ */
+public interface ReplayClaimTransport {
+
+    /**
+     * Get the id of the local member.
+     *
+     * @return id of the local member.
+     */
+    String getLocalMemberId();
+
+    /**
+     * Get the ids of the current members of the cluster, including the local member.
+     *
+     * @return ids of the current members.
+     */
+    Collection<String> getMemberIds();
+
+    /**
+     * Claim a jti at the given member, which must record it atomically unless it is already recorded.
+     *
+     * @param memberId     id of the member owning the jti.
+     * @param jti          JWT id.
+     * @param expiryMillis time after which the claim is no longer needed.
+     * @return false if the jti was already claimed.
+     * @throws ReplayClaimException if the member cannot be reached.
+     */
+    boolean claim(String memberId, String jti, long expiryMillis) throws ReplayClaimException;
+
+    /**
+     * Set the handler receiving the claims sent to the local member. Claims received while no handler is set must be
+     * failed, so that the sender claims the jti by itself.
+     *
+     * @param claimHandler handler of the local member, or null once the transport is unbound.
+     */
+    void setClaimHandler(ReplayClaimHandler claimHandler);
+}
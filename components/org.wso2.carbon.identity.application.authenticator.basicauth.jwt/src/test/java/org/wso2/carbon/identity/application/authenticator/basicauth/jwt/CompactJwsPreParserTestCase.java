@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Base64;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+public class CompactJwsPreParserTestCase {
+
+    private static final int MAX_LENGTH = 8192;
+    private static final String HEADER = "{\"alg\":\"RS256\",\"kid\":\"key-1\"}";
+    private static final String SIGNATURE = "c2lnbmF0dXJl";
+
+    @Test
+    public void testParse() throws ParseException {
+
+        PreParsedJws jws = CompactJwsPreParser.parse(token(HEADER, "{\"sub\":\"alice\",\"iss\":\"issuer-1\","
+                + "\"jti\":\"jti-1\",\"exp\":1600000000}"), MAX_LENGTH);
+        assertEquals(jws.getAlgorithm(), "RS256");
+        assertEquals(jws.getKeyId(), "key-1");
+        assertEquals(jws.getSubject(), "alice");
+        assertEquals(jws.getIssuer(), "issuer-1");
+        assertEquals(jws.getJwtId(), "jti-1");
+        assertEquals(jws.getExpirationTime(), Long.valueOf(1600000000000L));
+    }
+
+    @Test
+    public void testOtherMembersAreSkipped() throws ParseException {
+
+        PreParsedJws jws = CompactJwsPreParser.parse(token(" { \"typ\" : \"JWT\", \"alg\" : \"HS256\" } ",
+                "{\"aud\":[\"a\",\"b\"],\"ctx\":{\"sub\":\"nested\",\"list\":[1,{\"x\":\"}\"}]},\"admin\":true,"
+                        + "\"nbf\":null,\"sub\":\"al\\\"ice\\u0021\",\"exp\":1.6E9}"), MAX_LENGTH);
+        assertEquals(jws.getAlgorithm(), "HS256");
+        assertNull(jws.getKeyId());
+        assertEquals(jws.getSubject(), "al\"ice!");
+        assertNull(jws.getIssuer());
+        assertNull(jws.getJwtId());
+        assertEquals(jws.getExpirationTime(), Long.valueOf(1600000000000L));
+    }
+
+    @Test
+    public void testEmptyClaims() throws ParseException {
+
+        PreParsedJws jws = CompactJwsPreParser.parse(token(HEADER, "{}"), MAX_LENGTH);
+        assertNull(jws.getSubject());
+        assertNull(jws.getExpirationTime());
+    }
+
+    @Test
+    public void testTokenAtMaximumLength() throws ParseException {
+
+        String token = token(HEADER, "{\"sub\":\"alice\"}");
+        assertEquals(CompactJwsPreParser.parse(token, token.length()).getSubject(), "alice");
+    }
+
+    @Test(expectedExceptions = ParseException.class, expectedExceptionsMessageRegExp = ".*maximum length.*")
+    public void testTokenOverMaximumLength() throws ParseException {
+
+        String token = token(HEADER, "{\"sub\":\"alice\"}");
+        CompactJwsPreParser.parse(token, token.length() - 1);
+    }
+
+    @DataProvider(name = "invalidCharacters")
+    public Object[][] invalidCharacters() {
+
+        return new Object[][]{{"+"}, {"/"}, {"="}, {" "}, {"%"}, {"\u00e9"}, {"\u0000"}};
+    }
+
+    @Test(dataProvider = "invalidCharacters", expectedExceptions = ParseException.class,
+            expectedExceptionsMessageRegExp = "Invalid character in JWT.")
+    public void testInvalidCharacterIsRejected(String character) throws ParseException {
+
+        CompactJwsPreParser.parse(token(HEADER, "{\"sub\":\"alice\"}") + character, MAX_LENGTH);
+    }
+
+    @DataProvider(name = "malformedSegments")
+    public Object[][] malformedSegments() {
+
+        String header = encode(HEADER);
+        String payload = encode("{\"sub\":\"alice\"}");
+        return new Object[][]{
+                {""},
+                {header},
+                {header + "." + payload},
+                {header + "." + payload + "."},
+                {"." + payload + "." + SIGNATURE},
+                {header + ".." + SIGNATURE},
+                {header + "." + payload + "." + SIGNATURE + ".extra"},
+                {header + "." + payload.substring(0, payload.length() - 1) + "." + SIGNATURE.substring(0, 1)},
+                {"A" + "." + payload + "." + SIGNATURE}
+        };
+    }
+
+    @Test(dataProvider = "malformedSegments", expectedExceptions = ParseException.class)
+    public void testMalformedSegmentsAreRejected(String token) throws ParseException {
+
+        CompactJwsPreParser.parse(token, MAX_LENGTH);
+    }
+
+    @DataProvider(name = "malformedJson")
+    public Object[][] malformedJson() {
+
+        return new Object[][]{
+                {"[]"},
+                {"\"sub\""},
+                {"{\"sub\":\"alice\""},
+                {"{\"sub\" \"alice\"}"},
+                {"{\"sub\":\"alice\" \"iss\":\"issuer-1\"}"},
+                {"{\"sub\":\"alice\"}}"},
+                {"{\"sub\":\"alice\"} trailing"},
+                {"{sub:\"alice\"}"},
+                {"{\"sub\":}"},
+                {"{\"sub\":true}"},
+                {"{\"aud\":}"},
+                {"{\"sub\":\"alice\\u00\"}"},
+                {"{\"sub\":\"alice"}
+        };
+    }
+
+    @Test(dataProvider = "malformedJson", expectedExceptions = ParseException.class)
+    public void testMalformedJsonIsRejected(String payload) throws ParseException {
+
+        CompactJwsPreParser.parse(token(HEADER, payload), MAX_LENGTH);
+    }
+
+    @DataProvider(name = "duplicateMembers")
+    public Object[][] duplicateMembers() {
+
+        return new Object[][]{
+                {"{\"alg\":\"RS256\",\"alg\":\"none\"}", "{\"sub\":\"alice\"}"},
+                {"{\"kid\":\"key-1\",\"alg\":\"RS256\",\"kid\":\"key-2\"}", "{\"sub\":\"alice\"}"},
+                {HEADER, "{\"sub\":\"alice\",\"sub\":\"admin\"}"},
+                {HEADER, "{\"iss\":\"issuer-1\",\"iss\":\"issuer-2\"}"},
+                {HEADER, "{\"jti\":\"jti-1\",\"jti\":\"jti-2\"}"},
+                {HEADER, "{\"exp\":1600000000,\"exp\":1900000000}"},
+                {HEADER, "{\"sub\":\"alice\",\"s\\u0075b\":\"admin\"}"}
+        };
+    }
+
+    @Test(dataProvider = "duplicateMembers", expectedExceptions = ParseException.class,
+            expectedExceptionsMessageRegExp = "Duplicate member: .*")
+    public void testDuplicateMembersAreRejected(String header, String payload) throws ParseException {
+
+        CompactJwsPreParser.parse(token(header, payload), MAX_LENGTH);
+    }
+
+    @Test
+    public void testDuplicateSkippedMembersAreIgnored() throws ParseException {
+
+        PreParsedJws jws = CompactJwsPreParser.parse(token(HEADER, "{\"aud\":\"a\",\"aud\":\"b\",\"sub\":\"alice\"}"),
+                MAX_LENGTH);
+        assertEquals(jws.getSubject(), "alice");
+    }
+
+    @DataProvider(name = "nonNumericExpirationTimes")
+    public Object[][] nonNumericExpirationTimes() {
+
+        return new Object[][]{{"\"tomorrow\""}, {"\"\""}, {"1-2"}, {"1e"}, {"--1"}, {"\"0x10\""}};
+    }
+
+    @Test(dataProvider = "nonNumericExpirationTimes", expectedExceptions = ParseException.class,
+            expectedExceptionsMessageRegExp = "Invalid exp claim in JWT.")
+    public void testNonNumericExpirationTimeIsRejected(String exp) throws ParseException {
+
+        CompactJwsPreParser.parse(token(HEADER, "{\"sub\":\"alice\",\"exp\":" + exp + "}"), MAX_LENGTH);
+    }
+
+    private static String token(String header, String payload) {
+
+        return encode(header) + "." + encode(payload) + "." + SIGNATURE;
+    }
+
+    private static String encode(String json) {
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
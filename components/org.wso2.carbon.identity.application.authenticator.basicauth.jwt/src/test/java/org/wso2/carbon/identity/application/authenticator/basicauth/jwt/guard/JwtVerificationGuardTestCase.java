@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
+
+import java.util.concurrent.Semaphore;
+
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class JwtVerificationGuardTestCase {
+
+    private static final String SOURCE = "198.51.100.1";
+    private static final String TOKEN = "header.payload.signature";
+
+    @Test
+    public void testSourceBudget() throws VerificationThrottledException {
+
+        JwtVerificationGuard guard = new JwtVerificationGuard(1, 100, 4, 1);
+        // The budget allows a burst of twice the rate.
+        guard.admit(SOURCE, TOKEN);
+        guard.admit(SOURCE, TOKEN);
+        assertThrottled(() -> guard.admit(SOURCE, TOKEN));
+
+        // Other sources have their own budget.
+        guard.admit("198.51.100.2", TOKEN);
+    }
+
+    @Test
+    public void testVerifiedIssuerBudget() throws VerificationThrottledException {
+
+        JwtVerificationGuard guard = new JwtVerificationGuard(100, 1, 4, 1);
+        guard.admitVerifiedIssuer("issuer-1");
+        guard.admitVerifiedIssuer("issuer-1");
+        assertThrottled(() -> guard.admitVerifiedIssuer("issuer-1"));
+
+        // Other issuers, and tokens which are not verified yet, are not affected.
+        guard.admitVerifiedIssuer("issuer-2");
+        guard.admit(SOURCE, TOKEN);
+    }
+
+    @Test
+    public void testRejectedTokenIsRejectedAgain() throws VerificationThrottledException {
+
+        JwtVerificationGuard guard = new JwtVerificationGuard(100, 100, 4, 1);
+        guard.recordRejection(TOKEN, new AuthenticationFailedException("Invalid signature."));
+
+        assertThrottled(() -> guard.admit(SOURCE, TOKEN));
+        guard.admit(SOURCE, "other.token.signature");
+    }
+
+    @Test
+    public void testTransientFailureIsNotRemembered() throws VerificationThrottledException {
+
+        JwtVerificationGuard guard = new JwtVerificationGuard(100, 100, 4, 1);
+        guard.recordRejection(TOKEN, new VerificationUnavailableException("Keystore is not available."));
+        guard.recordRejection(TOKEN, new VerificationThrottledException("Too many token login attempts."));
+
+        guard.admit(SOURCE, TOKEN);
+    }
+
+    @Test
+    public void testReservedVerificationsForTrustedSources() throws VerificationThrottledException {
+
+        JwtVerificationGuard guard = new JwtVerificationGuard(100, 100, 2, 1);
+        Semaphore sharedPermit = guard.acquireVerification(SOURCE);
+
+        // The shared capacity is used up, and the source has not logged in successfully yet.
+        assertThrottled(() -> guard.acquireVerification(SOURCE));
+
+        guard.recordSuccess(SOURCE);
+        Semaphore reservedPermit = guard.acquireVerification(SOURCE);
+        assertThrottled(() -> guard.acquireVerification(SOURCE));
+
+        reservedPermit.release();
+        sharedPermit.release();
+        assertSame(guard.acquireVerification("198.51.100.2"), sharedPermit);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidConfiguration() {
+
+        new JwtVerificationGuard(100, 100, 2, 2);
+    }
+
+    private static void assertThrottled(ThrottledCall call) {
+
+        try {
+            call.run();
+            fail("Expected the call to be throttled.");
+        } catch (VerificationThrottledException e) {
+            // Expected.
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThrottledCall {
+
+        void run() throws VerificationThrottledException;
+    }
+}
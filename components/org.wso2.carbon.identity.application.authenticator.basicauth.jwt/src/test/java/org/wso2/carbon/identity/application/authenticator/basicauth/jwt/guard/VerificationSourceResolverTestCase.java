@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.guard;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import javax.servlet.http.HttpServletRequest;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class VerificationSourceResolverTestCase {
+
+    private static final String HEADER = "X-Forwarded-For";
+
+    private final VerificationSourceResolver resolver = new VerificationSourceResolver(HEADER,
+            Arrays.asList("10.0.0.1", "10.0.0.2"));
+
+    @DataProvider(name = "sources")
+    public Object[][] sources() {
+
+        return new Object[][]{
+                // Requests which do not come from a trusted proxy are keyed on the remote address.
+                {"203.0.113.7", "198.51.100.1", "203.0.113.7"},
+                {"203.0.113.7", null, "203.0.113.7"},
+                // The rightmost address which is not a trusted proxy is the source.
+                {"10.0.0.1", "198.51.100.1", "198.51.100.1"},
+                {"10.0.0.1", "198.51.100.1, 10.0.0.2", "198.51.100.1"},
+                {"10.0.0.1", "192.0.2.66, 198.51.100.1, 10.0.0.2", "198.51.100.1"},
+                {"10.0.0.1", "198.51.100.1, , 10.0.0.2", "198.51.100.1"},
+                // Only trusted proxies are listed.
+                {"10.0.0.1", "10.0.0.2", "10.0.0.2"},
+                {"10.0.0.1", null, "10.0.0.1"},
+                {"10.0.0.1", " , ", "10.0.0.1"}
+        };
+    }
+
+    @Test(dataProvider = "sources")
+    public void testResolve(String remoteAddress, String forwardedFor, String expectedSource) {
+
+        assertEquals(resolver.resolve(remoteAddress, forwardedFor), expectedSource);
+    }
+
+    @Test
+    public void testResolveRequestWithRepeatedHeaders() {
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(request.getHeaders(HEADER)).thenReturn(Collections.enumeration(
+                Arrays.asList("192.0.2.66", "198.51.100.1, 10.0.0.2")));
+
+        assertEquals(resolver.resolve(request), "198.51.100.1");
+    }
+
+    @Test
+    public void testHeaderIsIgnoredWithoutTrustedProxies() {
+
+        VerificationSourceResolver untrustedResolver = new VerificationSourceResolver(HEADER,
+                Collections.<String>emptyList());
+        assertEquals(untrustedResolver.resolve("10.0.0.1", "198.51.100.1"), "10.0.0.1");
+    }
+
+    @Test
+    public void testRemoteAddressIsUsedWithoutHeader() {
+
+        VerificationSourceResolver defaultResolver = new VerificationSourceResolver(null,
+                Collections.singletonList("10.0.0.1"));
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+
+        assertEquals(defaultResolver.resolve(request), "10.0.0.1");
+        assertEquals(defaultResolver.resolve("10.0.0.1", "198.51.100.1"), "10.0.0.1");
+    }
+}
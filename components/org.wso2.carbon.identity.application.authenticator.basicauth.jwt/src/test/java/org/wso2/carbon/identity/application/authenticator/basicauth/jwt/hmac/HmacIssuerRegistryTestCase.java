@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.hmac;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class HmacIssuerRegistryTestCase {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    private Path path;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        path = Files.createTempFile("hmac-issuers", ".properties");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void testIssuerIsRestrictedToItsTenants() throws IOException {
+
+        HmacIssuerRegistry registry = load("HmacIssuer.1.Name=https://portal.example.com",
+                "HmacIssuer.1.Secret=" + SECRET,
+                "HmacIssuer.1.TenantDomains=carbon.super, wso2.com");
+
+        assertTrue(registry.isHmacIssuer("https://portal.example.com"));
+        assertNotNull(registry.getVerifier("https://portal.example.com", "carbon.super"));
+        assertNotNull(registry.getVerifier("https://portal.example.com", "wso2.com"));
+        assertNull(registry.getVerifier("https://portal.example.com", "abc.com"));
+        assertNull(registry.getVerifier("https://portal.example.com", null));
+        assertNull(registry.getVerifier("https://other.example.com", "carbon.super"));
+    }
+
+    @Test
+    public void testIssuerWithoutTenantDomainsIsSkipped() throws IOException {
+
+        HmacIssuerRegistry registry = load("HmacIssuer.1.Name=https://portal.example.com",
+                "HmacIssuer.1.Secret=" + SECRET,
+                "HmacIssuer.2.Name=https://admin.example.com",
+                "HmacIssuer.2.Secret=" + SECRET,
+                "HmacIssuer.2.TenantDomains= , ",
+                "HmacIssuer.3.Name=https://tenant.example.com",
+                "HmacIssuer.3.Secret=" + SECRET,
+                "HmacIssuer.3.TenantDomains=wso2.com");
+
+        assertFalse(registry.isHmacIssuer("https://portal.example.com"));
+        assertNull(registry.getVerifier("https://portal.example.com", "carbon.super"));
+        assertFalse(registry.isHmacIssuer("https://admin.example.com"));
+        assertNull(registry.getVerifier("https://admin.example.com", "carbon.super"));
+        assertNotNull(registry.getVerifier("https://tenant.example.com", "wso2.com"));
+    }
+
+    @Test
+    public void testIssuerTrustedForAllTenants() throws IOException {
+
+        HmacIssuerRegistry registry = load("HmacIssuer.1.Name=https://portal.example.com",
+                "HmacIssuer.1.Secret=" + SECRET,
+                "HmacIssuer.1.TenantDomains=*");
+
+        assertNotNull(registry.getVerifier("https://portal.example.com", "carbon.super"));
+        assertNotNull(registry.getVerifier("https://portal.example.com", "abc.com"));
+        assertNull(registry.getVerifier("https://portal.example.com", null));
+    }
+
+    @Test
+    public void testInvalidIssuersAreSkipped() throws IOException {
+
+        HmacIssuerRegistry registry = load("HmacIssuer.1.Name=https://portal.example.com",
+                "HmacIssuer.1.TenantDomains=carbon.super",
+                "HmacIssuer.2.Name=https://short.example.com",
+                "HmacIssuer.2.Secret=too-short",
+                "HmacIssuer.2.TenantDomains=carbon.super");
+
+        assertFalse(registry.isHmacIssuer("https://portal.example.com"));
+        assertFalse(registry.isHmacIssuer("https://short.example.com"));
+    }
+
+    @Test
+    public void testMissingFile() throws IOException {
+
+        Files.delete(path);
+        assertFalse(HmacIssuerRegistry.load(path).isHmacIssuer("https://portal.example.com"));
+    }
+
+    private HmacIssuerRegistry load(String... lines) throws IOException {
+
+        Files.write(path, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        return HmacIssuerRegistry.load(path);
+    }
+}
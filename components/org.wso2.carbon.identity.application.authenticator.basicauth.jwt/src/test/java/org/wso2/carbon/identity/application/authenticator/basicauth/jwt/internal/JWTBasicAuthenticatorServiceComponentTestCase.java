@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.internal;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.LoopbackReplayClaimTransport;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.PartitionedReplayDetector;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.ReplayClaimException;
+import org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay.ReplayClaimHandler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class JWTBasicAuthenticatorServiceComponentTestCase {
+
+    private final JWTBasicAuthenticatorServiceComponent serviceComponent = new JWTBasicAuthenticatorServiceComponent();
+
+    @AfterMethod
+    public void tearDown() {
+
+        JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().setReplayDetector(null);
+    }
+
+    @Test
+    public void testBoundTransportReceivesClaimsForTheLocalDetector() throws ReplayClaimException {
+
+        Map<String, ReplayClaimHandler> cluster = new ConcurrentHashMap<>();
+        LoopbackReplayClaimTransport localTransport = new LoopbackReplayClaimTransport("member-local", cluster);
+        LoopbackReplayClaimTransport remoteTransport = new LoopbackReplayClaimTransport("member-remote", cluster);
+        PartitionedReplayDetector remoteDetector = new PartitionedReplayDetector(remoteTransport);
+        remoteTransport.setClaimHandler(remoteDetector);
+
+        serviceComponent.setReplayClaimTransport(localTransport);
+        PartitionedReplayDetector localDetector =
+                JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getReplayDetector();
+        assertSame(cluster.get("member-local"), localDetector);
+
+        // A claim sent by the remote member reaches the local detector through the transport.
+        long expiry = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+        assertTrue(remoteTransport.claim("member-local", "jti-1", expiry));
+        assertFalse(localDetector.handleClaim("jti-1", expiry));
+        assertFalse(remoteTransport.claim("member-local", "jti-1", expiry));
+    }
+
+    @Test
+    public void testUnboundTransportLeavesTheCluster() {
+
+        Map<String, ReplayClaimHandler> cluster = new ConcurrentHashMap<>();
+        LoopbackReplayClaimTransport localTransport = new LoopbackReplayClaimTransport("member-local", cluster);
+
+        serviceComponent.setReplayClaimTransport(localTransport);
+        serviceComponent.unsetReplayClaimTransport(localTransport);
+        assertFalse(cluster.containsKey("member-local"));
+        assertNull(JWTBasicAuthenticatorServiceComponentDataHolder.getInstance().getReplayDetector());
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.jwks;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationBus;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationListener;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class JwksKeyIndexTestCase {
+
+    private static final String TENANT_DOMAIN = "wso2.com";
+    private static final String KEY_ID = "kid-1";
+
+    private RSAKey originalKey;
+    private RSAKey rotatedKey;
+    private RSAKey otherKey;
+    private Path directory;
+    private JwksKeyIndex jwksKeyIndex;
+    private final List<InvalidationEvent> publishedEvents = new ArrayList<>();
+    private final InvalidationListener listener = publishedEvents::addAll;
+
+    @BeforeClass
+    public void generateKeys() throws NoSuchAlgorithmException {
+
+        originalKey = generateKey(KEY_ID);
+        rotatedKey = generateKey(KEY_ID);
+        otherKey = generateKey("kid-2");
+    }
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("jwks");
+        jwksKeyIndex = new JwksKeyIndex(directory);
+        publishedEvents.clear();
+        InvalidationBus.getInstance().addListener(listener);
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        InvalidationBus.getInstance().removeListener(listener);
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Object path : paths.toArray()) {
+                Files.delete((Path) path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testKeysAreIndexed() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey, otherKey);
+        jwksKeyIndex.refresh();
+
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), originalKey);
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, "kid-2"), otherKey);
+        assertNull(jwksKeyIndex.getVerifier(TENANT_DOMAIN, "kid-3"));
+        assertNull(jwksKeyIndex.getVerifier("carbon.super", KEY_ID));
+    }
+
+    @Test
+    public void testReplacedKeyIsPublishedWithItsThumbprint() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey, otherKey);
+        jwksKeyIndex.refresh();
+        writeJwks(TENANT_DOMAIN, rotatedKey, otherKey);
+        jwksKeyIndex.refresh();
+
+        assertEquals(publishedEvents, Arrays.asList(invalidation(originalKey)));
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), rotatedKey);
+    }
+
+    @Test
+    public void testRemoteInvalidationEvictsTheStaleKey() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey, otherKey);
+        jwksKeyIndex.refresh();
+
+        // Another node rotated the key, and the local file is not synchronized yet.
+        jwksKeyIndex.invalidate(invalidation(originalKey));
+        assertNull(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID));
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, "kid-2"), otherKey);
+
+        // Reloading the stale file does not bring the key back, nor publishes it again.
+        jwksKeyIndex.refresh();
+        assertNull(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID));
+        assertTrue(publishedEvents.isEmpty());
+
+        // The key is indexed again once the file is synchronized.
+        writeJwks(TENANT_DOMAIN, rotatedKey, otherKey);
+        jwksKeyIndex.refresh();
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), rotatedKey);
+        assertTrue(publishedEvents.isEmpty());
+    }
+
+    @Test
+    public void testInvalidationOfAnotherVersionIsIgnored() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey);
+        jwksKeyIndex.refresh();
+        writeJwks(TENANT_DOMAIN, rotatedKey);
+        jwksKeyIndex.refresh();
+
+        // The node receives its own invalidation of the original key, which must not evict the rotated key.
+        for (InvalidationEvent event : new ArrayList<>(publishedEvents)) {
+            jwksKeyIndex.invalidate(event);
+        }
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), rotatedKey);
+    }
+
+    @Test
+    public void testInvalidationOfAnotherTenantIsIgnored() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey);
+        jwksKeyIndex.refresh();
+
+        jwksKeyIndex.invalidate(new InvalidationEvent(InvalidationEvent.Type.SIGNING_KEY, "carbon.super",
+                KEY_ID + "#" + originalKey.computeThumbprint()));
+        jwksKeyIndex.invalidate(new InvalidationEvent(InvalidationEvent.Type.TENANT, TENANT_DOMAIN, null));
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), originalKey);
+    }
+
+    @Test
+    public void testInvalidationWithoutThumbprintReloads() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey);
+        jwksKeyIndex.refresh();
+        writeJwks(TENANT_DOMAIN, rotatedKey);
+
+        jwksKeyIndex.invalidate(new InvalidationEvent(InvalidationEvent.Type.SIGNING_KEY, TENANT_DOMAIN, KEY_ID));
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), rotatedKey);
+    }
+
+    @Test
+    public void testEvictedKeyRemovedFromTheFileIsForgotten() throws Exception {
+
+        writeJwks(TENANT_DOMAIN, originalKey, otherKey);
+        jwksKeyIndex.refresh();
+        jwksKeyIndex.invalidate(invalidation(originalKey));
+
+        // The file drops the key, then publishes the same version again, such as when a revocation is reverted.
+        writeJwks(TENANT_DOMAIN, otherKey);
+        jwksKeyIndex.refresh();
+        writeJwks(TENANT_DOMAIN, originalKey, otherKey);
+        jwksKeyIndex.refresh();
+        assertVerifies(jwksKeyIndex.getVerifier(TENANT_DOMAIN, KEY_ID), originalKey);
+    }
+
+    private void writeJwks(String tenantDomain, RSAKey... keys) throws IOException {
+
+        List<JWK> publicKeys = new ArrayList<>();
+        for (RSAKey key : keys) {
+            publicKeys.add(key.toPublicJWK());
+        }
+        Files.write(directory.resolve(tenantDomain + ".jwks"),
+                new JWKSet(publicKeys).toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static InvalidationEvent invalidation(RSAKey key) throws JOSEException {
+
+        return new InvalidationEvent(InvalidationEvent.Type.SIGNING_KEY, TENANT_DOMAIN,
+                key.getKeyID() + "#" + key.computeThumbprint());
+    }
+
+    private static void assertVerifies(JWSVerifier verifier, RSAKey key) throws JOSEException {
+
+        assertNotNull(verifier);
+        JWSObject jws = new JWSObject(new JWSHeader(JWSAlgorithm.RS256), new Payload("payload"));
+        jws.sign(new RSASSASigner(key));
+        assertTrue(jws.verify(verifier));
+    }
+
+    private static RSAKey generateKey(String keyId) throws NoSuchAlgorithmException {
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        return new RSAKey.Builder((RSAPublicKey) keyPair.getPublic()).privateKey(keyPair.getPrivate()).keyID(keyId)
+                .build();
+    }
+}
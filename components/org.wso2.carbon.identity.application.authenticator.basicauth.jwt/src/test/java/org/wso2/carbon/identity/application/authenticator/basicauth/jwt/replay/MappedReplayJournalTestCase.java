@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class MappedReplayJournalTestCase {
+
+    private static final int SLOT_COUNT = 8;
+
+    private Path directory;
+    private Path journalPath;
+    private final List<MappedReplayJournal> openJournals = new ArrayList<>();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("replay-journal");
+        journalPath = directory.resolve("replay.journal");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        openJournals.forEach(MappedReplayJournal::close);
+        openJournals.clear();
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Object path : paths.toArray()) {
+                Files.delete((Path) path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testReplayIsDetected() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        assertFalse(journal.contains("jti-1"));
+        assertTrue(journal.claim("jti-1", expiresLater()));
+        assertTrue(journal.contains("jti-1"));
+        assertFalse(journal.claim("jti-1", expiresLater()));
+    }
+
+    @Test
+    public void testExpiredEntryIsNotAReplay() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        assertTrue(journal.claim("jti-1", expired()));
+        assertFalse(journal.contains("jti-1"));
+        assertTrue(journal.claim("jti-1", expiresLater()));
+        assertEquals(journal.getOccupiedSlotCount(), 1);
+    }
+
+    @Test
+    public void testCollidingJtisAreProbed() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        List<String> jtis = findCollidingJtis(3);
+        for (String jti : jtis) {
+            assertTrue(journal.claim(jti, expiresLater()));
+        }
+        for (String jti : jtis) {
+            assertTrue(journal.contains(jti));
+            assertFalse(journal.claim(jti, expiresLater()));
+        }
+        assertEquals(journal.getOccupiedSlotCount(), 3);
+    }
+
+    @Test
+    public void testExpiredSlotInProbeSequenceIsReused() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        List<String> jtis = findCollidingJtis(3);
+        assertTrue(journal.claim(jtis.get(0), expired()));
+        assertTrue(journal.claim(jtis.get(1), expiresLater()));
+
+        // The expired first slot is reused, and the live entry after it is still found.
+        assertTrue(journal.claim(jtis.get(2), expiresLater()));
+        assertEquals(journal.getOccupiedSlotCount(), 2);
+        assertTrue(journal.contains(jtis.get(1)));
+        assertTrue(journal.contains(jtis.get(2)));
+    }
+
+    @Test
+    public void testFullJournalDoesNotLoseEntries() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            assertTrue(journal.claim("jti-" + i, expiresLater()));
+        }
+        // The new jti cannot be recorded, but the login is not rejected and the recorded entries are kept.
+        assertTrue(journal.claim("jti-overflow", expiresLater()));
+        assertFalse(journal.contains("jti-overflow"));
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            assertTrue(journal.contains("jti-" + i));
+        }
+    }
+
+    @Test
+    public void testCompactionRemovesExpiredEntries() throws IOException, InterruptedException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        List<String> jtis = findCollidingJtis(4);
+        long shortExpiry = System.currentTimeMillis() + 50;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(journal.claim(jtis.get(i), shortExpiry));
+        }
+        assertTrue(journal.claim(jtis.get(3), expiresLater()));
+        assertTrue(journal.claim("other-jti", expiresLater()));
+        int occupiedSlots = journal.getOccupiedSlotCount();
+        assertEquals(occupiedSlots, 5);
+        waitUntilPassed(shortExpiry);
+
+        journal.compactIfNeeded();
+        assertEquals(journal.getOccupiedSlotCount(), occupiedSlots - 3);
+        assertTrue(journal.contains(jtis.get(3)));
+        assertTrue(journal.contains("other-jti"));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(journal.contains(jtis.get(i)));
+        }
+    }
+
+    @Test
+    public void testCompactionIsSkippedBelowThreshold() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        assertTrue(journal.claim("jti-expired", expired()));
+        assertTrue(journal.claim("jti-live", expiresLater()));
+
+        journal.compactIfNeeded();
+        assertEquals(journal.getOccupiedSlotCount(), 2);
+        assertTrue(journal.contains("jti-live"));
+    }
+
+    @Test
+    public void testEntriesSurviveReopen() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        assertTrue(journal.claim("jti-live", expiresLater()));
+        assertTrue(journal.claim("jti-expired", expired()));
+        close(journal);
+
+        MappedReplayJournal reopened = open(SLOT_COUNT);
+        assertTrue(reopened.contains("jti-live"));
+        assertFalse(reopened.claim("jti-live", expiresLater()));
+        assertFalse(reopened.contains("jti-expired"));
+        assertEquals(reopened.getOccupiedSlotCount(), 2);
+    }
+
+    @Test
+    public void testReopenWithDifferentSlotCountKeepsLiveEntries() throws IOException {
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        assertTrue(journal.claim("jti-live", expiresLater()));
+        assertTrue(journal.claim("jti-expired", expired()));
+        close(journal);
+
+        MappedReplayJournal resized = open(SLOT_COUNT * 4);
+        assertTrue(resized.contains("jti-live"));
+        assertFalse(resized.contains("jti-expired"));
+        assertEquals(resized.getOccupiedSlotCount(), 1);
+        assertEquals(Files.size(journalPath), 16 + SLOT_COUNT * 4 * 16L);
+    }
+
+    @Test
+    public void testInvalidJournalIsDiscarded() throws IOException {
+
+        Files.write(journalPath, "not a replay journal, just some text".getBytes(StandardCharsets.UTF_8));
+
+        MappedReplayJournal journal = open(SLOT_COUNT);
+        assertEquals(journal.getOccupiedSlotCount(), 0);
+        assertTrue(journal.claim("jti-1", expiresLater()));
+        assertTrue(journal.contains("jti-1"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSlotCount() throws IOException {
+
+        open(0);
+    }
+
+    private MappedReplayJournal open(int slotCount) throws IOException {
+
+        MappedReplayJournal journal = MappedReplayJournal.open(journalPath, slotCount);
+        openJournals.add(journal);
+        return journal;
+    }
+
+    private void close(MappedReplayJournal journal) {
+
+        journal.close();
+        openJournals.remove(journal);
+    }
+
+    /**
+     * Find jtis of which the fingerprints address the same first slot of the journal.
+     */
+    private static List<String> findCollidingJtis(int count) {
+
+        List<String> jtis = new ArrayList<>();
+        long firstSlot = -1;
+        for (int i = 0; jtis.size() < count; i++) {
+            String jti = "colliding-jti-" + i;
+            long slot = (MappedReplayJournal.fingerprint(jti) & Long.MAX_VALUE) % SLOT_COUNT;
+            if (firstSlot < 0) {
+                firstSlot = slot;
+            }
+            if (slot == firstSlot) {
+                jtis.add(jti);
+            }
+        }
+        return jtis;
+    }
+
+    private static void waitUntilPassed(long time) throws InterruptedException {
+
+        while (System.currentTimeMillis() <= time) {
+            TimeUnit.MILLISECONDS.sleep(time - System.currentTimeMillis() + 1);
+        }
+    }
+
+    private static long expiresLater() {
+
+        return System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+    }
+
+    private static long expired() {
+
+        return System.currentTimeMillis() - 1;
+    }
+}
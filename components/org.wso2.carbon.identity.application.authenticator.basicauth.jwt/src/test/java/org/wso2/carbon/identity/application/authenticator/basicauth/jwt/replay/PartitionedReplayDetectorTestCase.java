@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.jwt.replay;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Tests for the {@link PartitionedReplayDetector}, run against a stand-in cluster of members in the same JVM.
+ */
+public class PartitionedReplayDetectorTestCase {
+
+    private static final String[] MEMBER_IDS = {"member-1", "member-2", "member-3"};
+
+    private Map<String, ReplayClaimHandler> cluster;
+    private Map<String, LoopbackReplayClaimTransport> transports;
+    private Map<String, PartitionedReplayDetector> detectors;
+
+    @BeforeMethod
+    public void setUp() {
+
+        cluster = new ConcurrentHashMap<>();
+        transports = new LinkedHashMap<>();
+        detectors = new LinkedHashMap<>();
+        for (String memberId : MEMBER_IDS) {
+            join(memberId);
+        }
+    }
+
+    @Test
+    public void testClaimHandlerJoinsTheCluster() {
+
+        assertEquals(cluster.keySet(), new HashSet<>(Arrays.asList(MEMBER_IDS)));
+        for (String memberId : MEMBER_IDS) {
+            assertEquals(cluster.get(memberId), detectors.get(memberId));
+        }
+    }
+
+    @Test
+    public void testReplayIsDetectedAtEveryMember() throws ReplayClaimException {
+
+        for (int i = 0; i < 50; i++) {
+            String jti = "jti-" + i;
+            String acceptingMember = MEMBER_IDS[i % MEMBER_IDS.length];
+            assertTrue(detectors.get(acceptingMember).claim(jti, expiresLater()));
+            for (String memberId : MEMBER_IDS) {
+                assertFalse(detectors.get(memberId).claim(jti, expiresLater()),
+                        "Replay of: " + jti + " was accepted by: " + memberId);
+            }
+        }
+    }
+
+    @Test
+    public void testClaimIsRecordedOnlyAtTheOwner() throws ReplayClaimException {
+
+        String jti = "jti-owned";
+        String owner = new ConsistentHashRing(cluster.keySet()).getOwner(jti);
+        String claimingMember = otherMember(owner);
+        assertTrue(detectors.get(claimingMember).claim(jti, expiresLater()));
+
+        for (String memberId : MEMBER_IDS) {
+            // Only the owner holds the claim on behalf of the cluster.
+            assertEquals(detectors.get(memberId).handleClaim(jti, expiresLater()), !memberId.equals(owner));
+        }
+    }
+
+    @Test
+    public void testConcurrentClaimsAreAcceptedOnce() throws Exception {
+
+        int claimsPerMember = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(MEMBER_IDS.length * claimsPerMember);
+        try {
+            for (int i = 0; i < 20; i++) {
+                String jti = "jti-concurrent-" + i;
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> results = new ArrayList<>();
+                for (String memberId : MEMBER_IDS) {
+                    for (int j = 0; j < claimsPerMember; j++) {
+                        results.add(executor.submit(claim(start, detectors.get(memberId), jti)));
+                    }
+                }
+                start.countDown();
+                int accepted = 0;
+                for (Future<Boolean> result : results) {
+                    if (result.get(10, TimeUnit.SECONDS)) {
+                        accepted++;
+                    }
+                }
+                assertEquals(accepted, 1, "Accepted claims of: " + jti);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testUnreachableOwnerFailsTheClaim() {
+
+        String jti = joinUnreachableMember();
+        // A failed claim is not recorded as seen, so retrying the login fails the same way instead of being rejected
+        // as a replay.
+        for (int i = 0; i < 2; i++) {
+            try {
+                detectors.get("member-1").claim(jti, expiresLater());
+                fail("The claim of a jti owned by an unreachable member should fail.");
+            } catch (ReplayClaimException e) {
+                assertEquals(e.getMessage(), "Member: member-unreachable is not reachable.");
+            }
+        }
+    }
+
+    @Test
+    public void testUnreachableOwnerIsClaimedLocallyWhenFailingOpen() throws ReplayClaimException {
+
+        String jti = joinUnreachableMember();
+        assertTrue(detectors.get("member-1").claim(jti, expiresLater(), true));
+        assertFalse(detectors.get("member-1").claim(jti, expiresLater(), true));
+        assertFalse(detectors.get("member-1").handleClaim(jti, expiresLater()));
+    }
+
+    @Test
+    public void testMemberJoiningTheCluster() throws ReplayClaimException {
+
+        join("member-4");
+        Set<String> members = new HashSet<>(cluster.keySet());
+        assertEquals(members.size(), MEMBER_IDS.length + 1);
+
+        // The members already in the cluster route the claims of the new member to it.
+        String jti = jtiOwnedBy(members, "member-4");
+        assertTrue(detectors.get("member-1").claim(jti, expiresLater()));
+        assertFalse(detectors.get("member-4").handleClaim(jti, expiresLater()));
+    }
+
+    @Test
+    public void testMemberLeavingTheCluster() throws ReplayClaimException {
+
+        transports.get("member-3").setClaimHandler(null);
+        assertFalse(cluster.containsKey("member-3"));
+
+        Set<String> remainingMembers = new HashSet<>(cluster.keySet());
+        for (int i = 0; i < 30; i++) {
+            String jti = "jti-after-leave-" + i;
+            String owner = new ConsistentHashRing(remainingMembers).getOwner(jti);
+            assertTrue(detectors.get("member-1").claim(jti, expiresLater()));
+            assertFalse(detectors.get("member-2").claim(jti, expiresLater()));
+            assertFalse(detectors.get(owner).handleClaim(jti, expiresLater()));
+        }
+    }
+
+    @Test
+    public void testExpiredClaimCanBeClaimedAgain() {
+
+        PartitionedReplayDetector detector = detectors.get("member-1");
+        assertTrue(detector.handleClaim("jti-expired", System.currentTimeMillis() - 1));
+        assertTrue(detector.handleClaim("jti-expired", expiresLater()));
+        assertFalse(detector.handleClaim("jti-expired", expiresLater()));
+    }
+
+    private void join(String memberId) {
+
+        LoopbackReplayClaimTransport transport = new LoopbackReplayClaimTransport(memberId, cluster);
+        PartitionedReplayDetector detector = new PartitionedReplayDetector(transport);
+        transport.setClaimHandler(detector);
+        transports.put(memberId, transport);
+        detectors.put(memberId, detector);
+    }
+
+    /**
+     * Replace the transports of the members with ones which also report a member that cannot be reached.
+     *
+     * @return a jti owned by the unreachable member.
+     */
+    private String joinUnreachableMember() {
+
+        // The member is still reported by the cluster, but does not receive claims any more.
+        for (String memberId : MEMBER_IDS) {
+            PartitionedReplayDetector detector = new PartitionedReplayDetector(
+                    new UnreachableMemberTransport(memberId, cluster, "member-unreachable"));
+            detectors.put(memberId, detector);
+            cluster.put(memberId, detector);
+        }
+        Set<String> memberIds = new HashSet<>(cluster.keySet());
+        memberIds.add("member-unreachable");
+        return jtiOwnedBy(memberIds, "member-unreachable");
+    }
+
+    private static String otherMember(String memberId) {
+
+        for (String candidate : MEMBER_IDS) {
+            if (!candidate.equals(memberId)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("The cluster has a single member.");
+    }
+
+    private static String jtiOwnedBy(Collection<String> memberIds, String owner) {
+
+        ConsistentHashRing ring = new ConsistentHashRing(memberIds);
+        for (int i = 0; ; i++) {
+            String jti = "jti-" + owner + "-" + i;
+            if (owner.equals(ring.getOwner(jti))) {
+                return jti;
+            }
+        }
+    }
+
+    private static Callable<Boolean> claim(CountDownLatch start, PartitionedReplayDetector detector, String jti) {
+
+        return () -> {
+            start.await();
+            return detector.claim(jti, expiresLater());
+        };
+    }
+
+    private static long expiresLater() {
+
+        return System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1);
+    }
+
+    /**
+     * Transport of a cluster in which one of the reported members cannot be reached.
+     */
+    private static class UnreachableMemberTransport extends LoopbackReplayClaimTransport {
+
+        private final Map<String, ReplayClaimHandler> members;
+        private final String unreachableMemberId;
+
+        UnreachableMemberTransport(String localMemberId, Map<String, ReplayClaimHandler> members,
+                                   String unreachableMemberId) {
+
+            super(localMemberId, members);
+            this.members = members;
+            this.unreachableMemberId = unreachableMemberId;
+        }
+
+        @Override
+        public Collection<String> getMemberIds() {
+
+            Set<String> memberIds = new HashSet<>(members.keySet());
+            memberIds.add(unreachableMemberId);
+            return memberIds;
+        }
+    }
+}
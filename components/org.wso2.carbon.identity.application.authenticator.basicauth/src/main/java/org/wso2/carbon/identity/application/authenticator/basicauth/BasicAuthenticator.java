@@ -26,6 +26,7 @@ import org.wso2.carbon.identity.application.authentication.framework.AbstractApp
 import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
 import org.wso2.carbon.identity.application.authentication.framework.LocalApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authentication.framework.config.ConfigurationFacade;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
 import org.wso2.carbon.identity.application.authentication.framework.context.AuthenticationContext;
 import org.wso2.carbon.identity.application.authentication.framework.exception.AuthenticationFailedException;
 import org.wso2.carbon.identity.application.authentication.framework.exception.InvalidCredentialsException;
@@ -33,8 +34,18 @@ import org.wso2.carbon.identity.application.authentication.framework.exception.L
 import org.wso2.carbon.identity.application.authentication.framework.model.AuthenticatedUser;
 import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkConstants;
 import org.wso2.carbon.identity.application.authentication.framework.util.FrameworkUtils;
+import org.wso2.carbon.identity.application.authenticator.basicauth.cache.CaptchaDecisionCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.cache.TenantIdCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.config.AuthenticatorParameterRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInvocation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.ServerTiming;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing.LoginTracing;
 import org.wso2.carbon.identity.application.authenticator.basicauth.internal.BasicAuthenticatorDataHolder;
 import org.wso2.carbon.identity.application.authenticator.basicauth.internal.BasicAuthenticatorServiceComponent;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlight;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlightException;
 import org.wso2.carbon.identity.application.common.model.Property;
 import org.wso2.carbon.identity.application.common.model.User;
 import org.wso2.carbon.identity.base.IdentityRuntimeException;
@@ -42,7 +53,6 @@ import org.wso2.carbon.identity.captcha.connector.recaptcha.SSOLoginReCaptchaCon
 import org.wso2.carbon.identity.captcha.util.CaptchaConstants;
 import org.wso2.carbon.identity.core.model.IdentityErrorMsgContext;
 import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
-import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
 import org.wso2.carbon.identity.governance.IdentityGovernanceException;
 import org.wso2.carbon.identity.governance.common.IdentityConnectorConfig;
@@ -61,6 +71,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -75,6 +86,14 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
     private static final String PASSWORD_RESET_ENDPOINT = "accountrecoveryendpoint/confirmrecovery.do?";
     private static final Log log = LogFactory.getLog(BasicAuthenticator.class);
     private static String RE_CAPTCHA_USER_DOMAIN = "user-domain-recaptcha";
+    private static final DuplicateSubmissionGuard duplicateSubmissionGuard =
+            new DuplicateSubmissionGuard(RE_CAPTCHA_USER_DOMAIN);
+    private static final LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+    private static final ServerTiming serverTiming = ServerTiming.getInstance();
+    private static final LoginTracing tracing = LoginTracing.getInstance();
+    private static final SingleFlight<Integer, UserRealm> userRealmLoads = new SingleFlight<>(
+            "BasicAuthenticator.UserRealms", BasicAuthenticatorConstants.COALESCED_LOAD_TIMEOUT_SECONDS,
+            TimeUnit.SECONDS);
     private List<String> omittingErrorParams = null;
 
     @Override
@@ -92,7 +111,23 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
         if (context.isLogoutRequest()) {
             return AuthenticatorFlowStatus.SUCCESS_COMPLETED;
         } else {
-            return super.process(request, response, context);
+            LoginInvocation invocation = instrumentation.startInvocation(getName(), context.getTenantDomain());
+            tracing.startTrace(invocation, request);
+            AuthenticatorFlowStatus status = null;
+            HttpServletResponse timedResponse = serverTiming.start(invocation, request, response,
+                    getAuthenticatorConfig().getParameterMap());
+            try {
+                status = super.process(request, timedResponse, context);
+                return status;
+            } finally {
+                // The password is only read back on the retry path of this request. Keep it out of the stored
+                // context.
+                if (context.getProperties() != null) {
+                    context.getProperties().remove(PASSWORD_PROPERTY);
+                }
+                serverTiming.end(invocation, response);
+                instrumentation.endInvocation(invocation, status);
+            }
         }
     }
 
@@ -101,6 +136,17 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
                                                  HttpServletResponse response, AuthenticationContext context)
             throws AuthenticationFailedException {
 
+        long phaseStart = instrumentation.startPhase(LoginPhase.REDIRECT_BUILD);
+        try {
+            redirectToLoginPage(request, response, context);
+        } finally {
+            instrumentation.endPhase(LoginPhase.REDIRECT_BUILD, phaseStart);
+        }
+    }
+
+    private void redirectToLoginPage(HttpServletRequest request, HttpServletResponse response,
+                                     AuthenticationContext context) throws AuthenticationFailedException {
+
         Map<String, String> parameterMap = getAuthenticatorConfig().getParameterMap();
         String showAuthFailureReason = null;
         String maskUserNotExistsErrorCode = null;
@@ -180,6 +226,7 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
                     log.debug("Identity error message context is not null");
                 }
                 String errorCode = errorContext.getErrorCode();
+                instrumentation.recordErrorCode(errorCode);
 
                 if (errorCode.equals(IdentityCoreConstants.USER_ACCOUNT_NOT_CONFIRMED_ERROR_CODE)) {
                     retryParam = BasicAuthenticatorConstants.AUTH_FAILURE_PARAM + "true" +
@@ -360,16 +407,30 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
 
         boolean isAuthenticated;
         UserStoreManager userStoreManager;
+        int tenantId;
         // Reset RE_CAPTCHA_USER_DOMAIN thread local variable before the authentication
         IdentityUtil.threadLocalProperties.get().remove(RE_CAPTCHA_USER_DOMAIN);
         // Check the authentication
         try {
-            int tenantId = IdentityTenantUtil.getTenantIdOfUser(username);
-            UserRealm userRealm = BasicAuthenticatorServiceComponent.getRealmService().getTenantUserRealm(tenantId);
+            long phaseStart = instrumentation.startPhase(LoginPhase.TENANT_RESOLUTION);
+            try {
+                tenantId = TenantIdCache.getInstance().getTenantIdOfUser(username);
+            } finally {
+                instrumentation.endPhase(LoginPhase.TENANT_RESOLUTION, phaseStart);
+            }
+            UserRealm userRealm = getUserRealm(tenantId);
             if (userRealm != null) {
                 userStoreManager = (UserStoreManager) userRealm.getUserStoreManager();
-                isAuthenticated = userStoreManager.authenticate(
-                        MultitenantUtils.getTenantAwareUsername(username), password);
+                String tenantAwareUsername = MultitenantUtils.getTenantAwareUsername(username);
+                // Identical submissions of the same context, such as a double-clicked login button, share one
+                // authentication.
+                phaseStart = instrumentation.startPhase(LoginPhase.AUTHENTICATE);
+                try {
+                    isAuthenticated = duplicateSubmissionGuard.authenticate(getContextIdentifier(request), username,
+                            password, () -> userStoreManager.authenticate(tenantAwareUsername, password));
+                } finally {
+                    instrumentation.endPhase(LoginPhase.AUTHENTICATE, phaseStart);
+                }
             } else {
                 throw new AuthenticationFailedException("Cannot find the user realm for the given tenant: " +
                         tenantId, User.getUserFromUserName(username));
@@ -379,6 +440,11 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
                 log.debug("BasicAuthentication failed while trying to get the tenant ID of the user " + username, e);
             }
             throw new AuthenticationFailedException(e.getMessage(), e);
+        } catch (SingleFlightException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("BasicAuthentication failed while waiting for the user realm of the user " + username, e);
+            }
+            throw new AuthenticationFailedException(e.getMessage(), e);
         } catch (org.wso2.carbon.user.api.UserStoreException e) {
             if (log.isDebugEnabled()) {
                 log.debug("BasicAuthentication failed while trying to authenticate the user " + username, e);
@@ -390,6 +456,7 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
             if (log.isDebugEnabled()) {
                 log.debug("User authentication failed due to invalid credentials");
             }
+            instrumentation.recordErrorCode(UserCoreConstants.ErrorCode.INVALID_CREDENTIAL);
             if (IdentityUtil.threadLocalProperties.get().get(RE_CAPTCHA_USER_DOMAIN) != null) {
                 username = IdentityUtil.addDomainToName(
                         username, IdentityUtil.threadLocalProperties.get().get(RE_CAPTCHA_USER_DOMAIN).toString());
@@ -403,7 +470,9 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
         String tenantDomain = MultitenantUtils.getTenantDomain(username);
 
         //TODO: user tenant domain has to be an attribute in the AuthenticationContext
-        authProperties.put("user-tenant-domain", tenantDomain);
+        authProperties.put(BasicAuthenticatorConstants.USER_TENANT_DOMAIN, tenantDomain);
+        // Carry the resolved tenant id forward, so the subsequent steps need not resolve it again.
+        authProperties.put(BasicAuthenticatorConstants.USER_TENANT_ID, tenantId);
 
         username = FrameworkUtils.prependUserStoreDomainToName(username);
 
@@ -425,8 +494,14 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
                             log.debug("Searching for UserNameAttribute value for user " + username +
                                     " for claim uri : " + userNameUri);
                         }
-                        String usernameValue = userStoreManager.
-                                getUserClaimValue(MultitenantUtils.getTenantAwareUsername(username), userNameUri, null);
+                        String usernameValue;
+                        long phaseStart = instrumentation.startPhase(LoginPhase.CLAIM_LOOKUP);
+                        try {
+                            usernameValue = userStoreManager.getUserClaimValue(
+                                    MultitenantUtils.getTenantAwareUsername(username), userNameUri, null);
+                        } finally {
+                            instrumentation.endPhase(LoginPhase.CLAIM_LOOKUP, phaseStart);
+                        }
                         if (StringUtils.isNotBlank(usernameValue)) {
                             tenantDomain = MultitenantUtils.getTenantDomain(username);
                             usernameValue = FrameworkUtils.prependUserStoreDomainToName(usernameValue);
@@ -477,6 +552,37 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
         return BasicAuthenticatorConstants.AUTHENTICATOR_NAME;
     }
 
+    /**
+     * Get the configuration of the authenticator, as reloaded from application-authentication.xml if the file has
+     * changed since the server started.
+     */
+    @Override
+    public AuthenticatorConfig getAuthenticatorConfig() {
+
+        AuthenticatorConfig reloadedConfig = AuthenticatorParameterRegistry.getInstance()
+                .getAuthenticatorConfig(getName());
+        return reloadedConfig != null ? reloadedConfig : super.getAuthenticatorConfig();
+    }
+
+    /**
+     * Get the user realm of the tenant. Concurrent calls for a tenant whose realm is not loaded yet share one load
+     * instead of each loading the realm from the user store.
+     *
+     * @param tenantId tenant ID
+     * @return the user realm of the tenant
+     * @throws org.wso2.carbon.user.api.UserStoreException if the user realm could not be loaded
+     */
+    private UserRealm getUserRealm(int tenantId) throws org.wso2.carbon.user.api.UserStoreException {
+
+        long phaseStart = instrumentation.startPhase(LoginPhase.REALM_LOOKUP);
+        try {
+            return userRealmLoads.execute(tenantId,
+                    () -> BasicAuthenticatorServiceComponent.getRealmService().getTenantUserRealm(tenantId));
+        } finally {
+            instrumentation.endPhase(LoginPhase.REALM_LOOKUP, phaseStart);
+        }
+    }
+
     private String buildErrorParamString(Map<String, String> paramMap) {
 
         StringBuilder params = new StringBuilder();
@@ -509,16 +615,11 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
      */
     private String getCaptchaParams(String tenantDomain) {
 
-        IdentityConnectorConfig connector = new SSOLoginReCaptchaConfig();
-        String defaultCaptchaConfigName = ((SSOLoginReCaptchaConfig) connector).getName() +
-                CaptchaConstants.ReCaptchaConnectorPropertySuffixes.ENABLE_ALWAYS;
-        Property[] connectorConfigs;
         String captchaParams = "";
 
+        long phaseStart = instrumentation.startPhase(LoginPhase.CAPTCHA_CONFIG);
         try {
-            connectorConfigs = BasicAuthenticatorDataHolder.getInstance().getIdentityGovernanceService()
-                    .getConfiguration(new String[]{defaultCaptchaConfigName}, tenantDomain);
-        if (!ArrayUtils.isEmpty(connectorConfigs) && Boolean.valueOf(connectorConfigs[0].getValue())) {
+            if (isCaptchaEnforcedAlways(tenantDomain)) {
                 Properties captchaConfigs = getCaptchaConfigs();
 
                 if (captchaConfigs != null && !captchaConfigs.isEmpty() &&
@@ -542,11 +643,28 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
         } catch (IdentityGovernanceException e) {
             log.error("Error occurred while verifying the captcha configs. Proceeding the authentication request " +
                     "without enabling recaptcha.", e);
+        } finally {
+            instrumentation.endPhase(LoginPhase.CAPTCHA_CONFIG, phaseStart);
         }
 
         return captchaParams;
     }
 
+    private boolean isCaptchaEnforcedAlways(String tenantDomain) throws IdentityGovernanceException {
+
+        Boolean enforceAlways = CaptchaDecisionCache.getInstance().getEnforceAlways(tenantDomain);
+        if (enforceAlways == null) {
+            IdentityConnectorConfig connector = new SSOLoginReCaptchaConfig();
+            String defaultCaptchaConfigName = ((SSOLoginReCaptchaConfig) connector).getName() +
+                    CaptchaConstants.ReCaptchaConnectorPropertySuffixes.ENABLE_ALWAYS;
+            Property[] connectorConfigs = BasicAuthenticatorDataHolder.getInstance().getIdentityGovernanceService()
+                    .getConfiguration(new String[]{defaultCaptchaConfigName}, tenantDomain);
+            enforceAlways = !ArrayUtils.isEmpty(connectorConfigs) && Boolean.valueOf(connectorConfigs[0].getValue());
+            CaptchaDecisionCache.getInstance().putEnforceAlways(tenantDomain, enforceAlways);
+        }
+        return enforceAlways;
+    }
+
     /**
      * Get the recaptcha configs from the data holder if they are valid.
      *
@@ -567,7 +685,7 @@ public class BasicAuthenticator extends AbstractApplicationAuthenticator
                     log.debug("Empty values found for the captcha properties in the file " + CaptchaConstants
                             .CAPTCHA_CONFIG_FILE_NAME + ".");
                 }
-                properties.clear();
+                return new Properties();
             }
         }
         return properties;
@@ -44,6 +44,14 @@ public abstract class BasicAuthenticatorConstants {
     public static final String RECAPTCHA_PARAM = "&reCaptcha=";
     public static final String RECAPTCHA_KEY_PARAM = "&reCaptchaKey=";
     public static final String RECAPTCHA_API_PARAM = "&reCaptchaAPI=";
+    public static final String USER_TENANT_DOMAIN = "user-tenant-domain";
+    public static final String USER_TENANT_ID = "user-tenant-id";
+    public static final String WARM_UP_TENANTS = "LocalAuthenticatorWarmUp.Tenants";
+    public static final String WARM_UP_TENANTS_PER_SECOND = "LocalAuthenticatorWarmUp.TenantsPerSecond";
+    public static final double DEFAULT_WARM_UP_TENANTS_PER_SECOND = 5;
+    public static final int MAX_WARM_UP_SNAPSHOT_TENANTS = 1000;
+    public static final String CACHE_SNAPSHOT_FILE = "basic-authenticator-caches.snapshot";
+    public static final long COALESCED_LOAD_TIMEOUT_SECONDS = 30;
 
     private BasicAuthenticatorConstants() {
     }
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.localcache.SingleFlight;
+import org.wso2.carbon.identity.core.model.IdentityErrorMsgContext;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces duplicate submissions of the login form. A double-clicked login button or a retrying client sends the
+ * same credentials more than once for the same authentication context, and each of them would otherwise run a full
+ * user store authentication and count towards the account lockout.
+ * <p>
+ * The first submission of a context and credential pair authenticates the user. The identical submissions arriving
+ * while it is in flight wait for its result instead. The thread local state the authentication leaves behind, such as
+ * the identity error of a failed login and the user store domain of the user, is replayed on the threads of the
+ * waiting submissions, so that they handle the result the same way as the first one. Submissions made after the first
+ * one completes authenticate again.
+ */
+public class DuplicateSubmissionGuard {
+
+    private static final Log log = LogFactory.getLog(DuplicateSubmissionGuard.class);
+
+    private final SingleFlight<String, Outcome> submissions = new SingleFlight<>("BasicAuthenticator.Submissions",
+            BasicAuthenticatorConstants.COALESCED_LOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    private final String[] threadLocalProperties;
+
+    /**
+     * @param threadLocalProperties names of the {@link IdentityUtil#threadLocalProperties} set by the authentication,
+     *                              which are replayed on the waiting submissions
+     */
+    public DuplicateSubmissionGuard(String... threadLocalProperties) {
+
+        this.threadLocalProperties = threadLocalProperties;
+    }
+
+    /**
+     * Authenticate the submission, or wait for the result of the identical submission in flight.
+     *
+     * @param contextId      identifier of the authentication context the submission belongs to
+     * @param username       submitted username
+     * @param password       submitted password
+     * @param authentication authentication of the submission
+     * @return whether the credentials are valid
+     * @throws UserStoreException if the authentication failed
+     */
+    public boolean authenticate(String contextId, String username, String password, Authentication authentication)
+            throws UserStoreException {
+
+        if (StringUtils.isBlank(contextId)) {
+            return authentication.authenticate();
+        }
+        AtomicBoolean authenticated = new AtomicBoolean();
+        Outcome outcome = submissions.execute(getSubmissionKey(contextId, username, password), () -> {
+            authenticated.set(true);
+            return capture(authentication.authenticate());
+        });
+        if (!authenticated.get()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Reused the result of the identical submission in flight for the context: " + contextId);
+            }
+            replay(outcome);
+        }
+        return outcome.authenticated;
+    }
+
+    /**
+     * Get the number of submissions that waited on the identical submission in flight instead of authenticating.
+     *
+     * @return coalesced submission count
+     */
+    long getCoalescedCount() {
+
+        return submissions.getCoalescedCount();
+    }
+
+    private Outcome capture(boolean authenticated) {
+
+        Map<String, Object> properties = new HashMap<>();
+        for (String property : threadLocalProperties) {
+            Object value = IdentityUtil.threadLocalProperties.get().get(property);
+            if (value != null) {
+                properties.put(property, value);
+            }
+        }
+        return new Outcome(authenticated, IdentityUtil.getIdentityErrorMsg(), UserCoreUtil.getDomainFromThreadLocal(),
+                properties);
+    }
+
+    private void replay(Outcome outcome) {
+
+        if (outcome.errorContext != null) {
+            IdentityUtil.setIdentityErrorMsg(outcome.errorContext);
+        }
+        if (outcome.userStoreDomain != null) {
+            UserCoreUtil.setDomainInThreadLocal(outcome.userStoreDomain);
+        }
+        IdentityUtil.threadLocalProperties.get().putAll(outcome.threadLocalProperties);
+    }
+
+    private static String getSubmissionKey(String contextId, String username, String password) {
+
+        // The credentials are hashed so that the key of an in-flight submission holds no password.
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(username.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(password.getBytes(StandardCharsets.UTF_8));
+            return contextId + ":" + Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported.", e);
+        }
+    }
+
+    /**
+     * Authentication of a submission against the user store.
+     */
+    @FunctionalInterface
+    public interface Authentication {
+
+        boolean authenticate() throws UserStoreException;
+    }
+
+    private static class Outcome {
+
+        private final boolean authenticated;
+        private final IdentityErrorMsgContext errorContext;
+        private final String userStoreDomain;
+        private final Map<String, Object> threadLocalProperties;
+
+        private Outcome(boolean authenticated, IdentityErrorMsgContext errorContext, String userStoreDomain,
+                        Map<String, Object> threadLocalProperties) {
+
+            this.authenticated = authenticated;
+            this.errorContext = errorContext;
+            this.userStoreDomain = userStoreDomain;
+            this.threadLocalProperties = threadLocalProperties;
+        }
+    }
+}
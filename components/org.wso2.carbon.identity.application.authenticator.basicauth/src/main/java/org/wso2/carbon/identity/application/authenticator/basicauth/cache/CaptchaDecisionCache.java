@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.cache;
+
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.SnapshotableCache;
+import org.wso2.carbon.identity.application.authenticator.localcache.LocalCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches, per tenant, whether the governance configuration enforces recaptcha always for the basic authentication,
+ * so that the login page redirect does not fetch the configuration of the tenant on every request. Decisions expire
+ * after a minute, which bounds how long a configuration change takes to apply.
+ */
+public class CaptchaDecisionCache implements SnapshotableCache {
+
+    private static final String SNAPSHOT_NAME = "captcha-decisions";
+    private static final String CACHE_NAME = "BasicAuthenticator.CaptchaDecisions";
+    private static final int MAX_ENTRIES = 10000;
+    private static final long TIME_TO_LIVE_MINUTES = 1;
+
+    private static final CaptchaDecisionCache instance = new CaptchaDecisionCache();
+
+    private final LocalCache<String, Boolean> decisions = LocalCache.<String, Boolean>builder(CACHE_NAME)
+            .maximumSize(MAX_ENTRIES)
+            .expireAfterWrite(TIME_TO_LIVE_MINUTES, TimeUnit.MINUTES)
+            .build();
+
+    private CaptchaDecisionCache() {
+
+    }
+
+    public static CaptchaDecisionCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the cached decision of the tenant.
+     *
+     * @param tenantDomain tenant domain
+     * @return whether recaptcha is enforced always, or null if the decision is not cached or has expired
+     */
+    public Boolean getEnforceAlways(String tenantDomain) {
+
+        if (tenantDomain == null) {
+            return null;
+        }
+        return decisions.getIfPresent(tenantDomain);
+    }
+
+    /**
+     * Cache the decision of the tenant.
+     *
+     * @param tenantDomain  tenant domain
+     * @param enforceAlways whether recaptcha is enforced always
+     */
+    public void putEnforceAlways(String tenantDomain, boolean enforceAlways) {
+
+        if (tenantDomain == null) {
+            return;
+        }
+        decisions.put(tenantDomain, enforceAlways);
+    }
+
+    /**
+     * Remove the decision of the tenant from the cache.
+     *
+     * @param tenantDomain tenant domain
+     */
+    public void invalidate(String tenantDomain) {
+
+        decisions.invalidate(tenantDomain);
+    }
+
+    /**
+     * Remove the decisions of all the tenants from the cache.
+     */
+    public void clear() {
+
+        decisions.invalidateAll();
+    }
+
+    @Override
+    public String getSnapshotName() {
+
+        return SNAPSHOT_NAME;
+    }
+
+    @Override
+    public Map<String, String> snapshot() {
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, Boolean> entry : decisions.toMap().entrySet()) {
+            entries.put(entry.getKey(), Boolean.toString(entry.getValue()));
+        }
+        return entries;
+    }
+
+    @Override
+    public void restore(Map<String, String> entries) {
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            decisions.putIfAbsent(entry.getKey(), Boolean.parseBoolean(entry.getValue()));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.cache;
+
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.SnapshotableCache;
+import org.wso2.carbon.identity.application.authenticator.localcache.LocalCache;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.utils.multitenancy.MultitenantUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Caches the tenant ids of the tenant domains logging in through the authenticator, along with how often each tenant
+ * logs in. The tenants with the most logins are the ones warmed up first after a restart.
+ */
+public class TenantIdCache implements SnapshotableCache {
+
+    public static final String SNAPSHOT_NAME = "tenant-ids";
+    private static final String CACHE_NAME = "BasicAuthenticator.TenantIds";
+    private static final int MAX_ENTRIES = 10000;
+
+    private static final TenantIdCache instance = new TenantIdCache();
+
+    private final LocalCache<String, CachedTenantId> tenantIds = LocalCache.<String, CachedTenantId>builder(CACHE_NAME)
+            .maximumSize(MAX_ENTRIES)
+            .build();
+
+    private TenantIdCache() {
+
+    }
+
+    public static TenantIdCache getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the tenant id of the tenant domain of the user, resolving it if it is not cached.
+     *
+     * @param username tenant qualified username
+     * @return tenant id
+     * @throws org.wso2.carbon.identity.base.IdentityRuntimeException if the tenant domain of the user is invalid
+     */
+    public int getTenantIdOfUser(String username) {
+
+        String tenantDomain = MultitenantUtils.getTenantDomain(username);
+        if (tenantDomain == null) {
+            return IdentityTenantUtil.getTenantIdOfUser(username);
+        }
+        CachedTenantId cachedTenantId = tenantIds.get(tenantDomain,
+                domain -> new CachedTenantId(IdentityTenantUtil.getTenantIdOfUser(username)));
+        cachedTenantId.hits.incrementAndGet();
+        return cachedTenantId.tenantId;
+    }
+
+    /**
+     * Remove the tenant domain from the cache.
+     *
+     * @param tenantDomain tenant domain
+     */
+    public void invalidate(String tenantDomain) {
+
+        tenantIds.invalidate(tenantDomain);
+    }
+
+    /**
+     * Remove all the tenant domains from the cache.
+     */
+    public void clear() {
+
+        tenantIds.invalidateAll();
+    }
+
+    /**
+     * Get the cached tenant domains with the most logins.
+     *
+     * @param limit maximum number of tenant domains
+     * @return tenant domains, the most logged in first
+     */
+    public List<String> getHottestTenants(int limit) {
+
+        return getEntriesByHits().stream()
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public String getSnapshotName() {
+
+        return SNAPSHOT_NAME;
+    }
+
+    @Override
+    public Map<String, String> snapshot() {
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (Map.Entry<String, CachedTenantId> entry : getEntriesByHits()) {
+            entries.put(entry.getKey(), entry.getValue().tenantId + ":" + entry.getValue().hits.get());
+        }
+        return entries;
+    }
+
+    @Override
+    public void restore(Map<String, String> entries) {
+
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String[] value = entry.getValue().split(":");
+            if (value.length != 2) {
+                continue;
+            }
+            try {
+                CachedTenantId cachedTenantId = new CachedTenantId(Integer.parseInt(value[0]));
+                cachedTenantId.hits.set(Long.parseLong(value[1]));
+                tenantIds.putIfAbsent(entry.getKey(), cachedTenantId);
+            } catch (NumberFormatException e) {
+                // Skip the invalid entry.
+            }
+        }
+    }
+
+    private List<Map.Entry<String, CachedTenantId>> getEntriesByHits() {
+
+        List<Map.Entry<String, CachedTenantId>> entries = new ArrayList<>(tenantIds.toMap().entrySet());
+        entries.sort(Comparator.comparingLong(
+                (Map.Entry<String, CachedTenantId> entry) -> entry.getValue().hits.get()).reversed());
+        return entries;
+    }
+
+    private static class CachedTenantId {
+
+        private final int tenantId;
+        private final AtomicLong hits = new AtomicLong();
+
+        private CachedTenantId(int tenantId) {
+
+            this.tenantId = tenantId;
+        }
+    }
+}
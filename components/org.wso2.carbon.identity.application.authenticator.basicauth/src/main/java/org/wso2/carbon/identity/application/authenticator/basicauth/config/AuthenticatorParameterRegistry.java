@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.wso2.carbon.identity.application.authentication.framework.config.builder.FileBasedConfigurationBuilder;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+/**
+ * Holds the authenticator configurations reloaded from application-authentication.xml after the server started.
+ * <p>
+ * Until the file is changed, the registry is empty and the authenticators use the configurations read by the
+ * framework at startup. On a change, the file is parsed off the request path and the configurations of all the
+ * authenticators are replaced at once. Parameters protected with the secure vault are not resolved on reload, and
+ * keep the values resolved at startup.
+ */
+public class AuthenticatorParameterRegistry {
+
+    private static final Log log = LogFactory.getLog(AuthenticatorParameterRegistry.class);
+
+    public static final String CONFIG_FILE_NAME = "application-authentication.xml";
+
+    private static final String AUTHENTICATOR_CONFIG_ELEMENT = "AuthenticatorConfig";
+    private static final String PARAMETER_ELEMENT = "Parameter";
+    private static final String NAME_ATTRIBUTE = "name";
+    private static final String ENABLED_ATTRIBUTE = "enabled";
+    private static final String SECRET_ALIAS_ATTRIBUTE = "secretAlias";
+
+    private static final AuthenticatorParameterRegistry instance = new AuthenticatorParameterRegistry();
+
+    private final AtomicReference<Map<String, AuthenticatorConfig>> authenticatorConfigs =
+            new AtomicReference<>(Collections.emptyMap());
+
+    private AuthenticatorParameterRegistry() {
+
+    }
+
+    public static AuthenticatorParameterRegistry getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Get the reloaded configuration of the authenticator.
+     *
+     * @param authenticatorName name of the authenticator
+     * @return the reloaded configuration, or null if the configuration has not been reloaded
+     */
+    public AuthenticatorConfig getAuthenticatorConfig(String authenticatorName) {
+
+        return authenticatorConfigs.get().get(authenticatorName);
+    }
+
+    /**
+     * Reload the authenticator configurations from the file. The current configurations are kept if the file cannot
+     * be parsed.
+     *
+     * @param path path of application-authentication.xml
+     */
+    public void reload(Path path) {
+
+        Map<String, AuthenticatorConfig> configs;
+        try (InputStream in = Files.newInputStream(path)) {
+            DocumentBuilderFactory factory = IdentityUtil.getSecuredDocumentBuilderFactory();
+            factory.setNamespaceAware(true);
+            configs = buildAuthenticatorConfigs(factory.newDocumentBuilder().parse(in));
+        } catch (IOException | SAXException | ParserConfigurationException e) {
+            log.error("Error while reloading the authenticator configurations from: " + path
+                    + ". Keeping the current configurations.", e);
+            return;
+        }
+        authenticatorConfigs.set(Collections.unmodifiableMap(configs));
+        log.info("Reloaded the configurations of " + configs.size() + " authenticator(s) from: " + path);
+    }
+
+    /**
+     * Discard the reloaded configurations, so that the configurations read at startup are used.
+     */
+    public void clear() {
+
+        authenticatorConfigs.set(Collections.emptyMap());
+    }
+
+    private Map<String, AuthenticatorConfig> buildAuthenticatorConfigs(Document document) {
+
+        Map<String, AuthenticatorConfig> configs = new HashMap<>();
+        NodeList configElements = document.getElementsByTagNameNS("*", AUTHENTICATOR_CONFIG_ELEMENT);
+        for (int i = 0; i < configElements.getLength(); i++) {
+            Element configElement = (Element) configElements.item(i);
+            String authenticatorName = configElement.getAttribute(NAME_ATTRIBUTE);
+            if (authenticatorName.isEmpty()) {
+                continue;
+            }
+            AuthenticatorConfig startupConfig = FileBasedConfigurationBuilder.getInstance()
+                    .getAuthenticatorBean(authenticatorName);
+            Map<String, String> parameters = new HashMap<>();
+            NodeList children = configElement.getChildNodes();
+            for (int j = 0; j < children.getLength(); j++) {
+                Node child = children.item(j);
+                if (child.getNodeType() != Node.ELEMENT_NODE || !PARAMETER_ELEMENT.equals(child.getLocalName())) {
+                    continue;
+                }
+                Element parameter = (Element) child;
+                String parameterName = parameter.getAttribute(NAME_ATTRIBUTE);
+                if (hasSecretAlias(parameter)) {
+                    if (startupConfig != null && startupConfig.getParameterMap() != null
+                            && startupConfig.getParameterMap().containsKey(parameterName)) {
+                        parameters.put(parameterName, startupConfig.getParameterMap().get(parameterName));
+                    }
+                } else {
+                    parameters.put(parameterName, parameter.getTextContent().trim());
+                }
+            }
+
+            AuthenticatorConfig config = new AuthenticatorConfig();
+            config.setName(authenticatorName);
+            config.setEnabled(Boolean.parseBoolean(configElement.getAttribute(ENABLED_ATTRIBUTE)));
+            config.setParameterMap(Collections.unmodifiableMap(parameters));
+            configs.put(authenticatorName, config);
+        }
+        return configs;
+    }
+
+    private boolean hasSecretAlias(Element parameter) {
+
+        for (int i = 0; i < parameter.getAttributes().getLength(); i++) {
+            if (SECRET_ALIAS_ATTRIBUTE.equals(parameter.getAttributes().item(i).getLocalName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.config;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a configuration directory and runs the reloader registered for a file when the file changes.
+ * <p>
+ * Reloaders run on the watcher thread, off the request path. A reloader is expected to build a new immutable
+ * configuration and publish it atomically, keeping the current configuration if the changed file is invalid.
+ */
+public class ConfigFileWatcher {
+
+    private static final Log log = LogFactory.getLog(ConfigFileWatcher.class);
+
+    // Changes are applied after this quiet period, so that a file is not read while it is being written.
+    private static final long RELOAD_DELAY_MILLIS = 500;
+
+    private final Path directory;
+    private final String name;
+    private final Map<String, Runnable> reloaders = new ConcurrentHashMap<>();
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    /**
+     * @param directory configuration directory to watch
+     * @param name      name of the watcher, used in the logs and the thread name
+     */
+    public ConfigFileWatcher(Path directory, String name) {
+
+        this.directory = directory;
+        this.name = name;
+    }
+
+    /**
+     * Register the reloader of a file in the directory.
+     *
+     * @param fileName name of the file
+     * @param reloader reloader run when the file is created or modified
+     */
+    public void register(String fileName, Runnable reloader) {
+
+        reloaders.put(fileName, reloader);
+    }
+
+    /**
+     * Start watching the directory.
+     *
+     * @throws IOException if the directory cannot be watched
+     */
+    public synchronized void start() throws IOException {
+
+        if (watchService != null) {
+            return;
+        }
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        WatchService service = watchService;
+        watcherThread = new Thread(() -> watch(service), name + "-ConfigWatcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    public synchronized void stop() {
+
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.error("Error while closing the watch service of the configuration directory: " + directory, e);
+        }
+        watcherThread.interrupt();
+        watchService = null;
+        watcherThread = null;
+    }
+
+    private void watch(WatchService service) {
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                Set<String> changedFiles = new LinkedHashSet<>();
+                // Coalesce the burst of events of a single change into one reload per file.
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path) {
+                            changedFiles.add(((Path) event.context()).getFileName().toString());
+                        }
+                    }
+                    if (!key.reset()) {
+                        log.warn("Configuration directory: " + directory + " is no longer accessible. "
+                                + "Configurations are not reloaded.");
+                        return;
+                    }
+                    key = service.poll(RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                reload(changedFiles);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher is stopped.
+        }
+    }
+
+    private void reload(Set<String> changedFiles) {
+
+        for (String fileName : changedFiles) {
+            Runnable reloader = reloaders.get(fileName);
+            if (reloader == null) {
+                continue;
+            }
+            log.info("Reloading the configuration file: " + directory.resolve(fileName));
+            try {
+                reloader.run();
+            } catch (RuntimeException e) {
+                log.error("Error while reloading the configuration file: " + directory.resolve(fileName), e);
+            }
+        }
+    }
+}
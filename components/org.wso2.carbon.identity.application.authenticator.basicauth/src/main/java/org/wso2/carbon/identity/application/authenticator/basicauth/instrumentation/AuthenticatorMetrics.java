@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Login metrics of an authenticator.
+ */
+class AuthenticatorMetrics implements LoginMetricsMXBean {
+
+    static final String OTHER_TENANTS = "other";
+    private static final String TENANT_OUTCOME_SEPARATOR = "|";
+    private static final LoginPhase[] PHASES = LoginPhase.values();
+
+    private final String authenticatorName;
+    private final int maxTenants;
+    private final LongAdder invocationCount = new LongAdder();
+    private final LatencyHistogram invocationLatency = new LatencyHistogram();
+    private final LatencyHistogram[] phaseLatencies = new LatencyHistogram[PHASES.length];
+    private final ConcurrentMap<String, LongAdder> outcomeCounts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TenantCounts> tenantCounts = new ConcurrentHashMap<>();
+
+    AuthenticatorMetrics(String authenticatorName, int maxTenants) {
+
+        this.authenticatorName = authenticatorName;
+        this.maxTenants = maxTenants;
+        for (int i = 0; i < phaseLatencies.length; i++) {
+            phaseLatencies[i] = new LatencyHistogram();
+        }
+    }
+
+    void recordInvocation(LoginInvocation invocation) {
+
+        invocationCount.increment();
+        invocationLatency.record(invocation.getDurationNanos());
+        outcomeCounts.computeIfAbsent(invocation.getOutcome(), outcome -> new LongAdder()).increment();
+        getTenantCounts(invocation.getTenantDomain()).record(invocation.getOutcome());
+    }
+
+    void recordPhase(LoginPhase phase, long durationNanos) {
+
+        phaseLatencies[phase.ordinal()].record(durationNanos);
+    }
+
+    @Override
+    public String getAuthenticatorName() {
+
+        return authenticatorName;
+    }
+
+    @Override
+    public long getInvocationCount() {
+
+        return invocationCount.sum();
+    }
+
+    @Override
+    public LatencySnapshot getInvocationLatency() {
+
+        return invocationLatency.snapshot();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getPhaseLatencies() {
+
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        for (LoginPhase phase : PHASES) {
+            if (phaseLatencies[phase.ordinal()].getCount() > 0) {
+                snapshots.put(phase.getMetricName(), phaseLatencies[phase.ordinal()].snapshot());
+            }
+        }
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+
+        return toCounts(outcomeCounts);
+    }
+
+    @Override
+    public Map<String, Long> getTenantInvocationCounts() {
+
+        Map<String, Long> counts = new TreeMap<>();
+        tenantCounts.forEach((tenantDomain, tenant) -> counts.put(tenantDomain, tenant.invocations.sum()));
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getTenantOutcomeCounts() {
+
+        Map<String, Long> counts = new TreeMap<>();
+        tenantCounts.forEach((tenantDomain, tenant) -> tenant.outcomes.forEach((outcome, count) ->
+                counts.put(tenantDomain + TENANT_OUTCOME_SEPARATOR + outcome, count.sum())));
+        return counts;
+    }
+
+    @Override
+    public void reset() {
+
+        invocationCount.reset();
+        invocationLatency.reset();
+        for (LatencyHistogram phaseLatency : phaseLatencies) {
+            phaseLatency.reset();
+        }
+        outcomeCounts.clear();
+        tenantCounts.clear();
+    }
+
+    private TenantCounts getTenantCounts(String tenantDomain) {
+
+        String tenant = tenantDomain != null ? tenantDomain : OTHER_TENANTS;
+        TenantCounts counts = tenantCounts.get(tenant);
+        if (counts != null) {
+            return counts;
+        }
+        // Bound the number of tracked tenants, and count the logins of the rest together.
+        if (tenantCounts.size() >= maxTenants) {
+            tenant = OTHER_TENANTS;
+        }
+        return tenantCounts.computeIfAbsent(tenant, key -> new TenantCounts());
+    }
+
+    private static Map<String, Long> toCounts(Map<String, LongAdder> adders) {
+
+        Map<String, Long> counts = new TreeMap<>();
+        adders.forEach((key, count) -> counts.put(key, count.sum()));
+        return counts;
+    }
+
+    private static class TenantCounts {
+
+        private final LongAdder invocations = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        private void record(String outcome) {
+
+            invocations.increment();
+            outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        }
+    }
+}
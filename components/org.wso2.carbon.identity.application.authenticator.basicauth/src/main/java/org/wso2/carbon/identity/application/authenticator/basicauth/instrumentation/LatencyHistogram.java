@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free, fixed size histogram of latencies, in the manner of HdrHistogram. Latencies are recorded in microseconds
+ * into log-linear buckets: each power of two is split into 32 equal buckets, so that a value read from the histogram
+ * is within about 3% of the recorded value. Values from 1 microsecond up to about 12 days are tracked, and larger
+ * values are recorded as the largest tracked value.
+ * <p>
+ * Recording a value does not allocate, and does not block concurrent recorders.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalCount = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Record a latency.
+     *
+     * @param durationNanos latency in nanoseconds
+     */
+    public void record(long durationNanos) {
+
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(durationNanos), 0), MAX_VALUE);
+        counts.incrementAndGet(getBucket(micros));
+        totalCount.increment();
+        totalMicros.add(micros);
+        long currentMax = maxMicros.get();
+        while (micros > currentMax && !maxMicros.compareAndSet(currentMax, micros)) {
+            currentMax = maxMicros.get();
+        }
+    }
+
+    public long getCount() {
+
+        return totalCount.sum();
+    }
+
+    /**
+     * Get a snapshot of the recorded latencies.
+     *
+     * @return snapshot
+     */
+    public LatencySnapshot snapshot() {
+
+        long[] bucketCounts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            bucketCounts[bucket] = counts.get(bucket);
+            count += bucketCounts[bucket];
+        }
+        double mean = count == 0 ? 0 : (double) totalMicros.sum() / totalCount.sum();
+        return new LatencySnapshot(count, toMillis(mean), getPercentile(bucketCounts, count, 50),
+                getPercentile(bucketCounts, count, 90), getPercentile(bucketCounts, count, 99),
+                getPercentile(bucketCounts, count, 99.9), toMillis(maxMicros.get()));
+    }
+
+    /**
+     * Clear the recorded latencies. Values recorded concurrently with the reset may be partially kept.
+     */
+    public void reset() {
+
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+        totalCount.reset();
+        totalMicros.reset();
+        maxMicros.set(0);
+    }
+
+    private static double getPercentile(long[] bucketCounts, long count, double percentile) {
+
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+            seen += bucketCounts[bucket];
+            if (seen >= rank) {
+                return toMillis(getHighestValue(bucket));
+            }
+        }
+        return toMillis(MAX_VALUE);
+    }
+
+    static int getBucket(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long getHighestValue(int bucket) {
+
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKET_COUNT;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+
+    private static double toMillis(double micros) {
+
+        return micros / 1000;
+    }
+}
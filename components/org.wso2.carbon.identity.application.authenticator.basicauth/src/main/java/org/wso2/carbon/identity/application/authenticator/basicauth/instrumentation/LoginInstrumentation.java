@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records the invocations of the authenticators and the latency of the phases of a login, and passes them to the
+ * registered {@link LoginListener}s. When no listener is registered, recording costs a volatile read.
+ * <p>
+ * An authenticator wraps the processing of a request in an invocation:
+ * <pre>
+ * LoginInvocation invocation = instrumentation.startInvocation(getName(), context.getTenantDomain());
+ * AuthenticatorFlowStatus status = null;
+ * try {
+ *     status = ...;
+ *     return status;
+ * } finally {
+ *     instrumentation.endInvocation(invocation, status);
+ * }
+ * </pre>
+ * and each phase in a start and an end of the phase:
+ * <pre>
+ * long phaseStart = instrumentation.startPhase(LoginPhase.AUTHENTICATE);
+ * try {
+ *     ...
+ * } finally {
+ *     instrumentation.endPhase(LoginPhase.AUTHENTICATE, phaseStart);
+ * }
+ * </pre>
+ * The invocation in progress on a thread is tracked, so that the phases and the error codes recorded during it are
+ * attributed to it.
+ */
+public class LoginInstrumentation {
+
+    private static final Log log = LogFactory.getLog(LoginInstrumentation.class);
+    private static final LoginListener[] NO_LISTENERS = new LoginListener[0];
+    private static final LoginInstrumentation instance = new LoginInstrumentation();
+
+    private final ThreadLocal<LoginInvocation> currentInvocation = new ThreadLocal<>();
+    private volatile LoginListener[] listeners = NO_LISTENERS;
+
+    private LoginInstrumentation() {
+
+    }
+
+    public static LoginInstrumentation getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Add a listener of the logins.
+     *
+     * @param listener listener
+     */
+    public synchronized void addListener(LoginListener listener) {
+
+        List<LoginListener> updatedListeners = new ArrayList<>(Arrays.asList(listeners));
+        updatedListeners.add(listener);
+        listeners = updatedListeners.toArray(NO_LISTENERS);
+    }
+
+    /**
+     * Remove a listener of the logins.
+     *
+     * @param listener listener
+     */
+    public synchronized void removeListener(LoginListener listener) {
+
+        List<LoginListener> updatedListeners = new ArrayList<>(Arrays.asList(listeners));
+        updatedListeners.remove(listener);
+        listeners = updatedListeners.toArray(NO_LISTENERS);
+    }
+
+    /**
+     * Start an invocation of an authenticator on the current thread.
+     *
+     * @param authenticatorName name of the authenticator
+     * @param tenantDomain      tenant domain of the service provider the login is for
+     * @return the started invocation, or null if no listener is registered
+     */
+    public LoginInvocation startInvocation(String authenticatorName, String tenantDomain) {
+
+        LoginListener[] currentListeners = listeners;
+        if (currentListeners.length == 0) {
+            return null;
+        }
+        LoginInvocation invocation = new LoginInvocation(authenticatorName, tenantDomain, System.nanoTime(),
+                currentInvocation.get());
+        currentInvocation.set(invocation);
+        for (LoginListener listener : currentListeners) {
+            try {
+                listener.invocationStarted(invocation);
+            } catch (RuntimeException e) {
+                log.error("Error in the login listener: " + listener.getClass().getName(), e);
+            }
+        }
+        return invocation;
+    }
+
+    /**
+     * End an invocation started on the current thread.
+     *
+     * @param invocation invocation, or null if it was not started
+     * @param status     flow status returned by the authenticator, or null if it failed with an exception
+     */
+    public void endInvocation(LoginInvocation invocation, AuthenticatorFlowStatus status) {
+
+        if (invocation == null) {
+            return;
+        }
+        invocation.end(status, System.nanoTime());
+        if (invocation.getParent() != null) {
+            currentInvocation.set(invocation.getParent());
+        } else {
+            currentInvocation.remove();
+        }
+        for (LoginListener listener : listeners) {
+            try {
+                listener.invocationEnded(invocation);
+            } catch (RuntimeException e) {
+                log.error("Error in the login listener: " + listener.getClass().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Get the invocation in progress on the current thread.
+     *
+     * @return invocation, or null if there is none
+     */
+    public LoginInvocation getCurrentInvocation() {
+
+        return currentInvocation.get();
+    }
+
+    /**
+     * Record the identity error code of the invocation in progress on the current thread. A later error code of the
+     * same invocation replaces an earlier one.
+     *
+     * @param errorCode error code
+     */
+    public void recordErrorCode(String errorCode) {
+
+        LoginInvocation invocation = currentInvocation.get();
+        if (invocation != null && errorCode != null) {
+            invocation.setErrorCode(errorCode);
+        }
+    }
+
+    /**
+     * Start a phase of a login on the current thread.
+     *
+     * @param phase phase
+     * @return start time of the phase, to be passed to {@link #endPhase(LoginPhase, long)}
+     */
+    public long startPhase(LoginPhase phase) {
+
+        LoginListener[] currentListeners = listeners;
+        if (currentListeners.length == 0) {
+            return 0;
+        }
+        LoginInvocation invocation = currentInvocation.get();
+        for (LoginListener listener : currentListeners) {
+            try {
+                listener.phaseStarted(invocation, phase);
+            } catch (RuntimeException e) {
+                log.error("Error in the login listener: " + listener.getClass().getName(), e);
+            }
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * End a phase of a login started on the current thread.
+     *
+     * @param phase      phase
+     * @param startNanos start time returned by {@link #startPhase(LoginPhase)}
+     */
+    public void endPhase(LoginPhase phase, long startNanos) {
+
+        LoginListener[] currentListeners = listeners;
+        if (currentListeners.length == 0 || startNanos == 0) {
+            return;
+        }
+        long durationNanos = System.nanoTime() - startNanos;
+        LoginInvocation invocation = currentInvocation.get();
+        for (LoginListener listener : currentListeners) {
+            try {
+                listener.phaseEnded(invocation, phase, durationNanos);
+            } catch (RuntimeException e) {
+                log.error("Error in the login listener: " + listener.getClass().getName(), e);
+            }
+        }
+    }
+}
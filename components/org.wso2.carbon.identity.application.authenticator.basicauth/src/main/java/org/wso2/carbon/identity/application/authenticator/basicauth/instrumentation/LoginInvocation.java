@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.apache.commons.lang.StringUtils;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single call of an authenticator to process a request, as recorded by the {@link LoginInstrumentation}.
+ */
+public class LoginInvocation {
+
+    /**
+     * Outcome of an invocation that failed with an exception and no error code.
+     */
+    public static final String OUTCOME_ERROR = "ERROR";
+
+    private final String authenticatorName;
+    private final String tenantDomain;
+    private final long startNanos;
+    private final LoginInvocation parent;
+    private String errorCode;
+    private String outcome;
+    private long durationNanos;
+    private Map<Object, Object> attributes;
+
+    LoginInvocation(String authenticatorName, String tenantDomain, long startNanos, LoginInvocation parent) {
+
+        this.authenticatorName = authenticatorName;
+        this.tenantDomain = tenantDomain;
+        this.startNanos = startNanos;
+        this.parent = parent;
+    }
+
+    public String getAuthenticatorName() {
+
+        return authenticatorName;
+    }
+
+    /**
+     * Get the tenant domain of the service provider the login is for.
+     *
+     * @return tenant domain, or null if not known
+     */
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public long getStartNanos() {
+
+        return startNanos;
+    }
+
+    /**
+     * Get the identity error code recorded during the invocation, such as the one of a locked account.
+     *
+     * @return error code, or null if none was recorded
+     */
+    public String getErrorCode() {
+
+        return errorCode;
+    }
+
+    /**
+     * Get the outcome of the invocation. This is the name of the recorded error code if there is one, such as
+     * INVALID_CREDENTIAL or USER_IS_LOCKED, and otherwise the flow status returned by the authenticator, or
+     * {@link #OUTCOME_ERROR} if it failed with an exception.
+     *
+     * @return outcome, or null while the invocation is in progress
+     */
+    public String getOutcome() {
+
+        return outcome;
+    }
+
+    /**
+     * Get the duration of the invocation in nanoseconds.
+     *
+     * @return duration, or 0 while the invocation is in progress
+     */
+    public long getDurationNanos() {
+
+        return durationNanos;
+    }
+
+    /**
+     * Get an attribute a listener attached to the invocation.
+     *
+     * @param key key of the attribute
+     * @return value of the attribute, or null if it is not set
+     */
+    public Object getAttribute(Object key) {
+
+        return attributes != null ? attributes.get(key) : null;
+    }
+
+    /**
+     * Attach an attribute to the invocation, such as the state a listener keeps from the start to the end of the
+     * invocation. An invocation is used by a single thread.
+     *
+     * @param key   key of the attribute, unique to the listener
+     * @param value value of the attribute
+     */
+    public void setAttribute(Object key, Object value) {
+
+        if (attributes == null) {
+            attributes = new HashMap<>(4);
+        }
+        attributes.put(key, value);
+    }
+
+    /**
+     * Get the invocation this one is nested in, such as the invocation of a handler calling another authenticator.
+     *
+     * @return enclosing invocation, or null if there is none
+     */
+    public LoginInvocation getParent() {
+
+        return parent;
+    }
+
+    void setErrorCode(String errorCode) {
+
+        this.errorCode = errorCode;
+    }
+
+    void end(AuthenticatorFlowStatus status, long endNanos) {
+
+        if (errorCode != null) {
+            outcome = getErrorOutcome(errorCode);
+        } else if (status != null) {
+            outcome = status.name();
+        } else {
+            outcome = OUTCOME_ERROR;
+        }
+        durationNanos = endNanos - startNanos;
+    }
+
+    private static String getErrorOutcome(String errorCode) {
+
+        if (StringUtils.contains(errorCode, UserCoreConstants.ErrorCode.INVALID_CREDENTIAL)) {
+            return "INVALID_CREDENTIAL";
+        } else if (StringUtils.contains(errorCode, UserCoreConstants.ErrorCode.USER_IS_LOCKED)) {
+            return "USER_IS_LOCKED";
+        } else if (StringUtils.contains(errorCode, UserCoreConstants.ErrorCode.USER_DOES_NOT_EXIST)) {
+            return "USER_DOES_NOT_EXIST";
+        } else if (errorCode.equals(IdentityCoreConstants.USER_ACCOUNT_DISABLED_ERROR_CODE)) {
+            return "USER_ACCOUNT_DISABLED";
+        } else if (errorCode.equals(IdentityCoreConstants.USER_ACCOUNT_NOT_CONFIRMED_ERROR_CODE)) {
+            return "USER_ACCOUNT_NOT_CONFIRMED";
+        } else if (errorCode.equals(IdentityCoreConstants.ADMIN_FORCED_USER_PASSWORD_RESET_VIA_EMAIL_LINK_ERROR_CODE)
+                || errorCode.equals(IdentityCoreConstants.ADMIN_FORCED_USER_PASSWORD_RESET_VIA_OTP_ERROR_CODE)) {
+            return "PASSWORD_RESET_PENDING";
+        }
+        return errorCode;
+    }
+}
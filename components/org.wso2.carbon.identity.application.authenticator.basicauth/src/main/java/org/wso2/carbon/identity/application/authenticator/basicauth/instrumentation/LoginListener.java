@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+/**
+ * Listener of the logins recorded by the {@link LoginInstrumentation}. The methods are called on the thread of the
+ * login, and should return quickly without blocking or allocating more than needed.
+ */
+public interface LoginListener {
+
+    /**
+     * Called when an authenticator starts processing a request.
+     *
+     * @param invocation started invocation
+     */
+    default void invocationStarted(LoginInvocation invocation) {
+
+    }
+
+    /**
+     * Called when an authenticator completes processing a request, with or without an error.
+     *
+     * @param invocation ended invocation, whose outcome and duration are set
+     */
+    default void invocationEnded(LoginInvocation invocation) {
+
+    }
+
+    /**
+     * Called when a phase of a login starts.
+     *
+     * @param invocation invocation the phase belongs to, or null if the phase runs outside an authenticator
+     * @param phase      started phase
+     */
+    default void phaseStarted(LoginInvocation invocation, LoginPhase phase) {
+
+    }
+
+    /**
+     * Called when a phase of a login ends.
+     *
+     * @param invocation    invocation the phase belongs to, or null if the phase runs outside an authenticator
+     * @param phase         ended phase
+     * @param durationNanos duration of the phase in nanoseconds
+     */
+    default void phaseEnded(LoginInvocation invocation, LoginPhase phase, long durationNanos) {
+
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records latency histograms of the invocations and the phases of each authenticator, and counts the invocations by
+ * outcome and tenant. The metrics of an authenticator are exposed over JMX as
+ * {@code org.wso2.carbon.identity.application.authenticator:type=LoginMetrics,name=<authenticator name>} once the
+ * service component of the authenticator registers it.
+ * <p>
+ * Phases run outside an invocation of an authenticator, such as the ones of a background warm up, are not recorded.
+ */
+public class LoginMetrics implements LoginListener {
+
+    private static final Log log = LogFactory.getLog(LoginMetrics.class);
+
+    private static final String OBJECT_NAME_PREFIX =
+            "org.wso2.carbon.identity.application.authenticator:type=LoginMetrics,name=";
+    private static final int MAX_TRACKED_TENANTS = 1000;
+
+    private static final LoginMetrics instance = new LoginMetrics();
+
+    private final ConcurrentMap<String, AuthenticatorMetrics> authenticatorMetrics = new ConcurrentHashMap<>();
+
+    private LoginMetrics() {
+
+    }
+
+    public static LoginMetrics getInstance() {
+
+        return instance;
+    }
+
+    @Override
+    public void invocationEnded(LoginInvocation invocation) {
+
+        getAuthenticatorMetrics(invocation.getAuthenticatorName()).recordInvocation(invocation);
+    }
+
+    @Override
+    public void phaseEnded(LoginInvocation invocation, LoginPhase phase, long durationNanos) {
+
+        if (invocation != null) {
+            getAuthenticatorMetrics(invocation.getAuthenticatorName()).recordPhase(phase, durationNanos);
+        }
+    }
+
+    /**
+     * Get the metrics of an authenticator.
+     *
+     * @param authenticatorName name of the authenticator
+     * @return metrics of the authenticator
+     */
+    public LoginMetricsMXBean getMetrics(String authenticatorName) {
+
+        return getAuthenticatorMetrics(authenticatorName);
+    }
+
+    /**
+     * Expose the metrics of an authenticator over JMX.
+     *
+     * @param authenticatorName name of the authenticator
+     */
+    public void registerMBean(String authenticatorName) {
+
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(authenticatorName);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(getAuthenticatorMetrics(authenticatorName), objectName);
+        } catch (JMException e) {
+            log.error("Error while registering the login metrics MBean of the authenticator: " + authenticatorName,
+                    e);
+        }
+    }
+
+    /**
+     * Stop exposing the metrics of an authenticator over JMX.
+     *
+     * @param authenticatorName name of the authenticator
+     */
+    public void unregisterMBean(String authenticatorName) {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(authenticatorName));
+        } catch (InstanceNotFoundException e) {
+            // The MBean failed to register.
+        } catch (JMException e) {
+            log.error("Error while unregistering the login metrics MBean of the authenticator: " + authenticatorName,
+                    e);
+        }
+    }
+
+    private AuthenticatorMetrics getAuthenticatorMetrics(String authenticatorName) {
+
+        AuthenticatorMetrics metrics = authenticatorMetrics.get(authenticatorName);
+        if (metrics != null) {
+            return metrics;
+        }
+        return authenticatorMetrics.computeIfAbsent(authenticatorName,
+                name -> new AuthenticatorMetrics(name, MAX_TRACKED_TENANTS));
+    }
+
+    private ObjectName getObjectName(String authenticatorName) throws JMException {
+
+        return new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(authenticatorName));
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import java.util.Map;
+
+/**
+ * Login metrics of an authenticator, exposed over JMX by the {@link LoginMetrics}.
+ */
+public interface LoginMetricsMXBean {
+
+    String getAuthenticatorName();
+
+    long getInvocationCount();
+
+    LatencySnapshot getInvocationLatency();
+
+    /**
+     * Get the latencies of the phases run by the authenticator, by the metric name of the phase.
+     *
+     * @return phase latencies
+     */
+    Map<String, LatencySnapshot> getPhaseLatencies();
+
+    /**
+     * Get the number of invocations by outcome, such as SUCCESS_COMPLETED, INVALID_CREDENTIAL or USER_IS_LOCKED.
+     *
+     * @return invocation counts by outcome
+     */
+    Map<String, Long> getOutcomeCounts();
+
+    /**
+     * Get the number of invocations by tenant domain.
+     *
+     * @return invocation counts by tenant domain
+     */
+    Map<String, Long> getTenantInvocationCounts();
+
+    /**
+     * Get the number of invocations by tenant domain and outcome, keyed as tenantDomain|outcome.
+     *
+     * @return invocation counts by tenant domain and outcome
+     */
+    Map<String, Long> getTenantOutcomeCounts();
+
+    /**
+     * Clear the metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+/**
+ * Phases of a login whose latency is recorded by the {@link LoginInstrumentation}.
+ */
+public enum LoginPhase {
+
+    /**
+     * Resolution of the tenant of the user.
+     */
+    TENANT_RESOLUTION("tenant"),
+    /**
+     * Lookup of the user realm of the tenant.
+     */
+    REALM_LOOKUP("realm"),
+    /**
+     * Authentication of the credentials against the user store.
+     */
+    AUTHENTICATE("authenticate"),
+    /**
+     * Lookup of a claim of the user in the user store.
+     */
+    CLAIM_LOOKUP("claims"),
+    /**
+     * Lookup of whether the user exists in the user store.
+     */
+    USER_EXISTENCE("userExists"),
+    /**
+     * Lookup of the captcha configuration of the tenant.
+     */
+    CAPTCHA_CONFIG("captcha"),
+    /**
+     * Building of the redirect to the login page, including the lookup of the captcha configuration.
+     */
+    REDIRECT_BUILD("redirect"),
+    /**
+     * Loading of the keystore or the certificate of the tenant.
+     */
+    KEYSTORE_ACCESS("keystore"),
+    /**
+     * Verification of the signature of a token.
+     */
+    SIGNATURE_VERIFY("verify"),
+    /**
+     * Query of the active sessions of the user.
+     */
+    SESSION_QUERY("sessions"),
+    /**
+     * Termination of an active session of the user.
+     */
+    SESSION_TERMINATION("terminateSession");
+
+    private final String metricName;
+
+    LoginPhase(String metricName) {
+
+        this.metricName = metricName;
+    }
+
+    /**
+     * Get the short name the phase is reported with.
+     *
+     * @return metric name
+     */
+    public String getMetricName() {
+
+        return metricName;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Records the thread CPU time and the heap allocated by each invocation of an authenticator, summed by authenticator
+ * and tenant, to find the tenants and configurations whose logins are the most expensive. The usage is exposed over
+ * JMX as {@code org.wso2.carbon.identity.application.authenticator:type=LoginResourceUsage}.
+ * <p>
+ * The allocated bytes are only recorded on JVMs providing {@code com.sun.management.ThreadMXBean}. The usage of an
+ * invocation nested in another one is also counted in the outer invocation.
+ */
+public class LoginResourceAccounting implements LoginListener, LoginResourceUsageMXBean {
+
+    public static final String ALL_TENANTS = "*";
+
+    private static final Log log = LogFactory.getLog(LoginResourceAccounting.class);
+
+    private static final String OBJECT_NAME =
+            "org.wso2.carbon.identity.application.authenticator:type=LoginResourceUsage";
+    private static final String ALLOCATION_MX_BEAN_CLASS = "com.sun.management.ThreadMXBean";
+    private static final int MAX_TRACKED_TENANTS = 1000;
+    private static final int TOP_CONSUMERS = 20;
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private static final LoginResourceAccounting instance = new LoginResourceAccounting();
+
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeRecorded;
+    private final boolean allocatedBytesRecorded;
+    private final ConcurrentMap<String, ConcurrentMap<String, UsageCounters>> usage = new ConcurrentHashMap<>();
+
+    private LoginResourceAccounting() {
+
+        cpuTimeRecorded = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        allocatedBytesRecorded = isAllocatedBytesSupported(threadMXBean);
+    }
+
+    public static LoginResourceAccounting getInstance() {
+
+        return instance;
+    }
+
+    @Override
+    public void invocationStarted(LoginInvocation invocation) {
+
+        if (cpuTimeRecorded || allocatedBytesRecorded) {
+            invocation.setAttribute(this, new long[]{getCpuTime(), getAllocatedBytes()});
+        }
+    }
+
+    @Override
+    public void invocationEnded(LoginInvocation invocation) {
+
+        Object start = invocation.getAttribute(this);
+        if (!(start instanceof long[])) {
+            return;
+        }
+        long[] startUsage = (long[]) start;
+        getUsageCounters(invocation.getAuthenticatorName(), invocation.getTenantDomain())
+                .record(getCpuTime() - startUsage[0], getAllocatedBytes() - startUsage[1]);
+    }
+
+    @Override
+    public boolean isCpuTimeRecorded() {
+
+        return cpuTimeRecorded;
+    }
+
+    @Override
+    public boolean isAllocatedBytesRecorded() {
+
+        return allocatedBytesRecorded;
+    }
+
+    @Override
+    public List<ResourceUsage> getAuthenticatorUsage() {
+
+        List<ResourceUsage> authenticatorUsage = new ArrayList<>();
+        new TreeMap<>(usage).forEach((authenticatorName, tenantUsage) -> {
+            long invocationCount = 0;
+            long cpuTimeNanos = 0;
+            long allocatedBytes = 0;
+            for (UsageCounters counters : tenantUsage.values()) {
+                invocationCount += counters.invocations.sum();
+                cpuTimeNanos += counters.cpuTimeNanos.sum();
+                allocatedBytes += counters.allocatedBytes.sum();
+            }
+            authenticatorUsage.add(new ResourceUsage(authenticatorName, ALL_TENANTS, invocationCount,
+                    cpuTimeNanos / NANOS_PER_MILLI, allocatedBytes));
+        });
+        return authenticatorUsage;
+    }
+
+    @Override
+    public List<ResourceUsage> getTopCpuTimeConsumers() {
+
+        return getTopConsumers(ResourceUsage::getCpuTimeMillis);
+    }
+
+    @Override
+    public List<ResourceUsage> getTopAllocatedBytesConsumers() {
+
+        return getTopConsumers(ResourceUsage::getAllocatedBytes);
+    }
+
+    @Override
+    public void reset() {
+
+        usage.clear();
+    }
+
+    /**
+     * Expose the resource usage over JMX.
+     */
+    public void registerMBean() {
+
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            log.error("Error while registering the login resource usage MBean.", e);
+        }
+    }
+
+    /**
+     * Stop exposing the resource usage over JMX.
+     */
+    public void unregisterMBean() {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException e) {
+            // The MBean failed to register.
+        } catch (JMException e) {
+            log.error("Error while unregistering the login resource usage MBean.", e);
+        }
+    }
+
+    private List<ResourceUsage> getTopConsumers(ToDoubleFunction<ResourceUsage> resource) {
+
+        List<ResourceUsage> consumers = new ArrayList<>();
+        usage.forEach((authenticatorName, tenantUsage) -> tenantUsage.forEach((tenantDomain, counters) ->
+                consumers.add(counters.toResourceUsage(authenticatorName, tenantDomain))));
+        consumers.sort(Comparator.comparingDouble(resource).reversed());
+        return consumers.size() > TOP_CONSUMERS ? new ArrayList<>(consumers.subList(0, TOP_CONSUMERS)) : consumers;
+    }
+
+    private UsageCounters getUsageCounters(String authenticatorName, String tenantDomain) {
+
+        ConcurrentMap<String, UsageCounters> tenantUsage = usage.get(authenticatorName);
+        if (tenantUsage == null) {
+            tenantUsage = usage.computeIfAbsent(authenticatorName, name -> new ConcurrentHashMap<>());
+        }
+        String tenant = tenantDomain != null ? tenantDomain : AuthenticatorMetrics.OTHER_TENANTS;
+        UsageCounters counters = tenantUsage.get(tenant);
+        if (counters != null) {
+            return counters;
+        }
+        // Bound the number of tracked tenants, and sum the usage of the rest together.
+        if (tenantUsage.size() >= MAX_TRACKED_TENANTS) {
+            tenant = AuthenticatorMetrics.OTHER_TENANTS;
+        }
+        return tenantUsage.computeIfAbsent(tenant, key -> new UsageCounters());
+    }
+
+    private long getCpuTime() {
+
+        return cpuTimeRecorded ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    private long getAllocatedBytes() {
+
+        if (!allocatedBytesRecorded) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static boolean isAllocatedBytesSupported(ThreadMXBean threadMXBean) {
+
+        try {
+            Class<?> allocationMXBeanClass = Class.forName(ALLOCATION_MX_BEAN_CLASS, false,
+                    LoginResourceAccounting.class.getClassLoader());
+            return allocationMXBeanClass.isInstance(threadMXBean)
+                    && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+                    && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+        } catch (ClassNotFoundException | LinkageError e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Allocated bytes of the threads are not available. They will not be recorded.", e);
+            }
+            return false;
+        }
+    }
+
+    private static class UsageCounters {
+
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder cpuTimeNanos = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+        private void record(long cpuTime, long allocated) {
+
+            invocations.increment();
+            cpuTimeNanos.add(cpuTime);
+            allocatedBytes.add(allocated);
+        }
+
+        private ResourceUsage toResourceUsage(String authenticatorName, String tenantDomain) {
+
+            return new ResourceUsage(authenticatorName, tenantDomain, invocations.sum(),
+                    cpuTimeNanos.sum() / NANOS_PER_MILLI, allocatedBytes.sum());
+        }
+    }
+}
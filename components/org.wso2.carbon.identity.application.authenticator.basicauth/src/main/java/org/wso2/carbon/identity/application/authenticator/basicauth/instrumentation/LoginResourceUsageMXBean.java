@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import java.util.List;
+
+/**
+ * Resource usage of the logins, exposed over JMX by the {@link LoginResourceAccounting}.
+ */
+public interface LoginResourceUsageMXBean {
+
+    /**
+     * Check whether the thread CPU time of the logins is measured by the JVM.
+     *
+     * @return true if the CPU time is recorded
+     */
+    boolean isCpuTimeRecorded();
+
+    /**
+     * Check whether the heap allocated by the logins is measured by the JVM.
+     *
+     * @return true if the allocated bytes are recorded
+     */
+    boolean isAllocatedBytesRecorded();
+
+    /**
+     * Get the resource usage of each authenticator, summed over the tenants.
+     *
+     * @return resource usage by authenticator
+     */
+    List<ResourceUsage> getAuthenticatorUsage();
+
+    /**
+     * Get the authenticator and tenant pairs that used the most CPU time, in descending order.
+     *
+     * @return top consumers of CPU time
+     */
+    List<ResourceUsage> getTopCpuTimeConsumers();
+
+    /**
+     * Get the authenticator and tenant pairs that allocated the most heap, in descending order.
+     *
+     * @return top consumers of heap
+     */
+    List<ResourceUsage> getTopAllocatedBytesConsumers();
+
+    /**
+     * Clear the recorded usage.
+     */
+    void reset();
+}
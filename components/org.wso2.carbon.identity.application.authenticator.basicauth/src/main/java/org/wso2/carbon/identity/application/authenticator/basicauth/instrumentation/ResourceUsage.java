@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Thread CPU time and heap allocated by the invocations of an authenticator for a tenant.
+ */
+public class ResourceUsage {
+
+    private final String authenticatorName;
+    private final String tenantDomain;
+    private final long invocationCount;
+    private final double cpuTimeMillis;
+    private final long allocatedBytes;
+
+    @ConstructorProperties({"authenticatorName", "tenantDomain", "invocationCount", "cpuTimeMillis", "allocatedBytes"})
+    public ResourceUsage(String authenticatorName, String tenantDomain, long invocationCount, double cpuTimeMillis,
+                         long allocatedBytes) {
+
+        this.authenticatorName = authenticatorName;
+        this.tenantDomain = tenantDomain;
+        this.invocationCount = invocationCount;
+        this.cpuTimeMillis = cpuTimeMillis;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getAuthenticatorName() {
+
+        return authenticatorName;
+    }
+
+    /**
+     * Get the tenant domain of the service providers the invocations were for.
+     *
+     * @return tenant domain, or {@value LoginResourceAccounting#ALL_TENANTS} for the usage of all the tenants
+     */
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public long getInvocationCount() {
+
+        return invocationCount;
+    }
+
+    public double getCpuTimeMillis() {
+
+        return cpuTimeMillis;
+    }
+
+    public long getAllocatedBytes() {
+
+        return allocatedBytes;
+    }
+
+    public double getCpuTimeMillisPerInvocation() {
+
+        return invocationCount > 0 ? cpuTimeMillis / invocationCount : 0;
+    }
+
+    public long getAllocatedBytesPerInvocation() {
+
+        return invocationCount > 0 ? allocatedBytes / invocationCount : 0;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Reports the durations of the phases of a login to the browser in a {@code Server-Timing} response header, so that a
+ * slow login can be diagnosed from the developer tools of the browser.
+ * <p>
+ * The header exposes how long the user store took to answer, so it is only sent when enabled for the tenant of the
+ * service provider with the {@value #CONF_TENANTS} parameter of the authenticator, or when the request carries the
+ * {@value #DEBUG_TOKEN_HEADER} header matching the {@value #CONF_DEBUG_TOKEN} parameter. The header is added before
+ * the authenticator redirects, or when the authenticator returns if the response is not yet committed.
+ */
+public class ServerTiming implements LoginListener {
+
+    public static final String HEADER_NAME = "Server-Timing";
+    public static final String DEBUG_TOKEN_HEADER = "X-Server-Timing-Token";
+    public static final String CONF_TENANTS = "ServerTimingTenants";
+    public static final String CONF_DEBUG_TOKEN = "ServerTimingDebugToken";
+
+    private static final String ALL_TENANTS = "*";
+    private static final String TOTAL_METRIC_NAME = "total";
+    private static final double NANOS_PER_MILLI = 1_000_000d;
+
+    private static final ServerTiming instance = new ServerTiming();
+
+    private ServerTiming() {
+
+    }
+
+    public static ServerTiming getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Start collecting the phase durations of an invocation if the header is enabled for the request.
+     *
+     * @param invocation invocation of the authenticator, or null if it was not started
+     * @param request    request processed by the authenticator
+     * @param response   response of the request
+     * @param parameters parameters of the authenticator, or null if it is not configured
+     * @return the response to pass to the authenticator, which adds the header when redirected
+     */
+    public HttpServletResponse start(LoginInvocation invocation, HttpServletRequest request,
+                                     HttpServletResponse response, Map<String, String> parameters) {
+
+        if (invocation == null || parameters == null
+                || !isEnabled(invocation.getTenantDomain(), request, parameters)) {
+            return response;
+        }
+        PhaseTimings timings = new PhaseTimings(invocation);
+        invocation.setAttribute(this, timings);
+        return new ServerTimingResponse(response, timings);
+    }
+
+    /**
+     * Add the header to the response if the authenticator did not redirect.
+     *
+     * @param invocation invocation of the authenticator, or null if it was not started
+     * @param response   response of the request
+     */
+    public void end(LoginInvocation invocation, HttpServletResponse response) {
+
+        if (invocation == null) {
+            return;
+        }
+        Object timings = invocation.getAttribute(this);
+        if (timings instanceof PhaseTimings) {
+            ((PhaseTimings) timings).addHeader(response);
+        }
+    }
+
+    @Override
+    public void phaseEnded(LoginInvocation invocation, LoginPhase phase, long durationNanos) {
+
+        if (invocation == null) {
+            return;
+        }
+        Object timings = invocation.getAttribute(this);
+        if (timings instanceof PhaseTimings) {
+            ((PhaseTimings) timings).add(phase, durationNanos);
+        }
+    }
+
+    private static boolean isEnabled(String tenantDomain, HttpServletRequest request,
+                                     Map<String, String> parameters) {
+
+        String tenants = parameters.get(CONF_TENANTS);
+        if (StringUtils.isNotBlank(tenants)) {
+            for (String tenant : tenants.split(",")) {
+                String trimmedTenant = tenant.trim();
+                if (ALL_TENANTS.equals(trimmedTenant) || trimmedTenant.equalsIgnoreCase(tenantDomain)) {
+                    return true;
+                }
+            }
+        }
+        String debugToken = parameters.get(CONF_DEBUG_TOKEN);
+        String requestToken = request.getHeader(DEBUG_TOKEN_HEADER);
+        return StringUtils.isNotBlank(debugToken) && requestToken != null
+                && MessageDigest.isEqual(debugToken.getBytes(StandardCharsets.UTF_8),
+                requestToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Durations of the phases of an invocation, summed by phase.
+     */
+    private static class PhaseTimings {
+
+        private final LoginInvocation invocation;
+        private final long[] durationNanos = new long[LoginPhase.values().length];
+        private boolean headerAdded;
+
+        PhaseTimings(LoginInvocation invocation) {
+
+            this.invocation = invocation;
+        }
+
+        void add(LoginPhase phase, long nanos) {
+
+            durationNanos[phase.ordinal()] += nanos;
+        }
+
+        void addHeader(HttpServletResponse response) {
+
+            if (headerAdded || response.isCommitted()) {
+                return;
+            }
+            headerAdded = true;
+            StringBuilder header = new StringBuilder();
+            for (LoginPhase phase : LoginPhase.values()) {
+                if (durationNanos[phase.ordinal()] > 0) {
+                    appendMetric(header, phase.getMetricName(), durationNanos[phase.ordinal()]);
+                }
+            }
+            appendMetric(header, TOTAL_METRIC_NAME, System.nanoTime() - invocation.getStartNanos());
+            response.addHeader(HEADER_NAME, header.toString());
+        }
+
+        private static void appendMetric(StringBuilder header, String name, long nanos) {
+
+            if (header.length() > 0) {
+                header.append(", ");
+            }
+            header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * Response adding the header before a redirect, as headers set after it are not sent.
+     */
+    private static class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private final PhaseTimings timings;
+
+        ServerTimingResponse(HttpServletResponse response, PhaseTimings timings) {
+
+            super(response);
+            this.timings = timings;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+
+            timings.addHeader(this);
+            super.sendRedirect(location);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.jfr;
+
+import jdk.jfr.EventType;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInvocation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginListener;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Emits a flight recorder {@link LoginEvent} for each invocation of an authenticator, and a nested
+ * {@link LoginPhaseEvent} for each phase of it. The events are only created while a recording with the events enabled
+ * is running.
+ */
+class FlightRecorderLoginListener implements LoginListener {
+
+    private static final EventType LOGIN_EVENT_TYPE = EventType.getEventType(LoginEvent.class);
+    private static final EventType LOGIN_PHASE_EVENT_TYPE = EventType.getEventType(LoginPhaseEvent.class);
+
+    private final ThreadLocal<Deque<LoginPhaseEvent>> phaseEvents = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public void invocationStarted(LoginInvocation invocation) {
+
+        if (!LOGIN_EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        LoginEvent event = new LoginEvent();
+        event.begin();
+        invocation.setAttribute(this, event);
+    }
+
+    @Override
+    public void invocationEnded(LoginInvocation invocation) {
+
+        Object event = invocation.getAttribute(this);
+        if (!(event instanceof LoginEvent)) {
+            return;
+        }
+        LoginEvent loginEvent = (LoginEvent) event;
+        loginEvent.end();
+        if (loginEvent.shouldCommit()) {
+            loginEvent.authenticator = invocation.getAuthenticatorName();
+            loginEvent.tenantDomain = invocation.getTenantDomain();
+            loginEvent.outcome = invocation.getOutcome();
+            loginEvent.userStoreDomain = UserCoreUtil.getDomainFromThreadLocal();
+            loginEvent.commit();
+        }
+    }
+
+    @Override
+    public void phaseStarted(LoginInvocation invocation, LoginPhase phase) {
+
+        if (!LOGIN_PHASE_EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        LoginPhaseEvent event = new LoginPhaseEvent();
+        event.authenticator = invocation != null ? invocation.getAuthenticatorName() : null;
+        event.phase = phase.getMetricName();
+        event.begin();
+        phaseEvents.get().push(event);
+    }
+
+    @Override
+    public void phaseEnded(LoginInvocation invocation, LoginPhase phase, long durationNanos) {
+
+        Deque<LoginPhaseEvent> events = phaseEvents.get();
+        LoginPhaseEvent event = events.peek();
+        // The phase may have started before the recording, in which case it has no event.
+        if (event == null || !event.phase.equals(phase.getMetricName())) {
+            return;
+        }
+        events.pop();
+        event.commit();
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.jfr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginListener;
+
+/**
+ * Creates the listener emitting flight recorder events of the logins, on runtimes that provide the flight recorder
+ * API. The classes of this package other than this one are only loaded once the API is known to be available.
+ */
+public class FlightRecorderSupport {
+
+    private static final Log log = LogFactory.getLog(FlightRecorderSupport.class);
+    private static final String FLIGHT_RECORDER_EVENT_CLASS = "jdk.jfr.Event";
+
+    private FlightRecorderSupport() {
+
+    }
+
+    /**
+     * Create the listener emitting flight recorder events of the logins.
+     *
+     * @return the listener, or null if the runtime does not provide the flight recorder API
+     */
+    public static LoginListener createLoginListener() {
+
+        try {
+            Class.forName(FLIGHT_RECORDER_EVENT_CLASS, false, FlightRecorderSupport.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Flight recorder is not available. Login events will not be recorded.", e);
+            }
+            return null;
+        }
+        return new FlightRecorderLoginListener();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of an authenticator processing a request.
+ */
+@Name("org.wso2.carbon.identity.application.authenticator.Login")
+@Label("Login")
+@Description("An authenticator processing a login request")
+@Category({"WSO2 Identity Server", "Authentication"})
+@StackTrace(false)
+class LoginEvent extends Event {
+
+    @Label("Authenticator")
+    String authenticator;
+
+    @Label("Tenant Domain")
+    String tenantDomain;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("User Store Domain")
+    String userStoreDomain;
+}
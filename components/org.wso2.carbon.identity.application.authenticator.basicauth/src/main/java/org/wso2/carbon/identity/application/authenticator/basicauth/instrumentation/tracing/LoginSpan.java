@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing;
+
+/**
+ * Span started by a {@link LoginTracer}.
+ */
+public interface LoginSpan {
+
+    /**
+     * Get the context of the span, to start its child spans with.
+     *
+     * @return context of the span, or null if the span is not recorded
+     */
+    TraceContext getContext();
+
+    /**
+     * Set an attribute of the span.
+     *
+     * @param key   attribute key
+     * @param value attribute value
+     */
+    void setAttribute(String key, String value);
+
+    /**
+     * Mark the span as failed.
+     *
+     * @param description description of the failure
+     */
+    void setError(String description);
+
+    /**
+     * End the span.
+     */
+    void end();
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing;
+
+/**
+ * Creates the spans of the logins in a tracing backend. Register an implementation as an OSGi service, such as one
+ * delegating to OpenTelemetry, to trace the logins. Without one, no spans are created.
+ */
+public interface LoginTracer {
+
+    /**
+     * Start a span.
+     *
+     * @param name   name of the span
+     * @param parent context of the parent span, which may be a remote one read from the request, or null to start a
+     *               new trace
+     * @return the started span
+     */
+    LoginSpan startSpan(String name, TraceContext parent);
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing;
+
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInvocation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginListener;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Traces the logins with the registered {@link LoginTracer}. Each invocation of an authenticator is a span, child of
+ * the span of the traceparent header of the request if there is one, and each phase of the invocation, such as a user
+ * store or session service call, is a child span of it.
+ */
+public class LoginTracing implements LoginListener {
+
+    public static final String TRACE_PARENT_HEADER = "traceparent";
+    public static final String TRACE_STATE_HEADER = "tracestate";
+    public static final String ATTRIBUTE_AUTHENTICATOR = "wso2.authenticator";
+    public static final String ATTRIBUTE_TENANT_DOMAIN = "wso2.tenant_domain";
+    public static final String ATTRIBUTE_OUTCOME = "wso2.login.outcome";
+    public static final String ATTRIBUTE_PHASE = "wso2.login.phase";
+
+    private static final LoginTracing instance = new LoginTracing();
+
+    private final ThreadLocal<Deque<PhaseSpan>> phaseSpans = ThreadLocal.withInitial(ArrayDeque::new);
+    private volatile LoginTracer tracer = NoOpLoginTracer.INSTANCE;
+
+    private LoginTracing() {
+
+    }
+
+    public static LoginTracing getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Set the tracer to create the spans with, and start listening to the logins while there is one.
+     *
+     * @param tracer tracer, or null to stop tracing
+     */
+    public synchronized void setTracer(LoginTracer tracer) {
+
+        LoginTracer updatedTracer = tracer != null ? tracer : NoOpLoginTracer.INSTANCE;
+        if (this.tracer == NoOpLoginTracer.INSTANCE && updatedTracer != NoOpLoginTracer.INSTANCE) {
+            LoginInstrumentation.getInstance().addListener(this);
+        } else if (this.tracer != NoOpLoginTracer.INSTANCE && updatedTracer == NoOpLoginTracer.INSTANCE) {
+            LoginInstrumentation.getInstance().removeListener(this);
+        }
+        this.tracer = updatedTracer;
+    }
+
+    /**
+     * Stop tracing if the tracer is the one in use. A tracer replaced by another one is left as it is.
+     *
+     * @param tracer tracer being removed
+     */
+    public synchronized void unsetTracer(LoginTracer tracer) {
+
+        if (this.tracer == tracer) {
+            setTracer(null);
+        }
+    }
+
+    /**
+     * Start the span of an invocation, continuing the trace of the request.
+     *
+     * @param invocation invocation of the authenticator, or null if it was not started
+     * @param request    request processed by the authenticator
+     */
+    public void startTrace(LoginInvocation invocation, HttpServletRequest request) {
+
+        LoginTracer currentTracer = tracer;
+        if (invocation == null || currentTracer == NoOpLoginTracer.INSTANCE) {
+            return;
+        }
+        TraceContext parent = null;
+        if (invocation.getParent() != null && invocation.getParent().getAttribute(this) instanceof LoginSpan) {
+            parent = ((LoginSpan) invocation.getParent().getAttribute(this)).getContext();
+        } else {
+            String traceParent = request.getHeader(TRACE_PARENT_HEADER);
+            if (traceParent != null) {
+                parent = TraceContext.fromHeaders(traceParent, request.getHeader(TRACE_STATE_HEADER));
+            }
+        }
+        LoginSpan span = currentTracer.startSpan(invocation.getAuthenticatorName(), parent);
+        span.setAttribute(ATTRIBUTE_AUTHENTICATOR, invocation.getAuthenticatorName());
+        if (invocation.getTenantDomain() != null) {
+            span.setAttribute(ATTRIBUTE_TENANT_DOMAIN, invocation.getTenantDomain());
+        }
+        invocation.setAttribute(this, span);
+    }
+
+    @Override
+    public void invocationEnded(LoginInvocation invocation) {
+
+        Object span = invocation.getAttribute(this);
+        if (!(span instanceof LoginSpan)) {
+            return;
+        }
+        LoginSpan invocationSpan = (LoginSpan) span;
+        invocationSpan.setAttribute(ATTRIBUTE_OUTCOME, invocation.getOutcome());
+        if (LoginInvocation.OUTCOME_ERROR.equals(invocation.getOutcome())) {
+            invocationSpan.setError("The authenticator failed with an exception.");
+        }
+        invocationSpan.end();
+    }
+
+    @Override
+    public void phaseStarted(LoginInvocation invocation, LoginPhase phase) {
+
+        // Phases run outside an invocation, such as the ones of a background warm up, are not traced.
+        Object span = invocation != null ? invocation.getAttribute(this) : null;
+        if (!(span instanceof LoginSpan)) {
+            return;
+        }
+        Deque<PhaseSpan> spans = phaseSpans.get();
+        PhaseSpan enclosingPhase = spans.peek();
+        LoginSpan parent = enclosingPhase != null && enclosingPhase.invocation == invocation ?
+                enclosingPhase.span : (LoginSpan) span;
+        LoginSpan phaseSpan = tracer.startSpan(phase.getMetricName(), parent.getContext());
+        phaseSpan.setAttribute(ATTRIBUTE_AUTHENTICATOR, invocation.getAuthenticatorName());
+        phaseSpan.setAttribute(ATTRIBUTE_PHASE, phase.name());
+        spans.push(new PhaseSpan(invocation, phase, phaseSpan));
+    }
+
+    @Override
+    public void phaseEnded(LoginInvocation invocation, LoginPhase phase, long durationNanos) {
+
+        Deque<PhaseSpan> spans = phaseSpans.get();
+        PhaseSpan phaseSpan = spans.peek();
+        // The phase may have started before the tracer was registered, in which case it has no span.
+        if (phaseSpan == null || phaseSpan.invocation != invocation || phaseSpan.phase != phase) {
+            return;
+        }
+        spans.pop();
+        phaseSpan.span.end();
+    }
+
+    private static class PhaseSpan {
+
+        private final LoginInvocation invocation;
+        private final LoginPhase phase;
+        private final LoginSpan span;
+
+        PhaseSpan(LoginInvocation invocation, LoginPhase phase, LoginSpan span) {
+
+            this.invocation = invocation;
+            this.phase = phase;
+            this.span = span;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing;
+
+/**
+ * Tracer used until a {@link LoginTracer} service is registered, which does not record anything.
+ */
+class NoOpLoginTracer implements LoginTracer {
+
+    static final NoOpLoginTracer INSTANCE = new NoOpLoginTracer();
+
+    private static final LoginSpan NO_OP_SPAN = new LoginSpan() {
+
+        @Override
+        public TraceContext getContext() {
+
+            return null;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+
+        }
+
+        @Override
+        public void setError(String description) {
+
+        }
+
+        @Override
+        public void end() {
+
+        }
+    };
+
+    private NoOpLoginTracer() {
+
+    }
+
+    @Override
+    public LoginSpan startSpan(String name, TraceContext parent) {
+
+        return NO_OP_SPAN;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing;
+
+/**
+ * Identifies a span of a trace as defined by the W3C Trace Context specification, so that the spans of a login can be
+ * linked to the trace of the request started by the client or an upstream proxy.
+ */
+public class TraceContext {
+
+    private static final String VERSION_00 = "00";
+    private static final String INVALID_VERSION = "ff";
+    private static final int VERSION_LENGTH = 2;
+    private static final int TRACE_ID_LENGTH = 32;
+    private static final int SPAN_ID_LENGTH = 16;
+    private static final int TRACE_FLAGS_LENGTH = 2;
+    private static final int TRACE_PARENT_LENGTH = VERSION_LENGTH + TRACE_ID_LENGTH + SPAN_ID_LENGTH
+            + TRACE_FLAGS_LENGTH + 3;
+    private static final int SAMPLED_FLAG = 0x01;
+
+    private final String traceId;
+    private final String spanId;
+    private final int traceFlags;
+    private final String traceState;
+    private final boolean remote;
+
+    public TraceContext(String traceId, String spanId, int traceFlags, String traceState, boolean remote) {
+
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.traceFlags = traceFlags;
+        this.traceState = traceState;
+        this.remote = remote;
+    }
+
+    /**
+     * Read the context of the remote parent span from the trace context headers of a request.
+     *
+     * @param traceParent value of the traceparent header
+     * @param traceState  value of the tracestate header, or null
+     * @return context of the parent span, or null if the traceparent header is missing or invalid
+     */
+    public static TraceContext fromHeaders(String traceParent, String traceState) {
+
+        if (traceParent == null || traceParent.length() < TRACE_PARENT_LENGTH) {
+            return null;
+        }
+        String version = traceParent.substring(0, VERSION_LENGTH);
+        // Later versions may append fields, which are ignored.
+        if (!isHex(version) || INVALID_VERSION.equals(version)
+                || (VERSION_00.equals(version) && traceParent.length() != TRACE_PARENT_LENGTH)
+                || (traceParent.length() > TRACE_PARENT_LENGTH && traceParent.charAt(TRACE_PARENT_LENGTH) != '-')) {
+            return null;
+        }
+        int traceIdStart = VERSION_LENGTH + 1;
+        int spanIdStart = traceIdStart + TRACE_ID_LENGTH + 1;
+        int traceFlagsStart = spanIdStart + SPAN_ID_LENGTH + 1;
+        if (traceParent.charAt(traceIdStart - 1) != '-' || traceParent.charAt(spanIdStart - 1) != '-'
+                || traceParent.charAt(traceFlagsStart - 1) != '-') {
+            return null;
+        }
+        String traceId = traceParent.substring(traceIdStart, traceIdStart + TRACE_ID_LENGTH);
+        String spanId = traceParent.substring(spanIdStart, spanIdStart + SPAN_ID_LENGTH);
+        String traceFlags = traceParent.substring(traceFlagsStart, traceFlagsStart + TRACE_FLAGS_LENGTH);
+        if (!isHex(traceId) || isZero(traceId) || !isHex(spanId) || isZero(spanId) || !isHex(traceFlags)) {
+            return null;
+        }
+        return new TraceContext(traceId, spanId, Integer.parseInt(traceFlags, 16), traceState, true);
+    }
+
+    /**
+     * Get the trace ID, as 32 lowercase hex characters.
+     *
+     * @return trace ID
+     */
+    public String getTraceId() {
+
+        return traceId;
+    }
+
+    /**
+     * Get the span ID, as 16 lowercase hex characters.
+     *
+     * @return span ID
+     */
+    public String getSpanId() {
+
+        return spanId;
+    }
+
+    public int getTraceFlags() {
+
+        return traceFlags;
+    }
+
+    public boolean isSampled() {
+
+        return (traceFlags & SAMPLED_FLAG) != 0;
+    }
+
+    /**
+     * Get the vendor specific trace state, as carried by the tracestate header.
+     *
+     * @return trace state, or null if there is none
+     */
+    public String getTraceState() {
+
+        return traceState;
+    }
+
+    /**
+     * Check whether the span was started by another process and read from the request.
+     *
+     * @return true for a remote span
+     */
+    public boolean isRemote() {
+
+        return remote;
+    }
+
+    /**
+     * Get the value of the traceparent header identifying this span as the parent.
+     *
+     * @return traceparent header value
+     */
+    public String toTraceParent() {
+
+        return VERSION_00 + '-' + traceId + '-' + spanId + '-' + String.format("%02x", traceFlags & 0xff);
+    }
+
+    private static boolean isHex(String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(String value) {
+
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -18,6 +18,8 @@
 
 package org.wso2.carbon.identity.application.authenticator.basicauth.internal;
 
+import org.wso2.carbon.identity.application.authenticator.basicauth.config.ConfigFileWatcher;
+import org.wso2.carbon.identity.application.authenticator.basicauth.warmup.TenantWarmUp;
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
 
 import java.util.Properties;
@@ -31,7 +33,11 @@ public class BasicAuthenticatorDataHolder {
 
     private IdentityGovernanceService identityGovernanceService;
 
-    private Properties recaptchaConfigs;
+    private volatile Properties recaptchaConfigs;
+
+    private TenantWarmUp tenantWarmUp;
+
+    private ConfigFileWatcher configFileWatcher;
 
     private BasicAuthenticatorDataHolder() {
 
@@ -56,4 +62,20 @@ public class BasicAuthenticatorDataHolder {
     public void setRecaptchaConfigs(Properties recaptchaConfigs) {
         this.recaptchaConfigs = recaptchaConfigs;
     }
+
+    public TenantWarmUp getTenantWarmUp() {
+        return tenantWarmUp;
+    }
+
+    public void setTenantWarmUp(TenantWarmUp tenantWarmUp) {
+        this.tenantWarmUp = tenantWarmUp;
+    }
+
+    public ConfigFileWatcher getConfigFileWatcher() {
+        return configFileWatcher;
+    }
+
+    public void setConfigFileWatcher(ConfigFileWatcher configFileWatcher) {
+        this.configFileWatcher = configFileWatcher;
+    }
 }
@@ -28,9 +28,36 @@ import org.osgi.service.component.annotations.ReferenceCardinality;
 import org.osgi.service.component.annotations.ReferencePolicy;
 import org.wso2.carbon.identity.application.authentication.framework.ApplicationAuthenticator;
 import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticator;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.application.authenticator.basicauth.cache.CaptchaDecisionCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.cache.TenantIdCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.config.AuthenticatorParameterRegistry;
+import org.wso2.carbon.identity.application.authenticator.basicauth.config.ConfigFileWatcher;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginListener;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginMetrics;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginResourceAccounting;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.ServerTiming;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.jfr.FlightRecorderSupport;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing.LoginTracer;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing.LoginTracing;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationBus;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationEvent;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationListener;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.InvalidationTransport;
+import org.wso2.carbon.identity.application.authenticator.basicauth.invalidation.UserInvalidationEventListener;
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.CacheSnapshots;
+import org.wso2.carbon.identity.application.authenticator.basicauth.snapshot.SnapshotableCache;
+import org.wso2.carbon.identity.application.authenticator.basicauth.warmup.TenantWarmUp;
+import org.wso2.carbon.identity.application.authenticator.basicauth.warmup.TenantWarmer;
+import org.wso2.carbon.identity.captcha.connector.recaptcha.SSOLoginReCaptchaConfig;
 import org.wso2.carbon.identity.captcha.util.CaptchaConstants;
 import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.governance.IdentityGovernanceException;
 import org.wso2.carbon.identity.governance.IdentityGovernanceService;
+import org.wso2.carbon.user.api.UserRealm;
+import org.wso2.carbon.user.api.UserStoreException;
+import org.wso2.carbon.user.core.listener.UserOperationEventListener;
 import org.wso2.carbon.user.core.service.RealmService;
 
 import java.io.IOException;
@@ -40,6 +67,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 @Component(
@@ -51,6 +81,10 @@ public class BasicAuthenticatorServiceComponent {
 
     private static RealmService realmService;
 
+    private final InvalidationListener cacheInvalidationListener = this::invalidateCaches;
+
+    private LoginListener flightRecorderListener;
+
     public static RealmService getRealmService() {
 
         return realmService;
@@ -72,9 +106,25 @@ public class BasicAuthenticatorServiceComponent {
     protected void activate(ComponentContext ctxt) {
 
         buildReCaptchaFilterProperties();
+        startConfigFileWatcher();
+        restoreCacheSnapshot();
+        InvalidationBus.getInstance().addListener(cacheInvalidationListener);
+        InvalidationBus.getInstance().start();
+        LoginInstrumentation.getInstance().addListener(LoginMetrics.getInstance());
+        LoginMetrics.getInstance().registerMBean(BasicAuthenticatorConstants.AUTHENTICATOR_NAME);
+        LoginInstrumentation.getInstance().addListener(ServerTiming.getInstance());
+        LoginInstrumentation.getInstance().addListener(LoginResourceAccounting.getInstance());
+        LoginResourceAccounting.getInstance().registerMBean();
+        flightRecorderListener = FlightRecorderSupport.createLoginListener();
+        if (flightRecorderListener != null) {
+            LoginInstrumentation.getInstance().addListener(flightRecorderListener);
+        }
         try {
             BasicAuthenticator basicAuth = new BasicAuthenticator();
             ctxt.getBundleContext().registerService(ApplicationAuthenticator.class.getName(), basicAuth, null);
+            ctxt.getBundleContext().registerService(UserOperationEventListener.class.getName(),
+                    new UserInvalidationEventListener(), null);
+            startTenantWarmUp();
             if (log.isDebugEnabled()) {
                 log.info("BasicAuthenticator bundle is activated");
             }
@@ -86,6 +136,29 @@ public class BasicAuthenticatorServiceComponent {
     @Deactivate
     protected void deactivate(ComponentContext ctxt) {
 
+        ConfigFileWatcher configFileWatcher = BasicAuthenticatorDataHolder.getInstance().getConfigFileWatcher();
+        if (configFileWatcher != null) {
+            configFileWatcher.stop();
+            BasicAuthenticatorDataHolder.getInstance().setConfigFileWatcher(null);
+        }
+        AuthenticatorParameterRegistry.getInstance().clear();
+        TenantWarmUp tenantWarmUp = BasicAuthenticatorDataHolder.getInstance().getTenantWarmUp();
+        if (tenantWarmUp != null) {
+            tenantWarmUp.stop();
+            BasicAuthenticatorDataHolder.getInstance().setTenantWarmUp(null);
+        }
+        InvalidationBus.getInstance().stop();
+        InvalidationBus.getInstance().removeListener(cacheInvalidationListener);
+        LoginMetrics.getInstance().unregisterMBean(BasicAuthenticatorConstants.AUTHENTICATOR_NAME);
+        LoginInstrumentation.getInstance().removeListener(LoginMetrics.getInstance());
+        LoginInstrumentation.getInstance().removeListener(ServerTiming.getInstance());
+        LoginResourceAccounting.getInstance().unregisterMBean();
+        LoginInstrumentation.getInstance().removeListener(LoginResourceAccounting.getInstance());
+        if (flightRecorderListener != null) {
+            LoginInstrumentation.getInstance().removeListener(flightRecorderListener);
+            flightRecorderListener = null;
+        }
+        writeCacheSnapshot();
         if (log.isDebugEnabled()) {
             log.info("BasicAuthenticator bundle is deactivated");
         }
@@ -113,14 +186,140 @@ public class BasicAuthenticatorServiceComponent {
         BasicAuthenticatorDataHolder.getInstance().setIdentityGovernanceService(null);
     }
 
+    @Reference(
+            name = "invalidation.transport",
+            service = InvalidationTransport.class,
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetInvalidationTransport")
+    protected void setInvalidationTransport(InvalidationTransport invalidationTransport) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Setting the invalidation transport: " + invalidationTransport.getClass().getName());
+        }
+        InvalidationBus.getInstance().setTransport(invalidationTransport);
+    }
+
+    protected void unsetInvalidationTransport(InvalidationTransport invalidationTransport) {
+
+        log.debug("UnSetting the invalidation transport");
+        InvalidationBus.getInstance().setTransport(null);
+    }
+
+    @Reference(
+            name = "login.tracer",
+            service = LoginTracer.class,
+            cardinality = ReferenceCardinality.OPTIONAL,
+            policy = ReferencePolicy.DYNAMIC,
+            unbind = "unsetLoginTracer")
+    protected void setLoginTracer(LoginTracer loginTracer) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Setting the login tracer: " + loginTracer.getClass().getName());
+        }
+        LoginTracing.getInstance().setTracer(loginTracer);
+    }
+
+    protected void unsetLoginTracer(LoginTracer loginTracer) {
+
+        log.debug("UnSetting the login tracer");
+        LoginTracing.getInstance().unsetTracer(loginTracer);
+    }
+
+    /**
+     * Start loading the realms and the captcha configurations of the tenants configured to be warmed up, in the
+     * background.
+     */
+    private void startTenantWarmUp() {
+
+        List<TenantWarmer> warmers = Arrays.asList(this::warmUpUserRealm, this::warmUpCaptchaConfiguration);
+        List<String> snapshotTenants = TenantIdCache.getInstance()
+                .getHottestTenants(BasicAuthenticatorConstants.MAX_WARM_UP_SNAPSHOT_TENANTS);
+        TenantWarmUp tenantWarmUp = TenantWarmUp.fromConfiguration(BasicAuthenticatorConstants.AUTHENTICATOR_NAME,
+                snapshotTenants, warmers);
+        if (tenantWarmUp != null) {
+            BasicAuthenticatorDataHolder.getInstance().setTenantWarmUp(tenantWarmUp);
+            tenantWarmUp.start();
+        }
+    }
+
+    /**
+     * Restore the caches of the authenticator from the snapshot written when the bundle was last deactivated.
+     */
+    private void restoreCacheSnapshot() {
+
+        CacheSnapshots.restore(CacheSnapshots.getSnapshotPath(BasicAuthenticatorConstants.CACHE_SNAPSHOT_FILE),
+                getSnapshotableCaches());
+    }
+
+    /**
+     * Write the non-secret contents of the caches of the authenticator to a snapshot, to be restored on activation.
+     */
+    private void writeCacheSnapshot() {
+
+        Path path = CacheSnapshots.getSnapshotPath(BasicAuthenticatorConstants.CACHE_SNAPSHOT_FILE);
+        try {
+            CacheSnapshots.write(path, getSnapshotableCaches());
+        } catch (IOException e) {
+            log.error("Error while writing the cache snapshot: " + path, e);
+        }
+    }
+
+    /**
+     * Evict the cached tenant ids and captcha decisions of the changed tenants.
+     *
+     * @param events invalidation events of a batch
+     */
+    private void invalidateCaches(Collection<InvalidationEvent> events) {
+
+        for (InvalidationEvent event : events) {
+            if (event.getType() == InvalidationEvent.Type.TENANT) {
+                TenantIdCache.getInstance().invalidate(event.getTenantDomain());
+                CaptchaDecisionCache.getInstance().invalidate(event.getTenantDomain());
+            }
+        }
+    }
+
+    private List<SnapshotableCache> getSnapshotableCaches() {
+
+        return Arrays.asList(TenantIdCache.getInstance(), CaptchaDecisionCache.getInstance());
+    }
+
+    private void warmUpUserRealm(String tenantDomain, int tenantId) throws UserStoreException {
+
+        RealmService realmService = getRealmService();
+        if (realmService == null) {
+            return;
+        }
+        realmService.getTenantManager().getTenantId(tenantDomain);
+        UserRealm userRealm = realmService.getTenantUserRealm(tenantId);
+        if (userRealm != null) {
+            userRealm.getUserStoreManager();
+        }
+    }
+
+    private void warmUpCaptchaConfiguration(String tenantDomain, int tenantId) throws IdentityGovernanceException {
+
+        IdentityGovernanceService identityGovernanceService =
+                BasicAuthenticatorDataHolder.getInstance().getIdentityGovernanceService();
+        if (identityGovernanceService == null) {
+            return;
+        }
+        String captchaConfigName = new SSOLoginReCaptchaConfig().getName() +
+                CaptchaConstants.ReCaptchaConnectorPropertySuffixes.ENABLE_ALWAYS;
+        identityGovernanceService.getConfiguration(new String[]{captchaConfigName}, tenantDomain);
+    }
+
     /**
      * Read the captcha-config.properties file located in repository/conf/identity directory and set the
-     * configurations required to enable recaptcha in the Data holder.
+     * configurations required to enable recaptcha in the Data holder. This is called again when the file changes, and
+     * the current configurations are kept if the file cannot be read.
      */
     private void buildReCaptchaFilterProperties() {
 
         Path path = Paths.get(IdentityUtil.getIdentityConfigDirPath(), CaptchaConstants.CAPTCHA_CONFIG_FILE_NAME);
 
+        Properties recaptchaConfigs = null;
         if (Files.exists(path)) {
             Properties properties = new Properties();
             try (Reader in = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)) {
@@ -128,14 +327,38 @@ public class BasicAuthenticatorServiceComponent {
             } catch (IOException e) {
                 log.error("Error while loading '" + CaptchaConstants.CAPTCHA_CONFIG_FILE_NAME + "' configuration " +
                         "file", e);
+                return;
             }
 
             boolean reCaptchaEnabled = Boolean.valueOf(properties.getProperty(CaptchaConstants
                     .RE_CAPTCHA_ENABLED));
 
             if (reCaptchaEnabled) {
-                BasicAuthenticatorDataHolder.getInstance().setRecaptchaConfigs(properties);
+                recaptchaConfigs = properties;
             }
         }
+        BasicAuthenticatorDataHolder.getInstance().setRecaptchaConfigs(recaptchaConfigs);
+    }
+
+    /**
+     * Watch the identity configuration directory, to reload the captcha configurations and the authenticator
+     * parameters when their files change.
+     */
+    private void startConfigFileWatcher() {
+
+        Path directory = Paths.get(IdentityUtil.getIdentityConfigDirPath());
+        ConfigFileWatcher configFileWatcher = new ConfigFileWatcher(directory,
+                BasicAuthenticatorConstants.AUTHENTICATOR_NAME);
+        configFileWatcher.register(CaptchaConstants.CAPTCHA_CONFIG_FILE_NAME, this::buildReCaptchaFilterProperties);
+        configFileWatcher.register(AuthenticatorParameterRegistry.CONFIG_FILE_NAME, () ->
+                AuthenticatorParameterRegistry.getInstance().reload(
+                        directory.resolve(AuthenticatorParameterRegistry.CONFIG_FILE_NAME)));
+        try {
+            configFileWatcher.start();
+            BasicAuthenticatorDataHolder.getInstance().setConfigFileWatcher(configFileWatcher);
+        } catch (IOException e) {
+            log.error("Error while watching the configuration directory: " + directory + ". Configuration "
+                    + "changes are applied on restart.", e);
+        }
     }
 }
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.invalidation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers {@link InvalidationEvent}s to the caches of the authenticators on this node and, through an
+ * {@link InvalidationTransport}, on the other nodes of the cluster.
+ * <p>
+ * Published events are coalesced and delivered in batches once per batch interval, so a burst of changes, such as
+ * a bulk password reset, costs one message per interval instead of one per change. Events received from the
+ * transport are delivered to the local listeners only.
+ */
+public class InvalidationBus {
+
+    private static final Log log = LogFactory.getLog(InvalidationBus.class);
+
+    private static final long DEFAULT_BATCH_INTERVAL_MILLIS = 100;
+    private static final int MAX_BATCH_SIZE = 10000;
+
+    private static final InvalidationBus instance = new InvalidationBus(DEFAULT_BATCH_INTERVAL_MILLIS);
+
+    private final long batchIntervalMillis;
+    private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private Set<InvalidationEvent> pendingEvents = new LinkedHashSet<>();
+    private volatile InvalidationTransport transport;
+    private volatile ScheduledExecutorService scheduler;
+
+    public InvalidationBus(long batchIntervalMillis) {
+
+        this.batchIntervalMillis = batchIntervalMillis;
+    }
+
+    public static InvalidationBus getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Start delivering the published events in batches.
+     */
+    public synchronized void start() {
+
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "LocalAuthenticator-InvalidationBus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, batchIntervalMillis, batchIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deliver the pending events and stop batching. Events published afterwards are delivered immediately.
+     */
+    public synchronized void stop() {
+
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        scheduler = null;
+        flush();
+    }
+
+    /**
+     * Publish an event, to be delivered with the next batch.
+     *
+     * @param event event to publish
+     */
+    public void publish(InvalidationEvent event) {
+
+        int pendingCount;
+        synchronized (lock) {
+            pendingEvents.add(event);
+            pendingCount = pendingEvents.size();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Published the invalidation event: " + event);
+        }
+        ScheduledExecutorService currentScheduler = scheduler;
+        if (currentScheduler == null) {
+            flush();
+        } else if (pendingCount >= MAX_BATCH_SIZE) {
+            currentScheduler.execute(this::flush);
+        }
+    }
+
+    /**
+     * Deliver the pending events now.
+     */
+    public void flush() {
+
+        Set<InvalidationEvent> batch;
+        synchronized (lock) {
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+            batch = pendingEvents;
+            pendingEvents = new LinkedHashSet<>();
+        }
+        Collection<InvalidationEvent> events = Collections.unmodifiableList(new ArrayList<>(batch));
+        deliver(events);
+        InvalidationTransport currentTransport = transport;
+        if (currentTransport != null) {
+            try {
+                currentTransport.send(events);
+            } catch (RuntimeException e) {
+                log.error("Error while sending " + events.size() + " invalidation event(s) to the cluster. Caches "
+                        + "of the other nodes expire the entries on their own.", e);
+            }
+        }
+    }
+
+    public void addListener(InvalidationListener listener) {
+
+        listeners.add(listener);
+    }
+
+    public void removeListener(InvalidationListener listener) {
+
+        listeners.remove(listener);
+    }
+
+    /**
+     * Set the transport to the other nodes of the cluster.
+     *
+     * @param transport transport, or null to keep the invalidations on this node
+     */
+    public synchronized void setTransport(InvalidationTransport transport) {
+
+        if (this.transport != null) {
+            this.transport.setReceiver(null);
+        }
+        this.transport = transport;
+        if (transport != null) {
+            transport.setReceiver(this::deliver);
+        }
+    }
+
+    private void deliver(Collection<InvalidationEvent> events) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Delivering " + events.size() + " invalidation event(s) to " + listeners.size()
+                    + " listener(s).");
+        }
+        for (InvalidationListener listener : listeners) {
+            try {
+                listener.onInvalidation(events);
+            } catch (RuntimeException e) {
+                log.error("Error while delivering invalidation events to the listener: " + listener, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.invalidation;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * An event asking the caches of the authenticators to evict the entries of a tenant, a user or a signing key.
+ * Events are values, so that duplicate events published within a batch interval are delivered once.
+ */
+public final class InvalidationEvent implements Serializable {
+
+    private static final long serialVersionUID = 6510357195302846513L;
+
+    /**
+     * Type of the change that invalidates the cached entries.
+     */
+    public enum Type {
+
+        /**
+         * The tenant was changed, such as its configuration, or deactivated. The key is null.
+         */
+        TENANT,
+
+        /**
+         * The user was added. The key is the user store domain qualified username.
+         */
+        USER_ADDED,
+
+        /**
+         * The credential of the user was changed. The key is the user store domain qualified username.
+         */
+        USER_CREDENTIAL,
+
+        /**
+         * The account of the user was locked, unlocked, disabled or enabled. The key is the user store domain
+         * qualified username.
+         */
+        USER_ACCOUNT_STATE,
+
+        /**
+         * The user was deleted. The key is the user store domain qualified username.
+         */
+        USER_DELETED,
+
+        /**
+         * A signing key of the tenant was added, rotated or revoked. The key is the kid, optionally followed by '#'
+         * and the thumbprint of the invalidated version of the key.
+         */
+        SIGNING_KEY
+    }
+
+    private final Type type;
+    private final String tenantDomain;
+    private final String key;
+
+    public InvalidationEvent(Type type, String tenantDomain, String key) {
+
+        this.type = Objects.requireNonNull(type);
+        this.tenantDomain = Objects.requireNonNull(tenantDomain);
+        this.key = key;
+    }
+
+    public Type getType() {
+
+        return type;
+    }
+
+    public String getTenantDomain() {
+
+        return tenantDomain;
+    }
+
+    public String getKey() {
+
+        return key;
+    }
+
+    /**
+     * Check whether the event invalidates the entries of a user.
+     *
+     * @return true for the user events
+     */
+    public boolean isUserEvent() {
+
+        return type == Type.USER_ADDED || type == Type.USER_CREDENTIAL || type == Type.USER_ACCOUNT_STATE
+                || type == Type.USER_DELETED;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InvalidationEvent)) {
+            return false;
+        }
+        InvalidationEvent that = (InvalidationEvent) o;
+        return type == that.type && tenantDomain.equals(that.tenantDomain) && Objects.equals(key, that.key);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(type, tenantDomain, key);
+    }
+
+    @Override
+    public String toString() {
+
+        return type + "[" + tenantDomain + (key != null ? ", " + key : "") + "]";
+    }
+}
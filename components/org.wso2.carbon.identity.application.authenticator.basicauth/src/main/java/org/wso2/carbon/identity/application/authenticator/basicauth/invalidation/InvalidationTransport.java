@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.invalidation;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Carries batches of {@link InvalidationEvent}s between the nodes of a cluster. Register an implementation as an
+ * OSGi service to propagate invalidations across the cluster. Without one, invalidations stay on the local node.
+ */
+public interface InvalidationTransport {
+
+    /**
+     * Send a batch of events published on the local node to the other nodes.
+     *
+     * @param events coalesced events of a batch
+     */
+    void send(Collection<InvalidationEvent> events);
+
+    /**
+     * Set the receiver of the batches sent by the other nodes.
+     *
+     * @param receiver receiver of the batches, or null to stop receiving
+     */
+    void setReceiver(Consumer<Collection<InvalidationEvent>> receiver);
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.invalidation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * In-process transport that delivers batches to the other members of a shared group synchronously. Intended for
+ * tests and single JVM setups that simulate a cluster.
+ */
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    private final List<LoopbackInvalidationTransport> group;
+    private volatile Consumer<Collection<InvalidationEvent>> receiver;
+
+    /**
+     * @param group members of the simulated cluster, shared by all the members. This transport joins the group.
+     */
+    public LoopbackInvalidationTransport(List<LoopbackInvalidationTransport> group) {
+
+        this.group = group;
+        group.add(this);
+    }
+
+    @Override
+    public void send(Collection<InvalidationEvent> events) {
+
+        for (LoopbackInvalidationTransport member : group) {
+            Consumer<Collection<InvalidationEvent>> memberReceiver = member.receiver;
+            if (member != this && memberReceiver != null) {
+                memberReceiver.accept(events);
+            }
+        }
+    }
+
+    @Override
+    public void setReceiver(Consumer<Collection<InvalidationEvent>> receiver) {
+
+        this.receiver = receiver;
+    }
+}
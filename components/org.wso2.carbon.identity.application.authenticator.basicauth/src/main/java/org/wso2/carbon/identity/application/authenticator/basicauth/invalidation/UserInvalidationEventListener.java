@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.invalidation;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.identity.core.AbstractIdentityUserOperationEventListener;
+import org.wso2.carbon.identity.core.util.IdentityCoreConstants;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.user.core.UserStoreException;
+import org.wso2.carbon.user.core.UserStoreManager;
+import org.wso2.carbon.user.core.util.UserCoreUtil;
+
+import java.util.Map;
+
+/**
+ * Publishes {@link InvalidationEvent}s to the {@link InvalidationBus} when users are added or deleted, their
+ * credentials are updated, or their account lock or disable state is changed.
+ */
+public class UserInvalidationEventListener extends AbstractIdentityUserOperationEventListener {
+
+    private static final Log log = LogFactory.getLog(UserInvalidationEventListener.class);
+
+    private static final int DEFAULT_EXECUTION_ORDER_ID = 97;
+    private static final String ACCOUNT_LOCKED_CLAIM = "http://wso2.org/claims/identity/accountLocked";
+    private static final String ACCOUNT_DISABLED_CLAIM = "http://wso2.org/claims/identity/accountDisabled";
+
+    @Override
+    public int getExecutionOrderId() {
+
+        int orderId = getOrderId();
+        if (orderId != IdentityCoreConstants.EVENT_LISTENER_ORDER_ID) {
+            return orderId;
+        }
+        return DEFAULT_EXECUTION_ORDER_ID;
+    }
+
+    @Override
+    public boolean doPostAddUser(String userName, Object credential, String[] roleList, Map<String, String> claims,
+                                 String profile, UserStoreManager userStoreManager) throws UserStoreException {
+
+        publish(InvalidationEvent.Type.USER_ADDED, userName, userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostUpdateCredential(String userName, Object credential, UserStoreManager userStoreManager)
+            throws UserStoreException {
+
+        publish(InvalidationEvent.Type.USER_CREDENTIAL, userName, userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostUpdateCredentialByAdmin(String userName, Object credential,
+                                                 UserStoreManager userStoreManager) throws UserStoreException {
+
+        publish(InvalidationEvent.Type.USER_CREDENTIAL, userName, userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostDeleteUser(String userName, UserStoreManager userStoreManager) throws UserStoreException {
+
+        publish(InvalidationEvent.Type.USER_DELETED, userName, userStoreManager);
+        return true;
+    }
+
+    @Override
+    public boolean doPostSetUserClaimValues(String userName, Map<String, String> claims, String profileName,
+                                            UserStoreManager userStoreManager) throws UserStoreException {
+
+        if (claims != null && (claims.containsKey(ACCOUNT_LOCKED_CLAIM) || claims.containsKey(ACCOUNT_DISABLED_CLAIM))) {
+            publish(InvalidationEvent.Type.USER_ACCOUNT_STATE, userName, userStoreManager);
+        }
+        return true;
+    }
+
+    private void publish(InvalidationEvent.Type type, String userName, UserStoreManager userStoreManager)
+            throws UserStoreException {
+
+        if (!isEnable()) {
+            return;
+        }
+        String tenantDomain = IdentityTenantUtil.getTenantDomain(userStoreManager.getTenantId());
+        String domainName = UserCoreUtil.getDomainName(userStoreManager.getRealmConfiguration());
+        String qualifiedUserName = UserCoreUtil.addDomainToName(userName, domainName);
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidating the cached entries of the user: " + qualifiedUserName + " in the tenant: "
+                    + tenantDomain + " on " + type);
+        }
+        InvalidationBus.getInstance().publish(new InvalidationEvent(type, tenantDomain, qualifiedUserName));
+    }
+}
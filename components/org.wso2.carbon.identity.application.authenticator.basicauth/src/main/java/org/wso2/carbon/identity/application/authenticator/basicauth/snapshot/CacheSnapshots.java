@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.snapshot;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.utils.CarbonUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes the contents of {@link SnapshotableCache}s to a versioned binary file and restores them from it.
+ * <p>
+ * The file holds a header of the magic number, the format version and the creation time, followed by one section
+ * per cache with its name and entries, and a CRC32 of all the preceding bytes. Strings are written as their UTF-8
+ * length followed by the bytes. Snapshots are replaced atomically, and a snapshot that is corrupt or of another
+ * version is ignored, so the caches simply start empty.
+ */
+public final class CacheSnapshots {
+
+    private static final Log log = LogFactory.getLog(CacheSnapshots.class);
+
+    private static final int MAGIC = 0x57534353;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final int TRAILER_SIZE = 8;
+    private static final int MAX_SNAPSHOT_SIZE = 64 * 1024 * 1024;
+
+    private CacheSnapshots() {
+
+    }
+
+    /**
+     * Get the path of a snapshot file in the data directory of the server.
+     *
+     * @param fileName snapshot file name
+     * @return snapshot file path, or null if the server home is not known
+     */
+    public static Path getSnapshotPath(String fileName) {
+
+        String carbonHome = CarbonUtils.getCarbonHome();
+        if (carbonHome == null) {
+            return null;
+        }
+        return Paths.get(carbonHome, "repository", "data", fileName);
+    }
+
+    /**
+     * Write the contents of the caches to the snapshot file, replacing the existing snapshot.
+     *
+     * @param path   snapshot file, or null to skip writing the snapshot
+     * @param caches caches to write
+     * @throws IOException if the snapshot could not be written
+     */
+    public static void write(Path path, Collection<? extends SnapshotableCache> caches) throws IOException {
+
+        if (path == null) {
+            return;
+        }
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        int entryCount = 0;
+        try (OutputStream fileOut = Files.newOutputStream(tmpPath)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(fileOut),
+                    crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(caches.size());
+            for (SnapshotableCache cache : caches) {
+                Map<String, String> entries = cache.snapshot();
+                writeString(out, cache.getSnapshotName());
+                out.writeInt(entries.size());
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    writeString(out, entry.getKey());
+                    writeString(out, entry.getValue());
+                }
+                entryCount += entries.size();
+            }
+            out.flush();
+            DataOutputStream trailer = new DataOutputStream(fileOut);
+            trailer.writeLong(crc.getValue());
+            trailer.flush();
+        }
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote " + entryCount + " cache entries to the snapshot: " + path);
+        }
+    }
+
+    /**
+     * Restore the caches from the sections of the snapshot file with their names.
+     *
+     * @param path   snapshot file, may be null
+     * @param caches caches to restore
+     * @return number of entries read for the caches
+     */
+    public static int restore(Path path, Collection<? extends SnapshotableCache> caches) {
+
+        Map<String, Map<String, String>> sections = read(path);
+        int entryCount = 0;
+        for (SnapshotableCache cache : caches) {
+            Map<String, String> entries = sections.get(cache.getSnapshotName());
+            if (entries != null) {
+                cache.restore(entries);
+                entryCount += entries.size();
+            }
+        }
+        if (entryCount > 0) {
+            log.info("Restored " + entryCount + " cache entries from the snapshot: " + path);
+        }
+        return entryCount;
+    }
+
+    /**
+     * Read the sections of the snapshot file.
+     *
+     * @param path snapshot file, may be null
+     * @return entries of each section by the section name, or an empty map if there is no valid snapshot
+     */
+    public static Map<String, Map<String, String>> read(Path path) {
+
+        if (path == null || !Files.isRegularFile(path)) {
+            return Collections.emptyMap();
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE || size > MAX_SNAPSHOT_SIZE) {
+                log.warn("Ignoring the cache snapshot: " + path + " of invalid size: " + size);
+                return Collections.emptyMap();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return readSections(buffer, path);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Ignoring the unreadable cache snapshot: " + path, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    private static Map<String, Map<String, String>> readSections(ByteBuffer buffer, Path path) {
+
+        int contentSize = buffer.limit() - TRAILER_SIZE;
+        CRC32 crc = new CRC32();
+        ByteBuffer content = buffer.duplicate();
+        content.limit(contentSize);
+        crc.update(content);
+        if (crc.getValue() != buffer.getLong(contentSize)) {
+            log.warn("Ignoring the corrupt cache snapshot: " + path);
+            return Collections.emptyMap();
+        }
+
+        buffer.limit(contentSize);
+        if (buffer.getInt() != MAGIC) {
+            log.warn("Ignoring the file: " + path + " which is not a cache snapshot");
+            return Collections.emptyMap();
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            log.info("Ignoring the cache snapshot: " + path + " of version: " + version);
+            return Collections.emptyMap();
+        }
+        long createdTime = buffer.getLong();
+        int sectionCount = buffer.getInt();
+        Map<String, Map<String, String>> sections = new LinkedHashMap<>();
+        for (int i = 0; i < sectionCount; i++) {
+            String name = readString(buffer);
+            int entryCount = buffer.getInt();
+            if (entryCount < 0 || entryCount > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid entry count: " + entryCount + " in section: " + name);
+            }
+            Map<String, String> entries = new LinkedHashMap<>();
+            for (int j = 0; j < entryCount; j++) {
+                entries.put(readString(buffer), readString(buffer));
+            }
+            sections.put(name, entries);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Read " + sections.size() + " cache sections from the snapshot: " + path + " created at: "
+                    + createdTime);
+        }
+        return sections;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.snapshot;
+
+import java.util.Map;
+
+/**
+ * A cache whose contents can be written to a {@link CacheSnapshots} snapshot on shutdown and restored from it on
+ * startup. Only non-secret contents should be exposed through a snapshot.
+ */
+public interface SnapshotableCache {
+
+    /**
+     * Name of the snapshot section of the cache. This should not change between versions.
+     *
+     * @return section name
+     */
+    String getSnapshotName();
+
+    /**
+     * Get the entries to be written to the snapshot, the most valuable first.
+     *
+     * @return snapshot entries
+     */
+    Map<String, String> snapshot();
+
+    /**
+     * Restore the entries read from a snapshot. Entries that cannot be restored are ignored.
+     *
+     * @param entries snapshot entries, in the order they were written
+     */
+    void restore(Map<String, String> entries);
+}
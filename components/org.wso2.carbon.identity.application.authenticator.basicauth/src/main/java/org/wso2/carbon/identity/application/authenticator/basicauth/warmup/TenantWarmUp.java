@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.warmup;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.context.PrivilegedCarbonContext;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticatorConstants;
+import org.wso2.carbon.identity.base.IdentityRuntimeException;
+import org.wso2.carbon.identity.core.util.IdentityTenantUtil;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms up the caches of a list of tenants on a background thread, so that the first logins of the tenants after a
+ * restart do not pay for loading realms, keystores and configurations. Tenants are warmed up in the given order, at
+ * a limited rate so that the warm-up does not compete with the logins being served.
+ */
+public class TenantWarmUp {
+
+    private static final Log log = LogFactory.getLog(TenantWarmUp.class);
+
+    private final String name;
+    private final List<String> tenantDomains;
+    private final long intervalNanos;
+    private final List<TenantWarmer> warmers;
+
+    private final AtomicInteger completedTenants = new AtomicInteger();
+    private final AtomicInteger failedTenants = new AtomicInteger();
+    private volatile boolean done;
+    private volatile Thread thread;
+
+    /**
+     * @param name             name of the warm-up, used in the logs and the thread name
+     * @param tenantDomains    tenants to warm up, the hottest first
+     * @param tenantsPerSecond maximum number of tenants warmed up per second
+     * @param warmers          warmers applied to each tenant
+     */
+    public TenantWarmUp(String name, List<String> tenantDomains, double tenantsPerSecond, List<TenantWarmer> warmers) {
+
+        if (tenantsPerSecond <= 0) {
+            throw new IllegalArgumentException("Warm-up rate should be positive: " + tenantsPerSecond);
+        }
+        this.name = name;
+        this.tenantDomains = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(tenantDomains)));
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / tenantsPerSecond);
+        this.warmers = Collections.unmodifiableList(new ArrayList<>(warmers));
+    }
+
+    /**
+     * Create a warm-up of the tenants configured with {@link BasicAuthenticatorConstants#WARM_UP_TENANTS}, followed by
+     * the tenants most logged in to before the restart, as read from a cache snapshot.
+     *
+     * @param name            name of the warm-up
+     * @param snapshotTenants tenants read from a cache snapshot, the most logged in first
+     * @param warmers         warmers applied to each tenant
+     * @return the warm-up, or null if there are no tenants to warm up
+     */
+    public static TenantWarmUp fromConfiguration(String name, List<String> snapshotTenants,
+                                                 List<TenantWarmer> warmers) {
+
+        List<String> tenantDomains = new ArrayList<>(getConfiguredTenants());
+        snapshotTenants.stream()
+                .limit(BasicAuthenticatorConstants.MAX_WARM_UP_SNAPSHOT_TENANTS)
+                .forEach(tenantDomains::add);
+        if (tenantDomains.isEmpty()) {
+            return null;
+        }
+        return new TenantWarmUp(name, tenantDomains, getConfiguredRate(), warmers);
+    }
+
+    /**
+     * Get the tenants configured to be warmed up, as a comma separated list in identity.xml.
+     *
+     * @return configured tenant domains, in the configured order
+     */
+    public static List<String> getConfiguredTenants() {
+
+        String tenants = IdentityUtil.getProperty(BasicAuthenticatorConstants.WARM_UP_TENANTS);
+        if (StringUtils.isBlank(tenants)) {
+            return Collections.emptyList();
+        }
+        Set<String> tenantDomains = new LinkedHashSet<>();
+        for (String tenant : tenants.split(",")) {
+            if (StringUtils.isNotBlank(tenant)) {
+                tenantDomains.add(tenant.trim());
+            }
+        }
+        return new ArrayList<>(tenantDomains);
+    }
+
+    private static double getConfiguredRate() {
+
+        String rate = IdentityUtil.getProperty(BasicAuthenticatorConstants.WARM_UP_TENANTS_PER_SECOND);
+        if (StringUtils.isNotBlank(rate)) {
+            try {
+                double tenantsPerSecond = Double.parseDouble(rate.trim());
+                if (tenantsPerSecond > 0) {
+                    return tenantsPerSecond;
+                }
+            } catch (NumberFormatException e) {
+                // Fall back to the default rate.
+            }
+            log.warn("Invalid value: " + rate + " for " + BasicAuthenticatorConstants.WARM_UP_TENANTS_PER_SECOND
+                    + ". Using the default: " + BasicAuthenticatorConstants.DEFAULT_WARM_UP_TENANTS_PER_SECOND);
+        }
+        return BasicAuthenticatorConstants.DEFAULT_WARM_UP_TENANTS_PER_SECOND;
+    }
+
+    /**
+     * Start warming up the tenants on a daemon thread. This returns immediately.
+     */
+    public synchronized void start() {
+
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, name + "-warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stop warming up the remaining tenants. The tenant being warmed up is completed.
+     */
+    public synchronized void stop() {
+
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    public int getTotalTenants() {
+
+        return tenantDomains.size();
+    }
+
+    public int getCompletedTenants() {
+
+        return completedTenants.get();
+    }
+
+    public int getFailedTenants() {
+
+        return failedTenants.get();
+    }
+
+    public boolean isDone() {
+
+        return done;
+    }
+
+    private void run() {
+
+        long startTime = System.nanoTime();
+        log.info("Warming up " + tenantDomains.size() + " tenant(s) for " + name + ".");
+        long nextStart = startTime;
+        try {
+            for (String tenantDomain : tenantDomains) {
+                long wait = nextStart - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                nextStart = System.nanoTime() + intervalNanos;
+                warmUp(tenantDomain);
+            }
+            log.info("Warmed up " + completedTenants.get() + " of " + tenantDomains.size() + " tenant(s) for "
+                    + name + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms. "
+                    + failedTenants.get() + " tenant(s) failed.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Warm-up for " + name + " stopped after " + completedTenants.get() + " of "
+                    + tenantDomains.size() + " tenant(s).");
+        } finally {
+            done = true;
+        }
+    }
+
+    private void warmUp(String tenantDomain) {
+
+        long startTime = System.nanoTime();
+        boolean failed = false;
+        int tenantId;
+        try {
+            tenantId = IdentityTenantUtil.getTenantId(tenantDomain);
+        } catch (IdentityRuntimeException e) {
+            log.warn("Unable to resolve the tenant: " + tenantDomain + " to warm up for " + name, e);
+            failedTenants.incrementAndGet();
+            completedTenants.incrementAndGet();
+            return;
+        }
+        try {
+            PrivilegedCarbonContext.startTenantFlow();
+            PrivilegedCarbonContext carbonContext = PrivilegedCarbonContext.getThreadLocalCarbonContext();
+            carbonContext.setTenantId(tenantId);
+            carbonContext.setTenantDomain(tenantDomain);
+            for (TenantWarmer warmer : warmers) {
+                try {
+                    warmer.warmUp(tenantDomain, tenantId);
+                } catch (Exception e) {
+                    failed = true;
+                    log.warn("Error while warming up the tenant: " + tenantDomain + " for " + name, e);
+                }
+            }
+        } finally {
+            PrivilegedCarbonContext.endTenantFlow();
+        }
+
+        if (failed) {
+            failedTenants.incrementAndGet();
+        }
+        int completed = completedTenants.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Warmed up the tenant: " + tenantDomain + " for " + name + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) + " ms. Progress: " + completed
+                    + "/" + tenantDomains.size());
+        }
+    }
+}
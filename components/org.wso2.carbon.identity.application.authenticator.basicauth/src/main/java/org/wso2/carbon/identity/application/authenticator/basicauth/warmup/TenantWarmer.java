@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.warmup;
+
+/**
+ * Loads the per tenant state of an authenticator, such as realms, keystores and governance configurations, into
+ * the caches that serve the logins of the tenant.
+ */
+@FunctionalInterface
+public interface TenantWarmer {
+
+    /**
+     * Warm up the caches of the given tenant. This is called within a tenant flow of the tenant.
+     *
+     * @param tenantDomain tenant domain
+     * @param tenantId     tenant id
+     * @throws Exception if the tenant could not be warmed up, which does not stop the warm-up of other tenants.
+     */
+    void warmUp(String tenantDomain, int tenantId) throws Exception;
+}
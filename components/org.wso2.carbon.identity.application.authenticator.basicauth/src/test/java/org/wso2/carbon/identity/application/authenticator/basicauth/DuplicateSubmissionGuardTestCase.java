@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class DuplicateSubmissionGuardTestCase {
+
+    private static final String CONTEXT_ID = "dummySessionDataKey";
+    private static final String DUMMY_USERNAME = "dummyUserName";
+    private static final String DUMMY_PASSWORD = "dummyPassword";
+    private static final String DUMMY_PROPERTY = "dummyProperty";
+
+    @Test
+    public void testDuplicateSubmissionWaitsForTheFirstOne() throws Exception {
+
+        DuplicateSubmissionGuard guard = new DuplicateSubmissionGuard(DUMMY_PROPERTY);
+        AtomicInteger authentications = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = executor.submit(() -> guard.authenticate(CONTEXT_ID, DUMMY_USERNAME,
+                    DUMMY_PASSWORD, () -> {
+                        authentications.incrementAndGet();
+                        IdentityUtil.threadLocalProperties.get().put(DUMMY_PROPERTY, "PRIMARY");
+                        firstStarted.countDown();
+                        awaitQuietly(releaseFirst);
+                        return false;
+                    }));
+            firstStarted.await();
+            Future<Object> duplicate = executor.submit(() -> {
+                IdentityUtil.threadLocalProperties.get().remove(DUMMY_PROPERTY);
+                boolean authenticated = guard.authenticate(CONTEXT_ID, DUMMY_USERNAME, DUMMY_PASSWORD, () -> {
+                    authentications.incrementAndGet();
+                    return true;
+                });
+                assertFalse(authenticated);
+                return IdentityUtil.threadLocalProperties.get().get(DUMMY_PROPERTY);
+            });
+            // The first authentication runs until it is released, so a coalesced duplicate is waiting on it.
+            waitForCoalescedSubmissions(guard, 1);
+            releaseFirst.countDown();
+
+            assertFalse(first.get(10, TimeUnit.SECONDS));
+            assertEquals(duplicate.get(10, TimeUnit.SECONDS), "PRIMARY");
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(authentications.get(), 1);
+    }
+
+    @Test
+    public void testSubmissionsAreNotSharedAcrossContextsOrCredentials() throws Exception {
+
+        DuplicateSubmissionGuard guard = new DuplicateSubmissionGuard();
+        AtomicInteger authentications = new AtomicInteger();
+        DuplicateSubmissionGuard.Authentication authentication = () -> {
+            authentications.incrementAndGet();
+            return true;
+        };
+
+        assertTrue(guard.authenticate(CONTEXT_ID, DUMMY_USERNAME, DUMMY_PASSWORD, authentication));
+        assertTrue(guard.authenticate(CONTEXT_ID, DUMMY_USERNAME, DUMMY_PASSWORD, authentication));
+        assertTrue(guard.authenticate("otherSessionDataKey", DUMMY_USERNAME, DUMMY_PASSWORD, authentication));
+        assertTrue(guard.authenticate(CONTEXT_ID, DUMMY_USERNAME, "otherPassword", authentication));
+        assertTrue(guard.authenticate(null, DUMMY_USERNAME, DUMMY_PASSWORD, authentication));
+        assertEquals(authentications.get(), 5);
+    }
+
+    private static void waitForCoalescedSubmissions(DuplicateSubmissionGuard guard, long count)
+            throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (guard.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(guard.getCoalescedCount(), count);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.config;
+
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.testng.IObjectFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.ObjectFactory;
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.config.builder.FileBasedConfigurationBuilder;
+import org.wso2.carbon.identity.application.authentication.framework.config.model.AuthenticatorConfig;
+import org.wso2.carbon.identity.application.authenticator.basicauth.BasicAuthenticator;
+import org.wso2.carbon.identity.core.util.IdentityUtil;
+import org.wso2.carbon.identity.testutil.powermock.PowerMockIdentityBaseTest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import static org.powermock.api.mockito.PowerMockito.mock;
+import static org.powermock.api.mockito.PowerMockito.mockStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Tests for reloading the authenticator configurations from application-authentication.xml.
+ */
+@PrepareForTest({FileBasedConfigurationBuilder.class, IdentityUtil.class})
+public class AuthenticatorParameterRegistryTestCase extends PowerMockIdentityBaseTest {
+
+    private static final String AUTHENTICATOR_NAME = "BasicAuthenticator";
+    private static final String OTHER_AUTHENTICATOR_NAME = "IdentifierExecutor";
+
+    private final AuthenticatorParameterRegistry registry = AuthenticatorParameterRegistry.getInstance();
+    private Path directory;
+    private Path configPath;
+    private AuthenticatorConfig startupConfig;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("authenticator-parameters");
+        configPath = directory.resolve(AuthenticatorParameterRegistry.CONFIG_FILE_NAME);
+
+        Map<String, String> startupParameters = new HashMap<>();
+        startupParameters.put("showAuthFailureReason", "false");
+        startupParameters.put("AccountLockNotificationPassword", "startup-secret");
+        startupConfig = new AuthenticatorConfig(AUTHENTICATOR_NAME, true, startupParameters);
+
+        mockStatic(FileBasedConfigurationBuilder.class);
+        FileBasedConfigurationBuilder configurationBuilder = mock(FileBasedConfigurationBuilder.class);
+        when(FileBasedConfigurationBuilder.getInstance()).thenReturn(configurationBuilder);
+        when(configurationBuilder.getAuthenticatorBean(AUTHENTICATOR_NAME)).thenReturn(startupConfig);
+
+        mockStatic(IdentityUtil.class);
+        when(IdentityUtil.getSecuredDocumentBuilderFactory())
+                .thenAnswer(invocation -> DocumentBuilderFactory.newInstance());
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        registry.clear();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testConfigurationsAreReloaded() throws IOException {
+
+        assertNull(registry.getAuthenticatorConfig(AUTHENTICATOR_NAME));
+        writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true, parameter("showAuthFailureReason", "true")),
+                authenticatorConfig(OTHER_AUTHENTICATOR_NAME, false, parameter("ValidateUsername", "true")));
+        registry.reload(configPath);
+
+        AuthenticatorConfig config = registry.getAuthenticatorConfig(AUTHENTICATOR_NAME);
+        assertNotNull(config);
+        assertEquals(config.getName(), AUTHENTICATOR_NAME);
+        assertTrue(config.isEnabled());
+        assertEquals(config.getParameterMap().get("showAuthFailureReason"), "true");
+
+        AuthenticatorConfig otherConfig = registry.getAuthenticatorConfig(OTHER_AUTHENTICATOR_NAME);
+        assertNotNull(otherConfig);
+        assertFalse(otherConfig.isEnabled());
+        assertEquals(otherConfig.getParameterMap().get("ValidateUsername"), "true");
+    }
+
+    @Test
+    public void testInvalidFileKeepsTheCurrentConfigurations() throws IOException {
+
+        writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true, parameter("showAuthFailureReason", "true")));
+        registry.reload(configPath);
+        AuthenticatorConfig config = registry.getAuthenticatorConfig(AUTHENTICATOR_NAME);
+
+        // The file is read while it is half written.
+        Files.write(configPath, "<ApplicationAuthentication><AuthenticatorConfigs><Authenticator"
+                .getBytes(StandardCharsets.UTF_8));
+        registry.reload(configPath);
+        assertSame(registry.getAuthenticatorConfig(AUTHENTICATOR_NAME), config);
+
+        // A missing file is not read either.
+        Files.delete(configPath);
+        registry.reload(configPath);
+        assertSame(registry.getAuthenticatorConfig(AUTHENTICATOR_NAME), config);
+    }
+
+    @Test
+    public void testSecretParametersKeepTheirStartupValues() throws IOException {
+
+        writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true,
+                parameter("showAuthFailureReason", "true"),
+                secretParameter("AccountLockNotificationPassword"),
+                secretParameter("UnknownSecret")));
+        registry.reload(configPath);
+
+        // Secret aliases are resolved at startup only, so the reloaded file does not hold the secret values.
+        Map<String, String> parameters = registry.getAuthenticatorConfig(AUTHENTICATOR_NAME).getParameterMap();
+        assertEquals(parameters.get("showAuthFailureReason"), "true");
+        assertEquals(parameters.get("AccountLockNotificationPassword"), "startup-secret");
+        assertFalse(parameters.containsKey("UnknownSecret"));
+    }
+
+    @Test
+    public void testAuthenticatorMissingFromTheFileUsesTheStartupConfiguration() throws IOException {
+
+        BasicAuthenticator authenticator = new BasicAuthenticator();
+        writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true, parameter("showAuthFailureReason", "true")));
+        registry.reload(configPath);
+        assertEquals(authenticator.getAuthenticatorConfig().getParameterMap().get("showAuthFailureReason"), "true");
+
+        writeConfig(authenticatorConfig(OTHER_AUTHENTICATOR_NAME, true, parameter("ValidateUsername", "true")));
+        registry.reload(configPath);
+        assertNull(registry.getAuthenticatorConfig(AUTHENTICATOR_NAME));
+        assertSame(authenticator.getAuthenticatorConfig(), startupConfig);
+    }
+
+    @Test
+    public void testClearRestoresTheStartupConfiguration() throws IOException {
+
+        BasicAuthenticator authenticator = new BasicAuthenticator();
+        writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true, parameter("showAuthFailureReason", "true")));
+        registry.reload(configPath);
+        registry.clear();
+
+        assertNull(registry.getAuthenticatorConfig(AUTHENTICATOR_NAME));
+        assertSame(authenticator.getAuthenticatorConfig(), startupConfig);
+    }
+
+    @Test
+    public void testChangedFileIsReloadedByTheWatcher() throws Exception {
+
+        ConfigFileWatcher watcher = new ConfigFileWatcher(directory, "test");
+        watcher.register(AuthenticatorParameterRegistry.CONFIG_FILE_NAME, () -> registry.reload(configPath));
+        watcher.start();
+        try {
+            writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true, parameter("showAuthFailureReason", "true")));
+            waitForParameter("showAuthFailureReason", "true");
+
+            // An invalid change is ignored, and the next valid change is applied.
+            Files.write(configPath, "<ApplicationAuthentication>".getBytes(StandardCharsets.UTF_8));
+            Thread.sleep(1500);
+            assertEquals(getReloadedParameter("showAuthFailureReason"), "true");
+            writeConfig(authenticatorConfig(AUTHENTICATOR_NAME, true, parameter("showAuthFailureReason", "false")));
+            waitForParameter("showAuthFailureReason", "false");
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    @ObjectFactory
+    public IObjectFactory getObjectFactory() {
+
+        return new org.powermock.modules.testng.PowerMockObjectFactory();
+    }
+
+    private void waitForParameter(String name, String value) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!value.equals(getReloadedParameter(name)) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(getReloadedParameter(name), value);
+    }
+
+    private String getReloadedParameter(String name) {
+
+        AuthenticatorConfig config = registry.getAuthenticatorConfig(AUTHENTICATOR_NAME);
+        return config == null ? null : config.getParameterMap().get(name);
+    }
+
+    private void writeConfig(String... authenticatorConfigs) throws IOException {
+
+        StringBuilder config = new StringBuilder()
+                .append("<ApplicationAuthentication")
+                .append(" xmlns=\"http://wso2.org/projects/carbon/application-authentication.xml\"")
+                .append(" xmlns:svns=\"http://org.wso2.securevault/configuration\">")
+                .append("<AuthenticatorConfigs>");
+        for (String authenticatorConfig : authenticatorConfigs) {
+            config.append(authenticatorConfig);
+        }
+        config.append("</AuthenticatorConfigs></ApplicationAuthentication>");
+        Files.write(configPath, config.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String authenticatorConfig(String name, boolean enabled, String... parameters) {
+
+        return "<AuthenticatorConfig name=\"" + name + "\" enabled=\"" + enabled + "\">" + String.join("", parameters)
+                + "</AuthenticatorConfig>";
+    }
+
+    private static String parameter(String name, String value) {
+
+        return "<Parameter name=\"" + name + "\">" + value + "</Parameter>";
+    }
+
+    private static String secretParameter(String name) {
+
+        return "<Parameter name=\"" + name + "\" svns:secretAlias=\"Authenticators." + name + "\">password"
+                + "</Parameter>";
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.config;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.assertEquals;
+
+public class ConfigFileWatcherTestCase {
+
+    private static final String FILE_NAME = "watched.xml";
+    // Longer than the quiet period of the watcher, so that the reload of a change has run by then.
+    private static final long SETTLE_MILLIS = 1500;
+
+    private Path directory;
+    private ConfigFileWatcher watcher;
+    private final AtomicInteger reloads = new AtomicInteger();
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("config-file-watcher");
+        reloads.set(0);
+        watcher = new ConfigFileWatcher(directory, "test");
+        watcher.register(FILE_NAME, reloads::incrementAndGet);
+        watcher.start();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        watcher.stop();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testCreatedFileIsReloaded() throws Exception {
+
+        write(FILE_NAME, "<config/>");
+        waitForReloads(1);
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(reloads.get(), 1);
+    }
+
+    @Test
+    public void testBurstOfWritesIsReloadedOnce() throws Exception {
+
+        // Writes arriving within the quiet period of each other are coalesced into a single reload.
+        for (int i = 0; i < 5; i++) {
+            write(FILE_NAME, "<config version=\"" + i + "\"/>");
+            Thread.sleep(50);
+        }
+        waitForReloads(1);
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(reloads.get(), 1);
+
+        // A later change is reloaded again.
+        write(FILE_NAME, "<config version=\"5\"/>");
+        waitForReloads(2);
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(reloads.get(), 2);
+    }
+
+    @Test
+    public void testUnregisteredFilesAreIgnored() throws Exception {
+
+        write("other.xml", "<config/>");
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(reloads.get(), 0);
+    }
+
+    @Test
+    public void testFailedReloadDoesNotStopTheWatcher() throws Exception {
+
+        AtomicInteger failedReloads = new AtomicInteger();
+        watcher.register("failing.xml", () -> {
+            failedReloads.incrementAndGet();
+            throw new IllegalStateException("invalid configuration");
+        });
+        write("failing.xml", "<config/>");
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(failedReloads.get(), 1);
+
+        write(FILE_NAME, "<config/>");
+        waitForReloads(1);
+    }
+
+    @Test
+    public void testStoppedWatcherDoesNotReload() throws Exception {
+
+        watcher.stop();
+        write(FILE_NAME, "<config/>");
+        Thread.sleep(SETTLE_MILLIS);
+        assertEquals(reloads.get(), 0);
+    }
+
+    private void write(String fileName, String content) throws IOException {
+
+        Files.write(directory.resolve(fileName), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void waitForReloads(int count) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (reloads.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(reloads.get(), count);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+import org.wso2.carbon.user.core.UserCoreConstants;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class LoginMetricsTestCase {
+
+    private static final String DUMMY_AUTHENTICATOR = "DummyAuthenticator";
+    private static final String DUMMY_TENANT = "dummy.com";
+
+    @Test
+    public void testHistogramPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(snapshot.getCount(), 1000);
+        assertEquals(snapshot.getMeanMillis(), 500.5, 0.01);
+        assertEquals(snapshot.getP50Millis(), 500, 500 * 0.04);
+        assertEquals(snapshot.getP99Millis(), 990, 990 * 0.04);
+        assertEquals(snapshot.getMaxMillis(), 1000, 0.01);
+
+        histogram.reset();
+        assertEquals(histogram.snapshot().getCount(), 0);
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+
+        for (long value = 0; value < 1L << 20; value += 7) {
+            int bucket = LatencyHistogram.getBucket(value);
+            assertTrue(LatencyHistogram.getHighestValue(bucket) >= value);
+            assertTrue(bucket == 0 || LatencyHistogram.getHighestValue(bucket - 1) < value);
+        }
+    }
+
+    @Test
+    public void testInvocationsAreRecordedByOutcomeAndTenant() {
+
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        LoginMetricsMXBean metrics = LoginMetrics.getInstance().getMetrics(DUMMY_AUTHENTICATOR);
+        metrics.reset();
+        instrumentation.addListener(LoginMetrics.getInstance());
+        try {
+            LoginInvocation invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+            long phaseStart = instrumentation.startPhase(LoginPhase.AUTHENTICATE);
+            instrumentation.endPhase(LoginPhase.AUTHENTICATE, phaseStart);
+            instrumentation.recordErrorCode(UserCoreConstants.ErrorCode.USER_IS_LOCKED);
+            instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.INCOMPLETE);
+
+            invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+            instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.SUCCESS_COMPLETED);
+
+            invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, null);
+            instrumentation.endInvocation(invocation, null);
+        } finally {
+            instrumentation.removeListener(LoginMetrics.getInstance());
+        }
+
+        assertNull(instrumentation.getCurrentInvocation());
+        assertEquals(metrics.getInvocationCount(), 3);
+        assertEquals(metrics.getInvocationLatency().getCount(), 3);
+        assertEquals(metrics.getPhaseLatencies().get(LoginPhase.AUTHENTICATE.getMetricName()).getCount(), 1);
+        assertEquals(metrics.getOutcomeCounts().get("USER_IS_LOCKED").longValue(), 1);
+        assertEquals(metrics.getOutcomeCounts().get(AuthenticatorFlowStatus.SUCCESS_COMPLETED.name()).longValue(), 1);
+        assertEquals(metrics.getOutcomeCounts().get(LoginInvocation.OUTCOME_ERROR).longValue(), 1);
+        assertEquals(metrics.getTenantInvocationCounts().get(DUMMY_TENANT).longValue(), 2);
+        assertEquals(metrics.getTenantOutcomeCounts().get(DUMMY_TENANT + "|USER_IS_LOCKED").longValue(), 1);
+    }
+
+    @Test
+    public void testResourceUsageIsRecordedByTenant() {
+
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        LoginResourceAccounting accounting = LoginResourceAccounting.getInstance();
+        accounting.reset();
+        instrumentation.addListener(accounting);
+        try {
+            for (int i = 0; i < 2; i++) {
+                LoginInvocation invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+                StringBuilder garbage = new StringBuilder();
+                for (int j = 0; j < 1000; j++) {
+                    garbage.append(j);
+                }
+                assertTrue(garbage.length() > 0);
+                instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.SUCCESS_COMPLETED);
+            }
+        } finally {
+            instrumentation.removeListener(accounting);
+        }
+
+        ResourceUsage tenantUsage = accounting.getTopCpuTimeConsumers().get(0);
+        assertEquals(tenantUsage.getAuthenticatorName(), DUMMY_AUTHENTICATOR);
+        assertEquals(tenantUsage.getTenantDomain(), DUMMY_TENANT);
+        assertEquals(tenantUsage.getInvocationCount(), 2);
+        if (accounting.isAllocatedBytesRecorded()) {
+            assertTrue(tenantUsage.getAllocatedBytesPerInvocation() > 0);
+        }
+        ResourceUsage authenticatorUsage = accounting.getAuthenticatorUsage().get(0);
+        assertEquals(authenticatorUsage.getTenantDomain(), LoginResourceAccounting.ALL_TENANTS);
+        assertEquals(authenticatorUsage.getInvocationCount(), 2);
+    }
+}
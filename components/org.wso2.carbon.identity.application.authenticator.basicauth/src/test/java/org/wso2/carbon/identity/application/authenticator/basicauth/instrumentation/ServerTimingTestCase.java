@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.matches;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertSame;
+
+public class ServerTimingTestCase {
+
+    private static final String DUMMY_AUTHENTICATOR = "DummyAuthenticator";
+    private static final String DUMMY_TENANT = "dummy.com";
+    private static final String DUMMY_TOKEN = "dummyToken";
+
+    @Test
+    public void testHeaderIsAddedBeforeRedirect() throws Exception {
+
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        Map<String, String> parameters = Collections.singletonMap(ServerTiming.CONF_TENANTS, "foo.com, dummy.com");
+
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        instrumentation.addListener(ServerTiming.getInstance());
+        try {
+            LoginInvocation invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+            HttpServletResponse timedResponse = ServerTiming.getInstance().start(invocation,
+                    mock(HttpServletRequest.class), response, parameters);
+            long phaseStart = instrumentation.startPhase(LoginPhase.AUTHENTICATE);
+            instrumentation.endPhase(LoginPhase.AUTHENTICATE, phaseStart);
+            timedResponse.sendRedirect("login.do");
+            ServerTiming.getInstance().end(invocation, response);
+            instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.INCOMPLETE);
+        } finally {
+            instrumentation.removeListener(ServerTiming.getInstance());
+        }
+
+        verify(response).addHeader(eq(ServerTiming.HEADER_NAME),
+                matches("authenticate;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"));
+        verify(response).sendRedirect("login.do");
+    }
+
+    @Test
+    public void testHeaderRequiresEnabledTenantOrDebugToken() {
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put(ServerTiming.CONF_TENANTS, "foo.com");
+        parameters.put(ServerTiming.CONF_DEBUG_TOKEN, DUMMY_TOKEN);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        instrumentation.addListener(ServerTiming.getInstance());
+        try {
+            when(request.getHeader(ServerTiming.DEBUG_TOKEN_HEADER)).thenReturn("wrongToken");
+            LoginInvocation invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+            assertSame(ServerTiming.getInstance().start(invocation, request, response, parameters), response);
+            ServerTiming.getInstance().end(invocation, response);
+            instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.SUCCESS_COMPLETED);
+            verify(response, never()).addHeader(anyString(), anyString());
+
+            when(request.getHeader(ServerTiming.DEBUG_TOKEN_HEADER)).thenReturn(DUMMY_TOKEN);
+            invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+            ServerTiming.getInstance().start(invocation, request, response, parameters);
+            ServerTiming.getInstance().end(invocation, response);
+            instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.SUCCESS_COMPLETED);
+            verify(response).addHeader(eq(ServerTiming.HEADER_NAME), matches("total;dur=\\d+\\.\\d{3}"));
+        } finally {
+            instrumentation.removeListener(ServerTiming.getInstance());
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.tracing;
+
+import org.testng.annotations.Test;
+import org.wso2.carbon.identity.application.authentication.framework.AuthenticatorFlowStatus;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInstrumentation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginInvocation;
+import org.wso2.carbon.identity.application.authenticator.basicauth.instrumentation.LoginPhase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class LoginTracingTestCase {
+
+    private static final String DUMMY_AUTHENTICATOR = "DummyAuthenticator";
+    private static final String DUMMY_TENANT = "dummy.com";
+    private static final String TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+    private static final String PARENT_SPAN_ID = "00f067aa0ba902b7";
+
+    @Test
+    public void testTraceParentParsing() {
+
+        TraceContext context = TraceContext.fromHeaders("00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01", "foo=bar");
+        assertEquals(context.getTraceId(), TRACE_ID);
+        assertEquals(context.getSpanId(), PARENT_SPAN_ID);
+        assertTrue(context.isSampled());
+        assertTrue(context.isRemote());
+        assertEquals(context.getTraceState(), "foo=bar");
+        assertEquals(context.toTraceParent(), "00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01");
+
+        assertEquals(TraceContext.fromHeaders("01-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-00-ext", null)
+                .getSpanId(), PARENT_SPAN_ID);
+        assertNull(TraceContext.fromHeaders("00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01-ext", null));
+        assertNull(TraceContext.fromHeaders("ff-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01", null));
+        assertNull(TraceContext.fromHeaders("00-" + TRACE_ID.toUpperCase() + "-" + PARENT_SPAN_ID + "-01", null));
+        assertNull(TraceContext.fromHeaders("00-00000000000000000000000000000000-" + PARENT_SPAN_ID + "-01", null));
+        assertNull(TraceContext.fromHeaders("00-" + TRACE_ID + "-0000000000000000-01", null));
+    }
+
+    @Test
+    public void testSpansContinueTheTraceOfTheRequest() {
+
+        RecordingTracer tracer = new RecordingTracer();
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getHeader(LoginTracing.TRACE_PARENT_HEADER))
+                .thenReturn("00-" + TRACE_ID + "-" + PARENT_SPAN_ID + "-01");
+
+        LoginInstrumentation instrumentation = LoginInstrumentation.getInstance();
+        LoginTracing.getInstance().setTracer(tracer);
+        try {
+            LoginInvocation invocation = instrumentation.startInvocation(DUMMY_AUTHENTICATOR, DUMMY_TENANT);
+            LoginTracing.getInstance().startTrace(invocation, request);
+            long authenticateStart = instrumentation.startPhase(LoginPhase.AUTHENTICATE);
+            long realmStart = instrumentation.startPhase(LoginPhase.REALM_LOOKUP);
+            instrumentation.endPhase(LoginPhase.REALM_LOOKUP, realmStart);
+            instrumentation.endPhase(LoginPhase.AUTHENTICATE, authenticateStart);
+            instrumentation.endInvocation(invocation, AuthenticatorFlowStatus.SUCCESS_COMPLETED);
+        } finally {
+            LoginTracing.getInstance().unsetTracer(tracer);
+        }
+
+        assertEquals(tracer.spans.size(), 3);
+        RecordedSpan invocationSpan = tracer.spans.get(0);
+        RecordedSpan authenticateSpan = tracer.spans.get(1);
+        RecordedSpan realmSpan = tracer.spans.get(2);
+        assertEquals(invocationSpan.name, DUMMY_AUTHENTICATOR);
+        assertEquals(invocationSpan.parent.getSpanId(), PARENT_SPAN_ID);
+        assertEquals(invocationSpan.attributes.get(LoginTracing.ATTRIBUTE_TENANT_DOMAIN), DUMMY_TENANT);
+        assertEquals(invocationSpan.attributes.get(LoginTracing.ATTRIBUTE_OUTCOME),
+                AuthenticatorFlowStatus.SUCCESS_COMPLETED.name());
+        assertEquals(authenticateSpan.name, LoginPhase.AUTHENTICATE.getMetricName());
+        assertEquals(authenticateSpan.parent.getSpanId(), invocationSpan.context.getSpanId());
+        assertEquals(realmSpan.parent.getSpanId(), authenticateSpan.context.getSpanId());
+        for (RecordedSpan span : tracer.spans) {
+            assertEquals(span.context.getTraceId(), TRACE_ID);
+            assertTrue(span.ended);
+        }
+    }
+
+    private static class RecordingTracer implements LoginTracer {
+
+        private final List<RecordedSpan> spans = new ArrayList<>();
+
+        @Override
+        public LoginSpan startSpan(String name, TraceContext parent) {
+
+            String spanId = String.format("%016x", spans.size() + 1);
+            RecordedSpan span = new RecordedSpan(name, parent,
+                    new TraceContext(parent.getTraceId(), spanId, parent.getTraceFlags(), null, false));
+            spans.add(span);
+            return span;
+        }
+    }
+
+    private static class RecordedSpan implements LoginSpan {
+
+        private final String name;
+        private final TraceContext parent;
+        private final TraceContext context;
+        private final Map<String, String> attributes = new HashMap<>();
+        private boolean ended;
+
+        RecordedSpan(String name, TraceContext parent, TraceContext context) {
+
+            this.name = name;
+            this.parent = parent;
+            this.context = context;
+        }
+
+        @Override
+        public TraceContext getContext() {
+
+            return context;
+        }
+
+        @Override
+        public void setAttribute(String key, String value) {
+
+            attributes.put(key, value);
+        }
+
+        @Override
+        public void setError(String description) {
+
+        }
+
+        @Override
+        public void end() {
+
+            ended = true;
+        }
+    }
+}
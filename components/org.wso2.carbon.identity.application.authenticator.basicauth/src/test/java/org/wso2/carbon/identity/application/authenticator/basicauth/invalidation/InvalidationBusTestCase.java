@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.invalidation;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class InvalidationBusTestCase {
+
+    private static final String TENANT_DOMAIN = "carbon.super";
+    private static final String USERNAME = "dummyUser";
+
+    @Test
+    public void testDuplicateEventsAreCoalescedIntoOneBatch() {
+
+        InvalidationBus bus = new InvalidationBus(60000);
+        List<Collection<InvalidationEvent>> batches = new ArrayList<>();
+        bus.addListener(batches::add);
+        bus.start();
+        try {
+            for (int i = 0; i < 5; i++) {
+                bus.publish(new InvalidationEvent(InvalidationEvent.Type.USER_CREDENTIAL, TENANT_DOMAIN, USERNAME));
+            }
+            bus.publish(new InvalidationEvent(InvalidationEvent.Type.USER_DELETED, TENANT_DOMAIN, USERNAME));
+            assertTrue(batches.isEmpty());
+
+            bus.flush();
+            assertEquals(batches.size(), 1);
+            assertEquals(batches.get(0).size(), 2);
+        } finally {
+            bus.stop();
+        }
+    }
+
+    @Test
+    public void testEventsAreDeliveredToOtherNodes() {
+
+        List<LoopbackInvalidationTransport> cluster = new CopyOnWriteArrayList<>();
+        InvalidationBus node1 = new InvalidationBus(60000);
+        InvalidationBus node2 = new InvalidationBus(60000);
+        node1.setTransport(new LoopbackInvalidationTransport(cluster));
+        node2.setTransport(new LoopbackInvalidationTransport(cluster));
+        List<InvalidationEvent> node1Events = new ArrayList<>();
+        List<InvalidationEvent> node2Events = new ArrayList<>();
+        node1.addListener(node1Events::addAll);
+        node2.addListener(node2Events::addAll);
+
+        InvalidationEvent event = new InvalidationEvent(InvalidationEvent.Type.SIGNING_KEY, TENANT_DOMAIN, "kid-1");
+        node1.publish(event);
+
+        assertEquals(node1Events.size(), 1);
+        assertEquals(node2Events.size(), 1);
+        assertEquals(node2Events.get(0), event);
+    }
+}
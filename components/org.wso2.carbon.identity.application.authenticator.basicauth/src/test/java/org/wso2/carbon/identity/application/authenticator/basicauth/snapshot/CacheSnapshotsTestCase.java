@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.basicauth.snapshot;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class CacheSnapshotsTestCase {
+
+    private static final int MAGIC = 0x57534353;
+    private static final int VERSION = 1;
+
+    private Path directory;
+    private Path snapshotPath;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("cache-snapshots");
+        snapshotPath = directory.resolve("caches.snapshot");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+
+        TestCache tenants = new TestCache("tenants");
+        tenants.entries.put("carbon.super", "-1234");
+        tenants.entries.put("wso2.com", "1");
+        TestCache userAgents = new TestCache("user-agents");
+        userAgents.entries.put("Mozilla/5.0 (X11; Linux x86_64)", "Firefox \u00e9\u4e2d");
+        TestCache empty = new TestCache("empty");
+        CacheSnapshots.write(snapshotPath, Arrays.asList(tenants, userAgents, empty));
+        assertFalse(Files.exists(directory.resolve("caches.snapshot.tmp")));
+
+        TestCache restoredTenants = new TestCache("tenants");
+        TestCache restoredUserAgents = new TestCache("user-agents");
+        TestCache restoredEmpty = new TestCache("empty");
+        TestCache unknown = new TestCache("unknown");
+        assertEquals(CacheSnapshots.restore(snapshotPath, Arrays.asList(restoredTenants, restoredUserAgents,
+                restoredEmpty, unknown)), 3);
+
+        // Entries are restored in the order they were written.
+        assertEquals(new ArrayList<>(restoredTenants.restored.entrySet()),
+                new ArrayList<>(tenants.entries.entrySet()));
+        assertEquals(restoredUserAgents.restored, userAgents.entries);
+        assertEquals(restoredEmpty.restored, Collections.emptyMap());
+        // A cache without a section in the snapshot is left as it is.
+        assertNull(unknown.restored);
+    }
+
+    @Test
+    public void testSnapshotIsReplaced() throws IOException {
+
+        TestCache cache = new TestCache("tenants");
+        cache.entries.put("carbon.super", "-1234");
+        CacheSnapshots.write(snapshotPath, Collections.singletonList(cache));
+        cache.entries.clear();
+        cache.entries.put("wso2.com", "1");
+        CacheSnapshots.write(snapshotPath, Collections.singletonList(cache));
+
+        assertEquals(CacheSnapshots.read(snapshotPath).get("tenants"), Collections.singletonMap("wso2.com", "1"));
+    }
+
+    @Test
+    public void testMissingSnapshotIsIgnored() throws IOException {
+
+        assertTrue(CacheSnapshots.read(null).isEmpty());
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+        assertEquals(CacheSnapshots.restore(snapshotPath, Collections.singletonList(new TestCache("tenants"))), 0);
+
+        // Writing to no path is skipped.
+        CacheSnapshots.write(null, Collections.singletonList(new TestCache("tenants")));
+    }
+
+    @Test
+    public void testCorruptSnapshotIsIgnored() throws IOException {
+
+        writeValidSnapshot();
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        bytes[bytes.length / 2] ^= 0x01;
+        Files.write(snapshotPath, bytes);
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testCorruptChecksumIsIgnored() throws IOException {
+
+        writeValidSnapshot();
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        bytes[bytes.length - 1] ^= 0x01;
+        Files.write(snapshotPath, bytes);
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testTruncatedSnapshotIsIgnored() throws IOException {
+
+        writeValidSnapshot();
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        Files.write(snapshotPath, Arrays.copyOf(bytes, bytes.length - 3));
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+
+        // Shorter than the header and the checksum.
+        Files.write(snapshotPath, Arrays.copyOf(bytes, 12));
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+
+        Files.write(snapshotPath, new byte[0]);
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testForeignFileIsIgnored() throws IOException {
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeHeader(out, 0x504b0304, VERSION, 0);
+        writeSnapshot(content.toByteArray());
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testSnapshotOfAnotherVersionIsIgnored() throws IOException {
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeHeader(out, MAGIC, VERSION + 1, 1);
+        writeString(out, "tenants");
+        out.writeInt(0);
+        writeSnapshot(content.toByteArray());
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testNegativeStringLengthIsIgnored() throws IOException {
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeHeader(out, MAGIC, VERSION, 1);
+        out.writeInt(-1);
+        writeSnapshot(content.toByteArray());
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testOversizedStringLengthIsIgnored() throws IOException {
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeHeader(out, MAGIC, VERSION, 1);
+        writeString(out, "tenants");
+        out.writeInt(1);
+        out.writeInt(Integer.MAX_VALUE);
+        out.write("carbon.super".getBytes(StandardCharsets.UTF_8));
+        writeSnapshot(content.toByteArray());
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testInvalidEntryCountIsIgnored() throws IOException {
+
+        for (int entryCount : new int[]{-1, Integer.MAX_VALUE}) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(content);
+            writeHeader(out, MAGIC, VERSION, 1);
+            writeString(out, "tenants");
+            out.writeInt(entryCount);
+            writeSnapshot(content.toByteArray());
+
+            assertTrue(CacheSnapshots.read(snapshotPath).isEmpty(), "Entry count: " + entryCount);
+        }
+    }
+
+    @Test
+    public void testMissingSectionsAreIgnored() throws IOException {
+
+        // The header announces more sections than the snapshot holds.
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(content);
+        writeHeader(out, MAGIC, VERSION, 2);
+        writeString(out, "tenants");
+        out.writeInt(0);
+        writeSnapshot(content.toByteArray());
+
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    @Test
+    public void testOversizedSnapshotIsIgnored() throws IOException {
+
+        try (RandomAccessFile file = new RandomAccessFile(snapshotPath.toFile(), "rw")) {
+            file.setLength(64L * 1024 * 1024 + 1);
+        }
+        assertTrue(CacheSnapshots.read(snapshotPath).isEmpty());
+    }
+
+    private void writeValidSnapshot() throws IOException {
+
+        TestCache cache = new TestCache("tenants");
+        cache.entries.put("carbon.super", "-1234");
+        cache.entries.put("wso2.com", "1");
+        CacheSnapshots.write(snapshotPath, Collections.singletonList(cache));
+        assertEquals(CacheSnapshots.read(snapshotPath).get("tenants"), cache.entries);
+    }
+
+    /**
+     * Write the content to the snapshot file followed by a valid checksum, so that only the content is rejected.
+     */
+    private void writeSnapshot(byte[] content) throws IOException {
+
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(content);
+        out.writeLong(crc.getValue());
+        out.flush();
+        Files.write(snapshotPath, bytes.toByteArray());
+    }
+
+    private static void writeHeader(DataOutputStream out, int magic, int version, int sectionCount)
+            throws IOException {
+
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(sectionCount);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static class TestCache implements SnapshotableCache {
+
+        private final String name;
+        private final Map<String, String> entries = new LinkedHashMap<>();
+        private Map<String, String> restored;
+
+        TestCache(String name) {
+
+            this.name = name;
+        }
+
+        @Override
+        public String getSnapshotName() {
+
+            return name;
+        }
+
+        @Override
+        public Map<String, String> snapshot() {
+
+            return entries;
+        }
+
+        @Override
+        public void restore(Map<String, String> entries) {
+
+            restored = entries;
+        }
+    }
+}
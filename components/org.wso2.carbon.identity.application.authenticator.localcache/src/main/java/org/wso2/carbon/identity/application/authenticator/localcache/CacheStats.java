@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * Statistics of a {@link LocalCache}, as of the time they were taken.
+ */
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTimeNanos;
+    private final long evictionCount;
+    private final long evictionWeight;
+
+    public CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+                      long totalLoadTimeNanos, long evictionCount, long evictionWeight) {
+
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+        this.evictionCount = evictionCount;
+        this.evictionWeight = evictionWeight;
+    }
+
+    public long getHitCount() {
+
+        return hitCount;
+    }
+
+    public long getMissCount() {
+
+        return missCount;
+    }
+
+    public long getRequestCount() {
+
+        return hitCount + missCount;
+    }
+
+    /**
+     * Get the ratio of the lookups that found a value in the cache.
+     *
+     * @return hit rate between 0 and 1, or 1 if there were no lookups
+     */
+    public double getHitRate() {
+
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long getLoadSuccessCount() {
+
+        return loadSuccessCount;
+    }
+
+    public long getLoadFailureCount() {
+
+        return loadFailureCount;
+    }
+
+    public long getTotalLoadTimeNanos() {
+
+        return totalLoadTimeNanos;
+    }
+
+    /**
+     * Get the average time taken to load a value, including the failed loads.
+     *
+     * @return average load time in nanoseconds, or 0 if no values were loaded
+     */
+    public double getAverageLoadPenaltyNanos() {
+
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTimeNanos / loadCount;
+    }
+
+    /**
+     * Get the number of entries that expired or were evicted to keep the cache within its maximum size or weight.
+     *
+     * @return eviction count
+     */
+    public long getEvictionCount() {
+
+        return evictionCount;
+    }
+
+    public long getEvictionWeight() {
+
+        return evictionWeight;
+    }
+
+    @Override
+    public String toString() {
+
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", loadSuccessCount="
+                + loadSuccessCount + ", loadFailureCount=" + loadFailureCount + ", totalLoadTimeNanos="
+                + totalLoadTimeNanos + ", evictionCount=" + evictionCount + ", evictionWeight=" + evictionWeight
+                + "}";
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * Count-min sketch estimating how often keys were accessed recently, with 4-bit counters. The counters are halved
+ * once the number of increments reaches ten times the width of the sketch, so that the estimate follows the changes
+ * of the workload instead of accumulating forever.
+ * <p>
+ * This is not thread safe, and is guarded by the eviction lock of the cache.
+ */
+class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int MAX_WIDTH = 1 << 20;
+    private static final int[] SEEDS = {0x97cb3127, 0xb6a3f5e1, 0x3c6ef372, 0xa54ff53a};
+
+    private final byte[] counters;
+    private final int widthMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(long expectedEntries) {
+
+        int width = Integer.highestOneBit((int) Math.max(16, Math.min(expectedEntries, MAX_WIDTH)) - 1) << 1;
+        this.counters = new byte[DEPTH * width];
+        this.widthMask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Get the estimated number of recent accesses of the key, up to 15.
+     *
+     * @param hashCode hash code of the key
+     * @return estimated frequency
+     */
+    int frequency(int hashCode) {
+
+        int hash = spread(hashCode);
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[indexOf(hash, row)]);
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an access of the key.
+     *
+     * @param hashCode hash code of the key
+     */
+    void increment(int hashCode) {
+
+        int hash = spread(hashCode);
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = (byte) (counters[i] >>> 1);
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row) {
+
+        int rowHash = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        rowHash ^= rowHash >>> 16;
+        return row * (widthMask + 1) + (rowHash & widthMask);
+    }
+
+    private static int spread(int hashCode) {
+
+        int hash = hashCode * 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ (hash >>> 16);
+    }
+}
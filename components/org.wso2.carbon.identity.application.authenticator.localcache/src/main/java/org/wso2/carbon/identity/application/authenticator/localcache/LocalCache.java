@@ -0,0 +1,1000 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Bounded local cache with a W-TinyLFU eviction policy.
+ * <p>
+ * New entries are admitted to a small LRU window of about 1% of the capacity. Entries leaving the window compete with
+ * the least recently used entry of the main space, and the one accessed less often according to a
+ * {@link FrequencySketch} is evicted. The main space is split into a probation and a protected segment, so that an
+ * entry has to be read again after it is admitted before it is protected from eviction. This keeps the entries used
+ * most often, such as the tenants and the user agents most logged in with, while a burst of one-off keys only churns
+ * the window.
+ * <p>
+ * Reads are recorded in a lossy buffer and applied to the policy in batches, so that lookups do not contend on a lock.
+ * Entries expire a fixed duration after they were written, and can be refreshed in the background before they expire
+ * when they are read through {@link #get(Object, Function)}. The statistics of the cache are exposed over JMX by the
+ * {@link LocalCacheManager}.
+ * <p>
+ * A value loaded while its key is invalidated may be stale, so it is returned to the loading caller but not cached.
+ * Invalidations are tracked with stamps shared by the keys of a stripe, which are checked atomically with the write.
+ * Callers loading values outside the cache use {@link #getInvalidationStamp(Object)} and
+ * {@link #putIfNotInvalidated(Object, Object, long)} for the same guarantee.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+public final class LocalCache<K, V> {
+
+    private static final Log log = LogFactory.getLog(LocalCache.class);
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = 32;
+    private static final int WINDOW_PERCENTAGE = 1;
+    private static final int PROTECTED_PERCENTAGE = 80;
+    private static final long MIN_EXPIRY_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final int INVALIDATION_STRIPES = 64;
+    private static final long NO_INVALIDATION_STAMP = -1;
+
+    private final String name;
+    private final long maximumWeight;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+    private final Executor executor;
+    private final RemovalListener<? super K, ? super V> removalListener;
+    private final LongSupplier ticker;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final Queue<Node<K, V>> readBuffer = new ArrayBlockingQueue<>(READ_BUFFER_SIZE);
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // Incremented before the keys of the stripe are invalidated.
+    private final AtomicLongArray invalidationStamps = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    // Guarded by the eviction lock.
+    private final FrequencySketch sketch;
+    private final AccessOrderDeque<K, V> window = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> probation = new AccessOrderDeque<>();
+    private final AccessOrderDeque<K, V> protectedSegment = new AccessOrderDeque<>();
+    private final List<Removal<K, V>> pendingRemovals = new ArrayList<>();
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+    private long lastExpirySweepTime;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder evictionWeight = new LongAdder();
+
+    private LocalCache(Builder<K, V> builder) {
+
+        this.name = builder.name;
+        this.maximumWeight = builder.maximumWeight;
+        this.windowMaximum = Math.max(1, maximumWeight * WINDOW_PERCENTAGE / 100);
+        this.protectedMaximum = (maximumWeight - windowMaximum) * PROTECTED_PERCENTAGE / 100;
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.refreshAfterWriteNanos = builder.refreshAfterWriteNanos;
+        this.executor = builder.executor;
+        this.removalListener = builder.removalListener;
+        this.ticker = builder.ticker;
+        this.sketch = new FrequencySketch(builder.weigher == null ? maximumWeight : builder.expectedEntries);
+        this.lastExpirySweepTime = ticker.getAsLong();
+    }
+
+    /**
+     * Create a builder of a cache.
+     *
+     * @param name name of the cache, unique among the caches of the server, used to expose its statistics
+     * @param <K>  type of the keys
+     * @param <V>  type of the values
+     * @return builder
+     */
+    public static <K, V> Builder<K, V> builder(String name) {
+
+        return new Builder<>(name);
+    }
+
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Get the value of the key, if it is cached and has not expired.
+     *
+     * @param key key
+     * @return value, or null if the key is not cached
+     */
+    public V getIfPresent(K key) {
+
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            missCount.increment();
+            return null;
+        }
+        if (isExpired(node, ticker.getAsLong())) {
+            missCount.increment();
+            remove(node, RemovalCause.EXPIRED);
+            return null;
+        }
+        V value = node.value;
+        afterRead(node);
+        hitCount.increment();
+        return value;
+    }
+
+    /**
+     * Get the value of the key, loading and caching it if it is not cached. If the cache refreshes after write and
+     * the entry is due for refresh, the current value is returned and the entry is reloaded in the background.
+     * <p>
+     * Concurrent misses of the same key load the value concurrently. The loaded value is not cached if the key is
+     * invalidated while it is loaded.
+     *
+     * @param key    key
+     * @param loader function loading the value of the key, returning null if the key has no value
+     * @return value, or null if the loader returned null
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            long now = ticker.getAsLong();
+            if (!isExpired(node, now)) {
+                V value = node.value;
+                afterRead(node);
+                hitCount.increment();
+                if (refreshAfterWriteNanos > 0 && now - node.writeTime >= refreshAfterWriteNanos) {
+                    refresh(node, loader);
+                }
+                return value;
+            }
+            remove(node, RemovalCause.EXPIRED);
+        }
+        missCount.increment();
+        long invalidationStamp = getInvalidationStamp(key);
+        V value = load(key, loader);
+        if (value != null) {
+            putIfNotInvalidated(key, value, invalidationStamp);
+        }
+        return value;
+    }
+
+    /**
+     * Cache the value of the key, replacing the current value if any.
+     *
+     * @param key   key
+     * @param value value
+     */
+    public void put(K key, V value) {
+
+        write(key, value, false, NO_INVALIDATION_STAMP);
+    }
+
+    /**
+     * Get the current invalidation stamp of the key. Take the stamp before loading a value outside the cache, and
+     * cache the value with {@link #putIfNotInvalidated(Object, Object, long)}.
+     *
+     * @param key key
+     * @return invalidation stamp
+     */
+    public long getInvalidationStamp(K key) {
+
+        return invalidationStamps.get(stripe(key));
+    }
+
+    /**
+     * Cache the value of the key, unless the key may have been invalidated since the given stamp was taken, in which
+     * case the value may be stale. Keys sharing the stripe of the key, and invalidations of all the keys, also count
+     * as invalidations.
+     *
+     * @param key               key
+     * @param value             value
+     * @param invalidationStamp stamp taken with {@link #getInvalidationStamp(Object)} before the value was loaded
+     * @return true if the value was cached
+     */
+    public boolean putIfNotInvalidated(K key, V value, long invalidationStamp) {
+
+        return write(key, value, false, invalidationStamp) == null;
+    }
+
+    /**
+     * Cache the value of the key, unless the key has a value that has not expired.
+     *
+     * @param key   key
+     * @param value value
+     * @return the current value, or null if the value was cached
+     */
+    public V putIfAbsent(K key, V value) {
+
+        return write(key, value, true, NO_INVALIDATION_STAMP);
+    }
+
+    /**
+     * Remove the key from the cache.
+     *
+     * @param key key
+     */
+    public void invalidate(K key) {
+
+        invalidationStamps.incrementAndGet(stripe(key));
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            remove(node, RemovalCause.EXPLICIT);
+        }
+    }
+
+    /**
+     * Remove the keys matching the predicate from the cache.
+     *
+     * @param predicate predicate of the keys to remove
+     */
+    public void invalidateIf(Predicate<? super K> predicate) {
+
+        // Loads in flight are not tested against the predicate, so the loads of every key are treated as invalidated.
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidationStamps.incrementAndGet(i);
+        }
+        List<Node<K, V>> removedNodes = new ArrayList<>();
+        for (Node<K, V> node : data.values()) {
+            if (predicate.test(node.key) && data.remove(node.key, node)) {
+                node.retired = true;
+                removedNodes.add(node);
+            }
+        }
+        if (removedNodes.isEmpty()) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            for (Node<K, V> node : removedNodes) {
+                unlink(node);
+                addPendingRemoval(node, RemovalCause.EXPLICIT);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyPendingRemovals();
+    }
+
+    /**
+     * Remove all the keys from the cache.
+     */
+    public void invalidateAll() {
+
+        invalidateIf(key -> true);
+    }
+
+    /**
+     * Get the number of entries in the cache, including the expired entries not removed yet.
+     *
+     * @return number of entries
+     */
+    public long size() {
+
+        return data.size();
+    }
+
+    /**
+     * Get the total weight of the entries in the cache, which is the number of entries if the cache is not bounded
+     * by weight.
+     *
+     * @return weighted size
+     */
+    public long weightedSize() {
+
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public long getMaximumWeight() {
+
+        return maximumWeight;
+    }
+
+    /**
+     * Get a copy of the entries of the cache that have not expired, such as to snapshot the cache.
+     *
+     * @return entries of the cache
+     */
+    public Map<K, V> toMap() {
+
+        long now = ticker.getAsLong();
+        Map<K, V> entries = new LinkedHashMap<>();
+        for (Node<K, V> node : data.values()) {
+            if (!isExpired(node, now)) {
+                entries.put(node.key, node.value);
+            }
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Apply the pending reads to the eviction policy and remove the expired entries now, instead of on the next
+     * write.
+     */
+    public void cleanUp() {
+
+        evictionLock.lock();
+        try {
+            maintain(ticker.getAsLong(), true);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyPendingRemovals();
+    }
+
+    public CacheStats stats() {
+
+        return new CacheStats(hitCount.sum(), missCount.sum(), loadSuccessCount.sum(), loadFailureCount.sum(),
+                totalLoadTimeNanos.sum(), evictionCount.sum(), evictionWeight.sum());
+    }
+
+    /**
+     * Remove all the entries and stop exposing the statistics of the cache. The cache remains usable, and can be
+     * registered again with the {@link LocalCacheManager}.
+     */
+    public void close() {
+
+        LocalCacheManager.getInstance().unregister(this);
+        invalidateAll();
+    }
+
+    /**
+     * Write the value of the key.
+     *
+     * @return null if the value was written, otherwise the current value kept by putIfAbsent, or the given value if
+     * the key was invalidated since the stamp was taken.
+     */
+    private V write(K key, V value, boolean onlyIfAbsent, long invalidationStamp) {
+
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        int weight = weigher == null ? 1 : weigher.weigh(key, value);
+        long now = ticker.getAsLong();
+        int stripe = stripe(key);
+        List<V> currentValue = new ArrayList<>(1);
+        List<Removal<K, V>> replaced = new ArrayList<>(1);
+        boolean[] invalidated = new boolean[1];
+        Node<K, V> node = data.compute(key, (k, existing) -> {
+            if (invalidationStamp != NO_INVALIDATION_STAMP
+                    && invalidationStamps.get(stripe) != invalidationStamp) {
+                invalidated[0] = true;
+                return existing;
+            }
+            if (existing == null) {
+                return new Node<>(k, value, weight, now);
+            }
+            boolean expired = isExpired(existing, now);
+            if (onlyIfAbsent && !expired) {
+                currentValue.add(existing.value);
+                return existing;
+            }
+            replaced.add(new Removal<>(k, existing.value, expired ? RemovalCause.EXPIRED : RemovalCause.REPLACED));
+            existing.value = value;
+            existing.weight = weight;
+            existing.writeTime = now;
+            return existing;
+        });
+        if (invalidated[0]) {
+            return value;
+        }
+        if (!currentValue.isEmpty()) {
+            afterRead(node);
+            return currentValue.get(0);
+        }
+        evictionLock.lock();
+        try {
+            if (replaced.isEmpty()) {
+                onAdd(node);
+            } else {
+                onUpdate(node);
+            }
+            maintain(now, false);
+        } finally {
+            evictionLock.unlock();
+        }
+        for (Removal<K, V> removal : replaced) {
+            notifyRemoval(removal);
+        }
+        notifyPendingRemovals();
+        return null;
+    }
+
+    private int stripe(K key) {
+
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (INVALIDATION_STRIPES - 1);
+    }
+
+    private boolean isExpired(Node<K, V> node, long now) {
+
+        return expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos;
+    }
+
+    private V load(K key, Function<? super K, ? extends V> loader) {
+
+        long startTime = ticker.getAsLong();
+        boolean loaded = false;
+        try {
+            V value = loader.apply(key);
+            loaded = value != null;
+            return value;
+        } finally {
+            totalLoadTimeNanos.add(ticker.getAsLong() - startTime);
+            if (loaded) {
+                loadSuccessCount.increment();
+            } else {
+                loadFailureCount.increment();
+            }
+        }
+    }
+
+    private void refresh(Node<K, V> node, Function<? super K, ? extends V> loader) {
+
+        if (!node.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        long writeTime = node.writeTime;
+        long invalidationStamp = getInvalidationStamp(node.key);
+        try {
+            executor.execute(() -> {
+                try {
+                    V value = load(node.key, loader);
+                    // Skip the refreshed value if the entry was removed, written or invalidated while it was loaded.
+                    if (value != null && data.get(node.key) == node && node.writeTime == writeTime) {
+                        putIfNotInvalidated(node.key, value, invalidationStamp);
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Error while refreshing an entry of the local cache: " + name + ". The current value "
+                            + "is served until it expires.", e);
+                } finally {
+                    node.refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            node.refreshing.set(false);
+            if (log.isDebugEnabled()) {
+                log.debug("Skipped refreshing an entry of the local cache: " + name, e);
+            }
+        }
+    }
+
+    private void remove(Node<K, V> node, RemovalCause cause) {
+
+        if (!data.remove(node.key, node)) {
+            return;
+        }
+        node.retired = true;
+        evictionLock.lock();
+        try {
+            unlink(node);
+            if (cause.wasEvicted()) {
+                evictionCount.increment();
+                evictionWeight.add(node.weight);
+            }
+            addPendingRemoval(node, cause);
+        } finally {
+            evictionLock.unlock();
+        }
+        notifyPendingRemovals();
+    }
+
+    private void afterRead(Node<K, V> node) {
+
+        boolean buffered = readBuffer.offer(node);
+        if ((!buffered || readBuffer.size() >= READ_BUFFER_DRAIN_THRESHOLD) && evictionLock.tryLock()) {
+            try {
+                drainReadBuffer();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffer() {
+
+        Node<K, V> node;
+        while ((node = readBuffer.poll()) != null) {
+            onAccess(node);
+        }
+    }
+
+    private void maintain(long now, boolean sweepExpired) {
+
+        drainReadBuffer();
+        if (expireAfterWriteNanos > 0 && (sweepExpired || now - lastExpirySweepTime
+                >= Math.max(expireAfterWriteNanos / 2, MIN_EXPIRY_SWEEP_INTERVAL_NANOS))) {
+            lastExpirySweepTime = now;
+            for (Node<K, V> node : data.values()) {
+                if (isExpired(node, now)) {
+                    evict(node, RemovalCause.EXPIRED);
+                }
+            }
+        }
+        evict();
+    }
+
+    private void onAdd(Node<K, V> node) {
+
+        if (node.retired || node.segment != Segment.NONE) {
+            return;
+        }
+        node.policyWeight = node.weight;
+        node.segment = Segment.WINDOW;
+        window.addLast(node);
+        windowWeight += node.policyWeight;
+        totalWeight += node.policyWeight;
+        sketch.increment(node.key.hashCode());
+    }
+
+    private void onUpdate(Node<K, V> node) {
+
+        if (node.retired || node.segment == Segment.NONE) {
+            // The entry is accounted with its current weight when it is added.
+            return;
+        }
+        long weightDifference = node.weight - node.policyWeight;
+        node.policyWeight = node.weight;
+        totalWeight += weightDifference;
+        if (node.segment == Segment.WINDOW) {
+            windowWeight += weightDifference;
+        } else if (node.segment == Segment.PROTECTED) {
+            protectedWeight += weightDifference;
+        }
+        onAccess(node);
+    }
+
+    private void onAccess(Node<K, V> node) {
+
+        if (node.retired || node.segment == Segment.NONE) {
+            return;
+        }
+        sketch.increment(node.key.hashCode());
+        switch (node.segment) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.addLast(node);
+                protectedWeight += node.policyWeight;
+                // Demote the least recently used protected entries, to be evicted if they are not read again.
+                while (protectedWeight > protectedMaximum && protectedSegment.peekFirst() != node) {
+                    Node<K, V> demoted = protectedSegment.peekFirst();
+                    protectedSegment.remove(demoted);
+                    protectedWeight -= demoted.policyWeight;
+                    demoted.segment = Segment.PROBATION;
+                    probation.addLast(demoted);
+                }
+                break;
+            case PROTECTED:
+                protectedSegment.moveToLast(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void evict() {
+
+        // Entries leaving the window become candidates at the end of the probation segment.
+        while (windowWeight > windowMaximum) {
+            Node<K, V> candidate = window.peekFirst();
+            window.remove(candidate);
+            windowWeight -= candidate.policyWeight;
+            candidate.segment = Segment.PROBATION;
+            probation.addLast(candidate);
+        }
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.peekFirst();
+            Node<K, V> candidate = probation.peekLast();
+            Node<K, V> evicted;
+            if (victim == null) {
+                evicted = protectedSegment.peekFirst() != null ? protectedSegment.peekFirst() : window.peekFirst();
+            } else if (victim == candidate || candidate.policyWeight > maximumWeight) {
+                evicted = candidate;
+            } else {
+                evicted = admit(candidate, victim) ? victim : candidate;
+            }
+            if (evicted == null) {
+                return;
+            }
+            evict(evicted, RemovalCause.SIZE);
+        }
+    }
+
+    /**
+     * Check whether the candidate has been accessed more often than the victim, and should be kept instead.
+     */
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+
+        return sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode());
+    }
+
+    private void evict(Node<K, V> node, RemovalCause cause) {
+
+        boolean removed = data.remove(node.key, node);
+        node.retired = true;
+        unlink(node);
+        if (removed) {
+            evictionCount.increment();
+            evictionWeight.add(node.weight);
+            addPendingRemoval(node, cause);
+        }
+    }
+
+    private void unlink(Node<K, V> node) {
+
+        switch (node.segment) {
+            case WINDOW:
+                window.remove(node);
+                windowWeight -= node.policyWeight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protectedSegment.remove(node);
+                protectedWeight -= node.policyWeight;
+                break;
+            default:
+                return;
+        }
+        totalWeight -= node.policyWeight;
+        node.segment = Segment.NONE;
+    }
+
+    private void addPendingRemoval(Node<K, V> node, RemovalCause cause) {
+
+        if (removalListener != null) {
+            pendingRemovals.add(new Removal<>(node.key, node.value, cause));
+        }
+    }
+
+    /**
+     * Notify the removals collected under the eviction lock, after it is released.
+     */
+    private void notifyPendingRemovals() {
+
+        if (removalListener == null) {
+            return;
+        }
+        List<Removal<K, V>> removals;
+        evictionLock.lock();
+        try {
+            if (pendingRemovals.isEmpty()) {
+                return;
+            }
+            removals = new ArrayList<>(pendingRemovals);
+            pendingRemovals.clear();
+        } finally {
+            evictionLock.unlock();
+        }
+        for (Removal<K, V> removal : removals) {
+            notifyRemoval(removal);
+        }
+    }
+
+    private void notifyRemoval(Removal<K, V> removal) {
+
+        if (removalListener == null) {
+            return;
+        }
+        try {
+            removalListener.onRemoval(removal.key, removal.value, removal.cause);
+        } catch (RuntimeException e) {
+            log.error("Error while notifying the removal of an entry of the local cache: " + name, e);
+        }
+    }
+
+    private enum Segment {
+        NONE, WINDOW, PROBATION, PROTECTED
+    }
+
+    private static final class Node<K, V> {
+
+        private final K key;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile V value;
+        private volatile int weight;
+        private volatile long writeTime;
+        private volatile boolean retired;
+
+        // Guarded by the eviction lock.
+        private Segment segment = Segment.NONE;
+        private long policyWeight;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(K key, V value, int weight, long writeTime) {
+
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * Doubly linked list of nodes in access order, the least recently used first.
+     */
+    private static final class AccessOrderDeque<K, V> {
+
+        private Node<K, V> first;
+        private Node<K, V> last;
+
+        private Node<K, V> peekFirst() {
+
+            return first;
+        }
+
+        private Node<K, V> peekLast() {
+
+            return last;
+        }
+
+        private void addLast(Node<K, V> node) {
+
+            node.previous = last;
+            node.next = null;
+            if (last == null) {
+                first = node;
+            } else {
+                last.next = node;
+            }
+            last = node;
+        }
+
+        private void remove(Node<K, V> node) {
+
+            if (node.previous == null) {
+                first = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                last = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+        }
+
+        private void moveToLast(Node<K, V> node) {
+
+            if (node != last) {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    private static final class Removal<K, V> {
+
+        private final K key;
+        private final V value;
+        private final RemovalCause cause;
+
+        private Removal(K key, V value, RemovalCause cause) {
+
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * Builder of a {@link LocalCache}. A cache is bounded either by size or by weight.
+     *
+     * @param <K> type of the keys
+     * @param <V> type of the values
+     */
+    public static final class Builder<K, V> {
+
+        private static final long DEFAULT_EXPECTED_ENTRIES = 1024;
+
+        private final String name;
+        private long maximumWeight = -1;
+        private Weigher<? super K, ? super V> weigher;
+        private long expectedEntries = DEFAULT_EXPECTED_ENTRIES;
+        private long expireAfterWriteNanos;
+        private long refreshAfterWriteNanos;
+        private Executor executor = ForkJoinPool.commonPool();
+        private RemovalListener<? super K, ? super V> removalListener;
+        private LongSupplier ticker = System::nanoTime;
+        private boolean registered = true;
+
+        private Builder(String name) {
+
+            this.name = Objects.requireNonNull(name);
+        }
+
+        /**
+         * Bound the cache to a number of entries.
+         *
+         * @param maximumSize maximum number of entries
+         * @return this builder
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+
+            if (maximumWeight >= 0) {
+                throw new IllegalStateException("The maximum size or weight of the cache: " + name
+                        + " is already set.");
+            }
+            if (maximumSize <= 0) {
+                throw new IllegalArgumentException("Invalid maximum size: " + maximumSize);
+            }
+            this.maximumWeight = maximumSize;
+            return this;
+        }
+
+        /**
+         * Bound the cache to a total weight of the entries.
+         *
+         * @param maximumWeight   maximum total weight
+         * @param weigher         weigher of the entries
+         * @param expectedEntries expected number of entries when the cache is full, used to size the frequency
+         *                        sketch
+         * @return this builder
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher,
+                                           long expectedEntries) {
+
+            if (this.maximumWeight >= 0) {
+                throw new IllegalStateException("The maximum size or weight of the cache: " + name
+                        + " is already set.");
+            }
+            if (maximumWeight <= 0) {
+                throw new IllegalArgumentException("Invalid maximum weight: " + maximumWeight);
+            }
+            this.maximumWeight = maximumWeight;
+            this.weigher = Objects.requireNonNull(weigher);
+            this.expectedEntries = expectedEntries;
+            return this;
+        }
+
+        /**
+         * Expire the entries a fixed duration after they were written.
+         *
+         * @param duration duration
+         * @param unit     unit of the duration
+         * @return this builder
+         */
+        public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+
+            this.expireAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Reload the entries read through {@link LocalCache#get(Object, Function)} in the background once they are
+         * older than the duration, so that the entries read often do not expire and miss.
+         *
+         * @param duration duration, shorter than the expire after write duration
+         * @param unit     unit of the duration
+         * @return this builder
+         */
+        public Builder<K, V> refreshAfterWrite(long duration, TimeUnit unit) {
+
+            this.refreshAfterWriteNanos = unit.toNanos(duration);
+            return this;
+        }
+
+        /**
+         * Set the executor running the background refreshes. The common fork join pool is used by default.
+         *
+         * @param executor executor
+         * @return this builder
+         */
+        public Builder<K, V> executor(Executor executor) {
+
+            this.executor = Objects.requireNonNull(executor);
+            return this;
+        }
+
+        public Builder<K, V> removalListener(RemovalListener<? super K, ? super V> removalListener) {
+
+            this.removalListener = removalListener;
+            return this;
+        }
+
+        /**
+         * Set the source of the time in nanoseconds, such as to control expiry in tests.
+         *
+         * @param ticker source of the time
+         * @return this builder
+         */
+        public Builder<K, V> ticker(LongSupplier ticker) {
+
+            this.ticker = Objects.requireNonNull(ticker);
+            return this;
+        }
+
+        /**
+         * Do not register the cache with the {@link LocalCacheManager}, such as for short lived caches.
+         *
+         * @return this builder
+         */
+        public Builder<K, V> unregistered() {
+
+            this.registered = false;
+            return this;
+        }
+
+        /**
+         * Build the cache, and register it with the {@link LocalCacheManager} unless it is unregistered.
+         *
+         * @return cache
+         */
+        public LocalCache<K, V> build() {
+
+            if (maximumWeight < 0) {
+                throw new IllegalStateException("The maximum size or weight of the cache: " + name + " is not set.");
+            }
+            if (refreshAfterWriteNanos > 0 && expireAfterWriteNanos > 0
+                    && refreshAfterWriteNanos >= expireAfterWriteNanos) {
+                throw new IllegalStateException("The refresh after write duration of the cache: " + name
+                        + " must be shorter than the expire after write duration.");
+            }
+            LocalCache<K, V> cache = new LocalCache<>(this);
+            if (registered) {
+                LocalCacheManager.getInstance().register(cache);
+            }
+            return cache;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registry of the {@link LocalCache}s of the server, exposing the statistics of each cache over JMX as
+ * {@code org.wso2.carbon.identity.application.authenticator:type=LocalCache,name=<cache name>}.
+ * <p>
+ * Caches are registered when they are built. Registering a cache with the name of a registered cache replaces it,
+ * so a cache created again by a restarted bundle takes over the statistics of the previous one. The caches are
+ * unregistered when the local cache bundle is stopped.
+ */
+public class LocalCacheManager {
+
+    private static final Log log = LogFactory.getLog(LocalCacheManager.class);
+
+    private static final String OBJECT_NAME_PREFIX =
+            "org.wso2.carbon.identity.application.authenticator:type=LocalCache,name=";
+
+    private static final LocalCacheManager instance = new LocalCacheManager();
+
+    private final ConcurrentMap<String, LocalCache<?, ?>> caches = new ConcurrentHashMap<>();
+
+    private LocalCacheManager() {
+
+    }
+
+    public static LocalCacheManager getInstance() {
+
+        return instance;
+    }
+
+    /**
+     * Register the cache, and expose its statistics over JMX.
+     *
+     * @param cache cache
+     */
+    public synchronized void register(LocalCache<?, ?> cache) {
+
+        caches.put(cache.getName(), cache);
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName(cache.getName());
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(new LocalCacheStatistics(cache), objectName);
+        } catch (JMException e) {
+            log.error("Error while registering the statistics MBean of the local cache: " + cache.getName(), e);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Registered the local cache: " + cache.getName());
+        }
+    }
+
+    /**
+     * Unregister the cache, if it is registered, and stop exposing its statistics.
+     *
+     * @param cache cache
+     */
+    public synchronized void unregister(LocalCache<?, ?> cache) {
+
+        if (caches.remove(cache.getName(), cache)) {
+            unregisterMBean(cache.getName());
+        }
+    }
+
+    /**
+     * Unregister all the caches.
+     */
+    public synchronized void unregisterAll() {
+
+        for (String name : new ArrayList<>(caches.keySet())) {
+            caches.remove(name);
+            unregisterMBean(name);
+        }
+    }
+
+    /**
+     * Get the registered cache with the given name.
+     *
+     * @param name name of the cache
+     * @return cache, or null if no cache with the name is registered
+     */
+    public LocalCache<?, ?> getCache(String name) {
+
+        return caches.get(name);
+    }
+
+    public Collection<LocalCache<?, ?>> getCaches() {
+
+        return Collections.unmodifiableCollection(caches.values());
+    }
+
+    private void unregisterMBean(String name) {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(name));
+        } catch (InstanceNotFoundException e) {
+            // The MBean failed to register.
+        } catch (JMException e) {
+            log.error("Error while unregistering the statistics MBean of the local cache: " + name, e);
+        }
+    }
+
+    private ObjectName getObjectName(String name) throws JMException {
+
+        return new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * JMX view of the statistics of a {@link LocalCache}.
+ */
+class LocalCacheStatistics implements LocalCacheMXBean {
+
+    private final LocalCache<?, ?> cache;
+
+    LocalCacheStatistics(LocalCache<?, ?> cache) {
+
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+
+        return cache.getName();
+    }
+
+    @Override
+    public long getSize() {
+
+        return cache.size();
+    }
+
+    @Override
+    public long getWeightedSize() {
+
+        return cache.weightedSize();
+    }
+
+    @Override
+    public long getMaximumWeight() {
+
+        return cache.getMaximumWeight();
+    }
+
+    @Override
+    public long getHitCount() {
+
+        return cache.stats().getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+
+        return cache.stats().getMissCount();
+    }
+
+    @Override
+    public double getHitRate() {
+
+        return cache.stats().getHitRate();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+
+        return cache.stats().getLoadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+
+        return cache.stats().getLoadFailureCount();
+    }
+
+    @Override
+    public double getAverageLoadPenaltyNanos() {
+
+        return cache.stats().getAverageLoadPenaltyNanos();
+    }
+
+    @Override
+    public long getEvictionCount() {
+
+        return cache.stats().getEvictionCount();
+    }
+
+    @Override
+    public long getEvictionWeight() {
+
+        return cache.stats().getEvictionWeight();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * Reason an entry was removed from a {@link LocalCache}.
+ */
+public enum RemovalCause {
+
+    /**
+     * The entry was invalidated by the owner of the cache.
+     */
+    EXPLICIT,
+
+    /**
+     * The value of the entry was replaced by a put or a refresh.
+     */
+    REPLACED,
+
+    /**
+     * The entry was written longer ago than the expire after write duration of the cache.
+     */
+    EXPIRED,
+
+    /**
+     * The entry was evicted to keep the cache within its maximum size or weight.
+     */
+    SIZE;
+
+    /**
+     * Check whether the entry was removed by the cache itself, rather than by the owner of the cache.
+     *
+     * @return true if the entry expired or was evicted
+     */
+    public boolean wasEvicted() {
+
+        return this == EXPIRED || this == SIZE;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * Listener notified when entries are removed from a {@link LocalCache}.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    /**
+     * Called after the entry has been removed. This is called on the thread that removed the entry, outside the locks
+     * of the cache, and should return quickly.
+     *
+     * @param key   key of the entry
+     * @param value value of the entry
+     * @param cause reason the entry was removed
+     */
+    void onRemoval(K key, V value, RemovalCause cause);
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent loads of the same key into one call to the backend. The first caller of a key runs the load,
+ * and the callers arriving while it is in flight wait for its result instead of loading the key again, so that a
+ * cold tenant or an expired cache does not send hundreds of identical requests to the user store, the keystore or
+ * the session store at once.
+ * <p>
+ * Each waiting caller waits up to the timeout of the single flight, and gets a {@link SingleFlightException} if the
+ * load takes longer. If the load fails, every waiting caller gets the exception of the load. Results are not kept
+ * after the load completes; cache them separately if needed.
+ * <p>
+ * All the loads of a single flight should throw the same type of checked exception, since a waiting caller rethrows
+ * the exception of the load it waited on.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the loaded values
+ */
+public class SingleFlight<K, V> {
+
+    private static final Log log = LogFactory.getLog(SingleFlight.class);
+
+    private final String name;
+    private final long timeoutMillis;
+    private final ConcurrentMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    /**
+     * @param name    name of the single flight, used in the errors
+     * @param timeout time a caller waits on an in-flight load
+     * @param unit    unit of the timeout
+     */
+    public SingleFlight(String name, long timeout, TimeUnit unit) {
+
+        this.name = name;
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Load the value of the key, or wait for the load of the key that is already in flight.
+     *
+     * @param key    key
+     * @param loader loader of the value, run if no load of the key is in flight
+     * @param <E>    type of the checked exception thrown by the loader
+     * @return the loaded value
+     * @throws E                     if the load failed
+     * @throws SingleFlightException if the wait on the in-flight load timed out or was interrupted
+     */
+    public <E extends Exception> V execute(K key, Loader<? extends V, E> loader) throws E {
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> inFlightCall = calls.putIfAbsent(key, call);
+        if (inFlightCall != null) {
+            coalescedCount.increment();
+            return await(key, inFlightCall);
+        }
+        return load(key, call, loader);
+    }
+
+    /**
+     * Load the value of the key without waiting on a load of the key that is already in flight. Use this to read a
+     * key after changing it in the backend, since a load in flight may have started before the change. The new load
+     * replaces the one in flight, so the calls of {@link #execute(Object, Loader)} arriving after it wait for the new
+     * load instead.
+     *
+     * @param key    key
+     * @param loader loader of the value
+     * @param <E>    type of the checked exception thrown by the loader
+     * @return the loaded value
+     * @throws E if the load failed
+     */
+    public <E extends Exception> V executeFresh(K key, Loader<? extends V, E> loader) throws E {
+
+        CompletableFuture<V> call = new CompletableFuture<>();
+        calls.put(key, call);
+        return load(key, call, loader);
+    }
+
+    /**
+     * Get the number of loads run.
+     *
+     * @return load count
+     */
+    public long getLoadCount() {
+
+        return loadCount.sum();
+    }
+
+    /**
+     * Get the number of calls that waited on a load in flight instead of loading.
+     *
+     * @return coalesced call count
+     */
+    public long getCoalescedCount() {
+
+        return coalescedCount.sum();
+    }
+
+    /**
+     * Get the number of calls that timed out waiting on a load in flight.
+     *
+     * @return timed out call count
+     */
+    public long getTimeoutCount() {
+
+        return timeoutCount.sum();
+    }
+
+    private <E extends Exception> V load(K key, CompletableFuture<V> call, Loader<? extends V, E> loader) throws E {
+
+        loadCount.increment();
+        try {
+            V value = loader.load();
+            call.complete(value);
+            return value;
+        } catch (Throwable e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    private <E extends Exception> V await(K key, CompletableFuture<V> call) throws E {
+
+        try {
+            return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeoutCount.increment();
+            if (log.isDebugEnabled()) {
+                log.debug("Timed out waiting " + timeoutMillis + " ms on the load of the key: " + key + " in: "
+                        + name);
+            }
+            throw new SingleFlightException("Timed out waiting on the in-flight load of " + name + ".");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SingleFlightException("Interrupted while waiting on the in-flight load of " + name + ".", e);
+        } catch (ExecutionException e) {
+            throw SingleFlight.<E>rethrow(e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> E rethrow(Throwable cause) throws E {
+
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        // The loads of a single flight throw the same checked exception type.
+        throw (E) cause;
+    }
+
+    /**
+     * Loader of a value.
+     *
+     * @param <V> type of the value
+     * @param <E> type of the checked exception thrown by the loader
+     */
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+
+        V load() throws E;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * Thrown when a call waiting on the in-flight load of a {@link SingleFlight} times out or is interrupted. The load
+ * itself continues, and its result is available to the calls made after it completes.
+ */
+public class SingleFlightException extends RuntimeException {
+
+    private static final long serialVersionUID = -3785418231520627064L;
+
+    public SingleFlightException(String message) {
+
+        super(message);
+    }
+
+    public SingleFlightException(String message, Throwable cause) {
+
+        super(message, cause);
+    }
+}
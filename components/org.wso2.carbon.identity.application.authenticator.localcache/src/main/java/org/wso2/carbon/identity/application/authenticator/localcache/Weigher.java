@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+/**
+ * Calculates the weight of the entries of a {@link LocalCache} bounded by weight, such as the approximate number of
+ * bytes the entry retains.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    /**
+     * Get the weight of the entry. The weight is calculated when the entry is written, and is not recalculated.
+     *
+     * @param key   key of the entry
+     * @param value value of the entry
+     * @return weight of the entry, zero or more
+     */
+    int weigh(K key, V value);
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache.internal;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.osgi.service.component.ComponentContext;
+import org.osgi.service.component.annotations.Activate;
+import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
+import org.wso2.carbon.identity.application.authenticator.localcache.LocalCacheManager;
+
+@Component(
+        name = "identity.application.authenticator.localcache.component",
+        immediate = true)
+public class LocalCacheServiceComponent {
+
+    private static final Log log = LogFactory.getLog(LocalCacheServiceComponent.class);
+
+    @Activate
+    protected void activate(ComponentContext ctxt) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Local cache bundle is activated");
+        }
+    }
+
+    @Deactivate
+    protected void deactivate(ComponentContext ctxt) {
+
+        LocalCacheManager.getInstance().unregisterAll();
+        if (log.isDebugEnabled()) {
+            log.debug("Local cache bundle is deactivated");
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class LocalCacheTestCase {
+
+    @Test
+    public void testSizeBoundKeepsFrequentlyReadEntries() {
+
+        LocalCache<Integer, Integer> cache = LocalCache.<Integer, Integer>builder("test-frequency")
+                .maximumSize(100).unregistered().build();
+        for (int key = 0; key < 50; key++) {
+            cache.put(key, key);
+        }
+        for (int round = 0; round < 10; round++) {
+            for (int key = 0; key < 50; key++) {
+                cache.getIfPresent(key);
+            }
+        }
+        cache.cleanUp();
+        // A scan of one-off keys should not flush the frequently read keys.
+        for (int key = 1000; key < 2000; key++) {
+            cache.put(key, key);
+        }
+
+        assertTrue(cache.size() <= 100);
+        int retained = 0;
+        for (int key = 0; key < 50; key++) {
+            if (cache.getIfPresent(key) != null) {
+                retained++;
+            }
+        }
+        assertTrue(retained >= 45, "Retained frequently read entries: " + retained);
+        assertTrue(cache.stats().getEvictionCount() >= 950);
+    }
+
+    @Test
+    public void testWeightBound() {
+
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-weight")
+                .maximumWeight(100, (key, value) -> value.length(), 10).unregistered().build();
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, "0123456789");
+        }
+
+        assertTrue(cache.weightedSize() <= 100);
+        assertEquals(cache.size(), cache.weightedSize() / 10);
+    }
+
+    @Test
+    public void testExpireAfterWrite() {
+
+        AtomicLong time = new AtomicLong();
+        List<RemovalCause> removals = new ArrayList<>();
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-expiry")
+                .maximumSize(10).expireAfterWrite(1, TimeUnit.MINUTES).ticker(time::get)
+                .removalListener((key, value, cause) -> removals.add(cause)).unregistered().build();
+        cache.put("key", "value");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(59));
+        assertEquals(cache.getIfPresent("key"), "value");
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertNull(cache.getIfPresent("key"));
+        assertEquals(cache.size(), 0);
+        assertEquals(removals.size(), 1);
+        assertEquals(removals.get(0), RemovalCause.EXPIRED);
+    }
+
+    @Test
+    public void testRefreshAfterWrite() {
+
+        AtomicLong time = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        LocalCache<String, Integer> cache = LocalCache.<String, Integer>builder("test-refresh")
+                .maximumSize(10).expireAfterWrite(2, TimeUnit.MINUTES).refreshAfterWrite(1, TimeUnit.MINUTES)
+                .executor(Runnable::run).ticker(time::get).unregistered().build();
+
+        assertEquals(cache.get("key", key -> loads.incrementAndGet()), Integer.valueOf(1));
+        time.addAndGet(TimeUnit.SECONDS.toNanos(90));
+        // The current value is served while the entry is refreshed.
+        assertEquals(cache.get("key", key -> loads.incrementAndGet()), Integer.valueOf(1));
+        assertEquals(cache.getIfPresent("key"), Integer.valueOf(2));
+
+        time.addAndGet(TimeUnit.SECONDS.toNanos(90));
+        assertEquals(cache.getIfPresent("key"), Integer.valueOf(2));
+        assertEquals(cache.stats().getLoadSuccessCount(), 2);
+    }
+
+    @Test
+    public void testInvalidateIf() {
+
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-invalidate")
+                .maximumSize(10).unregistered().build();
+        cache.put("tenant1/user1", "value");
+        cache.put("tenant1/user2", "value");
+        cache.put("tenant2/user1", "value");
+        cache.invalidateIf(key -> key.startsWith("tenant1/"));
+
+        assertEquals(cache.size(), 1);
+        assertEquals(cache.weightedSize(), 1);
+        assertNotNull(cache.getIfPresent("tenant2/user1"));
+    }
+
+    @Test
+    public void testValueLoadedDuringInvalidationIsNotCached() {
+
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-load-invalidate")
+                .maximumSize(10).unregistered().build();
+        // The key is invalidated while the value read before the change is in flight.
+        assertEquals(cache.get("key", key -> {
+            cache.invalidate(key);
+            return "stale";
+        }), "stale");
+        assertNull(cache.getIfPresent("key"));
+
+        assertEquals(cache.get("key", key -> {
+            cache.invalidateIf(k -> k.startsWith("other"));
+            return "stale";
+        }), "stale");
+        assertNull(cache.getIfPresent("key"));
+
+        assertEquals(cache.get("key", key -> "fresh"), "fresh");
+        assertEquals(cache.getIfPresent("key"), "fresh");
+    }
+
+    @Test
+    public void testRefreshDuringInvalidationIsNotCached() {
+
+        AtomicLong time = new AtomicLong();
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-refresh-invalidate")
+                .maximumSize(10).refreshAfterWrite(1, TimeUnit.MINUTES).executor(Runnable::run).ticker(time::get)
+                .unregistered().build();
+        cache.put("key", "initial");
+        time.addAndGet(TimeUnit.SECONDS.toNanos(90));
+
+        assertEquals(cache.get("key", key -> {
+            cache.invalidate(key);
+            return "stale";
+        }), "initial");
+        assertNull(cache.getIfPresent("key"));
+    }
+
+    @Test
+    public void testPutIfNotInvalidated() {
+
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-put-invalidated")
+                .maximumSize(10).unregistered().build();
+        long invalidationStamp = cache.getInvalidationStamp("key");
+        assertTrue(cache.putIfNotInvalidated("key", "first", invalidationStamp));
+        assertTrue(cache.putIfNotInvalidated("key", "second", invalidationStamp));
+        assertEquals(cache.getIfPresent("key"), "second");
+
+        cache.invalidate("key");
+        assertFalse(cache.putIfNotInvalidated("key", "stale", invalidationStamp));
+        assertNull(cache.getIfPresent("key"));
+        assertEquals(cache.size(), 0);
+
+        // A stale write does not replace a value written since the invalidation.
+        cache.put("key", "fresh");
+        assertFalse(cache.putIfNotInvalidated("key", "stale", invalidationStamp));
+        assertEquals(cache.getIfPresent("key"), "fresh");
+
+        assertTrue(cache.putIfNotInvalidated("key", "latest", cache.getInvalidationStamp("key")));
+        assertEquals(cache.getIfPresent("key"), "latest");
+    }
+
+    @Test
+    public void testRegistration() {
+
+        LocalCache<String, String> cache = LocalCache.<String, String>builder("test-registration")
+                .maximumSize(10).build();
+        assertEquals(LocalCacheManager.getInstance().getCache("test-registration"), cache);
+
+        cache.close();
+        assertNull(LocalCacheManager.getInstance().getCache("test-registration"));
+    }
+}
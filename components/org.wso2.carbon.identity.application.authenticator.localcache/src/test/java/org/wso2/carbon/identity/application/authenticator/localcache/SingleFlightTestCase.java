@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2020, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.wso2.carbon.identity.application.authenticator.localcache;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SingleFlightTestCase {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    public void testConcurrentCallsShareOneLoad() throws Exception {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test-share", 10, TimeUnit.SECONDS);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                loads.incrementAndGet();
+                loadStarted.countDown();
+                releaseLoad.await();
+                return 42;
+            })));
+            loadStarted.await();
+            for (int i = 1; i < CALLERS; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    loads.incrementAndGet();
+                    return -1;
+                })));
+            }
+            waitForCoalescedCalls(singleFlight, CALLERS - 1);
+            releaseLoad.countDown();
+
+            for (Future<Integer> result : results) {
+                assertEquals(result.get(10, TimeUnit.SECONDS).intValue(), 42);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(loads.get(), 1);
+        assertEquals(singleFlight.getLoadCount(), 1);
+        assertEquals(singleFlight.getCoalescedCount(), CALLERS - 1);
+    }
+
+    @Test
+    public void testLoadFailureIsPropagatedToWaitingCalls() throws Exception {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test-failure", 10, TimeUnit.SECONDS);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                loadStarted.countDown();
+                releaseLoad.await();
+                throw new IOException("backend unavailable");
+            }));
+            loadStarted.await();
+            Future<Integer> waiter = executor.submit(() -> singleFlight.execute("key", () -> 0));
+            waitForCoalescedCalls(singleFlight, 1);
+            releaseLoad.countDown();
+
+            assertFailedWith(leader, IOException.class);
+            assertFailedWith(waiter, IOException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // The failed load is not kept, so the next call loads again.
+        assertEquals(singleFlight.execute("key", () -> 7).intValue(), 7);
+    }
+
+    @Test
+    public void testFreshCallDoesNotJoinLoadInFlight() throws Exception {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test-fresh", 10, TimeUnit.SECONDS);
+        CountDownLatch staleLoadStarted = new CountDownLatch(1);
+        CountDownLatch releaseStaleLoad = new CountDownLatch(1);
+        CountDownLatch freshLoadStarted = new CountDownLatch(1);
+        CountDownLatch releaseFreshLoad = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<Integer> stale = executor.submit(() -> singleFlight.execute("key", () -> {
+                staleLoadStarted.countDown();
+                releaseStaleLoad.await();
+                return 1;
+            }));
+            staleLoadStarted.await();
+            Future<Integer> fresh = executor.submit(() -> singleFlight.executeFresh("key", () -> {
+                freshLoadStarted.countDown();
+                releaseFreshLoad.await();
+                return 2;
+            }));
+            freshLoadStarted.await();
+
+            // The calls arriving after the fresh load wait for it, not for the load it replaced.
+            Future<Integer> later = executor.submit(() -> singleFlight.execute("key", () -> -1));
+            waitForCoalescedCalls(singleFlight, 1);
+            releaseStaleLoad.countDown();
+            assertEquals(stale.get(10, TimeUnit.SECONDS).intValue(), 1);
+            releaseFreshLoad.countDown();
+
+            assertEquals(fresh.get(10, TimeUnit.SECONDS).intValue(), 2);
+            assertEquals(later.get(10, TimeUnit.SECONDS).intValue(), 2);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(singleFlight.getLoadCount(), 2);
+    }
+
+    @Test
+    public void testWaitingCallTimesOut() throws Exception {
+
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>("test-timeout", 50, TimeUnit.MILLISECONDS);
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                loadStarted.countDown();
+                releaseLoad.await();
+                return 1;
+            }));
+            loadStarted.await();
+            try {
+                singleFlight.execute("key", () -> 2);
+                fail("The call waiting on the slow load should time out.");
+            } catch (SingleFlightException e) {
+                assertEquals(singleFlight.getTimeoutCount(), 1);
+            }
+            releaseLoad.countDown();
+            assertEquals(leader.get(10, TimeUnit.SECONDS).intValue(), 1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void waitForCoalescedCalls(SingleFlight<?, ?> singleFlight, long count) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (singleFlight.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(singleFlight.getCoalescedCount(), count);
+    }
+
+    private void assertFailedWith(Future<?> result, Class<? extends Exception> type) throws Exception {
+
+        try {
+            result.get(10, TimeUnit.SECONDS);
+            fail("The call should fail with " + type.getName());
+        } catch (ExecutionException e) {
+            assertTrue(type.isInstance(e.getCause()), "Unexpected failure: " + e.getCause());
+        }
+    }
+}